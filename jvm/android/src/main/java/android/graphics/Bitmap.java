@@ -0,0 +1,148 @@
+package android.graphics;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * JVM stand-in for android.graphics.Bitmap. Pixels are kept as unpremultiplied ARGB ints whatever
+ * the config, only the row bytes follow it.
+ */
+public final class Bitmap {
+
+	public enum Config {
+		ALPHA_8(1),
+		RGB_565(2),
+		ARGB_4444(2),
+		ARGB_8888(4);
+
+		final int mBytesPerPixel;
+
+		Config(int bytesPerPixel) {
+			mBytesPerPixel = bytesPerPixel;
+		}
+	}
+
+	private final int mWidth;
+	private final int mHeight;
+	private final Config mConfig;
+	private final boolean mMutable;
+	private int[] mPixels;
+
+	private Bitmap(int width, int height, Config config, boolean mutable) {
+		if(width <= 0 || height <= 0){
+			throw new IllegalArgumentException("width and height must be > 0");
+		}
+		mWidth = width;
+		mHeight = height;
+		mConfig = config;
+		mMutable = mutable;
+		mPixels = new int[width * height];
+	}
+
+	public static Bitmap createBitmap(int width, int height, Config config) {
+		return new Bitmap(width, height, config, true);
+	}
+
+	public static Bitmap createBitmap(int[] colors, int width, int height, Config config) {
+		Bitmap bitmap = new Bitmap(width, height, config, false);
+		System.arraycopy(colors, 0, bitmap.mPixels, 0, width * height);
+		return bitmap;
+	}
+
+	public static Bitmap createBitmap(Bitmap source, int x, int y, int width, int height) {
+		source.checkRecycled();
+		if(x < 0 || y < 0 || x + width > source.mWidth || y + height > source.mHeight){
+			throw new IllegalArgumentException("the region must be within the source bitmap");
+		}
+		Bitmap bitmap = new Bitmap(width, height, source.mConfig, false);
+		for(int row = 0; row < height; row++){
+			System.arraycopy(source.mPixels, (y + row) * source.mWidth + x, bitmap.mPixels, row * width, width);
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Nearest neighbour only, filter is ignored.
+	 */
+	public static Bitmap createScaledBitmap(Bitmap source, int width, int height, boolean filter) {
+		source.checkRecycled();
+		Bitmap bitmap = new Bitmap(width, height, source.mConfig, false);
+		for(int y = 0; y < height; y++){
+			int sourceY = (int) ((y + 0.5) * source.mHeight / height);
+			for(int x = 0; x < width; x++){
+				int sourceX = (int) ((x + 0.5) * source.mWidth / width);
+				bitmap.mPixels[y * width + x] = source.mPixels[sourceY * source.mWidth + sourceX];
+			}
+		}
+		return bitmap;
+	}
+
+	public final int getWidth() {
+		return mWidth;
+	}
+
+	public final int getHeight() {
+		return mHeight;
+	}
+
+	public final int getRowBytes() {
+		return mWidth * mConfig.mBytesPerPixel;
+	}
+
+	public final Config getConfig() {
+		return mConfig;
+	}
+
+	public final boolean isMutable() {
+		return mMutable;
+	}
+
+	public final boolean isRecycled() {
+		return mPixels == null;
+	}
+
+	public void recycle() {
+		mPixels = null;
+	}
+
+	public void setPixels(int[] pixels, int offset, int stride, int x, int y, int width, int height) {
+		checkRecycled();
+		if(!mMutable){
+			throw new IllegalStateException("Can't call setPixels() on an immutable bitmap");
+		}
+		for(int row = 0; row < height; row++){
+			System.arraycopy(pixels, offset + row * stride, mPixels, (y + row) * mWidth + x, width);
+		}
+	}
+
+	/**
+	 * Writes premultiplied RGBA bytes, like the ARGB_8888 pixels of a device bitmap in memory.
+	 */
+	public void copyPixelsToBuffer(Buffer dst) {
+		checkRecycled();
+		if(mConfig != Config.ARGB_8888 || !(dst instanceof ByteBuffer)){
+			throw new UnsupportedOperationException("Only ARGB_8888 into a ByteBuffer is stood in for");
+		}
+		ByteBuffer buffer = (ByteBuffer) dst;
+		if(buffer.remaining() < mPixels.length * 4){
+			throw new RuntimeException("Buffer not large enough for pixels");
+		}
+		for(int color : mPixels){
+			int alpha = color >>> 24;
+			buffer.put((byte) premultiply((color >> 16) & 0xff, alpha));
+			buffer.put((byte) premultiply((color >> 8) & 0xff, alpha));
+			buffer.put((byte) premultiply(color & 0xff, alpha));
+			buffer.put((byte) alpha);
+		}
+	}
+
+	private static int premultiply(int component, int alpha) {
+		return (component * alpha + 127) / 255;
+	}
+
+	private void checkRecycled() {
+		if(mPixels == null){
+			throw new IllegalStateException("Can't use a recycled bitmap");
+		}
+	}
+}
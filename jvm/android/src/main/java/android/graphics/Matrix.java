@@ -0,0 +1,17 @@
+package android.graphics;
+
+/**
+ * JVM stand-in for android.graphics.Matrix, holding the 9 values without any of the math.
+ */
+public class Matrix {
+
+	private final float[] mValues = { 1.f, 0.f, 0.f, 0.f, 1.f, 0.f, 0.f, 0.f, 1.f };
+
+	public void setValues(float[] values) {
+		System.arraycopy(values, 0, mValues, 0, mValues.length);
+	}
+
+	public void getValues(float[] values) {
+		System.arraycopy(mValues, 0, values, 0, mValues.length);
+	}
+}
@@ -0,0 +1,27 @@
+package android.graphics;
+
+/**
+ * JVM stand-in for android.graphics.PointF.
+ */
+public class PointF {
+
+	public float x;
+	public float y;
+
+	public PointF() {
+	}
+
+	public PointF(float x, float y) {
+		set(x, y);
+	}
+
+	public final void set(float x, float y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	@Override
+	public String toString() {
+		return "PointF(" + x + ", " + y + ")";
+	}
+}
@@ -0,0 +1,35 @@
+package android.graphics;
+
+/**
+ * JVM stand-in for android.graphics.Rect.
+ */
+public final class Rect {
+
+	public int left;
+	public int top;
+	public int right;
+	public int bottom;
+
+	public Rect() {
+	}
+
+	public Rect(int left, int top, int right, int bottom) {
+		this.left = left;
+		this.top = top;
+		this.right = right;
+		this.bottom = bottom;
+	}
+
+	public final int width() {
+		return right - left;
+	}
+
+	public final int height() {
+		return bottom - top;
+	}
+
+	@Override
+	public String toString() {
+		return "Rect(" + left + ", " + top + " - " + right + ", " + bottom + ")";
+	}
+}
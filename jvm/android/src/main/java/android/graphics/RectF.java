@@ -0,0 +1,53 @@
+package android.graphics;
+
+/**
+ * JVM stand-in for android.graphics.RectF.
+ */
+public class RectF {
+
+	public float left;
+	public float top;
+	public float right;
+	public float bottom;
+
+	public RectF() {
+	}
+
+	public RectF(float left, float top, float right, float bottom) {
+		set(left, top, right, bottom);
+	}
+
+	public RectF(RectF r) {
+		if(r != null){
+			set(r);
+		}
+	}
+
+	public void set(float left, float top, float right, float bottom) {
+		this.left = left;
+		this.top = top;
+		this.right = right;
+		this.bottom = bottom;
+	}
+
+	public void set(RectF src) {
+		set(src.left, src.top, src.right, src.bottom);
+	}
+
+	public void setEmpty() {
+		set(0.f, 0.f, 0.f, 0.f);
+	}
+
+	public final float width() {
+		return right - left;
+	}
+
+	public final float height() {
+		return bottom - top;
+	}
+
+	@Override
+	public String toString() {
+		return "RectF(" + left + ", " + top + ", " + right + ", " + bottom + ")";
+	}
+}
@@ -0,0 +1,170 @@
+package android.opengl;
+
+import java.nio.Buffer;
+
+/**
+ * JVM stand-in for android.opengl.GLES20. There is never a current context, so as on a device
+ * thread without one, calls have no effect: nothing is drawn, no names or locations are generated
+ * and queries leave their output untouched.
+ */
+public class GLES20 {
+
+	public static final int GL_COLOR_BUFFER_BIT = 0x00004000;
+	public static final int GL_TRIANGLE_STRIP = 0x0005;
+	public static final int GL_TEXTURE_2D = 0x0DE1;
+	public static final int GL_VIEWPORT = 0x0BA2;
+	public static final int GL_MAX_TEXTURE_SIZE = 0x0D33;
+	public static final int GL_UNSIGNED_BYTE = 0x1401;
+	public static final int GL_FLOAT = 0x1406;
+	public static final int GL_RGBA = 0x1908;
+	public static final int GL_TEXTURE0 = 0x84C0;
+	public static final int GL_ARRAY_BUFFER = 0x8892;
+	public static final int GL_STATIC_DRAW = 0x88E4;
+	public static final int GL_FRAGMENT_SHADER = 0x8B30;
+	public static final int GL_VERTEX_SHADER = 0x8B31;
+	public static final int GL_COMPILE_STATUS = 0x8B81;
+	public static final int GL_FRAMEBUFFER_COMPLETE = 0x8CD5;
+	public static final int GL_COLOR_ATTACHMENT0 = 0x8CE0;
+	public static final int GL_FRAMEBUFFER = 0x8D40;
+
+	// State
+
+	public static void glActiveTexture(int texture) {
+	}
+
+	public static void glClear(int mask) {
+	}
+
+	public static void glClearColor(float red, float green, float blue, float alpha) {
+	}
+
+	public static void glDisable(int cap) {
+	}
+
+	public static void glFinish() {
+	}
+
+	public static void glGetIntegerv(int pname, int[] params, int offset) {
+	}
+
+	public static void glViewport(int x, int y, int width, int height) {
+	}
+
+	// Textures
+
+	public static void glBindTexture(int target, int texture) {
+	}
+
+	public static void glDeleteTextures(int n, int[] textures, int offset) {
+	}
+
+	public static void glGenTextures(int n, int[] textures, int offset) {
+	}
+
+	public static void glTexImage2D(int target, int level, int internalformat, int width, int height, int border,
+			int format, int type, Buffer pixels) {
+	}
+
+	public static void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border,
+			int imageSize, Buffer data) {
+	}
+
+	public static void glTexParameterf(int target, int pname, float param) {
+	}
+
+	// Framebuffers
+
+	public static void glBindFramebuffer(int target, int framebuffer) {
+	}
+
+	public static int glCheckFramebufferStatus(int target) {
+		return 0;
+	}
+
+	public static void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+	}
+
+	public static void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+	}
+
+	public static void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+	}
+
+	public static void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels) {
+	}
+
+	// Buffers and drawing
+
+	public static void glBindBuffer(int target, int buffer) {
+	}
+
+	public static void glBufferData(int target, int size, Buffer data, int usage) {
+	}
+
+	public static void glDrawArrays(int mode, int first, int count) {
+	}
+
+	public static void glEnableVertexAttribArray(int index) {
+	}
+
+	public static void glGenBuffers(int n, int[] buffers, int offset) {
+	}
+
+	public static void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr) {
+	}
+
+	public static void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset) {
+	}
+
+	// Programs
+
+	public static void glAttachShader(int program, int shader) {
+	}
+
+	public static void glCompileShader(int shader) {
+	}
+
+	public static int glCreateProgram() {
+		return 0;
+	}
+
+	public static int glCreateShader(int type) {
+		return 0;
+	}
+
+	public static int glGetAttribLocation(int program, String name) {
+		return -1;
+	}
+
+	public static String glGetShaderInfoLog(int shader) {
+		return "";
+	}
+
+	public static void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+	}
+
+	public static int glGetUniformLocation(int program, String name) {
+		return -1;
+	}
+
+	public static void glLinkProgram(int program) {
+	}
+
+	public static void glShaderSource(int shader, String string) {
+	}
+
+	public static void glUniform1f(int location, float x) {
+	}
+
+	public static void glUniform1i(int location, int x) {
+	}
+
+	public static void glUniform4f(int location, float x, float y, float z, float w) {
+	}
+
+	public static void glUniformMatrix3fv(int location, int count, boolean transpose, float[] value, int offset) {
+	}
+
+	public static void glUseProgram(int program) {
+	}
+}
@@ -0,0 +1,18 @@
+package android.opengl;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+/**
+ * JVM stand-in for android.opengl.GLSurfaceView. Only the Renderer interface, there is no view.
+ */
+public class GLSurfaceView {
+
+	public interface Renderer {
+		void onSurfaceCreated(GL10 gl, EGLConfig config);
+
+		void onSurfaceChanged(GL10 gl, int width, int height);
+
+		void onDrawFrame(GL10 gl);
+	}
+}
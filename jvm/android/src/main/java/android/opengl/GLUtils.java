@@ -0,0 +1,19 @@
+package android.opengl;
+
+import android.graphics.Bitmap;
+
+/**
+ * JVM stand-in for android.opengl.GLUtils. Without a context the uploads have no effect, see
+ * {@link GLES20}.
+ */
+public final class GLUtils {
+
+	private GLUtils() {
+	}
+
+	public static void texImage2D(int target, int level, Bitmap bitmap, int border) {
+	}
+
+	public static void texSubImage2D(int target, int level, int xoffset, int yoffset, Bitmap bitmap) {
+	}
+}
@@ -0,0 +1,17 @@
+package android.os;
+
+/**
+ * JVM stand-in for android.os.Build.
+ */
+public class Build {
+
+	public static class VERSION {
+
+		/** Not a device, so every API level guard fails. */
+		public static final int SDK_INT = 0;
+	}
+
+	public static class VERSION_CODES {
+		public static final int GINGERBREAD = 9;
+	}
+}
@@ -0,0 +1,36 @@
+package android.util;
+
+/**
+ * JVM stand-in for android.util.Log, printing to standard error.
+ */
+public final class Log {
+
+	private Log() {
+	}
+
+	public static int d(String tag, String msg) {
+		return println("D", tag, msg);
+	}
+
+	public static int w(String tag, String msg, Throwable tr) {
+		int length = println("W", tag, msg);
+		tr.printStackTrace();
+		return length;
+	}
+
+	public static int e(String tag, String msg) {
+		return println("E", tag, msg);
+	}
+
+	public static int e(String tag, String msg, Throwable tr) {
+		int length = println("E", tag, msg);
+		tr.printStackTrace();
+		return length;
+	}
+
+	private static int println(String priority, String tag, String msg) {
+		String line = priority + "/" + tag + ": " + msg;
+		System.err.println(line);
+		return line.length();
+	}
+}
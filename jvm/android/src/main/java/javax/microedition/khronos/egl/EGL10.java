@@ -0,0 +1,27 @@
+package javax.microedition.khronos.egl;
+
+/**
+ * JVM stand-in for javax.microedition.khronos.egl.EGL10. Nothing implements it off device.
+ */
+public interface EGL10 {
+	int EGL_NONE = 0x3038;
+	int EGL_HEIGHT = 0x3056;
+	int EGL_WIDTH = 0x3057;
+
+	EGLContext EGL_NO_CONTEXT = new EGLContext() {
+	};
+	EGLSurface EGL_NO_SURFACE = new EGLSurface() {
+	};
+
+	EGLContext eglCreateContext(EGLDisplay display, EGLConfig config, EGLContext shareContext, int[] attribList);
+
+	EGLSurface eglCreatePbufferSurface(EGLDisplay display, EGLConfig config, int[] attribList);
+
+	boolean eglMakeCurrent(EGLDisplay display, EGLSurface draw, EGLSurface read, EGLContext context);
+
+	boolean eglDestroySurface(EGLDisplay display, EGLSurface surface);
+
+	boolean eglDestroyContext(EGLDisplay display, EGLContext context);
+
+	int eglGetError();
+}
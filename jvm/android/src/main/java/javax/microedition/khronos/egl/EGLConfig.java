@@ -0,0 +1,7 @@
+package javax.microedition.khronos.egl;
+
+/**
+ * JVM stand-in for javax.microedition.khronos.egl.EGLConfig.
+ */
+public abstract class EGLConfig {
+}
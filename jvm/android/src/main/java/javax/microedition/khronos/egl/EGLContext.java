@@ -0,0 +1,7 @@
+package javax.microedition.khronos.egl;
+
+/**
+ * JVM stand-in for javax.microedition.khronos.egl.EGLContext.
+ */
+public abstract class EGLContext {
+}
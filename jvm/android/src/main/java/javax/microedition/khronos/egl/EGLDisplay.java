@@ -0,0 +1,7 @@
+package javax.microedition.khronos.egl;
+
+/**
+ * JVM stand-in for javax.microedition.khronos.egl.EGLDisplay.
+ */
+public abstract class EGLDisplay {
+}
@@ -0,0 +1,16 @@
+package javax.microedition.khronos.opengles;
+
+/**
+ * JVM stand-in for javax.microedition.khronos.opengles.GL10. Only the constants.
+ */
+public interface GL10 {
+	int GL_COLOR_BUFFER_BIT = 0x00004000;
+	int GL_CULL_FACE = 0x0B44;
+	int GL_TEXTURE_2D = 0x0DE1;
+	int GL_LINEAR = 0x2601;
+	int GL_TEXTURE_MAG_FILTER = 0x2800;
+	int GL_TEXTURE_MIN_FILTER = 0x2801;
+	int GL_TEXTURE_WRAP_S = 0x2802;
+	int GL_TEXTURE_WRAP_T = 0x2803;
+	int GL_CLAMP_TO_EDGE = 0x812F;
+}
@@ -0,0 +1,35 @@
+package com.aviary.glimageview;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.Main;
+
+/**
+ * Runs JMH with the gc profiler added, so every benchmark reports its allocation rate next to its
+ * time. Any other JMH option is passed through.
+ */
+public final class BenchmarkMain {
+
+	private BenchmarkMain() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<String> arguments = new ArrayList<String>(Arrays.asList(args));
+		if(!hasProfiler(args, "gc")){
+			arguments.add(0, "gc");
+			arguments.add(0, "-prof");
+		}
+		Main.main(arguments.toArray(new String[arguments.size()]));
+	}
+
+	private static boolean hasProfiler(String[] args, String name) {
+		for(int i = 0; i + 1 < args.length; i++){
+			if(args[i].equals("-prof") && (args[i + 1].equals(name) || args[i + 1].startsWith(name + ":"))){
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,52 @@
+package com.aviary.glimageview;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Starting a fling and stepping one of its frames, along both axes as GLImageView does. Half of
+ * the flings overscroll and spring back.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FlingBenchmark {
+
+	private static final float FRAME_SECONDS = 1 / 60.f;
+
+	private final FlingPhysics mPhysicsX = new FlingPhysics();
+	private final FlingPhysics mPhysicsY = new FlingPhysics();
+	private int mFling;
+	private int mFrame;
+
+	@Benchmark
+	public float start() {
+		int fling = mFling++;
+		float velocity = (fling & 1) == 0 ? 1.5f : 12.f;
+		mPhysicsX.start(0.2f, velocity, -1.f, 1.f, 0.05f, 0.001f);
+		mPhysicsY.start(-0.1f, -velocity * 0.5f, -0.5f, 0.5f, 0.05f, 0.001f);
+		return mPhysicsX.getDuration() + mPhysicsY.getDuration();
+	}
+
+	@Benchmark
+	public float frame() {
+		if(mFrame == 0){
+			start();
+		}
+		float time = mFrame * FRAME_SECONDS;
+		mFrame = mPhysicsX.isFinished(time) && mPhysicsY.isFinished(time) ? 0 : mFrame + 1;
+		return mPhysicsX.getPosition(time) + mPhysicsY.getPosition(time);
+	}
+}
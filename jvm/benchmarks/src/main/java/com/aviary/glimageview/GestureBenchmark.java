@@ -0,0 +1,94 @@
+package com.aviary.glimageview;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import android.graphics.PointF;
+import android.graphics.RectF;
+
+/**
+ * The work one touch event does on the UI thread, as in GLImageViewRenderer: updating and
+ * constraining the view transform, handing it to the GL thread, and the mat3 the GL thread
+ * uploads for it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GestureBenchmark {
+
+	// A landscape image fitted into a portrait viewport
+	private final RectF mBounds = new RectF(-1.f, 0.5f, 1.f, -0.5f);
+	private final ViewTransform mTransform = new ViewTransform();
+	private final TransformHandoff mHandoff = new TransformHandoff();
+	private final ViewTransform mFrameTransform = new ViewTransform();
+	private final float[] mMatrix = new float[9];
+	private final PointF mPoint = new PointF();
+	private int mEvent;
+
+	@Benchmark
+	public float[] scroll() {
+		int event = mEvent++;
+		mTransform.postTranslate((event % 7 - 3) * 0.01f, (event % 5 - 2) * 0.01f);
+		mTransform.constrainTranslation(mBounds.right, mBounds.top);
+		mTransform.getMatrix3(mMatrix, 0);
+		return mMatrix;
+	}
+
+	@Benchmark
+	public float[] scale() {
+		int event = mEvent++;
+		mTransform.postScale(event % 40 < 20 ? 1.02f : 0.98f, 0.2f, -0.1f);
+		mTransform.clampScale(0.5f, 8.f);
+		mTransform.constrainTranslation(mBounds.right, mBounds.top);
+		mTransform.getMatrix3(mMatrix, 0);
+		return mMatrix;
+	}
+
+	/**
+	 * A scroll followed by the frame it causes: published by the UI thread and copied out on the GL
+	 * thread, both on this thread here, so this is the uncontended cost.
+	 */
+	@Benchmark
+	public float[] scrollThroughHandoff() {
+		int event = mEvent++;
+		mTransform.postTranslate((event % 7 - 3) * 0.01f, (event % 5 - 2) * 0.01f);
+		mTransform.constrainTranslation(mBounds.right, mBounds.top);
+		mHandoff.publish(mTransform);
+		mHandoff.get(mFrameTransform);
+		mFrameTransform.getMatrix3(mMatrix, 0);
+		return mMatrix;
+	}
+
+	/**
+	 * Publishing a transform that did not change, as every frame of a finished animation does.
+	 */
+	@Benchmark
+	public int handoffUnchanged() {
+		return mHandoff.publish(mTransform);
+	}
+
+	/**
+	 * getConstrainedTranslation with an out parameter, used by double tap zoom and flings.
+	 */
+	@Benchmark
+	public PointF constrainedTranslation() {
+		int event = mEvent++;
+		float scale = 1.f + (event & 7) * 0.5f;
+		float translation = (event % 9 - 4) * 0.5f;
+		mPoint.x = ViewTransform.constrain(translation, scale, mBounds.right);
+		mPoint.y = ViewTransform.constrain(-translation, scale, mBounds.top);
+		return mPoint;
+	}
+}
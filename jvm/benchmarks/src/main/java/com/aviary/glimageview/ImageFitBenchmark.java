@@ -0,0 +1,50 @@
+package com.aviary.glimageview;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import android.graphics.RectF;
+
+/**
+ * GLImageViewRenderer.setupImageRect: fitting the image into the viewport and setting the bounds,
+ * over images larger and smaller than the viewport in both orientations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ImageFitBenchmark {
+
+	private static final int[] IMAGE_SIZES = { 4000, 3000, 3000, 4000, 640, 480, 480, 640, 8000, 1000 };
+	private static final int[] VIEWPORT_SIZES = { 1080, 1920, 1920, 1080 };
+
+	private final float[] mHalfExtents = new float[2];
+	private final RectF mImageBoundsRect = new RectF();
+	private int mImage;
+	private int mViewport;
+
+	@Benchmark
+	public RectF setupImageRect() {
+		mImage = mImage + 2 == IMAGE_SIZES.length ? 0 : mImage + 2;
+		if(mImage == 0){
+			mViewport = mViewport == 0 ? 2 : 0;
+		}
+
+		if(ImageFit.computeHalfExtents(IMAGE_SIZES[mImage], IMAGE_SIZES[mImage + 1],
+				VIEWPORT_SIZES[mViewport], VIEWPORT_SIZES[mViewport + 1], mHalfExtents)){
+			mImageBoundsRect.set(-mHalfExtents[0], mHalfExtents[1], mHalfExtents[0], -mHalfExtents[1]);
+		}
+		return mImageBoundsRect;
+	}
+}
@@ -0,0 +1,88 @@
+package com.aviary.glimageview;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SoftwareRasterizer on multi-megapixel images: exporting the image at its own size, as a server
+ * side readImage does, and drawing a zoomed and panned view into a 1080p target. Run with one
+ * thread and with one per core to see how the row bands scale.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RasterizerBenchmark {
+
+	private static final int VIEW_WIDTH = 1920;
+	private static final int VIEW_HEIGHT = 1080;
+
+	/** Width x height of the image */
+	@Param({ "2048x1536", "4000x3000" })
+	public String size;
+
+	/** Render threads, 0 for one per core */
+	@Param({ "1", "0" })
+	public int threads;
+
+	private ExecutorService mExecutor;
+	private SoftwareRasterizer mRasterizer;
+	private int[] mExport;
+	private final int[] mView = new int[VIEW_WIDTH * VIEW_HEIGHT];
+	private final float[] mViewMatrix = { 2.5f, 0.f, 0.4f, 0.f, 2.5f, -0.3f, 0.f, 0.f, 1.f };
+	private final float[] mHalfExtents = new float[2];
+
+	@Setup
+	public void setUp() {
+		int separator = size.indexOf('x');
+		int width = Integer.parseInt(size.substring(0, separator));
+		int height = Integer.parseInt(size.substring(separator + 1));
+		int threadCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+		mExecutor = Executors.newFixedThreadPool(threadCount);
+		mRasterizer = new SoftwareRasterizer(mExecutor, threadCount);
+		Random random = new Random(1);
+		int[] pixels = new int[width * height];
+		for(int i = 0; i < pixels.length; i++){
+			pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+		}
+		mRasterizer.setImage(pixels, width, height);
+		mExport = new int[width * height];
+		ImageFit.computeHalfExtents(width, height, VIEW_WIDTH, VIEW_HEIGHT, mHalfExtents);
+	}
+
+	@TearDown
+	public void tearDown() {
+		mExecutor.shutdown();
+	}
+
+	@Benchmark
+	public int[] export() {
+		mRasterizer.readImage(mExport, mRasterizer.getImageWidth(), mRasterizer.getImageHeight());
+		return mExport;
+	}
+
+	@Benchmark
+	public int[] zoomedView() {
+		mRasterizer.render(mViewMatrix, -mHalfExtents[0], mHalfExtents[1], mHalfExtents[0], -mHalfExtents[1],
+				mView, VIEW_WIDTH, VIEW_HEIGHT);
+		return mView;
+	}
+}
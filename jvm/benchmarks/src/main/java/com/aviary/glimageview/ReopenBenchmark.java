@@ -0,0 +1,178 @@
+package com.aviary.glimageview;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reopening a large image: decoding the JPEG again and cutting it into the full resolution tiles,
+ * against opening a {@link DiskTileCache} that already holds those tiles and mapping them. Both end
+ * with every tile's pixels read into a direct buffer, as glTexImage2D reads them.
+ *
+ * The cache file stays in the page cache between operations, so this measures a warm reopen; the
+ * cold one adds reading tiles.dat from storage.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ReopenBenchmark {
+
+	private static final int TILE_SIZE = TilePyramid.DEFAULT_TILE_SIZE;
+	private static final int TEXTURE_SIZE = TilePyramid.getTextureSize(TILE_SIZE);
+
+	/** Width x height of the generated JPEG */
+	@Param({ "4000x3000" })
+	public String size;
+
+	private byte[] mJpeg;
+	private String mSourceKey;
+	private TilePyramid mPyramid;
+	private File mDirectory;
+	private final int[] mRegion = new int[4];
+	private final int[] mRow = new int[TEXTURE_SIZE];
+	private final ByteBuffer mUpload = ByteBuffer.allocateDirect(TEXTURE_SIZE * TEXTURE_SIZE * 4).order(ByteOrder.nativeOrder());
+
+	@Setup
+	public void setUp() throws IOException {
+		int separator = size.indexOf('x');
+		int width = Integer.parseInt(size.substring(0, separator));
+		int height = Integer.parseInt(size.substring(separator + 1));
+		mJpeg = encodeJpeg(width, height);
+		mSourceKey = CompressedTextureCache.hashContent(new ByteArrayInputStream(mJpeg));
+		mPyramid = new TilePyramid(width, height, TILE_SIZE);
+
+		mDirectory = File.createTempFile("tiles", "");
+		if(!mDirectory.delete() || !mDirectory.mkdir()){
+			throw new IOException("Cannot create " + mDirectory);
+		}
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(mJpeg));
+		DiskTileCache cache = new DiskTileCache(mDirectory, TEXTURE_SIZE, DiskTileCache.DEFAULT_MAX_BYTES);
+		try {
+			for(int row = 0; row < mPyramid.getRowCount(0); row++){
+				for(int column = 0; column < mPyramid.getColumnCount(0); column++){
+					readTile(image, column, row);
+					if(!cache.put(tileKey(column, row), mRegion[2] - mRegion[0], mRegion[3] - mRegion[1], mUpload)){
+						throw new IllegalStateException("The tiles do not fit in the cache");
+					}
+				}
+			}
+		} finally {
+			cache.close();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		File[] files = mDirectory.listFiles();
+		if(files != null){
+			for(File file : files){
+				file.delete();
+			}
+		}
+		mDirectory.delete();
+	}
+
+	@Benchmark
+	public int decode() throws IOException {
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(mJpeg));
+		int checksum = 0;
+		for(int row = 0; row < mPyramid.getRowCount(0); row++){
+			for(int column = 0; column < mPyramid.getColumnCount(0); column++){
+				readTile(image, column, row);
+				checksum += mUpload.get(0);
+			}
+		}
+		return checksum;
+	}
+
+	@Benchmark
+	public int mapped() throws IOException {
+		DiskTileCache cache = new DiskTileCache(mDirectory, TEXTURE_SIZE, DiskTileCache.DEFAULT_MAX_BYTES);
+		int checksum = 0;
+		try {
+			for(int row = 0; row < mPyramid.getRowCount(0); row++){
+				for(int column = 0; column < mPyramid.getColumnCount(0); column++){
+					DiskTileCache.Tile tile = cache.get(tileKey(column, row));
+					if(tile == null){
+						throw new IllegalStateException("Tile " + column + "/" + row + " is not cached");
+					}
+					mUpload.clear();
+					mUpload.put(tile.getPixels().duplicate());
+					tile.release();
+					checksum += mUpload.get(0);
+				}
+			}
+		} finally {
+			cache.close();
+		}
+		return checksum;
+	}
+
+	private long tileKey(int column, int row) {
+		return DiskTileCache.tileKey(mSourceKey, TILE_SIZE, TilePyramid.GUTTER, 0, column, row);
+	}
+
+	/**
+	 * Reads a tile with its gutter into mUpload as RGBA, like a decoded tile handed to the GL thread.
+	 */
+	private void readTile(BufferedImage image, int column, int row) {
+		mPyramid.getTextureRegion(0, column, row, mRegion);
+		int width = mRegion[2] - mRegion[0];
+		mUpload.clear();
+		for(int y = mRegion[1]; y < mRegion[3]; y++){
+			image.getRGB(mRegion[0], y, width, 1, mRow, 0, width);
+			for(int x = 0; x < width; x++){
+				int pixel = mRow[x];
+				mUpload.put((byte) (pixel >> 16)).put((byte) (pixel >> 8)).put((byte) pixel).put((byte) 0xFF);
+			}
+		}
+		mUpload.flip();
+	}
+
+	/**
+	 * Gradients and noise, which compress about like a photo.
+	 */
+	private static byte[] encodeJpeg(int width, int height) throws IOException {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(1);
+		int[] row = new int[width];
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				int r = 255 * x / width;
+				int g = 255 * y / height;
+				int b = (r + g) / 2 + random.nextInt(32);
+				row[x] = r << 16 | g << 8 | Math.min(b, 255);
+			}
+			image.setRGB(0, y, width, 1, row, 0, width);
+		}
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		if(!ImageIO.write(image, "jpg", output)){
+			throw new IOException("No JPEG writer");
+		}
+		return output.toByteArray();
+	}
+}
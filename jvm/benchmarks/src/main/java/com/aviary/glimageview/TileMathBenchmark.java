@@ -0,0 +1,73 @@
+package com.aviary.glimageview;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The viewport and tile math TiledGLImageProgram does every frame: the visible part of the image,
+ * the pyramid level for the zoom, and the keys of the visible tiles, while panning and zooming.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TileMathBenchmark {
+
+	private static final int VIEWPORT_WIDTH = 1080;
+
+	/** Width of a 4:3 image */
+	@Param({ "4000", "16000" })
+	public int imageWidth;
+
+	private TilePyramid mPyramid;
+	private final float[] mVisibleRegion = new float[4];
+	private final int[] mVisibleTiles = new int[4];
+	private float mHalfWidth;
+	private float mHalfHeight;
+	private int mFrame;
+
+	@Setup
+	public void setUp() {
+		mPyramid = new TilePyramid(imageWidth, imageWidth * 3 / 4, TilePyramid.DEFAULT_TILE_SIZE);
+		mHalfWidth = 1.f;
+		mHalfHeight = 0.75f * 1080 / 1920;
+	}
+
+	@Benchmark
+	public long visibleTiles() {
+		int frame = mFrame++;
+		float scale = 1.f + (frame & 63) * 0.25f;
+		float translateX = ((frame & 15) - 8) * 0.1f;
+		float translateY = ((frame & 31) - 16) * 0.02f;
+
+		if(!TilePyramid.computeVisibleRegion(scale, scale, translateX, translateY, -mHalfWidth, mHalfHeight,
+				mHalfWidth, -mHalfHeight, mVisibleRegion)){
+			return 0;
+		}
+		int level = mPyramid.selectLevel(mPyramid.getScreenPixelsPerImagePixel(scale, 2 * mHalfWidth, VIEWPORT_WIDTH));
+		if(!mPyramid.getVisibleTiles(level, mVisibleRegion, mVisibleTiles)){
+			return 0;
+		}
+
+		long keys = 0;
+		for(int row = mVisibleTiles[1]; row <= mVisibleTiles[3]; row++){
+			for(int column = mVisibleTiles[0]; column <= mVisibleTiles[2]; column++){
+				keys += TilePyramid.tileKey(level, column, row);
+			}
+		}
+		return keys;
+	}
+}
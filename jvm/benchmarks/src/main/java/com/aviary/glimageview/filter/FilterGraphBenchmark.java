@@ -0,0 +1,62 @@
+package com.aviary.glimageview.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The CPU side of the filter graph: compiling a chain of nodes into fused passes, which happens
+ * when nodes are added or removed, and the per-frame bookkeeping of a slider drag, which sets a
+ * parameter and plans which passes to render again.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterGraphBenchmark {
+
+	private final List<FilterNode> mNodes = new ArrayList<FilterNode>();
+	private final FilterGraph mGraph = new FilterGraph();
+	private final RenderPlan mPlan = new RenderPlan();
+	private FilterNode mContrast;
+	private int mTick;
+
+	@Setup
+	public void setUp() {
+		mNodes.add(Filters.exposure(0.3f));
+		mNodes.add(Filters.blur(1.f));
+		mNodes.add(Filters.contrast(1.2f));
+		mNodes.add(Filters.saturation(0.8f));
+		mNodes.add(Filters.sharpen(0.5f));
+		mNodes.add(Filters.curves(0.f, 0.3f, 0.7f, 1.f));
+		for(FilterNode node : mNodes){
+			mGraph.addNode(node);
+		}
+		mContrast = mNodes.get(2);
+		mPlan.update(mGraph.getPasses().size(), mGraph.consumeFirstDirtyPass());
+	}
+
+	@Benchmark
+	public List<FilterPass> compile() {
+		return FilterGraph.compile(mNodes);
+	}
+
+	@Benchmark
+	public int sliderTick() {
+		mContrast.setParameter("amount", 1.f + (mTick++ & 15) * 0.05f);
+		return mPlan.update(mGraph.getPasses().size(), mGraph.consumeFirstDirtyPass());
+	}
+}
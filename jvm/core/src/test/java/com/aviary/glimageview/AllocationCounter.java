@@ -0,0 +1,24 @@
+package com.aviary.glimageview;
+
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Counts the bytes allocated by the current thread, where the JVM supports it.
+ */
+final class AllocationCounter {
+
+	private static final java.lang.management.ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private AllocationCounter() {
+	}
+
+	static boolean isSupported() {
+		return THREADS instanceof ThreadMXBean && ((ThreadMXBean) THREADS).isThreadAllocatedMemoryEnabled();
+	}
+
+	static long getAllocatedBytes() {
+		return ((ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,249 @@
+package com.aviary.glimageview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AnimationSchedulerTest {
+
+	private static final long FRAME_NANOS = 16666667L;
+
+	private final ManualFrameDriver mFrameDriver = new ManualFrameDriver();
+	private final ManualClock mClock = new ManualClock();
+	private AnimationScheduler mScheduler;
+	private int mRenderCount;
+
+	@Before
+	public void setUp() {
+		mClock.advance(1000000000L);
+		mScheduler = new AnimationScheduler(mFrameDriver, mClock, new Runnable() {
+			@Override
+			public void run() {
+				mRenderCount++;
+			}
+		});
+	}
+
+	@Test
+	public void animationRunsFromTheNextFrameUntilItFinishes() {
+		RecordingAnimation animation = new RecordingAnimation(3);
+		mScheduler.start(animation);
+
+		assertEquals(mClock.nanoTime(), animation.mStartTime);
+		assertTrue(animation.mFrameTimes.isEmpty());
+		assertEquals(1, mFrameDriver.getPendingCount());
+
+		long firstFrame = nextFrame();
+		nextFrame();
+		assertTrue(mScheduler.isRunning(animation));
+		nextFrame();
+
+		assertEquals(3, animation.mFrameTimes.size());
+		assertEquals(firstFrame, (long) animation.mFrameTimes.get(0));
+		assertFalse(mScheduler.isRunning(animation));
+		assertFalse(mScheduler.isAnimating());
+		// The last frame is still rendered, then the scheduler goes idle
+		assertEquals(3, mRenderCount);
+		assertEquals(0, mFrameDriver.getPendingCount());
+
+		nextFrame();
+		assertEquals(3, animation.mFrameTimes.size());
+		assertEquals(3, mRenderCount);
+	}
+
+	@Test
+	public void concurrentAnimationsShareEveryFrameAndRender() {
+		RecordingAnimation first = new RecordingAnimation(2);
+		RecordingAnimation second = new RecordingAnimation(4);
+		RecordingAnimation third = new RecordingAnimation(4);
+		mScheduler.start(first);
+		mScheduler.start(second);
+		mScheduler.start(third);
+
+		assertEquals(1, mFrameDriver.getPostCount());
+
+		for(int i = 0; i < 4; i++){
+			long frameTime = nextFrame();
+			assertEquals(1, mRenderCount - i);
+			assertEquals(frameTime, (long) second.mFrameTimes.get(i));
+			assertEquals(frameTime, (long) third.mFrameTimes.get(i));
+			assertTrue(mFrameDriver.getPendingCount() <= 1);
+		}
+
+		assertEquals(2, first.mFrameTimes.size());
+		assertEquals(4, second.mFrameTimes.size());
+		assertEquals(4, mRenderCount);
+		assertEquals(4, mFrameDriver.getPostCount());
+		assertFalse(mScheduler.isAnimating());
+	}
+
+	@Test
+	public void cancelStopsAnAnimationWhereItIs() {
+		RecordingAnimation cancelled = new RecordingAnimation(10);
+		RecordingAnimation other = new RecordingAnimation(10);
+		mScheduler.start(cancelled);
+		mScheduler.start(other);
+		nextFrame();
+		nextFrame();
+
+		mScheduler.cancel(cancelled);
+		nextFrame();
+
+		assertFalse(mScheduler.isRunning(cancelled));
+		assertEquals(2, cancelled.mFrameTimes.size());
+		assertEquals(3, other.mFrameTimes.size());
+
+		mScheduler.cancel(other);
+		// Nothing is left to run, so the pending frame is withdrawn
+		assertEquals(0, mFrameDriver.getPendingCount());
+		assertFalse(mScheduler.isAnimating());
+		assertEquals(3, mRenderCount);
+	}
+
+	@Test
+	public void cancelAllWithdrawsThePendingFrame() {
+		RecordingAnimation first = new RecordingAnimation(10);
+		RecordingAnimation second = new RecordingAnimation(10);
+		mScheduler.start(first);
+		mScheduler.start(second);
+		nextFrame();
+
+		mScheduler.cancelAll();
+
+		assertEquals(0, mFrameDriver.getPendingCount());
+		assertFalse(mScheduler.isAnimating());
+		nextFrame();
+		assertEquals(1, first.mFrameTimes.size());
+		assertEquals(1, second.mFrameTimes.size());
+		assertEquals(1, mRenderCount);
+	}
+
+	@Test
+	public void startingAnotherAnimationInterruptsTheRunningOne() {
+		RecordingAnimation fling = new RecordingAnimation(10);
+		RecordingAnimation zoom = new RecordingAnimation(2);
+		mScheduler.start(fling);
+		nextFrame();
+
+		// A double tap during a fling: the fling is dropped and the zoom takes over on the same frame clock
+		mScheduler.cancel(fling);
+		mScheduler.start(zoom);
+		assertEquals(1, mFrameDriver.getPendingCount());
+		long frameTime = nextFrame();
+
+		assertEquals(1, fling.mFrameTimes.size());
+		assertEquals(frameTime, (long) zoom.mFrameTimes.get(0));
+		assertEquals(2, mRenderCount);
+	}
+
+	@Test
+	public void restartingARunningAnimationResetsItsStartTime() {
+		RecordingAnimation animation = new RecordingAnimation(3);
+		mScheduler.start(animation);
+		nextFrame();
+		nextFrame();
+
+		mClock.advance(FRAME_NANOS / 2);
+		long restartTime = mClock.nanoTime();
+		mScheduler.start(animation);
+		animation.mFrameTimes.clear();
+
+		assertEquals(restartTime, animation.mStartTime);
+		assertEquals(1, mFrameDriver.getPendingCount());
+
+		nextFrame();
+		nextFrame();
+		nextFrame();
+		// Stepped once per frame only, and for its full length again
+		assertEquals(3, animation.mFrameTimes.size());
+		assertFalse(mScheduler.isAnimating());
+	}
+
+	@Test
+	public void animationCanStartAFollowUpWhenItCompletes() {
+		final RecordingAnimation springBack = new RecordingAnimation(2);
+		RecordingAnimation fling = new RecordingAnimation(2) {
+			@Override
+			public boolean onFrame(long frameTimeNanos) {
+				boolean running = super.onFrame(frameTimeNanos);
+				if(!running){
+					mScheduler.start(springBack);
+				}
+				return running;
+			}
+		};
+		mScheduler.start(fling);
+
+		nextFrame();
+		long lastFlingFrame = nextFrame();
+
+		// Started on the frame the fling completed, and only stepped from the next one
+		assertEquals(lastFlingFrame, springBack.mStartTime);
+		assertTrue(springBack.mFrameTimes.isEmpty());
+		assertTrue(mScheduler.isRunning(springBack));
+		assertEquals(1, mFrameDriver.getPendingCount());
+
+		nextFrame();
+		nextFrame();
+		assertEquals(2, springBack.mFrameTimes.size());
+		assertFalse(mScheduler.isAnimating());
+		assertEquals(4, mRenderCount);
+	}
+
+	@Test
+	public void animationCanCancelAnotherDuringAFrame() {
+		final RecordingAnimation victim = new RecordingAnimation(10);
+		RecordingAnimation canceller = new RecordingAnimation(10) {
+			@Override
+			public boolean onFrame(long frameTimeNanos) {
+				mScheduler.cancel(victim);
+				return super.onFrame(frameTimeNanos);
+			}
+		};
+		mScheduler.start(canceller);
+		mScheduler.start(victim);
+
+		nextFrame();
+		nextFrame();
+
+		// Each animation is stepped at most once per frame, however the list changes under it
+		assertTrue(victim.mFrameTimes.isEmpty());
+		assertEquals(2, canceller.mFrameTimes.size());
+		assertEquals(2, mRenderCount);
+	}
+
+	private long nextFrame() {
+		mClock.advance(FRAME_NANOS);
+		mFrameDriver.runFrame(mClock.nanoTime());
+		return mClock.nanoTime();
+	}
+
+	/**
+	 * Records its start and frame times, and finishes after a number of frames.
+	 */
+	private static class RecordingAnimation implements AnimationScheduler.Animation {
+		final int mFrameCount;
+		final ArrayList<Long> mFrameTimes = new ArrayList<Long>();
+		long mStartTime = -1;
+
+		RecordingAnimation(int frameCount) {
+			mFrameCount = frameCount;
+		}
+
+		@Override
+		public void onStart(long startTimeNanos) {
+			mStartTime = startTimeNanos;
+		}
+
+		@Override
+		public boolean onFrame(long frameTimeNanos) {
+			mFrameTimes.add(frameTimeNanos);
+			return mFrameTimes.size() < mFrameCount;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package com.aviary.glimageview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompressedTextureCacheTest {
+
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+	private File mDirectory;
+	private CompressedTextureCache mCache;
+
+	@Before
+	public void setUp() throws IOException {
+		mDirectory = new File(mFolder.getRoot(), "etc1");
+		mCache = new CompressedTextureCache(mDirectory, CompressedTextureCache.DEFAULT_MAX_BYTES);
+	}
+
+	@Test
+	public void entryRoundTripsThroughTheFile() throws IOException {
+		int[] pixels = Etc1Test.photo(40, 24, 1);
+		Etc1Image image = Etc1Image.encode(pixels, 40, 24);
+
+		mCache.put("image", image);
+		Etc1Image mapped = mCache.get("image");
+
+		assertNotNull(mapped);
+		assertEquals(40, mapped.getWidth());
+		assertEquals(24, mapped.getHeight());
+		assertFalse(mapped.hasAlpha());
+		assertEquals(image.getColorData(), mapped.getColorData());
+		assertEquals(Etc1.computePsnr(pixels, image.decode(), pixels.length),
+				Etc1.computePsnr(pixels, mapped.decode(), pixels.length), 0);
+		assertEquals(1, mCache.getHitCount());
+	}
+
+	@Test
+	public void alphaPlaneIsStored() throws IOException {
+		int[] pixels = Etc1Test.photo(8, 8, 2);
+		pixels[0] &= 0x7FFFFFFF;
+		Etc1Image image = Etc1Image.encode(pixels, 8, 8);
+
+		mCache.put("translucent", image);
+		Etc1Image mapped = mCache.get("translucent");
+
+		assertTrue(mapped.hasAlpha());
+		assertEquals(image.getAlphaData(), mapped.getAlphaData());
+	}
+
+	@Test
+	public void missingEntryIsAMiss() throws IOException {
+		assertNull(mCache.get("missing"));
+		assertFalse(mCache.contains("missing"));
+		assertEquals(1, mCache.getMissCount());
+	}
+
+	@Test
+	public void truncatedEntryIsDropped() throws IOException {
+		mCache.put("image", Etc1Image.encode(Etc1Test.photo(16, 16, 3), 16, 16));
+		File file = onlyFile();
+		RandomAccessFile output = new RandomAccessFile(file, "rw");
+		try {
+			output.setLength(file.length() - 1);
+		} finally {
+			output.close();
+		}
+
+		assertNull(mCache.get("image"));
+		assertFalse(file.exists());
+		assertEquals(1, mCache.getMissCount());
+	}
+
+	@Test
+	public void leastRecentlyUsedEntriesAreEvicted() throws IOException {
+		long now = System.currentTimeMillis();
+		mCache.put("first", Etc1Image.encode(Etc1Test.photo(16, 16, 4), 16, 16));
+		File first = onlyFile();
+		first.setLastModified(now - 20000);
+		mCache.put("second", Etc1Image.encode(Etc1Test.photo(16, 16, 5), 16, 16));
+		for(File file : mDirectory.listFiles()){
+			if(!file.equals(first)){
+				file.setLastModified(now - 10000);
+			}
+		}
+
+		// Reading the first entry makes it the most recent
+		assertNotNull(mCache.get("first"));
+		mCache.setMaxBytes(first.length());
+
+		assertTrue(mCache.contains("first"));
+		assertFalse(mCache.contains("second"));
+	}
+
+	@Test
+	public void leftoverTemporaryFilesAreDeleted() throws IOException {
+		mCache.put("image", Etc1Image.encode(Etc1Test.photo(8, 8, 6), 8, 8));
+		File leftover = new File(mDirectory, "interrupted.etc1.tmp");
+		assertTrue(leftover.createNewFile());
+
+		mCache.trimTo(Long.MAX_VALUE);
+
+		assertFalse(leftover.exists());
+		assertTrue(mCache.contains("image"));
+	}
+
+	@Test
+	public void contentHashDependsOnlyOnTheContent() throws IOException {
+		byte[] content = { 1, 2, 3, 4 };
+		String hash = CompressedTextureCache.hashContent(new ByteArrayInputStream(content));
+
+		assertEquals(40, hash.length());
+		assertEquals(hash, CompressedTextureCache.hashContent(new ByteArrayInputStream(content.clone())));
+		assertFalse(hash.equals(CompressedTextureCache.hashContent(new ByteArrayInputStream(new byte[] { 1, 2, 3, 5 }))));
+	}
+
+	private File onlyFile() {
+		File[] files = mDirectory.listFiles();
+		assertEquals(1, files.length);
+		return files[0];
+	}
+}
@@ -0,0 +1,157 @@
+package com.aviary.glimageview;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class Etc1Test {
+
+	// ETC1 stores 4 or 5 bits per channel, so gentle gradients land between 35 and 40 dB
+	private static final double MIN_SMOOTH_PSNR = 34.0;
+	private static final double MIN_FLAT_PSNR = 40.0;
+
+	@Test
+	public void encodedSizeRoundsUpToWholeBlocks() {
+		assertEquals(8, Etc1.getEncodedDataSize(1, 1));
+		assertEquals(8, Etc1.getEncodedDataSize(4, 4));
+		assertEquals(4 * 8, Etc1.getEncodedDataSize(5, 5));
+		assertEquals(256 * 192 / 2, Etc1.getEncodedDataSize(256, 192));
+	}
+
+	@Test
+	public void identicalImagesHaveInfinitePsnr() {
+		int[] pixels = photo(16, 16, 1);
+
+		assertEquals(Double.POSITIVE_INFINITY, Etc1.computePsnr(pixels, pixels.clone(), pixels.length), 0);
+	}
+
+	@Test
+	public void smoothImageRoundTrips() {
+		int width = 128;
+		int height = 96;
+		int[] pixels = photo(width, height, 2);
+
+		assertTrue(roundTripPsnr(pixels, width, height) > MIN_SMOOTH_PSNR);
+	}
+
+	@Test
+	public void flatColorsAreNearlyExact() {
+		int[] colors = { 0xFF000000, 0xFFFFFFFF, 0xFF808080, 0xFFC03010, 0xFF2080E0 };
+		int[] pixels = new int[16 * 4];
+		for(int i = 0; i < pixels.length; i++){
+			// One color per block
+			pixels[i] = colors[(i % 16) / 4 % colors.length];
+		}
+
+		assertTrue(roundTripPsnr(pixels, 16, 4) > MIN_FLAT_PSNR);
+	}
+
+	@Test
+	public void partialBlocksRoundTrip() {
+		int width = 53;
+		int height = 29;
+		int[] pixels = photo(width, height, 3);
+		ByteBuffer encoded = ByteBuffer.allocate(Etc1.getEncodedDataSize(width, height));
+
+		Etc1.encodeImage(pixels, width, height, false, encoded);
+		assertFalse(encoded.hasRemaining());
+		assertTrue(roundTripPsnr(pixels, width, height) > MIN_SMOOTH_PSNR);
+	}
+
+	@Test
+	public void bandsEncodeLikeTheWholeImage() {
+		int width = 20;
+		int height = 10;
+		int[] pixels = photo(width, height, 4);
+		ByteBuffer whole = ByteBuffer.allocate(Etc1.getEncodedDataSize(width, height));
+		ByteBuffer banded = ByteBuffer.allocate(whole.capacity());
+
+		Etc1.encodeImage(pixels, width, height, false, whole);
+		// Each band in its own array, as when encoding from decoded strips
+		for(int y = 0; y < height; y += 4){
+			int rows = Math.min(4, height - y);
+			int[] band = new int[rows * width];
+			System.arraycopy(pixels, y * width, band, 0, band.length);
+			Etc1.encodeBlockRow(band, 0, width, width, rows, false, banded);
+		}
+
+		assertArrayEquals(whole.array(), banded.array());
+	}
+
+	@Test
+	public void translucentImageKeepsItsAlpha() {
+		int width = 32;
+		int height = 32;
+		int[] pixels = photo(width, height, 5);
+		int[] alphas = new int[pixels.length];
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				int alpha = 255 * x / (width - 1);
+				pixels[y * width + x] = (pixels[y * width + x] & 0x00FFFFFF) | alpha << 24;
+				alphas[y * width + x] = gray(alpha);
+			}
+		}
+
+		Etc1Image image = Etc1Image.encode(pixels, width, height);
+		assertTrue(image.hasAlpha());
+		assertEquals(2L * Etc1.getEncodedDataSize(width, height), image.getByteCount());
+
+		int[] decoded = image.decode();
+		int[] decodedAlphas = new int[decoded.length];
+		for(int i = 0; i < decoded.length; i++){
+			decodedAlphas[i] = gray(decoded[i] >>> 24);
+		}
+		assertTrue(Etc1.computePsnr(pixels, decoded, pixels.length) > MIN_SMOOTH_PSNR);
+		assertTrue(Etc1.computePsnr(alphas, decodedAlphas, alphas.length) > MIN_SMOOTH_PSNR);
+	}
+
+	@Test
+	public void opaqueImageHasNoAlphaPlane() {
+		Etc1Image image = Etc1Image.encode(photo(8, 8, 6), 8, 8);
+
+		assertFalse(image.hasAlpha());
+		assertEquals(Etc1.getEncodedDataSize(8, 8), image.getByteCount());
+		for(int pixel : image.decode()){
+			assertEquals(0xFF, pixel >>> 24);
+		}
+	}
+
+	// Helpers
+
+	private static double roundTripPsnr(int[] pixels, int width, int height) {
+		ByteBuffer encoded = ByteBuffer.allocate(Etc1.getEncodedDataSize(width, height));
+		Etc1.encodeImage(pixels, width, height, false, encoded);
+		encoded.flip();
+
+		int[] decoded = new int[pixels.length];
+		Etc1.decodeImage(encoded, width, height, false, decoded);
+		return Etc1.computePsnr(pixels, decoded, pixels.length);
+	}
+
+	private static int gray(int value) {
+		return 0xFF000000 | value << 16 | value << 8 | value;
+	}
+
+	/**
+	 * Opaque gradients with a little noise, closer to a photo than flat colors.
+	 */
+	static int[] photo(int width, int height, long seed) {
+		Random random = new Random(seed);
+		int[] pixels = new int[width * height];
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				int r = 40 + 160 * x / width + random.nextInt(5);
+				int g = 60 + 120 * y / height + random.nextInt(5);
+				int b = 200 - 150 * (x + y) / (width + height) + random.nextInt(5);
+				pixels[y * width + x] = 0xFF000000 | r << 16 | g << 8 | b;
+			}
+		}
+		return pixels;
+	}
+}
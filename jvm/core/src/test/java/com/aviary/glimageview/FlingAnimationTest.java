@@ -0,0 +1,112 @@
+package com.aviary.glimageview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+
+public class FlingAnimationTest {
+
+	private static final long FRAME_NANOS = 16666667L;
+	private static final int MAX_FRAMES = 600;
+
+	private final ManualFrameDriver mFrameDriver = new ManualFrameDriver();
+	private final ManualClock mClock = new ManualClock();
+	private GLImageViewRenderer mRenderer;
+	private AnimationScheduler mScheduler;
+	private FlingAnimation mFling;
+
+	@Before
+	public void setUp() {
+		mRenderer = new GLImageViewRenderer(new NullProgram());
+		mRenderer.onSurfaceCreated(null, null);
+		mRenderer.setImage(Bitmap.createBitmap(2000, 1000, Bitmap.Config.ARGB_8888));
+		mRenderer.onSurfaceChanged(null, 1080, 1920);
+		mRenderer.setAbsoluteScale(3.f);
+
+		mClock.advance(1000000000L);
+		mScheduler = new AnimationScheduler(mFrameDriver, mClock, new Runnable() {
+			@Override
+			public void run() {
+			}
+		});
+		mFling = new FlingAnimation(mScheduler, mRenderer);
+	}
+
+	@Test
+	public void flingInterruptedWhileOverscrollingSpringsBackIntoBounds() {
+		float maxX = mRenderer.getMaxTranslationX(mRenderer.getAbsoluteScale());
+		mFling.start(50.f, 0.f);
+
+		// Step until the fling has carried the image past the edge
+		int frames = 0;
+		while(mRenderer.getViewTransform().getTranslateX() <= maxX){
+			assertTrue("never overscrolled", frames++ < MAX_FRAMES);
+			nextFrame();
+		}
+
+		// A finger down stops the fling where it is, out of bounds
+		mScheduler.cancelAll();
+		nextFrame();
+		assertTrue(mRenderer.getViewTransform().getTranslateX() > maxX);
+
+		// The finger up springs it back
+		assertTrue(mFling.springBack());
+		assertEquals(maxX, mFling.getFinalX(), 1e-6f);
+		runUntilIdle();
+
+		ViewTransform transform = mRenderer.getViewTransform();
+		assertEquals(maxX, transform.getTranslateX(), 1e-6f);
+		assertTrue(Math.abs(transform.getTranslateY()) <= mRenderer.getMaxTranslationY(transform.getScale()));
+	}
+
+	@Test
+	public void springBackLeavesAnImageInBoundsAlone() {
+		mRenderer.setAbsoluteTranslation(0.1f, 0.f);
+
+		assertFalse(mFling.springBack());
+		assertFalse(mScheduler.isAnimating());
+		assertEquals(0, mFrameDriver.getPendingCount());
+		assertEquals(0.1f, mRenderer.getViewTransform().getTranslateX(), 0.f);
+	}
+
+	private void nextFrame() {
+		mClock.advance(FRAME_NANOS);
+		mFrameDriver.runFrame(mClock.nanoTime());
+	}
+
+	private void runUntilIdle() {
+		int frames = 0;
+		while(mScheduler.isAnimating()){
+			assertTrue("never settled", frames++ < MAX_FRAMES);
+			nextFrame();
+		}
+	}
+
+	private static class NullProgram implements GLImagingProgram {
+		@Override
+		public void setup() {
+		}
+
+		@Override
+		public void setBitmap(Bitmap bitmap) {
+		}
+
+		@Override
+		public void setFramebufferSize(int width, int height) {
+		}
+
+		@Override
+		public void render(ViewTransform transform, RectF imageBoundsRect) {
+		}
+
+		@Override
+		public void readImage(Bitmap bitmap) {
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.aviary.glimageview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FlingPhysicsTest {
+
+	private static final float TIME_CONSTANT = FlingPhysics.DEFAULT_TIME_CONSTANT;
+	private static final float MIN_VELOCITY = 0.05f;
+	private static final float SETTLE_DISTANCE = 0.001f;
+	private static final float EPSILON = 1e-4f;
+
+	private final FlingPhysics mFling = new FlingPhysics();
+
+	@Test
+	public void decayTravelsTimeConstantTimesVelocity() {
+		mFling.start(0.f, 4.f, -100.f, 100.f, MIN_VELOCITY, SETTLE_DISTANCE);
+
+		assertFalse(mFling.isOverscrolling());
+		assertEquals(TIME_CONSTANT * (4.f - MIN_VELOCITY), mFling.getFinalPosition(), EPSILON);
+		assertEquals(TIME_CONSTANT * Math.log(4.f / MIN_VELOCITY), mFling.getDuration(), EPSILON);
+		assertEquals(mFling.getFinalPosition(), mFling.getPosition(mFling.getDuration() - 1e-4f), 1e-3f);
+		assertEquals(mFling.getFinalPosition(), mFling.getPosition(mFling.getDuration() + 1.f), 0.f);
+	}
+
+	@Test
+	public void velocityDecaysToTheMinimum() {
+		mFling.start(0.f, -4.f, -100.f, 100.f, MIN_VELOCITY, SETTLE_DISTANCE);
+
+		assertEquals(-4.f, mFling.getVelocity(0.f), EPSILON);
+		assertEquals(-4.f / Math.E, mFling.getVelocity(TIME_CONSTANT), EPSILON);
+		assertEquals(-MIN_VELOCITY, mFling.getVelocity(mFling.getDuration() - 1e-5f), 1e-4f);
+		assertEquals(0.f, mFling.getVelocity(mFling.getDuration()), 0.f);
+	}
+
+	@Test
+	public void velocityIsTheDerivativeOfPosition() {
+		mFling.start(0.f, 6.f, -1.f, 1.f, MIN_VELOCITY, SETTLE_DISTANCE);
+		assertTrue(mFling.isOverscrolling());
+
+		float step = 1e-3f;
+		for(float time = step; time < mFling.getDuration() - step; time += 0.01f){
+			float slope = (mFling.getPosition(time + step) - mFling.getPosition(time - step)) / (2 * step);
+			assertEquals("at " + time, mFling.getVelocity(time), slope, 0.05f * Math.max(1.f, Math.abs(slope)));
+		}
+	}
+
+	@Test
+	public void slowFlingDoesNotMove() {
+		mFling.start(0.5f, 0.01f, -1.f, 1.f, MIN_VELOCITY, SETTLE_DISTANCE);
+
+		assertEquals(0.f, mFling.getDuration(), 0.f);
+		assertTrue(mFling.isFinished(0.f));
+		assertEquals(0.5f, mFling.getFinalPosition(), 0.f);
+		assertEquals(0.5f, mFling.getPosition(1.f), 0.f);
+	}
+
+	@Test
+	public void flingPastABoundSpringsBackOntoIt() {
+		mFling.start(0.f, 8.f, -1.f, 1.f, MIN_VELOCITY, SETTLE_DISTANCE);
+
+		assertTrue(mFling.isOverscrolling());
+		assertEquals(1.f, mFling.getFinalPosition(), 0.f);
+
+		float crossing = mFling.getOverscrollStartTime();
+		assertTrue(crossing > 0 && crossing < mFling.getDuration());
+		assertEquals(1.f, mFling.getPosition(crossing), EPSILON);
+
+		// It goes past the bound, then never beyond its first peak
+		float peak = 1.f;
+		for(float time = crossing; time < mFling.getDuration(); time += 0.002f){
+			peak = Math.max(peak, mFling.getPosition(time));
+		}
+		assertTrue(peak > 1.f);
+		assertTrue(mFling.getPosition(mFling.getDuration() - 0.002f) < peak);
+	}
+
+	@Test
+	public void springSettlesWithinTheSettleDistance() {
+		mFling.start(0.f, -10.f, -1.f, 1.f, MIN_VELOCITY, SETTLE_DISTANCE);
+		float duration = mFling.getDuration();
+
+		// Snapping onto the bound at the end is a jump of at most the settle distance
+		assertEquals(-1.f, mFling.getPosition(duration - 1e-5f), SETTLE_DISTANCE * 1.01f);
+		for(float time = duration; time < duration + 1.f; time += 0.01f){
+			assertEquals("at " + time, -1.f, mFling.getPosition(time), 0.f);
+		}
+		// Not settled much earlier than reported
+		assertTrue(Math.abs(mFling.getPosition(duration * 0.5f) + 1.f) > SETTLE_DISTANCE);
+	}
+
+	@Test
+	public void startingOverscrolledSpringsBackRightAway() {
+		mFling.start(1.3f, 0.f, -1.f, 1.f, MIN_VELOCITY, SETTLE_DISTANCE);
+
+		assertTrue(mFling.isOverscrolling());
+		assertEquals(0.f, mFling.getOverscrollStartTime(), 0.f);
+		assertEquals(1.f, mFling.getFinalPosition(), 0.f);
+
+		// Critically damped from rest, so it approaches the bound without crossing it
+		float previous = 1.3f;
+		for(float time = 0.01f; time < mFling.getDuration(); time += 0.01f){
+			float position = mFling.getPosition(time);
+			assertTrue(position <= previous);
+			assertTrue(position >= 1.f);
+			previous = position;
+		}
+	}
+
+	@Test
+	public void flingStoppingShortOfTheBoundDoesNotOverscroll() {
+		// Reach is TIME_CONSTANT * (2 - MIN_VELOCITY), about 0.63
+		mFling.start(0.f, 2.f, -1.f, 1.f, MIN_VELOCITY, SETTLE_DISTANCE);
+		assertFalse(mFling.isOverscrolling());
+		assertTrue(mFling.getFinalPosition() < 1.f);
+
+		mFling.start(0.5f, 2.f, -1.f, 1.f, MIN_VELOCITY, SETTLE_DISTANCE);
+		assertTrue(mFling.isOverscrolling());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNonPositiveTimeConstant() {
+		new FlingPhysics(0.f, FlingPhysics.DEFAULT_SPRING_FREQUENCY);
+	}
+}
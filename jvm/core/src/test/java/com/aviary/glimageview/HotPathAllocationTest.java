@@ -0,0 +1,163 @@
+package com.aviary.glimageview;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+
+import com.aviary.glimageview.easing.BakedEasing;
+import com.aviary.glimageview.easing.Cubic;
+
+/**
+ * Drives a pan, pinch, fling and zoom through GLImageViewRenderer, FlingAnimation and
+ * ZoomAnimation the way GLImageView does, with the UI and GL thread sides taking turns on this
+ * thread, and checks that once warmed up none of it allocates. Anything that allocates even one
+ * small object per frame shows up as several bytes per frame. GL calls are no-ops off device, so
+ * only the Java side of a frame is measured.
+ */
+public class HotPathAllocationTest {
+
+	private static final int WARMUP_FRAMES = 20000;
+	private static final int FRAMES = 100000;
+	private static final long FRAME_NANOS = 16666667L;
+
+	// A landscape image in a portrait view
+	private static final int IMAGE_WIDTH = 2000;
+	private static final int IMAGE_HEIGHT = 1000;
+	private static final int VIEW_WIDTH = 1080;
+	private static final int VIEW_HEIGHT = 1920;
+
+	private final ManualFrameDriver mFrameDriver = new ManualFrameDriver();
+	private final ManualClock mClock = new ManualClock();
+	private final CountingProgram mProgram = new CountingProgram();
+	private GLImageViewRenderer mRenderer;
+	private AnimationScheduler mScheduler;
+	private FlingAnimation mFling;
+	private ZoomAnimation mZoom;
+
+	@Before
+	public void setUp() {
+		assumeTrue(AllocationCounter.isSupported());
+
+		mRenderer = new GLImageViewRenderer(mProgram);
+		mRenderer.onSurfaceCreated(null, null);
+		mRenderer.setImage(Bitmap.createBitmap(IMAGE_WIDTH, IMAGE_HEIGHT, Bitmap.Config.ARGB_8888));
+		mRenderer.onSurfaceChanged(null, VIEW_WIDTH, VIEW_HEIGHT);
+
+		mScheduler = new AnimationScheduler(mFrameDriver, mClock, new Runnable() {
+			@Override
+			public void run() {
+				renderFrameIfChanged();
+			}
+		});
+		mFling = new FlingAnimation(mScheduler, mRenderer);
+		mZoom = new ZoomAnimation(mScheduler, mRenderer, new BakedEasing(new Cubic()));
+	}
+
+	@Test
+	public void panAndPinchDoNotAllocate() {
+		for(int i = 0; i < WARMUP_FRAMES; i++){
+			gestureFrame(i);
+		}
+
+		mProgram.mRenderCount = 0;
+		long before = AllocationCounter.getAllocatedBytes();
+		for(int i = 0; i < FRAMES; i++){
+			gestureFrame(i);
+		}
+		assertNoAllocation(AllocationCounter.getAllocatedBytes() - before);
+		// Most events moved the image, so their frames were drawn
+		assertTrue(mProgram.mRenderCount > FRAMES / 2);
+	}
+
+	@Test
+	public void flingAndZoomAnimationsDoNotAllocate() {
+		for(int i = 0; i < WARMUP_FRAMES; i++){
+			animationFrame(i);
+		}
+
+		mProgram.mRenderCount = 0;
+		long before = AllocationCounter.getAllocatedBytes();
+		for(int i = 0; i < FRAMES; i++){
+			animationFrame(i);
+		}
+		assertNoAllocation(AllocationCounter.getAllocatedBytes() - before);
+		// Most frames actually stepped an animation
+		assertTrue(mProgram.mRenderCount > FRAMES / 2);
+	}
+
+	private static void assertNoAllocation(long bytes) {
+		assertTrue(bytes + " bytes allocated over " + FRAMES + " frames", bytes < FRAMES);
+	}
+
+	/**
+	 * One onScroll or onScale event as GLImageView forwards it, followed by the frame it causes.
+	 */
+	private void gestureFrame(int i) {
+		if(i % 2 == 0){
+			mRenderer.postTranslateByAmount((i % 7 - 3) * 0.01f, (i % 5 - 2) * 0.01f);
+		}else{
+			mRenderer.postScaleByAmount(i % 40 < 20 ? 1.02f : 0.98f, 0.2f, -0.1f);
+		}
+		renderFrameIfChanged();
+	}
+
+	/**
+	 * Alternates flings and zooms, restarting the reused animations, and steps one frame.
+	 */
+	private void animationFrame(int i) {
+		if(i % 60 == 0){
+			if(i % 120 == 0){
+				mFling.start(i % 240 == 0 ? 3.f : -3.f, 1.5f);
+			}else{
+				mZoom.start(mRenderer.getAbsoluteScale() > 2.f ? 1.f : 3.f, 0.25f, 0.f, 400);
+			}
+		}
+		mClock.advance(FRAME_NANOS);
+		mFrameDriver.runFrame(mClock.nanoTime());
+	}
+
+	/**
+	 * GLImageView's frame callback, with the GL thread's draw run right away instead of requested.
+	 */
+	private void renderFrameIfChanged() {
+		if(mRenderer.shouldRenderFrame(false)){
+			mRenderer.onRenderRequested();
+			mRenderer.onDrawFrame(null);
+		}
+	}
+
+	/**
+	 * Does the Java side of drawing, as SimpleGLImageProgram does.
+	 */
+	private static class CountingProgram implements GLImagingProgram {
+		final float[] mTransformValues = new float[9];
+		int mRenderCount;
+
+		@Override
+		public void setup() {
+		}
+
+		@Override
+		public void setBitmap(Bitmap bitmap) {
+		}
+
+		@Override
+		public void setFramebufferSize(int width, int height) {
+		}
+
+		@Override
+		public void render(ViewTransform transform, RectF imageBoundsRect) {
+			GLProgramUtils.setTransformUniform(0, transform, mTransformValues);
+			mRenderCount++;
+		}
+
+		@Override
+		public void readImage(Bitmap bitmap) {
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package com.aviary.glimageview;
+
+/**
+ * A clock that only moves when told to.
+ */
+class ManualClock implements AnimationScheduler.Clock {
+
+	private long mNanos;
+
+	@Override
+	public long nanoTime() {
+		return mNanos;
+	}
+
+	public void advance(long nanos) {
+		mNanos += nanos;
+	}
+}
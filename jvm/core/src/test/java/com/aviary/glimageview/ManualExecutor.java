@@ -0,0 +1,68 @@
+package com.aviary.glimageview;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An executor that only runs its tasks when told to, on the calling thread, so tests decide
+ * exactly what has run when.
+ */
+class ManualExecutor extends AbstractExecutorService {
+
+	private final ArrayDeque<Runnable> mTasks = new ArrayDeque<Runnable>();
+	private boolean mShutdown;
+
+	@Override
+	public synchronized void execute(Runnable command) {
+		mTasks.add(command);
+	}
+
+	/**
+	 * Runs queued tasks, including the ones they queue, until there are none left.
+	 * @return The number of tasks run.
+	 */
+	public int runAll() {
+		int count = 0;
+		Runnable task;
+		while((task = poll()) != null){
+			task.run();
+			count++;
+		}
+		return count;
+	}
+
+	private synchronized Runnable poll() {
+		return mTasks.poll();
+	}
+
+	@Override
+	public synchronized void shutdown() {
+		mShutdown = true;
+	}
+
+	@Override
+	public synchronized List<Runnable> shutdownNow() {
+		mShutdown = true;
+		List<Runnable> tasks = new ArrayList<Runnable>(mTasks);
+		mTasks.clear();
+		return tasks;
+	}
+
+	@Override
+	public synchronized boolean isShutdown() {
+		return mShutdown;
+	}
+
+	@Override
+	public synchronized boolean isTerminated() {
+		return mShutdown && mTasks.isEmpty();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) {
+		return isTerminated();
+	}
+}
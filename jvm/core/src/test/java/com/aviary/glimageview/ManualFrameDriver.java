@@ -0,0 +1,59 @@
+package com.aviary.glimageview;
+
+import java.util.ArrayList;
+
+/**
+ * A frame driver whose frames only happen when told to, so tests decide exactly which frame times
+ * the animations see.
+ */
+class ManualFrameDriver implements AnimationScheduler.FrameDriver {
+
+	private final ArrayList<AnimationScheduler.FrameCallback> mCallbacks = new ArrayList<AnimationScheduler.FrameCallback>();
+	private final ArrayList<AnimationScheduler.FrameCallback> mRunning = new ArrayList<AnimationScheduler.FrameCallback>();
+	private int mPostCount;
+
+	@Override
+	public void postFrameCallback(AnimationScheduler.FrameCallback callback) {
+		mCallbacks.add(callback);
+		mPostCount++;
+	}
+
+	@Override
+	public void removeFrameCallback(AnimationScheduler.FrameCallback callback) {
+		while(mCallbacks.remove(callback)){
+		}
+	}
+
+	/**
+	 * Calls the callbacks posted so far. Callbacks they post wait for the next frame. Does not
+	 * allocate, so it can drive allocation tests.
+	 * @return The number of callbacks called.
+	 */
+	public int runFrame(long frameTimeNanos) {
+		for(int i = 0; i < mCallbacks.size(); i++){
+			mRunning.add(mCallbacks.get(i));
+		}
+		mCallbacks.clear();
+
+		int count = mRunning.size();
+		for(int i = 0; i < count; i++){
+			mRunning.get(i).doFrame(frameTimeNanos);
+		}
+		mRunning.clear();
+		return count;
+	}
+
+	/**
+	 * @return The number of callbacks waiting for the next frame.
+	 */
+	public int getPendingCount() {
+		return mCallbacks.size();
+	}
+
+	/**
+	 * @return The number of callbacks ever posted.
+	 */
+	public int getPostCount() {
+		return mPostCount;
+	}
+}
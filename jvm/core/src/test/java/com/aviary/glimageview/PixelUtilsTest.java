@@ -0,0 +1,54 @@
+package com.aviary.glimageview;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+public class PixelUtilsTest {
+
+	@Test
+	public void opaqueAndTransparentPixelsAreUnchanged() {
+		assertEquals(0xFF336699, PixelUtils.premultiply(0xFF336699));
+		assertEquals(0xFF336699, PixelUtils.unpremultiply(0xFF336699));
+		assertEquals(0, PixelUtils.premultiply(0x00FFFFFF));
+		assertEquals(0, PixelUtils.unpremultiply(0));
+	}
+
+	@Test
+	public void premultiplyScalesByAlpha() {
+		assertEquals(0x80800040, PixelUtils.premultiply(0x80FF0080));
+	}
+
+	@Test
+	public void unpremultiplyRoundTripsWithinOneStep() {
+		for(int alpha = 1; alpha < 256; alpha += 7){
+			for(int value = 0; value < 256; value += 5){
+				int color = (alpha << 24) | (value << 16) | (value << 8) | value;
+				int roundTrip = PixelUtils.unpremultiply(PixelUtils.premultiply(color));
+				assertEquals(alpha, roundTrip >>> 24);
+				// Premultiplying by a small alpha keeps fewer levels
+				int tolerance = 255 / alpha + 1;
+				assertEquals(value, (roundTrip >> 16) & 0xFF, tolerance);
+				assertEquals(value, roundTrip & 0xFF, tolerance);
+			}
+		}
+	}
+
+	@Test
+	public void glPixelsBecomeUnpremultipliedArgb() {
+		// What glReadPixels writes for a half transparent red and an opaque blue
+		byte[] rgba = {
+				(byte) 0x80, 0x00, 0x00, (byte) 0x80,
+				0x00, 0x00, (byte) 0xFF, (byte) 0xFF };
+		int[] pixels = new int[2];
+		ByteBuffer.wrap(rgba).order(ByteOrder.nativeOrder()).asIntBuffer().get(pixels);
+
+		PixelUtils.glToArgb(pixels, pixels.length);
+
+		assertEquals(0x80FF0000, pixels[0]);
+		assertEquals(0xFF0000FF, pixels[1]);
+	}
+}
@@ -0,0 +1,176 @@
+package com.aviary.glimageview;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Golden images for the software backend: small images whose expected pixels follow from the GL
+ * rules it reproduces, pixel centers sampled bilinearly with clamp to edge, and nothing drawn
+ * outside the transformed bounds.
+ */
+public class SoftwareRasterizerTest {
+
+	private static final float[] IDENTITY = { 1.f, 0.f, 0.f, 0.f, 1.f, 0.f, 0.f, 0.f, 1.f };
+
+	private static final int A = 0xFFFF0000;
+	private static final int B = 0xFF00FF00;
+	private static final int C = 0xFF0000FF;
+	private static final int D = 0xFFFFFFFF;
+
+	private ExecutorService mExecutor;
+	private SoftwareRasterizer mRasterizer;
+
+	@Before
+	public void setUp() {
+		mExecutor = Executors.newFixedThreadPool(4);
+		mRasterizer = new SoftwareRasterizer(mExecutor, 4);
+	}
+
+	@After
+	public void tearDown() {
+		mExecutor.shutdown();
+	}
+
+	@Test
+	public void readImageAtTheImageSizeIsExact() {
+		int[] pixels = noise(37, 23, 1);
+		mRasterizer.setImage(pixels, 37, 23);
+
+		int[] target = new int[pixels.length];
+		mRasterizer.readImage(target, 37, 23);
+
+		assertArrayEquals(pixels, target);
+	}
+
+	@Test
+	public void translucentPixelsKeepTheirColor() {
+		int[] pixels = { 0x80FF8000, 0x00000000, 0x40204080, 0xFF102030 };
+		mRasterizer.setImage(pixels, 2, 2);
+
+		int[] target = new int[4];
+		mRasterizer.readImage(target, 2, 2);
+
+		for(int i = 0; i < pixels.length; i++){
+			assertEquals(pixels[i] >>> 24, target[i] >>> 24);
+			for(int shift = 0; shift < 24; shift += 8){
+				int expected = (pixels[i] >> shift) & 0xFF;
+				int actual = (target[i] >> shift) & 0xFF;
+				// Premultiplied filtering loses the low bits of translucent colors
+				assertTrue(Math.abs(expected - actual) <= 256 / Math.max(1, pixels[i] >>> 24));
+			}
+		}
+	}
+
+	@Test
+	public void upscalingInterpolatesAndClampsToEdge() {
+		mRasterizer.setImage(new int[] { gray(0), gray(255) }, 2, 1);
+
+		int[] target = new int[4];
+		mRasterizer.readImage(target, 4, 1);
+
+		assertArrayEquals(new int[] { gray(0), gray(63), gray(191), gray(255) }, target);
+	}
+
+	@Test
+	public void narrowBoundsLeaveTheSidesClear() {
+		mRasterizer.setImage(new int[] { gray(0), gray(255) }, 2, 1);
+
+		int[] target = filled(8, 1);
+		mRasterizer.render(IDENTITY, -0.5f, 1.f, 0.5f, -1.f, target, 8, 1);
+
+		assertArrayEquals(new int[] { 0, 0, gray(0), gray(63), gray(191), gray(255), 0, 0 }, target);
+	}
+
+	@Test
+	public void translationMovesTheImage() {
+		mRasterizer.setImage(new int[] { A, B, C, D }, 4, 1);
+
+		// Half the width of normalized device coordinates is a quarter of the target
+		float[] matrix = { 1.f, 0.f, 0.5f, 0.f, 1.f, 0.f, 0.f, 0.f, 1.f };
+		int[] target = filled(4, 1);
+		mRasterizer.render(matrix, -1.f, 1.f, 1.f, -1.f, target, 4, 1);
+
+		assertArrayEquals(new int[] { 0, A, B, C }, target);
+	}
+
+	@Test
+	public void rotationTurnsTheImageCounterClockwise() {
+		mRasterizer.setImage(new int[] { A, B, C, D }, 2, 2);
+
+		// x' = -y, y' = x
+		float[] matrix = { 0.f, -1.f, 0.f, 1.f, 0.f, 0.f, 0.f, 0.f, 1.f };
+		int[] target = new int[4];
+		mRasterizer.render(matrix, -1.f, 1.f, 1.f, -1.f, target, 2, 2);
+
+		assertArrayEquals(new int[] { B, D, A, C }, target);
+	}
+
+	@Test
+	public void zoomShowsTheCenter() {
+		mRasterizer.setImage(new int[] { A, B, C, D }, 4, 1);
+
+		float[] matrix = { 2.f, 0.f, 0.f, 0.f, 2.f, 0.f, 0.f, 0.f, 1.f };
+		int[] target = new int[2];
+		mRasterizer.render(matrix, -1.f, 1.f, 1.f, -1.f, target, 2, 1);
+
+		assertArrayEquals(new int[] { B, C }, target);
+	}
+
+	@Test
+	public void degenerateTransformClearsTheTarget() {
+		mRasterizer.setImage(noise(4, 4, 2), 4, 4);
+
+		float[] matrix = { 0.f, 0.f, 0.f, 0.f, 0.f, 0.f, 0.f, 0.f, 1.f };
+		int[] target = filled(4, 4);
+		mRasterizer.render(matrix, -1.f, 1.f, 1.f, -1.f, target, 4, 4);
+
+		assertArrayEquals(new int[16], target);
+	}
+
+	@Test
+	public void bandsMatchASingleThread() {
+		int[] pixels = noise(300, 200, 3);
+		mRasterizer.setImage(pixels, 300, 200);
+		SoftwareRasterizer single = new SoftwareRasterizer(mExecutor, 1);
+		single.setImage(pixels, 300, 200);
+
+		float[] matrix = { 1.7f, 0.3f, 0.1f, -0.2f, 1.4f, -0.05f, 0.f, 0.f, 1.f };
+		int[] banded = new int[640 * 480];
+		int[] whole = new int[640 * 480];
+		mRasterizer.render(matrix, -1.f, 0.75f, 1.f, -0.75f, banded, 640, 480);
+		single.render(matrix, -1.f, 0.75f, 1.f, -0.75f, whole, 640, 480);
+
+		assertArrayEquals(whole, banded);
+	}
+
+	// Helpers
+
+	private static int gray(int value) {
+		return 0xFF000000 | value << 16 | value << 8 | value;
+	}
+
+	private static int[] filled(int width, int height) {
+		int[] pixels = new int[width * height];
+		Arrays.fill(pixels, 0xFF123456);
+		return pixels;
+	}
+
+	private static int[] noise(int width, int height, long seed) {
+		Random random = new Random(seed);
+		int[] pixels = new int[width * height];
+		for(int i = 0; i < pixels.length; i++){
+			pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+		}
+		return pixels;
+	}
+}
@@ -0,0 +1,220 @@
+package com.aviary.glimageview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aviary.glimageview.TextureManager.Texture;
+
+public class TextureManagerTest {
+
+	private static final long BUDGET = 1000;
+
+	private final FakeAllocator mAllocator = new FakeAllocator();
+	private TextureManager mManager;
+	private int mNextTextureId = 1;
+
+	@Before
+	public void setUp() {
+		mManager = new TextureManager(BUDGET);
+	}
+
+	@Test
+	public void releasedTextureStaysResidentForReuse() {
+		Texture texture = register("image", 400);
+		assertEquals(400, mManager.getResidentBytes());
+		mManager.release(texture);
+
+		assertSame(texture, mManager.acquire("image", mAllocator));
+		assertNull(mManager.acquire("other", mAllocator));
+		assertEquals(1, mManager.getHitCount());
+		assertEquals(1, mManager.getMissCount());
+		assertEquals(400, mManager.getResidentBytes());
+		assertTrue(mAllocator.mDeleted.isEmpty());
+	}
+
+	@Test
+	public void texturesOfAnotherAllocatorAreNotFound() {
+		mManager.release(register("image", 400));
+
+		assertNull(mManager.acquire("image", new FakeAllocator()));
+	}
+
+	@Test
+	public void leastRecentlyUsedUnreferencedTexturesAreEvictedFirst() {
+		Texture first = register("first", 300);
+		Texture second = register("second", 300);
+		Texture third = register("third", 300);
+		mManager.release(first);
+		mManager.release(second);
+		mManager.release(third);
+
+		// Using the first one again makes the second the least recently used
+		mManager.release(mManager.acquire("first", mAllocator));
+		mManager.release(register("fourth", 300));
+
+		assertDeleted(second);
+		assertEquals(1, mManager.getEvictionCount());
+		assertEquals(300, mManager.getEvictedBytes());
+		assertEquals(900, mManager.getResidentBytes());
+		assertEquals(3, mManager.getTextureCount());
+	}
+
+	@Test
+	public void referencedTexturesArePinnedOverBudget() {
+		Texture pinned = register("pinned", 600);
+		Texture unreferenced = register("unreferenced", 300);
+		mManager.release(unreferenced);
+
+		// Over budget with only the unreferenced texture to give up
+		Texture large = register("large", 600);
+		assertDeleted(unreferenced);
+		assertEquals(1200, mManager.getResidentBytes());
+
+		// Once released, the pinned texture goes as soon as the budget is exceeded
+		mManager.release(pinned);
+		assertDeleted(unreferenced, pinned);
+		assertEquals(600, mManager.getResidentBytes());
+		assertSame(large, mManager.acquire("large", mAllocator));
+	}
+
+	@Test
+	public void textureHeldTwiceStaysPinnedUntilBothReferencesAreReleased() {
+		Texture shared = register("shared", 800);
+		mManager.acquire("shared", mAllocator);
+		mManager.release(shared);
+
+		Texture other = register("other", 400);
+		mManager.release(other);
+		assertDeleted(other);
+
+		mManager.release(shared);
+		mManager.setBudget(0);
+		assertDeleted(other, shared);
+		assertEquals(0, mManager.getResidentBytes());
+	}
+
+	@Test
+	public void trimLevelsShrinkTheUnreferencedTextures() {
+		Texture[] textures = new Texture[10];
+		for(int i = 0; i < textures.length; i++){
+			textures[i] = register("texture" + i, 100);
+			mManager.release(textures[i]);
+		}
+		Texture pinned = mManager.acquire("texture9", mAllocator);
+
+		// Below the first trim level nothing happens
+		mManager.onTrimMemory(TextureManager.TRIM_MEMORY_RUNNING_MODERATE - 1);
+		assertEquals(1000, mManager.getResidentBytes());
+
+		// Down to at most three quarters, then half of the budget, in whole textures
+		mManager.onTrimMemory(TextureManager.TRIM_MEMORY_RUNNING_MODERATE);
+		assertEquals(700, mManager.getResidentBytes());
+
+		mManager.onTrimMemory(TextureManager.TRIM_MEMORY_RUNNING_LOW);
+		assertEquals(500, mManager.getResidentBytes());
+		assertDeleted(textures[0], textures[1], textures[2], textures[3], textures[4]);
+
+		// Everything but the referenced texture
+		mManager.onTrimMemory(TextureManager.TRIM_MEMORY_UI_HIDDEN);
+		assertEquals(100, mManager.getResidentBytes());
+		assertEquals(1, mManager.getTextureCount());
+		assertSame(pinned, mManager.acquire("texture9", mAllocator));
+		assertEquals(BUDGET, mManager.getBudget());
+	}
+
+	@Test
+	public void criticalTrimDeletesEveryUnreferencedTexture() {
+		mManager.release(register("first", 100));
+		mManager.release(register("second", 100));
+
+		mManager.onTrimMemory(TextureManager.TRIM_MEMORY_RUNNING_CRITICAL);
+
+		assertEquals(0, mManager.getResidentBytes());
+		assertEquals(2, mAllocator.mDeleted.size());
+	}
+
+	@Test
+	public void discardDeletesOnceTheLastReferenceIsGone() {
+		Texture tile = register("tile", 100);
+		mManager.acquire("tile", mAllocator);
+
+		mManager.discard(tile);
+		assertTrue(mAllocator.mDeleted.isEmpty());
+		assertEquals(100, mManager.getResidentBytes());
+
+		mManager.discard(tile);
+		assertDeleted(tile);
+		assertEquals(0, mManager.getResidentBytes());
+		assertEquals(0, mManager.getTextureCount());
+		// Not an eviction, the budget was never exceeded
+		assertEquals(0, mManager.getEvictionCount());
+		assertNull(mManager.acquire("tile", mAllocator));
+	}
+
+	@Test
+	public void contextLossForgetsTexturesWithoutDeletingThem() {
+		Texture lost = register("lost", 300);
+		FakeAllocator other = new FakeAllocator();
+		Texture kept = mManager.register("kept", mNextTextureId++, 200, other);
+
+		mManager.onContextLost(mAllocator);
+
+		assertEquals(200, mManager.getResidentBytes());
+		assertNull(mManager.acquire("lost", mAllocator));
+		assertSame(kept, mManager.acquire("kept", other));
+		assertTrue(mAllocator.mDeleted.isEmpty());
+		// References to textures of the lost context are no longer valid
+		try {
+			mManager.discard(lost);
+			fail();
+		} catch (IllegalStateException e) {
+		}
+		assertTrue(mAllocator.mDeleted.isEmpty());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void releasingMoreThanAcquiredThrows() {
+		Texture texture = register("image", 100);
+		mManager.release(texture);
+		mManager.release(texture);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void registeringAKeyTwiceThrows() {
+		register("image", 100);
+		register("image", 100);
+	}
+
+	private Texture register(Object key, long bytes) {
+		return mManager.register(key, mNextTextureId++, bytes, mAllocator);
+	}
+
+	private void assertDeleted(Texture... textures) {
+		Integer[] expected = new Integer[textures.length];
+		for(int i = 0; i < textures.length; i++){
+			expected[i] = textures[i].getTextureId();
+		}
+		assertEquals(Arrays.asList(expected), mAllocator.mDeleted);
+	}
+
+	/**
+	 * Records the textures it is asked to delete, in order.
+	 */
+	private static class FakeAllocator implements TextureManager.TextureAllocator {
+		final ArrayList<Integer> mDeleted = new ArrayList<Integer>();
+
+		@Override
+		public void deleteTexture(int textureId) {
+			mDeleted.add(textureId);
+		}
+	}
+}
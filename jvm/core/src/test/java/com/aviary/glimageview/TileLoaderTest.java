@@ -0,0 +1,202 @@
+package com.aviary.glimageview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TileLoaderTest {
+
+	private ManualExecutor mExecutor;
+	private FakeDecoder mDecoder;
+	private RecordingListener mListener;
+	private TileLoader<String> mLoader;
+
+	@Before
+	public void setUp() {
+		mExecutor = new ManualExecutor();
+		mDecoder = new FakeDecoder();
+		mListener = new RecordingListener();
+		mLoader = new TileLoader<String>(mExecutor, mDecoder, mListener);
+	}
+
+	@Test
+	public void decodesVisibleTilesRowByRow() {
+		mLoader.updateVisibleTiles(0, new int[] { 1, 2, 2, 3 });
+		mExecutor.runAll();
+
+		assertEquals(list("0/1/2", "0/2/2", "0/1/3", "0/2/3"), mDecoder.decoded);
+		assertEquals(mDecoder.decoded, mListener.delivered);
+		assertEquals(0, mLoader.getPendingCount());
+	}
+
+	@Test
+	public void pinnedLevelComesFirstAndIsNeverCancelled() {
+		mLoader.requestPinnedLevel(3, 2, 1);
+		mLoader.updateVisibleTiles(0, new int[] { 0, 0, 0, 0 });
+		mLoader.updateVisibleTiles(1, new int[] { 0, 0, 0, 0 });
+		mExecutor.runAll();
+
+		assertEquals(list("3/0/0", "3/1/0", "1/0/0"), mDecoder.decoded);
+		assertEquals(list("0/0/0"), mDecoder.cancelled);
+	}
+
+	@Test
+	public void scrollingCancelsTilesThatLeftTheViewport() {
+		mLoader.updateVisibleTiles(0, new int[] { 0, 0, 1, 0 });
+		mLoader.updateVisibleTiles(0, new int[] { 1, 0, 2, 0 });
+
+		assertTrue(mLoader.isPending(TilePyramid.tileKey(0, 1, 0)));
+		assertFalse(mLoader.isPending(TilePyramid.tileKey(0, 0, 0)));
+		assertEquals(list("0/0/0"), mDecoder.cancelled);
+
+		mExecutor.runAll();
+		assertEquals(list("0/1/0", "0/2/0"), mDecoder.decoded);
+	}
+
+	@Test
+	public void decodedTilesAreNotRequestedAgain() {
+		int[] range = { 0, 0, 0, 0 };
+		mLoader.updateVisibleTiles(0, range);
+		mExecutor.runAll();
+		mLoader.updateVisibleTiles(0, range);
+		mExecutor.runAll();
+
+		assertEquals(list("0/0/0"), mDecoder.decoded);
+
+		mLoader.forget(TilePyramid.tileKey(0, 0, 0));
+		mLoader.updateVisibleTiles(0, range);
+		mExecutor.runAll();
+
+		assertEquals(list("0/0/0", "0/0/0"), mDecoder.decoded);
+	}
+
+	@Test
+	public void tileCancelledWhileDecodingIsReleased() throws Exception {
+		final CountDownLatch decodeStarted = new CountDownLatch(1);
+		final CountDownLatch moved = new CountDownLatch(1);
+		FakeDecoder decoder = new FakeDecoder() {
+			@Override
+			public String decodeTile(int level, int column, int row) {
+				decodeStarted.countDown();
+				try {
+					moved.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.decodeTile(level, column, row);
+			}
+		};
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			TileLoader<String> loader = new TileLoader<String>(executor, decoder, mListener);
+			loader.updateVisibleTiles(0, new int[] { 0, 0, 0, 0 });
+			assertTrue(decodeStarted.await(5, TimeUnit.SECONDS));
+
+			loader.updateVisibleTiles(1, new int[] { 0, 0, 0, 0 });
+			moved.countDown();
+		} finally {
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		}
+
+		assertEquals(list("0/0/0", "1/0/0"), decoder.decoded);
+		assertEquals(list("0/0/0"), decoder.released);
+		assertEquals(list("1/0/0"), mListener.delivered);
+	}
+
+	@Test
+	public void cancelAllStopsEverything() {
+		mLoader.requestPinnedLevel(2, 1, 1);
+		mLoader.updateVisibleTiles(0, new int[] { 0, 0, 1, 1 });
+		mLoader.cancelAll();
+		mExecutor.runAll();
+
+		assertTrue(mDecoder.decoded.isEmpty());
+		assertEquals(5, mDecoder.cancelled.size());
+		assertEquals(0, mLoader.getPendingCount());
+
+		// Nothing is requested after shutdown
+		mLoader.updateVisibleTiles(0, new int[] { 0, 0, 0, 0 });
+		mExecutor.runAll();
+		assertTrue(mDecoder.decoded.isEmpty());
+	}
+
+	@Test
+	public void failedDecodeCanBeRetried() {
+		mDecoder.failing = true;
+		int[] range = { 0, 0, 0, 0 };
+		mLoader.updateVisibleTiles(0, range);
+		mExecutor.runAll();
+
+		assertTrue(mListener.delivered.isEmpty());
+
+		mDecoder.failing = false;
+		mLoader.updateVisibleTiles(0, range);
+		mExecutor.runAll();
+		assertEquals(list("0/0/0"), mListener.delivered);
+	}
+
+	// Helpers
+
+	private static List<String> list(String... tiles) {
+		List<String> list = new ArrayList<String>();
+		Collections.addAll(list, tiles);
+		return list;
+	}
+
+	private static String name(int level, int column, int row) {
+		return level + "/" + column + "/" + row;
+	}
+
+	private static String name(long key) {
+		return name(TilePyramid.getKeyLevel(key), TilePyramid.getKeyColumn(key), TilePyramid.getKeyRow(key));
+	}
+
+	/**
+	 * Decodes a tile into its name and records every call.
+	 */
+	private static class FakeDecoder implements TileLoader.TileDecoder<String> {
+		final List<String> decoded = Collections.synchronizedList(new ArrayList<String>());
+		final List<String> cancelled = Collections.synchronizedList(new ArrayList<String>());
+		final List<String> released = Collections.synchronizedList(new ArrayList<String>());
+		volatile boolean failing;
+
+		@Override
+		public String decodeTile(int level, int column, int row) {
+			String tile = name(level, column, row);
+			decoded.add(tile);
+			return failing ? null : tile;
+		}
+
+		@Override
+		public void releaseTile(String tile) {
+			released.add(tile);
+		}
+
+		@Override
+		public void onTileCancelled(int level, int column, int row) {
+			cancelled.add(name(level, column, row));
+		}
+	}
+
+	private static class RecordingListener implements TileLoader.OnTileDecodedListener<String> {
+		final List<String> delivered = Collections.synchronizedList(new ArrayList<String>());
+
+		@Override
+		public void onTileDecoded(long key, String tile) {
+			assertEquals(name(key), tile);
+			delivered.add(tile);
+		}
+	}
+}
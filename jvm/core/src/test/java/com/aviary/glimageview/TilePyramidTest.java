@@ -0,0 +1,171 @@
+package com.aviary.glimageview;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TilePyramidTest {
+
+	private static final float EPSILON = 1e-5f;
+
+	@Test
+	public void levelsHalveUntilOneTile() {
+		TilePyramid pyramid = new TilePyramid(5000, 3000, 512);
+
+		assertEquals(5, pyramid.getLevelCount());
+		assertEquals(5000, pyramid.getLevelWidth(0));
+		assertEquals(2500, pyramid.getLevelWidth(1));
+		assertEquals(313, pyramid.getLevelWidth(4));
+		assertEquals(188, pyramid.getLevelHeight(4));
+		assertEquals(1, pyramid.getColumnCount(4));
+		assertEquals(1, pyramid.getRowCount(4));
+	}
+
+	@Test
+	public void singleTileImageHasOneLevel() {
+		TilePyramid pyramid = new TilePyramid(512, 100, 512);
+
+		assertEquals(1, pyramid.getLevelCount());
+		assertEquals(512, pyramid.getTileWidth(0, 0));
+		assertEquals(100, pyramid.getTileHeight(0, 0));
+	}
+
+	@Test
+	public void lastTileIsCut() {
+		TilePyramid pyramid = new TilePyramid(1100, 600, 512);
+
+		assertEquals(3, pyramid.getColumnCount(0));
+		assertEquals(2, pyramid.getRowCount(0));
+		assertEquals(512, pyramid.getTileWidth(0, 1));
+		assertEquals(76, pyramid.getTileWidth(0, 2));
+		assertEquals(88, pyramid.getTileHeight(0, 1));
+	}
+
+	@Test
+	public void selectLevelKeepsOneTexelPerPixel() {
+		TilePyramid pyramid = new TilePyramid(8192, 8192, 512);
+
+		assertEquals(0, pyramid.selectLevel(1.f));
+		assertEquals(0, pyramid.selectLevel(0.6f));
+		assertEquals(1, pyramid.selectLevel(0.5f));
+		assertEquals(1, pyramid.selectLevel(0.3f));
+		assertEquals(2, pyramid.selectLevel(0.25f));
+		assertEquals(pyramid.getLevelCount() - 1, pyramid.selectLevel(0.0001f));
+		assertEquals(pyramid.getLevelCount() - 1, pyramid.selectLevel(0.f));
+		assertEquals(pyramid.getLevelCount() - 1, pyramid.selectLevel(Float.NaN));
+	}
+
+	@Test
+	public void screenPixelsPerImagePixel() {
+		TilePyramid pyramid = new TilePyramid(2000, 1000, 512);
+
+		// Bounds spanning the whole 1000px wide viewport show the image at half size
+		assertEquals(0.5f, pyramid.getScreenPixelsPerImagePixel(1.f, 2.f, 1000), EPSILON);
+		assertEquals(2.f, pyramid.getScreenPixelsPerImagePixel(4.f, 2.f, 1000), EPSILON);
+	}
+
+	@Test
+	public void wholeImageVisibleAtIdentity() {
+		float[] region = new float[4];
+
+		assertTrue(TilePyramid.computeVisibleRegion(1.f, 1.f, 0.f, 0.f, -1.f, 1.f, 1.f, -1.f, region));
+		assertArrayEquals(new float[] { 0.f, 0.f, 1.f, 1.f }, region, EPSILON);
+	}
+
+	@Test
+	public void zoomedRegionIsCentered() {
+		float[] region = new float[4];
+
+		assertTrue(TilePyramid.computeVisibleRegion(2.f, 2.f, 0.f, 0.f, -1.f, 1.f, 1.f, -1.f, region));
+		assertArrayEquals(new float[] { 0.25f, 0.25f, 0.75f, 0.75f }, region, EPSILON);
+	}
+
+	@Test
+	public void panningMovesTheRegion() {
+		float[] region = new float[4];
+
+		// Moving the image left and up shows its right and bottom parts
+		assertTrue(TilePyramid.computeVisibleRegion(2.f, 2.f, -1.f, 1.f, -1.f, 1.f, 1.f, -1.f, region));
+		assertArrayEquals(new float[] { 0.5f, 0.5f, 1.f, 1.f }, region, EPSILON);
+	}
+
+	@Test
+	public void imageOutsideTheViewportIsNotVisible() {
+		float[] region = new float[4];
+
+		assertFalse(TilePyramid.computeVisibleRegion(1.f, 1.f, 3.f, 0.f, -1.f, 1.f, 1.f, -1.f, region));
+		assertFalse(TilePyramid.computeVisibleRegion(0.f, 0.f, 0.f, 0.f, -1.f, 1.f, 1.f, -1.f, region));
+	}
+
+	@Test
+	public void visibleTilesCoverTheRegion() {
+		TilePyramid pyramid = new TilePyramid(2048, 2048, 512);
+		int[] range = new int[4];
+
+		assertTrue(pyramid.getVisibleTiles(0, new float[] { 0.25f, 0.25f, 0.75f, 0.75f }, range));
+		assertArrayEquals(new int[] { 1, 1, 2, 2 }, range);
+
+		assertTrue(pyramid.getVisibleTiles(0, new float[] { 0.3f, 0.f, 0.3001f, 1.f }, range));
+		assertArrayEquals(new int[] { 1, 0, 1, 3 }, range);
+
+		assertTrue(pyramid.getVisibleTiles(2, new float[] { 0.f, 0.f, 1.f, 1.f }, range));
+		assertArrayEquals(new int[] { 0, 0, 0, 0 }, range);
+
+		assertFalse(pyramid.getVisibleTiles(0, new float[] { 0.5f, 0.f, 0.5f, 1.f }, range));
+	}
+
+	@Test
+	public void keysRoundTrip() {
+		long key = TilePyramid.tileKey(7, 12345, 678);
+
+		assertEquals(7, TilePyramid.getKeyLevel(key));
+		assertEquals(12345, TilePyramid.getKeyColumn(key));
+		assertEquals(678, TilePyramid.getKeyRow(key));
+		assertTrue(key != TilePyramid.tileKey(7, 678, 12345));
+	}
+
+	@Test
+	public void textureRegionHasGuttersOnInnerEdges() {
+		TilePyramid pyramid = new TilePyramid(1100, 600, 512);
+		int[] region = new int[4];
+		int gutter = TilePyramid.GUTTER;
+
+		pyramid.getTextureRegion(0, 0, 0, region);
+		assertArrayEquals(new int[] { 0, 0, 512 + gutter, 512 + gutter }, region);
+
+		pyramid.getTextureRegion(0, 1, 1, region);
+		assertArrayEquals(new int[] { 512 - gutter, 512 - gutter, 1024 + gutter, 600 }, region);
+
+		pyramid.getTextureRegion(0, 2, 0, region);
+		assertArrayEquals(new int[] { 1024 - gutter, 0, 1100, 512 + gutter }, region);
+	}
+
+	@Test
+	public void singleTileLevelHasNoGutter() {
+		TilePyramid pyramid = new TilePyramid(1100, 600, 512);
+		int level = pyramid.getLevelCount() - 1;
+		int[] region = new int[4];
+
+		pyramid.getTextureRegion(level, 0, 0, region);
+		assertArrayEquals(new int[] { 0, 0, pyramid.getLevelWidth(level), pyramid.getLevelHeight(level) }, region);
+	}
+
+	@Test
+	public void texturesFitTheTextureSize() {
+		TilePyramid pyramid = new TilePyramid(5000, 3000, 512);
+		int[] region = new int[4];
+
+		for(int level = 0; level < pyramid.getLevelCount(); level++){
+			for(int row = 0; row < pyramid.getRowCount(level); row++){
+				for(int column = 0; column < pyramid.getColumnCount(level); column++){
+					pyramid.getTextureRegion(level, column, row, region);
+					assertTrue(region[2] - region[0] <= TilePyramid.getTextureSize(512));
+					assertTrue(region[3] - region[1] <= TilePyramid.getTextureSize(512));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package com.aviary.glimageview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class TransformHandoffTest {
+
+	private static final int WRITER_COUNT = 3;
+	private static final long STRESS_MILLIS = 500;
+
+	@Test
+	public void publishedTransformDoesNotFollowTheWriter() {
+		TransformHandoff handoff = new TransformHandoff();
+		ViewTransform transform = new ViewTransform();
+		transform.set(2.f, 0.5f, -0.25f);
+
+		handoff.publish(transform);
+		transform.postTranslate(1.f, 1.f);
+
+		ViewTransform published = new ViewTransform();
+		handoff.get(published);
+		assertEquals(2.f, published.getScale(), 0);
+		assertEquals(0.5f, published.getTranslateX(), 0);
+		assertEquals(-0.25f, published.getTranslateY(), 0);
+	}
+
+	@Test
+	public void initialTransformIsTheIdentity() {
+		TransformHandoff handoff = new TransformHandoff();
+		ViewTransform transform = new ViewTransform();
+		transform.set(2.f, 1.f, 1.f);
+
+		handoff.get(transform);
+
+		assertEquals(new ViewTransform(), transform);
+		assertEquals(handoff.get(transform), handoff.publish(new ViewTransform()));
+	}
+
+	@Test
+	public void equalTransformIsNotPublishedAgain() {
+		TransformHandoff handoff = new TransformHandoff();
+		ViewTransform transform = new ViewTransform();
+		transform.set(3.f, 0.f, 0.f);
+
+		int version = handoff.publish(transform);
+		ViewTransform published = new ViewTransform();
+
+		assertEquals(version, handoff.publish(new ViewTransform(transform)));
+		assertEquals(version, handoff.get(published));
+		assertEquals(version, handoff.publish(published));
+
+		transform.postTranslate(0.f, 0.5f);
+		assertNotEquals(version, handoff.publish(transform));
+		assertNotEquals(version, handoff.get(published));
+		assertEquals(transform, published);
+	}
+
+	/**
+	 * Writers change their transform field by field and publish it as fast as they can, like gesture
+	 * and animation callbacks, while a reader checks every snapshot the way a frame would use it.
+	 * Every transform the writers build, and the initial identity, has its translation derived from
+	 * its scale, so a snapshot mixing two transforms breaks that relation.
+	 */
+	@Test(timeout = 30000)
+	public void readerNeverSeesATornTransform() throws Exception {
+		final TransformHandoff handoff = new TransformHandoff();
+		final AtomicBoolean stopped = new AtomicBoolean();
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		final AtomicLong publishCount = new AtomicLong();
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<Thread>();
+
+		for(int w = 0; w < WRITER_COUNT; w++){
+			final int writer = w;
+			threads.add(new Thread("writer " + w) {
+				@Override
+				public void run() {
+					ViewTransform transform = new ViewTransform();
+					awaitQuietly(start);
+					for(int i = 0; !stopped.get(); i++){
+						float scale = 1.f + ((i * WRITER_COUNT + writer) % 4096) / 256.f;
+						transform.setScale(scale);
+						transform.setTranslate(translateX(scale), translateY(scale));
+						handoff.publish(transform);
+						publishCount.incrementAndGet();
+					}
+				}
+			});
+		}
+
+		final AtomicLong snapshotCount = new AtomicLong();
+		threads.add(new Thread("reader") {
+			@Override
+			public void run() {
+				ViewTransform transform = new ViewTransform();
+				int previousVersion = -1;
+				awaitQuietly(start);
+				while(!stopped.get() && failure.get() == null){
+					int version = handoff.get(transform);
+					float scale = transform.getScale();
+					float translateX = transform.getTranslateX();
+					float translateY = transform.getTranslateY();
+					if(translateX != translateX(scale) || translateY != translateY(scale)){
+						failure.set("Torn transform: scale " + scale + ", translation " + translateX + ", " + translateY);
+					}else if((version & 1) != 0 || version < previousVersion){
+						failure.set("Version " + version + " read after " + previousVersion);
+					}
+					if(version != previousVersion){
+						snapshotCount.incrementAndGet();
+						previousVersion = version;
+					}
+				}
+			}
+		});
+
+		for(Thread thread : threads){
+			thread.start();
+		}
+		start.countDown();
+		Thread.sleep(STRESS_MILLIS);
+		stopped.set(true);
+		for(Thread thread : threads){
+			thread.join();
+		}
+
+		assertNull(failure.get(), failure.get());
+		assertTrue(publishCount.get() > 0);
+		assertTrue(snapshotCount.get() > 1);
+	}
+
+	private static float translateX(float scale) {
+		return scale - 1.f;
+	}
+
+	private static float translateY(float scale) {
+		return (1.f - scale) * 0.5f;
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
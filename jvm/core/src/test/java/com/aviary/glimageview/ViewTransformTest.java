@@ -0,0 +1,141 @@
+package com.aviary.glimageview;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+
+import org.junit.Test;
+
+public class ViewTransformTest {
+
+	private static final float EPSILON = 1e-5f;
+
+	@Test
+	public void scaleIsClampedAtBothEnds() {
+		ViewTransform transform = new ViewTransform();
+
+		transform.setScale(0.2f);
+		transform.clampScale(0.5f, 4.f);
+		assertEquals(0.5f, transform.getScale(), 0);
+
+		transform.setScale(9.f);
+		transform.clampScale(0.5f, 4.f);
+		assertEquals(4.f, transform.getScale(), 0);
+
+		transform.setScale(2.f);
+		transform.clampScale(0.5f, 4.f);
+		assertEquals(2.f, transform.getScale(), 0);
+	}
+
+	@Test
+	public void zoomedImageKeepsCoveringTheViewport() {
+		ViewTransform transform = new ViewTransform();
+		// A 2 x 1 NDC image at scale 3 reaches 3 past the center horizontally and 1.5 vertically
+		transform.set(3.f, 5.f, -5.f);
+		transform.constrainTranslation(1.f, 0.5f);
+
+		assertEquals(2.f, transform.getTranslateX(), EPSILON);
+		assertEquals(-0.5f, transform.getTranslateY(), EPSILON);
+
+		// Exactly at the bounds nothing moves
+		transform.set(3.f, -2.f, 0.5f);
+		transform.constrainTranslation(1.f, 0.5f);
+		assertEquals(-2.f, transform.getTranslateX(), EPSILON);
+		assertEquals(0.5f, transform.getTranslateY(), EPSILON);
+	}
+
+	@Test
+	public void smallImageIsCentered() {
+		// Image smaller than the viewport along both axes cannot move
+		assertEquals(0.f, ViewTransform.constrain(0.3f, 1.f, 0.5f), 0);
+		assertEquals(0.f, ViewTransform.constrain(-0.3f, 1.f, 0.5f), 0);
+		// Image exactly as large as the viewport
+		assertEquals(0.f, ViewTransform.constrain(0.3f, 1.f, 1.f), 0);
+	}
+
+	@Test
+	public void scalingAroundAPivotKeepsThePivot() {
+		ViewTransform transform = new ViewTransform();
+		transform.set(1.5f, 0.2f, -0.1f);
+		float pivotX = 0.4f;
+		float pivotY = -0.3f;
+		float imageX = transform.invertX(pivotX);
+		float imageY = transform.invertY(pivotY);
+
+		transform.postScale(2.f, pivotX, pivotY);
+
+		assertEquals(3.f, transform.getScale(), EPSILON);
+		assertEquals(pivotX, transform.mapX(imageX), EPSILON);
+		assertEquals(pivotY, transform.mapY(imageY), EPSILON);
+	}
+
+	@Test
+	public void pointsRoundTrip() {
+		ViewTransform transform = new ViewTransform();
+		transform.set(2.5f, -0.75f, 0.4f);
+
+		assertEquals(2.5f * 0.2f - 0.75f, transform.mapX(0.2f), EPSILON);
+		assertEquals(2.5f * -0.6f + 0.4f, transform.mapY(-0.6f), EPSILON);
+		for(float p = -1.f; p <= 1.f; p += 0.25f){
+			assertEquals(p, transform.invertX(transform.mapX(p)), EPSILON);
+			assertEquals(p, transform.mapY(transform.invertY(p)), EPSILON);
+		}
+	}
+
+	@Test
+	public void boundsRoundTripThroughTheirCorners() {
+		ViewTransform transform = new ViewTransform();
+		transform.set(2.f, 0.5f, -0.25f);
+		// left, top, right, bottom of image bounds in NDC
+		float[] bounds = { -1.f, 0.75f, 1.f, -0.75f };
+
+		float[] mapped = {
+			transform.mapX(bounds[0]), transform.mapY(bounds[1]), transform.mapX(bounds[2]), transform.mapY(bounds[3])
+		};
+		assertArrayEquals(new float[] { -1.5f, 1.25f, 2.5f, -1.75f }, mapped, EPSILON);
+
+		float[] inverted = {
+			transform.invertX(mapped[0]), transform.invertY(mapped[1]), transform.invertX(mapped[2]), transform.invertY(mapped[3])
+		};
+		assertArrayEquals(bounds, inverted, EPSILON);
+	}
+
+	@Test
+	public void matricesAgreeWithMapping() {
+		ViewTransform transform = new ViewTransform();
+		transform.set(1.25f, 0.3f, -0.6f);
+		float[] matrix3 = new float[10];
+		float[] values = new float[9];
+
+		transform.getMatrix3(matrix3, 1);
+		transform.getValues(values);
+
+		// Column-major: the translation is the third column
+		assertArrayEquals(new float[] { 0.f, 1.25f, 0.f, 0.f, 0.f, 1.25f, 0.f, 0.3f, -0.6f, 1.f }, matrix3, 0);
+		assertEquals(transform.mapX(0.5f), values[0] * 0.5f + values[1] * 0.7f + values[2], EPSILON);
+		assertEquals(transform.mapY(0.7f), values[3] * 0.5f + values[4] * 0.7f + values[5], EPSILON);
+	}
+
+	@Test
+	public void copiesAreEqualAndIndependent() {
+		ViewTransform transform = new ViewTransform();
+		transform.set(2.f, 0.1f, 0.2f);
+
+		ViewTransform copy = new ViewTransform(transform);
+		assertNotSame(transform, copy);
+		assertEquals(transform, copy);
+		assertEquals(transform.hashCode(), copy.hashCode());
+
+		copy.postTranslate(0.f, 0.1f);
+		assertFalse(transform.equals(copy));
+		assertEquals(0.2f, transform.getTranslateY(), 0);
+
+		copy.set(transform);
+		assertEquals(transform, copy);
+		copy.reset();
+		assertEquals(new ViewTransform(), copy);
+		assertFalse(copy.equals(null));
+		assertFalse(copy.equals("ViewTransform"));
+	}
+}
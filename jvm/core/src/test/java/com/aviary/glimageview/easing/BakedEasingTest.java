@@ -0,0 +1,51 @@
+package com.aviary.glimageview.easing;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BakedEasingTest {
+
+	// Points checked between every pair of table entries by the reference measurement
+	private static final int REFERENCE_SUBDIVISIONS = 1000;
+
+	private static final Easing[] EASINGS = {
+		new Linear(), new Quad(), new Cubic(), new Quart(), new Quint(), new Sine(),
+		new Back(), new Elastic(), new Expo(), new Bounce(), new Circ()
+	};
+
+	@Test
+	public void maxErrorMatchesDenseSamplingOfTheSourceCurves() {
+		for( Easing easing : EASINGS ){
+			BakedEasing baked = new BakedEasing( easing );
+			double reference = measureError( baked, easing );
+			double estimate = baked.getMaxError();
+			String name = easing.getClass().getSimpleName();
+
+			// Within float rounding of the reference on either side
+			assertTrue( name + ": " + estimate + " < " + reference, estimate >= reference * 0.999 - 1e-7 );
+			assertTrue( name + ": " + estimate + " > " + reference, estimate <= reference * 1.001 + 1e-7 );
+		}
+	}
+
+	@Test
+	public void maxErrorShrinksWithTheSquareOfTheSpacing() {
+		// A smooth curve, unlike Expo, whose error is dominated by its jump at the start
+		BakedEasing coarse = new BakedEasing( new Cubic(), 129 );
+		BakedEasing fine = new BakedEasing( new Cubic(), 257 );
+		double ratio = coarse.getMaxError() / fine.getMaxError();
+		assertTrue( "ratio " + ratio, ratio > 3.5 && ratio < 4.5 );
+	}
+
+	private static double measureError( BakedEasing baked, Easing source ) {
+		double maxError = 0;
+		int steps = ( baked.getSampleCount() - 1 ) * REFERENCE_SUBDIVISIONS;
+		for( int i = 0; i <= steps; i++ ){
+			double time = i / (double) steps;
+			maxError = Math.max( maxError, Math.abs( baked.easeOut( time, 0, 1, 1 ) - source.easeOut( time, 0, 1, 1 ) ) );
+			maxError = Math.max( maxError, Math.abs( baked.easeIn( time, 0, 1, 1 ) - source.easeIn( time, 0, 1, 1 ) ) );
+			maxError = Math.max( maxError, Math.abs( baked.easeInOut( time, 0, 1, 1 ) - source.easeInOut( time, 0, 1, 1 ) ) );
+		}
+		return maxError;
+	}
+}
@@ -0,0 +1,120 @@
+package com.aviary.glimageview.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class FilterGraphTest {
+
+	@Test
+	public void perPixelNodesFuseIntoOnePass() {
+		FilterGraph graph = new FilterGraph();
+		graph.addNode(Filters.exposure(0.f));
+		graph.addNode(Filters.contrast(1.f));
+		graph.addNode(Filters.saturation(1.f));
+
+		List<FilterPass> passes = graph.getPasses();
+
+		assertEquals(1, passes.size());
+		assertEquals(3, passes.get(0).getNodes().size());
+		assertEquals(3, passes.get(0).getUniforms().size());
+	}
+
+	@Test
+	public void samplingNodesStartNewPasses() {
+		FilterGraph graph = new FilterGraph();
+		graph.addNode(Filters.exposure(0.f));
+		graph.addNode(Filters.blur(1.f));
+		graph.addNode(Filters.contrast(1.f));
+		graph.addNode(Filters.sharpen(1.f));
+		graph.addNode(Filters.sharpen(1.f));
+		graph.addNode(Filters.saturation(1.f));
+
+		List<FilterPass> passes = graph.getPasses();
+
+		assertEquals(4, passes.size());
+		assertEquals(0, passes.get(0).getFirstNodeIndex());
+		assertEquals(1, passes.get(0).getNodes().size());
+		assertEquals(1, passes.get(1).getFirstNodeIndex());
+		assertEquals(2, passes.get(1).getNodes().size());
+		assertEquals(3, passes.get(2).getFirstNodeIndex());
+		assertEquals(1, passes.get(2).getNodes().size());
+		assertEquals(4, passes.get(3).getFirstNodeIndex());
+		assertEquals(2, passes.get(3).getNodes().size());
+	}
+
+	@Test
+	public void fusedShaderPrefixesEveryNode() {
+		FilterGraph graph = new FilterGraph();
+		graph.addNode(Filters.blur(1.f));
+		graph.addNode(Filters.exposure(0.f));
+
+		FilterPass pass = graph.getPasses().get(0);
+		String shader = pass.getFragmentShader();
+
+		assertTrue(shader.contains("vec4 color = n0_apply(" + FilterGraph.IMAGE_UNIFORM));
+		assertTrue(shader.contains("color = n1_apply(color);"));
+		assertTrue(shader.contains("uniform float n0_radius;"));
+		assertTrue(shader.contains("uniform float n1_stops;"));
+		assertEquals("n1_stops", pass.getUniforms().get(1).uniformName);
+	}
+
+	@Test
+	public void passesAreRecompiledOnlyWhenTheStructureChanges() {
+		FilterGraph graph = new FilterGraph();
+		FilterNode exposure = Filters.exposure(0.f);
+		graph.addNode(exposure);
+
+		List<FilterPass> passes = graph.getPasses();
+		exposure.setParameter("stops", 1.f);
+		assertSame(passes, graph.getPasses());
+
+		graph.addNode(Filters.blur(1.f));
+		assertEquals(2, graph.getPasses().size());
+	}
+
+	@Test
+	public void firstDirtyPassFollowsParameterChanges() {
+		FilterGraph graph = new FilterGraph();
+		FilterNode exposure = Filters.exposure(0.f);
+		FilterNode contrast = Filters.contrast(1.f);
+		graph.addNode(exposure);
+		graph.addNode(Filters.blur(1.f));
+		graph.addNode(contrast);
+		graph.addNode(Filters.sharpen(1.f));
+
+		assertEquals(0, graph.consumeFirstDirtyPass());
+		assertEquals(3, graph.getFirstDirtyPass());
+
+		// contrast is fused into the blur pass
+		contrast.setParameter("amount", 2.f);
+		assertEquals(1, graph.consumeFirstDirtyPass());
+		assertEquals(3, graph.getFirstDirtyPass());
+
+		contrast.setParameter("amount", 3.f);
+		exposure.setParameter("stops", 1.f);
+		assertEquals(0, graph.consumeFirstDirtyPass());
+
+		graph.invalidate();
+		assertEquals(0, graph.getFirstDirtyPass());
+	}
+
+	@Test
+	public void stateVersionChangesWithParametersAndStructure() {
+		FilterGraph graph = new FilterGraph();
+		FilterNode exposure = Filters.exposure(0.f);
+		graph.addNode(exposure);
+
+		long version = graph.getStateVersion();
+		exposure.setParameter("stops", 1.f);
+		assertTrue(version != graph.getStateVersion());
+
+		version = graph.getStateVersion();
+		graph.removeNode(exposure);
+		assertTrue(version != graph.getStateVersion());
+	}
+}
@@ -0,0 +1,127 @@
+package com.aviary.glimageview.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RenderPlanTest {
+
+	@Test
+	public void fullRenderChainsFromTheSource() {
+		RenderPlan plan = new RenderPlan();
+
+		assertEquals(4, plan.update(4, 0));
+		assertEquals(0, plan.getStartPass());
+		assertEquals(RenderPlan.SOURCE, plan.getInput(0));
+		assertChained(plan, 4);
+	}
+
+	@Test
+	public void cleanGraphRendersNothing() {
+		RenderPlan plan = new RenderPlan();
+		plan.update(3, 0);
+		int output = plan.getOutputTarget();
+
+		assertEquals(0, plan.update(3, 3));
+		assertEquals(output, plan.getOutputTarget());
+	}
+
+	@Test
+	public void emptyGraphShowsTheSource() {
+		RenderPlan plan = new RenderPlan();
+
+		assertEquals(0, plan.update(0, 0));
+		assertEquals(RenderPlan.SOURCE, plan.getOutputTarget());
+	}
+
+	@Test
+	public void firstTweakOfTheLastPassesSkipsUpstreamPasses() {
+		RenderPlan plan = new RenderPlan();
+		plan.update(5, 0);
+
+		assertEquals(1, plan.update(5, 4));
+		assertEquals(4, plan.getStartPass());
+		assertChained(plan, 5);
+
+		assertEquals(2, plan.update(5, 3));
+		assertEquals(3, plan.getStartPass());
+		assertChained(plan, 5);
+	}
+
+	@Test
+	public void repeatedTweaksOnlyRenderFromTheTweakedPass() {
+		RenderPlan plan = new RenderPlan();
+		plan.update(6, 0);
+
+		// Nothing before pass 2 survived the full render
+		assertEquals(6, plan.update(6, 2));
+		assertEquals(1, plan.getKeptPass());
+
+		for(int i = 0; i < 5; i++){
+			assertEquals(4, plan.update(6, 2));
+			assertEquals(2, plan.getStartPass());
+			assertChained(plan, 6);
+		}
+	}
+
+	@Test
+	public void alternatingWithTheLastPassKeepsBothTweaksCheap() {
+		RenderPlan plan = new RenderPlan();
+		plan.update(6, 0);
+		plan.update(6, 2);
+
+		for(int i = 0; i < 3; i++){
+			assertEquals(4, plan.update(6, 2));
+			assertEquals(2, plan.getStartPass());
+			assertChained(plan, 6);
+
+			assertEquals(1, plan.update(6, 5));
+			assertEquals(5, plan.getStartPass());
+			assertChained(plan, 6);
+		}
+	}
+
+	@Test
+	public void staleOutputsAreNeverReused() {
+		RenderPlan plan = new RenderPlan();
+		plan.update(4, 0);
+
+		assertEquals(4, plan.update(4, 0));
+		for(int target = 0; target < RenderPlan.TARGET_COUNT; target++){
+			assertTrue(plan.getTargetPass(target) >= 1 || plan.getTargetPass(target) == -1);
+		}
+		assertEquals(3, plan.getTargetPass(plan.getOutputTarget()));
+	}
+
+	@Test
+	public void passCountChangeAndResetRenderEverything() {
+		RenderPlan plan = new RenderPlan();
+		plan.update(3, 0);
+
+		assertEquals(4, plan.update(4, 3));
+		assertEquals(0, plan.getStartPass());
+
+		plan.reset();
+		assertEquals(4, plan.update(4, 4));
+		assertEquals(RenderPlan.SOURCE, plan.getInput(0));
+	}
+
+	/**
+	 * Checks that every rendered pass reads the previous pass output, never writes the target it
+	 * reads, and leaves the final output in the output target.
+	 */
+	private static void assertChained(RenderPlan plan, int passCount) {
+		int start = plan.getStartPass();
+		if(start > 0){
+			assertEquals(start - 1, plan.getTargetPass(plan.getInput(start)));
+		}
+		for(int pass = start; pass < passCount; pass++){
+			assertTrue(plan.getInput(pass) != plan.getOutput(pass));
+			if(pass > start){
+				assertEquals(plan.getOutput(pass - 1), plan.getInput(pass));
+			}
+		}
+		assertEquals(plan.getOutput(passCount - 1), plan.getOutputTarget());
+	}
+}
@@ -0,0 +1,96 @@
+package com.aviary.glimageview;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.view.Choreographer;
+
+import com.aviary.glimageview.AnimationScheduler.FrameCallback;
+import com.aviary.glimageview.AnimationScheduler.FrameDriver;
+
+/**
+ * Frame drivers for the UI thread. Choreographer delivers callbacks on vsync from API 16;
+ * older devices fall back to a Handler posting at the nominal 60 Hz frame interval.
+ */
+final class AndroidFrameDriver {
+
+	private static final long FRAME_INTERVAL_MS = 16;
+
+	private AndroidFrameDriver() {
+	}
+
+	/**
+	 * Must be called on the UI thread.
+	 */
+	static FrameDriver create(Handler handler) {
+		if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
+			return new ChoreographerFrameDriver();
+		}
+		return new HandlerFrameDriver(handler);
+	}
+
+	@TargetApi(16)
+	private static class ChoreographerFrameDriver implements FrameDriver, Choreographer.FrameCallback {
+
+		private final Choreographer mChoreographer = Choreographer.getInstance();
+		private FrameCallback mCallback;
+
+		@Override
+		public void postFrameCallback(FrameCallback callback) {
+			mCallback = callback;
+			mChoreographer.removeFrameCallback(this);
+			mChoreographer.postFrameCallback(this);
+		}
+
+		@Override
+		public void removeFrameCallback(FrameCallback callback) {
+			if(mCallback == callback){
+				mChoreographer.removeFrameCallback(this);
+				mCallback = null;
+			}
+		}
+
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			FrameCallback callback = mCallback;
+			mCallback = null;
+			if(callback != null){
+				callback.doFrame(frameTimeNanos);
+			}
+		}
+	}
+
+	private static class HandlerFrameDriver implements FrameDriver, Runnable {
+
+		private final Handler mHandler;
+		private FrameCallback mCallback;
+
+		HandlerFrameDriver(Handler handler) {
+			mHandler = handler;
+		}
+
+		@Override
+		public void postFrameCallback(FrameCallback callback) {
+			mCallback = callback;
+			mHandler.removeCallbacks(this);
+			mHandler.postDelayed(this, FRAME_INTERVAL_MS);
+		}
+
+		@Override
+		public void removeFrameCallback(FrameCallback callback) {
+			if(mCallback == callback){
+				mHandler.removeCallbacks(this);
+				mCallback = null;
+			}
+		}
+
+		@Override
+		public void run() {
+			FrameCallback callback = mCallback;
+			mCallback = null;
+			if(callback != null){
+				callback.doFrame(System.nanoTime());
+			}
+		}
+	}
+}
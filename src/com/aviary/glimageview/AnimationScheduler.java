@@ -0,0 +1,192 @@
+package com.aviary.glimageview;
+
+import java.util.ArrayList;
+
+/**
+ * Runs animations on the display's frame clock. Every running animation is stepped once per frame
+ * with the same frame time, and a single render is requested after all of them have been stepped,
+ * so concurrent animations never cause more than one render per frame.
+ *
+ * The frames come from a {@link FrameDriver} and the time from a {@link Clock}, both of which can
+ * be replaced to step animations deterministically. This class is pure Java and must only be used
+ * from the thread the frame driver calls back on, normally the UI thread.
+ */
+public class AnimationScheduler {
+
+	private final FrameDriver mFrameDriver;
+	private final Clock mClock;
+	private final Runnable mRenderCallback;
+
+	private final ArrayList<Animation> mAnimations = new ArrayList<Animation>();
+	private Animation[] mFrameAnimations = new Animation[4];
+	private boolean mFrameScheduled;
+	private boolean mInFrame;
+
+	private final FrameCallback mFrameCallback = new FrameCallback() {
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			AnimationScheduler.this.doFrame(frameTimeNanos);
+		}
+	};
+
+	/**
+	 * @param frameDriver Delivers one callback per frame.
+	 * @param clock The time animations are started at, on the same time base as the frame times.
+	 * @param renderCallback Run once after every frame in which an animation was stepped.
+	 */
+	public AnimationScheduler(FrameDriver frameDriver, Clock clock, Runnable renderCallback) {
+		if(frameDriver == null || clock == null){
+			throw new IllegalArgumentException("frameDriver and clock cannot be null");
+		}
+		mFrameDriver = frameDriver;
+		mClock = clock;
+		mRenderCallback = renderCallback;
+	}
+
+	/**
+	 * Starts an animation, or restarts it if it is already running. The animation is first stepped
+	 * on the next frame.
+	 */
+	public void start(Animation animation) {
+		mAnimations.remove(animation);
+		mAnimations.add(animation);
+		animation.onStart(mClock.nanoTime());
+		scheduleFrame();
+	}
+
+	/**
+	 * Stops an animation where it is. It is not stepped again.
+	 */
+	public void cancel(Animation animation) {
+		mAnimations.remove(animation);
+		if(mAnimations.isEmpty()){
+			unscheduleFrame();
+		}
+	}
+
+	/**
+	 * Stops every running animation, for instance because a new touch arrived.
+	 */
+	public void cancelAll() {
+		mAnimations.clear();
+		unscheduleFrame();
+	}
+
+	public boolean isRunning(Animation animation) {
+		return mAnimations.contains(animation);
+	}
+
+	public boolean isAnimating() {
+		return !mAnimations.isEmpty();
+	}
+
+	public Clock getClock() {
+		return mClock;
+	}
+
+	/**
+	 * Steps every running animation to the given frame time. Called by the frame driver, and
+	 * public so tests can drive frames by hand.
+	 */
+	public void doFrame(long frameTimeNanos) {
+		mFrameScheduled = false;
+		if(mAnimations.isEmpty()){
+			return;
+		}
+
+		mInFrame = true;
+		// Step a copy, as animations may start or cancel others from onFrame. Ones started during
+		// the frame wait for the next one, cancelled ones are skipped.
+		int count = mAnimations.size();
+		if(mFrameAnimations.length < count){
+			mFrameAnimations = new Animation[count * 2];
+		}
+		mAnimations.toArray(mFrameAnimations);
+		for(int i = 0; i < count; i++){
+			Animation animation = mFrameAnimations[i];
+			mFrameAnimations[i] = null;
+			if(mAnimations.contains(animation) && !animation.onFrame(frameTimeNanos)){
+				mAnimations.remove(animation);
+			}
+		}
+		mInFrame = false;
+
+		if(mRenderCallback != null){
+			mRenderCallback.run();
+		}
+
+		if(!mAnimations.isEmpty()){
+			scheduleFrame();
+		}
+	}
+
+	private void scheduleFrame() {
+		if(!mFrameScheduled && !mInFrame){
+			mFrameScheduled = true;
+			mFrameDriver.postFrameCallback(mFrameCallback);
+		}
+	}
+
+	private void unscheduleFrame() {
+		if(mFrameScheduled){
+			mFrameScheduled = false;
+			mFrameDriver.removeFrameCallback(mFrameCallback);
+		}
+	}
+
+	/**
+	 * Something that changes over time.
+	 */
+	public static interface Animation {
+
+		/**
+		 * Called when the animation is started.
+		 * @param startTimeNanos The clock time, comparable with the frame times.
+		 */
+		public void onStart(long startTimeNanos);
+
+		/**
+		 * Applies the state of the animation at a frame.
+		 * @param frameTimeNanos The time of the frame. May be slightly before the start time.
+		 * @return true while the animation has more frames to run.
+		 */
+		public boolean onFrame(long frameTimeNanos);
+	}
+
+	/**
+	 * Called once per frame.
+	 */
+	public static interface FrameCallback {
+		public void doFrame(long frameTimeNanos);
+	}
+
+	/**
+	 * A source of frame callbacks, such as the display vsync.
+	 */
+	public static interface FrameDriver {
+
+		/**
+		 * Calls the callback once, on the next frame.
+		 */
+		public void postFrameCallback(FrameCallback callback);
+
+		public void removeFrameCallback(FrameCallback callback);
+	}
+
+	/**
+	 * A monotonic time source, in nanoseconds.
+	 */
+	public static interface Clock {
+		public long nanoTime();
+	}
+
+	/**
+	 * The clock used by Choreographer frame times.
+	 */
+	public static final Clock SYSTEM_CLOCK = new Clock() {
+		@Override
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+	};
+}
@@ -0,0 +1,528 @@
+package com.aviary.glimageview;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+/**
+ * Applies one GLImagingProgram to many images, without a view. Every image goes through four
+ * stages: decode, upload, render and readback, then encode. Decoding and encoding run on their own
+ * threads and are connected to the render thread by bounded queues, so the next images are decoded
+ * while the current one renders, and a slow stage holds back the ones before it instead of
+ * filling memory with bitmaps.
+ *
+ * Upload, render and readback share the render thread, which owns the program and, unless the
+ * program is a {@link SoftwareImageProgram}, an offscreen GL context.
+ *
+ * Every stage records how long it worked, how long it waited for input and how long it waited for
+ * room in the next queue; see {@link StageStats}.
+ */
+public class BatchExporter {
+
+	private static final String LOG_TAG = "BatchExporter";
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 2;
+
+	private final GLImagingProgram mProgram;
+	private final boolean mNeedsGLContext;
+	private int mDecodeThreadCount = 2;
+	private int mEncodeThreadCount = 1;
+	private int mQueueCapacity = DEFAULT_QUEUE_CAPACITY;
+	private int mMaxImageSize;
+	private Bitmap.CompressFormat mFormat = Bitmap.CompressFormat.JPEG;
+	private int mQuality = 90;
+	private BitmapPool mBitmapPool = BitmapPool.getDefault();
+
+	private final StageStats mDecodeStats = new StageStats("decode");
+	private final StageStats mUploadStats = new StageStats("upload");
+	private final StageStats mRenderStats = new StageStats("render");
+	private final StageStats mEncodeStats = new StageStats("encode");
+	private volatile long mElapsedNanos;
+
+	/**
+	 * @param program The configured program, for instance a FilterGraphProgram holding the edits.
+	 * It is only used on the exporter's render thread while an export runs.
+	 */
+	public BatchExporter(GLImagingProgram program) {
+		if(program == null){
+			throw new IllegalArgumentException("program cannot be null");
+		}
+		mProgram = program;
+		mNeedsGLContext = !(program instanceof SoftwareImageProgram);
+	}
+
+	public void setDecodeThreadCount(int count) {
+		mDecodeThreadCount = Math.max(1, count);
+	}
+
+	public void setEncodeThreadCount(int count) {
+		mEncodeThreadCount = Math.max(1, count);
+	}
+
+	/**
+	 * @param capacity How many bitmaps may wait between two stages.
+	 */
+	public void setQueueCapacity(int capacity) {
+		mQueueCapacity = Math.max(1, capacity);
+	}
+
+	/**
+	 * @param size Images are decoded subsampled by a power of two until neither side is larger, or 0
+	 * to decode at full size. Single texture programs need this to be at most GL_MAX_TEXTURE_SIZE.
+	 */
+	public void setMaxImageSize(int size) {
+		mMaxImageSize = size;
+	}
+
+	public void setOutputFormat(Bitmap.CompressFormat format, int quality) {
+		mFormat = format;
+		mQuality = quality;
+	}
+
+	/**
+	 * @param pool Where readback bitmaps come from and go back to once encoded, or null.
+	 */
+	public void setBitmapPool(BitmapPool pool) {
+		mBitmapPool = pool;
+	}
+
+	/**
+	 * Exports every job, blocking until they are all encoded or have failed. The stats are reset at
+	 * the start.
+	 * @param listener Called on the encode threads, or on the stage thread where a job failed.
+	 * May be null.
+	 */
+	public void export(List<Job> jobs, OnJobCompletedListener listener) throws InterruptedException {
+		mDecodeStats.reset();
+		mUploadStats.reset();
+		mRenderStats.reset();
+		mEncodeStats.reset();
+		long start = System.nanoTime();
+
+		BlockingQueue<Item> decoded = new ArrayBlockingQueue<Item>(mQueueCapacity);
+		BlockingQueue<Item> rendered = new ArrayBlockingQueue<Item>(mQueueCapacity);
+		ExecutorService executor = Executors.newFixedThreadPool(mDecodeThreadCount + 1 + mEncodeThreadCount, new StageThreadFactory());
+		CompletionService<Void> stages = new ExecutorCompletionService<Void>(executor);
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		try {
+			AtomicInteger nextJob = new AtomicInteger();
+			AtomicInteger runningDecoders = new AtomicInteger(mDecodeThreadCount);
+			for(int i = 0; i < mDecodeThreadCount; i++){
+				futures.add(stages.submit(new DecodeStage(jobs, nextJob, runningDecoders, decoded, listener), null));
+			}
+			futures.add(stages.submit(new RenderStage(decoded, rendered, listener), null));
+			for(int i = 0; i < mEncodeThreadCount; i++){
+				futures.add(stages.submit(new EncodeStage(rendered, listener), null));
+			}
+
+			// Stages are awaited as they finish, so one that dies stops the others instead of leaving
+			// them blocked on its queue
+			for(int i = 0; i < futures.size(); i++){
+				try {
+					stages.take().get();
+				} catch (ExecutionException e) {
+					throw new RuntimeException(e.getCause());
+				}
+			}
+		} finally {
+			for(Future<Void> future : futures){
+				future.cancel(true);
+			}
+			executor.shutdownNow();
+			drain(decoded);
+			drain(rendered);
+			mElapsedNanos = System.nanoTime() - start;
+		}
+	}
+
+	public StageStats getDecodeStats() {
+		return mDecodeStats;
+	}
+
+	public StageStats getUploadStats() {
+		return mUploadStats;
+	}
+
+	public StageStats getRenderStats() {
+		return mRenderStats;
+	}
+
+	public StageStats getEncodeStats() {
+		return mEncodeStats;
+	}
+
+	/**
+	 * @return The wall clock time of the last export.
+	 */
+	public long getElapsedNanos() {
+		return mElapsedNanos;
+	}
+
+	/**
+	 * @return Images exported per second of wall clock time in the last export.
+	 */
+	public double getThroughput() {
+		long elapsed = mElapsedNanos;
+		return elapsed > 0 ? mEncodeStats.getItemCount() * 1e9 / elapsed : 0;
+	}
+
+	// Stages
+
+	private class DecodeStage implements Runnable {
+		private final List<Job> mJobs;
+		private final AtomicInteger mNextJob;
+		private final AtomicInteger mRunningDecoders;
+		private final BlockingQueue<Item> mOutput;
+		private final OnJobCompletedListener mListener;
+
+		DecodeStage(List<Job> jobs, AtomicInteger nextJob, AtomicInteger runningDecoders, BlockingQueue<Item> output, OnJobCompletedListener listener) {
+			mJobs = jobs;
+			mNextJob = nextJob;
+			mRunningDecoders = runningDecoders;
+			mOutput = output;
+			mListener = listener;
+		}
+
+		@Override
+		public void run() {
+			try {
+				int index;
+				while((index = mNextJob.getAndIncrement()) < mJobs.size()){
+					Job job = mJobs.get(index);
+					long start = System.nanoTime();
+					Bitmap bitmap;
+					try {
+						bitmap = decode(job.getSource());
+					} catch (RuntimeException e) {
+						notifyFailed(mListener, job, e);
+						continue;
+					}
+					mDecodeStats.addWork(System.nanoTime() - start);
+					if(bitmap == null){
+						notifyFailed(mListener, job, new IOException("Could not decode " + job.getSource()));
+						continue;
+					}
+					mDecodeStats.put(mOutput, new Item(job, bitmap));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				// The last decoder to finish tells the render stage there is nothing more to come
+				if(mRunningDecoders.decrementAndGet() == 0){
+					putEnd(mOutput, 1);
+				}
+			}
+		}
+	}
+
+	private class RenderStage implements Runnable {
+		private final BlockingQueue<Item> mInput;
+		private final BlockingQueue<Item> mOutput;
+		private final OnJobCompletedListener mListener;
+
+		RenderStage(BlockingQueue<Item> input, BlockingQueue<Item> output, OnJobCompletedListener listener) {
+			mInput = input;
+			mOutput = output;
+			mListener = listener;
+		}
+
+		@Override
+		public void run() {
+			OffscreenGLContext context = null;
+			try {
+				if(mNeedsGLContext){
+					context = OffscreenGLContext.create();
+				}
+				mProgram.setup();
+				mProgram.setFramebufferSize(1, 1);
+
+				Item item;
+				while((item = mUploadStats.take(mInput)) != Item.END){
+					Bitmap output = null;
+					try {
+						long start = System.nanoTime();
+						if(GLTrace.ENABLED) GLTrace.beginSection("BatchExporter.upload");
+						mProgram.setBitmap(item.bitmap);
+						if(GLTrace.ENABLED) GLTrace.endSection();
+						mUploadStats.addWork(System.nanoTime() - start);
+
+						start = System.nanoTime();
+						if(GLTrace.ENABLED) GLTrace.beginSection("BatchExporter.render");
+						output = obtainBitmap(item.bitmap.getWidth(), item.bitmap.getHeight());
+						mProgram.readImage(output);
+						if(GLTrace.ENABLED) GLTrace.endSection();
+						mRenderStats.addWork(System.nanoTime() - start);
+					} catch (RuntimeException e) {
+						if(output != null){
+							releaseBitmap(output);
+						}
+						notifyFailed(mListener, item.job, e);
+						continue;
+					} finally {
+						// Programs may key their textures by bitmap, so decoded bitmaps are never reused
+						item.bitmap.recycle();
+					}
+					mRenderStats.put(mOutput, new Item(item.job, output));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				if(context != null){
+					context.release();
+				}
+				putEnd(mOutput, mEncodeThreadCount);
+			}
+		}
+	}
+
+	private class EncodeStage implements Runnable {
+		private final BlockingQueue<Item> mInput;
+		private final OnJobCompletedListener mListener;
+
+		EncodeStage(BlockingQueue<Item> input, OnJobCompletedListener listener) {
+			mInput = input;
+			mListener = listener;
+		}
+
+		@Override
+		public void run() {
+			try {
+				Item item;
+				while((item = mEncodeStats.take(mInput)) != Item.END){
+					long start = System.nanoTime();
+					try {
+						encode(item.bitmap, item.job.getOutput());
+					} catch (IOException e) {
+						notifyFailed(mListener, item.job, e);
+						continue;
+					} finally {
+						releaseBitmap(item.bitmap);
+					}
+					mEncodeStats.addWork(System.nanoTime() - start);
+					if(mListener != null){
+						mListener.onJobCompleted(item.job);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	// Stage Utils
+
+	private Bitmap decode(ImageSource source) {
+		int width = source.getWidth();
+		int height = source.getHeight();
+		int sampleSize = 1;
+		if(mMaxImageSize > 0){
+			while(Math.max(width, height) / sampleSize > mMaxImageSize){
+				sampleSize *= 2;
+			}
+		}
+		return source.decodeRegion(new Rect(0, 0, width, height), sampleSize);
+	}
+
+	private void encode(Bitmap bitmap, File file) throws IOException {
+		OutputStream output = new FileOutputStream(file);
+		try {
+			if(!bitmap.compress(mFormat, mQuality, output)){
+				throw new IOException("Could not encode " + file);
+			}
+		} finally {
+			output.close();
+		}
+	}
+
+	private Bitmap obtainBitmap(int width, int height) {
+		BitmapPool pool = mBitmapPool;
+		if(pool != null){
+			return pool.getOrCreate(width, height, Bitmap.Config.ARGB_8888);
+		}
+		return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+	}
+
+	private void releaseBitmap(Bitmap bitmap) {
+		BitmapPool pool = mBitmapPool;
+		if(pool != null){
+			pool.put(bitmap);
+		}else{
+			bitmap.recycle();
+		}
+	}
+
+	private static void putEnd(BlockingQueue<Item> queue, int count) {
+		try {
+			for(int i = 0; i < count; i++){
+				queue.put(Item.END);
+			}
+		} catch (InterruptedException e) {
+			// The export is being torn down, nobody is waiting for the end
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void drain(BlockingQueue<Item> queue) {
+		Item item;
+		while((item = queue.poll()) != null){
+			if(item != Item.END){
+				item.bitmap.recycle();
+			}
+		}
+	}
+
+	private static void notifyFailed(OnJobCompletedListener listener, Job job, Exception error) {
+		if(listener != null){
+			listener.onJobFailed(job, error);
+		}
+	}
+
+	private static class Item {
+		static final Item END = new Item(null, null);
+
+		final Job job;
+		final Bitmap bitmap;
+
+		Item(Job job, Bitmap bitmap) {
+			this.job = job;
+			this.bitmap = bitmap;
+		}
+	}
+
+	private static class StageThreadFactory implements ThreadFactory {
+		private int mCount;
+
+		@Override
+		public synchronized Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, LOG_TAG + " #" + (++mCount));
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * One image to export.
+	 */
+	public static class Job {
+		private final ImageSource mSource;
+		private final File mOutput;
+
+		public Job(ImageSource source, File output) {
+			if(source == null || output == null){
+				throw new IllegalArgumentException("source and output cannot be null");
+			}
+			mSource = source;
+			mOutput = output;
+		}
+
+		public ImageSource getSource() {
+			return mSource;
+		}
+
+		public File getOutput() {
+			return mOutput;
+		}
+	}
+
+	/**
+	 * The timings of one pipeline stage, summed over its threads. Starved time is spent waiting for
+	 * the previous stage; blocked time is spent waiting for the next stage to make room, which is the
+	 * back-pressure of the stages after it.
+	 */
+	public static class StageStats {
+		private final String mName;
+		private final AtomicLong mItemCount = new AtomicLong();
+		private final AtomicLong mBusyNanos = new AtomicLong();
+		private final AtomicLong mStarvedNanos = new AtomicLong();
+		private final AtomicLong mBlockedNanos = new AtomicLong();
+
+		StageStats(String name) {
+			mName = name;
+		}
+
+		void reset() {
+			mItemCount.set(0);
+			mBusyNanos.set(0);
+			mStarvedNanos.set(0);
+			mBlockedNanos.set(0);
+		}
+
+		void addWork(long nanos) {
+			mItemCount.incrementAndGet();
+			mBusyNanos.addAndGet(nanos);
+		}
+
+		<T> T take(BlockingQueue<T> queue) throws InterruptedException {
+			long start = System.nanoTime();
+			T item = queue.take();
+			mStarvedNanos.addAndGet(System.nanoTime() - start);
+			return item;
+		}
+
+		<T> void put(BlockingQueue<T> queue, T item) throws InterruptedException {
+			long start = System.nanoTime();
+			queue.put(item);
+			mBlockedNanos.addAndGet(System.nanoTime() - start);
+		}
+
+		public String getName() {
+			return mName;
+		}
+
+		public long getItemCount() {
+			return mItemCount.get();
+		}
+
+		public long getBusyNanos() {
+			return mBusyNanos.get();
+		}
+
+		public long getStarvedNanos() {
+			return mStarvedNanos.get();
+		}
+
+		public long getBlockedNanos() {
+			return mBlockedNanos.get();
+		}
+
+		/**
+		 * @return Items per second of work, what the stage could sustain if it never waited.
+		 */
+		public double getThroughput() {
+			long busy = mBusyNanos.get();
+			return busy > 0 ? mItemCount.get() * 1e9 / busy : 0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %d items, %.1f/s, busy %d ms, starved %d ms, blocked %d ms", mName, getItemCount(),
+					getThroughput(), getBusyNanos() / 1000000, getStarvedNanos() / 1000000, getBlockedNanos() / 1000000);
+		}
+	}
+
+	/**
+	 * Interface for following an export job by job.
+	 */
+	public static interface OnJobCompletedListener {
+		public void onJobCompleted(Job job);
+
+		public void onJobFailed(Job job, Exception error);
+	}
+}
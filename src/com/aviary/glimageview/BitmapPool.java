@@ -0,0 +1,207 @@
+package com.aviary.glimageview;
+
+import java.util.ArrayList;
+
+import android.graphics.Bitmap;
+
+/**
+ * Keeps mutable bitmaps that are no longer displayed so they can be reused by the next decode or
+ * readback of the same size and config, instead of allocating a new one and leaving the old one to
+ * the garbage collector.
+ *
+ * Bitmaps put into the pool belong to it: once the pooled bitmaps would take more than the byte cap,
+ * the least recently pooled ones are recycled. Bitmaps that cannot be reused, because they are
+ * immutable, recycled or larger than the cap, are recycled right away. This class is thread safe.
+ */
+public class BitmapPool {
+
+	public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+	private static BitmapPool sDefault;
+
+	// Least recently pooled first
+	private final ArrayList<Bitmap> mBitmaps = new ArrayList<Bitmap>();
+	private long mMaxBytes;
+	private long mPooledBytes;
+	private long mHitCount;
+	private long mMissCount;
+	private long mEvictionCount;
+
+	public BitmapPool(long maxBytes) {
+		setMaxBytes(maxBytes);
+	}
+
+	/**
+	 * @return The pool shared by the image sources, progressive stages and readbacks that are not given one.
+	 */
+	public static synchronized BitmapPool getDefault() {
+		if(sDefault == null){
+			sDefault = new BitmapPool(DEFAULT_MAX_BYTES);
+		}
+		return sDefault;
+	}
+
+	/**
+	 * Takes a pooled bitmap out of the pool. Its contents are undefined.
+	 * @return A mutable bitmap of exactly the given size and config, or null if there is none.
+	 */
+	public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+		// The most recently pooled bitmaps are the likeliest to still be in the CPU caches
+		for(int i = mBitmaps.size() - 1; i >= 0; i--){
+			Bitmap bitmap = mBitmaps.get(i);
+			if(bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config){
+				mBitmaps.remove(i);
+				mPooledBytes -= getBytes(bitmap);
+				mHitCount++;
+				return bitmap;
+			}
+		}
+		mMissCount++;
+		return null;
+	}
+
+	/**
+	 * Same as {@link #get(int, int, Bitmap.Config)}, but allocates a new bitmap on a miss.
+	 */
+	public Bitmap getOrCreate(int width, int height, Bitmap.Config config) {
+		Bitmap bitmap = get(width, height, config);
+		if(bitmap == null){
+			bitmap = Bitmap.createBitmap(width, height, config);
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Gives a bitmap to the pool. The caller must not use it afterwards, as it may be handed out again
+	 * or recycled at any time.
+	 */
+	public void put(Bitmap bitmap) {
+		if(bitmap == null || bitmap.isRecycled()){
+			return;
+		}
+		long bytes = getBytes(bitmap);
+		ArrayList<Bitmap> evicted;
+		synchronized (this) {
+			if(!bitmap.isMutable() || bytes > mMaxBytes){
+				evicted = null;
+			}else{
+				if(mBitmaps.contains(bitmap)){
+					return;
+				}
+				mBitmaps.add(bitmap);
+				mPooledBytes += bytes;
+				evicted = evictTo(mMaxBytes);
+				bitmap = null;
+			}
+		}
+		if(bitmap != null){
+			bitmap.recycle();
+		}
+		recycle(evicted);
+	}
+
+	// Memory pressure
+
+	/**
+	 * Changes the cap, recycling the least recently pooled bitmaps if the new one is exceeded.
+	 */
+	public void setMaxBytes(long maxBytes) {
+		if(maxBytes < 0){
+			throw new IllegalArgumentException("maxBytes cannot be negative");
+		}
+		ArrayList<Bitmap> evicted;
+		synchronized (this) {
+			mMaxBytes = maxBytes;
+			evicted = evictTo(maxBytes);
+		}
+		recycle(evicted);
+	}
+
+	/**
+	 * Releases memory in response to ComponentCallbacks2.onTrimMemory, with the same levels as
+	 * {@link TextureManager#onTrimMemory(int)}.
+	 */
+	public void onTrimMemory(int level) {
+		long target;
+		if(level >= TextureManager.TRIM_MEMORY_RUNNING_CRITICAL){
+			target = 0;
+		}else if(level >= TextureManager.TRIM_MEMORY_RUNNING_LOW){
+			target = getMaxBytes() / 2;
+		}else if(level >= TextureManager.TRIM_MEMORY_RUNNING_MODERATE){
+			target = getMaxBytes() * 3 / 4;
+		}else{
+			return;
+		}
+		trimTo(target);
+	}
+
+	/**
+	 * Recycles the least recently pooled bitmaps until at most targetBytes are pooled.
+	 */
+	public void trimTo(long targetBytes) {
+		ArrayList<Bitmap> evicted;
+		synchronized (this) {
+			evicted = evictTo(targetBytes);
+		}
+		recycle(evicted);
+	}
+
+	public void clear() {
+		trimTo(0);
+	}
+
+	private ArrayList<Bitmap> evictTo(long targetBytes) {
+		ArrayList<Bitmap> evicted = null;
+		while(mPooledBytes > targetBytes && !mBitmaps.isEmpty()){
+			Bitmap bitmap = mBitmaps.remove(0);
+			mPooledBytes -= getBytes(bitmap);
+			mEvictionCount++;
+			if(evicted == null){
+				evicted = new ArrayList<Bitmap>();
+			}
+			evicted.add(bitmap);
+		}
+		return evicted;
+	}
+
+	// Recycling happens outside the lock, it frees native memory
+	private static void recycle(ArrayList<Bitmap> evicted) {
+		if(evicted == null){
+			return;
+		}
+		for(int i = 0; i < evicted.size(); i++){
+			evicted.get(i).recycle();
+		}
+	}
+
+	// getByteCount() needs API 12
+	private static long getBytes(Bitmap bitmap) {
+		return (long) bitmap.getRowBytes() * bitmap.getHeight();
+	}
+
+	// Stats
+
+	public synchronized long getMaxBytes() {
+		return mMaxBytes;
+	}
+
+	public synchronized long getPooledBytes() {
+		return mPooledBytes;
+	}
+
+	public synchronized int getBitmapCount() {
+		return mBitmaps.size();
+	}
+
+	public synchronized long getHitCount() {
+		return mHitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return mMissCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return mEvictionCount;
+	}
+}
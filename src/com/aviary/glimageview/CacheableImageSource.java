@@ -0,0 +1,13 @@
+package com.aviary.glimageview;
+
+/**
+ * An ImageSource whose decoded tiles can be kept in a {@link DiskTileCache} across runs.
+ */
+public interface CacheableImageSource extends ImageSource {
+
+	/**
+	 * @return A key that only this image's content maps to, for instance from
+	 * {@link CompressedTextureCache#hashContent}, or null if the tiles should not be cached.
+	 */
+	public String getCacheKey();
+}
@@ -0,0 +1,23 @@
+package com.aviary.glimageview;
+
+/**
+ * A GLImagingProgram whose output only depends on its image and on parameters it can summarize
+ * as a version number. Frames that only change the transform don't have to run such programs
+ * again: the renderer draws the texture the program already keeps its output in, or caches the
+ * output offscreen itself when the program has no such texture.
+ */
+public interface CacheableImagingProgram extends GLImagingProgram {
+
+	/**
+	 * @return A value that changes whenever a parameter that affects the rendered image changes.
+	 * Changes of the bitmap itself don't need to be reflected here.
+	 */
+	public long getParameterVersion();
+
+	/**
+	 * Brings the program output up to date without drawing it. Called on the GL thread.
+	 * @return The texture holding the output at the image's size, stored top down like an
+	 * uploaded bitmap and owned by the program, or 0 if the renderer has to cache the output.
+	 */
+	public int renderResultTexture();
+}
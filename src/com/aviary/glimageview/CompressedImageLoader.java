@@ -0,0 +1,139 @@
+package com.aviary.glimageview;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+/**
+ * Gets the ETC1 encoding of an image in the background: mapped from a {@link CompressedTextureCache}
+ * if it has an entry, otherwise encoded from a bitmap and stored for the next time. Starting a new
+ * load cancels the delivery of the previous one.
+ */
+public class CompressedImageLoader {
+
+	private static final String LOG_TAG = "CompressedImageLoader";
+
+	private final Executor mExecutor;
+	private final AtomicInteger mGeneration = new AtomicInteger();
+
+	public CompressedImageLoader() {
+		this(createDefaultExecutor());
+	}
+
+	public CompressedImageLoader(Executor executor) {
+		if(executor == null){
+			throw new IllegalArgumentException("executor cannot be null");
+		}
+		mExecutor = executor;
+	}
+
+	/**
+	 * Starts loading an image. The listener is called on the loader thread, and not at all if the
+	 * image could neither be read from the cache nor encoded.
+	 * @param cache Where the encoding is looked up and stored.
+	 * @param key The cache key of the image.
+	 * @param bitmap Encoded if the cache has no entry for the key. It must not change or be recycled
+	 * until the image is delivered. May be null if the cache is expected to have the entry.
+	 * @param listener Receives the image.
+	 */
+	public void load(final CompressedTextureCache cache, final String key, final Bitmap bitmap, final OnCompressedImageLoadedListener listener) {
+		if(cache == null || key == null || listener == null){
+			throw new IllegalArgumentException("cache, key and listener are required");
+		}
+
+		final int generation = mGeneration.incrementAndGet();
+		mExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if(mGeneration.get() != generation){
+					return;
+				}
+
+				Etc1Image image = null;
+				try {
+					image = cache.get(key);
+				} catch (IOException e) {
+					Log.w(LOG_TAG, "Could not read cached image " + key, e);
+				}
+
+				if(image == null){
+					if(bitmap == null || bitmap.isRecycled()){
+						return;
+					}
+					image = encode(bitmap);
+					try {
+						cache.put(key, image);
+					} catch (IOException e) {
+						Log.w(LOG_TAG, "Could not cache image " + key, e);
+					}
+				}
+
+				if(mGeneration.get() == generation){
+					listener.onCompressedImageLoaded(image);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Drops the delivery of the current load.
+	 */
+	public void cancel() {
+		mGeneration.incrementAndGet();
+	}
+
+	/**
+	 * Encodes a bitmap four rows at a time, so only one band of pixels is ever held as ints.
+	 * The alpha plane is dropped if every pixel turns out to be opaque.
+	 */
+	public static Etc1Image encode(Bitmap bitmap) {
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		int size = Etc1.getEncodedDataSize(width, height);
+		int[] band = new int[width * 4];
+		ByteBuffer color = Etc1Image.allocate(size);
+		ByteBuffer alpha = bitmap.hasAlpha() ? Etc1Image.allocate(size) : null;
+		boolean opaque = true;
+
+		for(int y = 0; y < height; y += 4){
+			int rows = Math.min(4, height - y);
+			bitmap.getPixels(band, 0, width, 0, y, width, rows);
+			Etc1.encodeBlockRow(band, 0, width, width, rows, false, color);
+			if(alpha != null){
+				for(int i = 0; i < width * rows && opaque; i++){
+					opaque = (band[i] >>> 24) == 0xFF;
+				}
+				Etc1.encodeBlockRow(band, 0, width, width, rows, true, alpha);
+			}
+		}
+
+		color.flip();
+		if(alpha != null){
+			alpha.flip();
+		}
+		return new Etc1Image(width, height, color, opaque ? null : alpha);
+	}
+
+	private static ExecutorService createDefaultExecutor() {
+		return Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, LOG_TAG);
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+	}
+
+	public static interface OnCompressedImageLoadedListener {
+		public void onCompressedImageLoaded(Etc1Image image);
+	}
+}
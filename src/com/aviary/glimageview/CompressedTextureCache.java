@@ -0,0 +1,265 @@
+package com.aviary.glimageview;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Keeps ETC1 encodings of images on disk, so reopening an image maps its compressed blocks straight
+ * from a file instead of decoding and encoding it again.
+ *
+ * Entries are looked up by a key, normally a hash of the source file's content from
+ * {@link #hashContent(InputStream)}. Every entry is one file: a header followed by the color and
+ * alpha blocks. Files are written under a temporary name and renamed once complete, so a crash
+ * never leaves a truncated entry behind. Once the files take more than the size cap, the least
+ * recently used ones are deleted. This class is pure Java and thread safe.
+ */
+public class CompressedTextureCache {
+
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+	private static final int MAGIC = 0x45544331; // "ETC1"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 24;
+	private static final int FLAG_ALPHA = 1;
+	private static final String SUFFIX = ".etc1";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final File mDirectory;
+	private long mMaxBytes;
+	private long mHitCount;
+	private long mMissCount;
+
+	public CompressedTextureCache(File directory, long maxBytes) {
+		if(directory == null){
+			throw new IllegalArgumentException("directory cannot be null");
+		}
+		if(maxBytes < 0){
+			throw new IllegalArgumentException("maxBytes cannot be negative");
+		}
+		mDirectory = directory;
+		mMaxBytes = maxBytes;
+	}
+
+	/**
+	 * @return The SHA-1 of a stream's content as hex, a key that stays the same across runs for the
+	 * same file. The stream is read to the end but not closed.
+	 */
+	public static String hashContent(InputStream stream) throws IOException {
+		MessageDigest digest = createDigest();
+		byte[] buffer = new byte[16 * 1024];
+		int count;
+		while((count = stream.read(buffer)) != -1){
+			digest.update(buffer, 0, count);
+		}
+		return toHex(digest.digest());
+	}
+
+	public synchronized boolean contains(String key) {
+		return getFile(key).exists();
+	}
+
+	/**
+	 * Maps an entry. The returned image stays valid after the entry is evicted.
+	 * @return The image, or null if there is no entry for the key.
+	 */
+	public synchronized Etc1Image get(String key) throws IOException {
+		File file = getFile(key);
+		if(!file.exists()){
+			mMissCount++;
+			return null;
+		}
+
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		Etc1Image image;
+		try {
+			// The mapping stays valid once the file is closed
+			MappedByteBuffer data = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+			image = readImage(data);
+		} finally {
+			input.close();
+		}
+		if(image == null){
+			file.delete();
+			mMissCount++;
+			return null;
+		}
+
+		file.setLastModified(System.currentTimeMillis());
+		mHitCount++;
+		return image;
+	}
+
+	/**
+	 * Stores an entry, replacing any previous one for the key, then evicts entries over the cap.
+	 */
+	public void put(String key, Etc1Image image) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(image.getWidth());
+		header.putInt(image.getHeight());
+		header.putInt(image.hasAlpha() ? FLAG_ALPHA : 0);
+		header.putInt(0);
+		header.flip();
+
+		synchronized (this) {
+			if(!mDirectory.isDirectory() && !mDirectory.mkdirs()){
+				throw new IOException("Cannot create " + mDirectory);
+			}
+			File file = getFile(key);
+			File temp = new File(mDirectory, file.getName() + TEMP_SUFFIX);
+			FileOutputStream output = new FileOutputStream(temp);
+			try {
+				FileChannel channel = output.getChannel();
+				writeFully(channel, header);
+				writeFully(channel, image.getColorData().duplicate());
+				if(image.hasAlpha()){
+					writeFully(channel, image.getAlphaData().duplicate());
+				}
+				// The data has to be on disk before the rename makes the entry visible
+				output.getFD().sync();
+			} finally {
+				output.close();
+			}
+			if(!temp.renameTo(file)){
+				temp.delete();
+				throw new IOException("Cannot rename " + temp + " to " + file);
+			}
+			trimTo(mMaxBytes);
+		}
+	}
+
+	public synchronized void remove(String key) {
+		getFile(key).delete();
+	}
+
+	public synchronized void setMaxBytes(long maxBytes) {
+		if(maxBytes < 0){
+			throw new IllegalArgumentException("maxBytes cannot be negative");
+		}
+		mMaxBytes = maxBytes;
+		trimTo(maxBytes);
+	}
+
+	/**
+	 * Deletes the least recently used entries until at most targetBytes are on disk. Leftovers of
+	 * interrupted writes are deleted too.
+	 */
+	public synchronized void trimTo(long targetBytes) {
+		File[] files = mDirectory.listFiles();
+		if(files == null){
+			return;
+		}
+		long totalBytes = 0;
+		int count = 0;
+		for(int i = 0; i < files.length; i++){
+			String name = files[i].getName();
+			if(name.endsWith(TEMP_SUFFIX)){
+				files[i].delete();
+			}else if(name.endsWith(SUFFIX)){
+				files[count++] = files[i];
+				totalBytes += files[i].length();
+			}
+		}
+
+		File[] entries = new File[count];
+		System.arraycopy(files, 0, entries, 0, count);
+		Arrays.sort(entries, new Comparator<File>() {
+			@Override
+			public int compare(File a, File b) {
+				long difference = a.lastModified() - b.lastModified();
+				return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+			}
+		});
+		for(int i = 0; i < entries.length && totalBytes > targetBytes; i++){
+			long length = entries[i].length();
+			if(entries[i].delete()){
+				totalBytes -= length;
+			}
+		}
+	}
+
+	public synchronized long getHitCount() {
+		return mHitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return mMissCount;
+	}
+
+	private static Etc1Image readImage(MappedByteBuffer data) {
+		if(data.capacity() < HEADER_SIZE){
+			return null;
+		}
+		data.order(ByteOrder.BIG_ENDIAN);
+		if(data.getInt(0) != MAGIC || data.getInt(4) != VERSION){
+			return null;
+		}
+		int width = data.getInt(8);
+		int height = data.getInt(12);
+		boolean alpha = (data.getInt(16) & FLAG_ALPHA) != 0;
+		if(width <= 0 || height <= 0){
+			return null;
+		}
+		long size = Etc1.getEncodedDataSize(width, height);
+		if(data.capacity() != HEADER_SIZE + size * (alpha ? 2 : 1)){
+			return null;
+		}
+
+		data.position(HEADER_SIZE);
+		data.limit((int) (HEADER_SIZE + size));
+		ByteBuffer color = data.slice();
+		ByteBuffer alphaData = null;
+		if(alpha){
+			data.limit(data.capacity());
+			data.position((int) (HEADER_SIZE + size));
+			alphaData = data.slice();
+		}
+		return new Etc1Image(width, height, color, alphaData);
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+	}
+
+	// Keys can be anything, hashing them gives safe file names
+	private File getFile(String key) {
+		MessageDigest digest = createDigest();
+		try {
+			return new File(mDirectory, toHex(digest.digest(key.getBytes("UTF-8"))) + SUFFIX);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 not available", e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder builder = new StringBuilder(bytes.length * 2);
+		for(int i = 0; i < bytes.length; i++){
+			builder.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+			builder.append(Character.forDigit(bytes[i] & 0xF, 16));
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,19 @@
+package com.aviary.glimageview;
+
+/**
+ * A GLImagingProgram that can display an image from ETC1 compressed textures, which take an eighth
+ * of the GPU memory of RGBA, or a quarter with a separate alpha plane.
+ */
+public interface CompressedTextureProgram extends GLImagingProgram {
+
+	/**
+	 * @return Whether the current context supports GL_OES_compressed_ETC1_RGB8_texture. Only valid
+	 * after setup.
+	 */
+	public boolean isEtc1Supported();
+
+	/**
+	 * Same as setBitmap, with the image already encoded. Must only be called if ETC1 is supported.
+	 */
+	public void setCompressedImage(Etc1Image image);
+}
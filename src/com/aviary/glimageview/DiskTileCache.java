@@ -0,0 +1,386 @@
+package com.aviary.glimageview;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps decoded tiles on disk as raw RGBA, so reopening a large image maps its tiles from a file
+ * instead of decoding the JPEG again. The mapped pixels can be passed straight to glTexImage2D.
+ *
+ * Tiles live in fixed size slots of one data file, which is capped at a number of slots; once it is
+ * full the least recently used tile is overwritten. Every slot starts with a header naming its tile,
+ * which is cleared and synced before the pixels are overwritten and written last, so a crash can
+ * lose tiles but never return the wrong pixels. The index of the slots is an accelerator, rewritten
+ * atomically by {@link #flush()}; tiles it lists whose slot header does not match are dropped.
+ *
+ * This class is pure Java and thread safe.
+ */
+public class DiskTileCache {
+
+	public static final long DEFAULT_MAX_BYTES = 128L * 1024 * 1024;
+
+	private static final String DATA_FILE = "tiles.dat";
+	private static final String INDEX_FILE = "tiles.idx";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final int MAGIC = 0x54494C45; // "TILE"
+	private static final int VERSION = 1;
+	private static final int SLOT_HEADER_SIZE = 32;
+	private static final int BYTES_PER_PIXEL = 4;
+	private static final int PUTS_PER_FLUSH = 32;
+
+	private final File mDirectory;
+	private final int mTileSize;
+	private final int mSlotSize;
+	private final int mSlotCount;
+	private final RandomAccessFile mDataFile;
+	private final FileChannel mChannel;
+
+	// Iteration order is least recently used first
+	private final LinkedHashMap<Long, Entry> mEntries = new LinkedHashMap<Long, Entry>(16, 0.75f, true);
+	private final ArrayList<Integer> mFreeSlots = new ArrayList<Integer>();
+	private int mPutsSinceFlush;
+	private boolean mClosed;
+	private long mHitCount;
+	private long mMissCount;
+	private long mEvictionCount;
+
+	/**
+	 * Opens the cache in a directory, picking up the tiles of a previous run if it used the same tile size.
+	 * @param tileSize The largest tile width and height.
+	 * @param maxBytes The most disk space taken by tiles.
+	 */
+	public DiskTileCache(File directory, int tileSize, long maxBytes) throws IOException {
+		if(tileSize <= 0){
+			throw new IllegalArgumentException("tileSize must be positive");
+		}
+		mDirectory = directory;
+		mTileSize = tileSize;
+		mSlotSize = SLOT_HEADER_SIZE + tileSize * tileSize * BYTES_PER_PIXEL;
+		mSlotCount = (int) Math.max(1, Math.min(Integer.MAX_VALUE / mSlotSize, maxBytes / mSlotSize));
+
+		if(!directory.isDirectory() && !directory.mkdirs()){
+			throw new IOException("Cannot create " + directory);
+		}
+		mDataFile = new RandomAccessFile(new File(directory, DATA_FILE), "rw");
+		mChannel = mDataFile.getChannel();
+		mDataFile.setLength((long) mSlotCount * mSlotSize);
+
+		if(!readIndex()){
+			mEntries.clear();
+		}
+		boolean[] used = new boolean[mSlotCount];
+		for(Entry entry : mEntries.values()){
+			used[entry.slot] = true;
+		}
+		for(int slot = mSlotCount - 1; slot >= 0; slot--){
+			if(!used[slot]){
+				mFreeSlots.add(slot);
+			}
+		}
+	}
+
+	/**
+	 * @param sourceKey Identifies the image, see {@link CompressedTextureCache#hashContent}.
+	 * @param tileSize The tile size of the pyramid, which decides what a column and row cover.
+	 * @param gutter The neighbouring pixels stored around each tile, see {@link TilePyramid#GUTTER}.
+	 * @return The key of a tile.
+	 */
+	public static long tileKey(String sourceKey, int tileSize, int gutter, int level, int column, int row) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 not available", e);
+		}
+		byte[] hash;
+		try {
+			hash = digest.digest((sourceKey + "/" + tileSize + "/" + gutter + "/" + level + "/" + column + "/" + row).getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		long key = 0;
+		for(int i = 0; i < 8; i++){
+			key = (key << 8) | (hash[i] & 0xFF);
+		}
+		return key;
+	}
+
+	public int getTileSize() {
+		return mTileSize;
+	}
+
+	/**
+	 * Maps a tile. The tile's slot is not reused until the tile is released.
+	 * @return The tile, or null if it is not cached.
+	 */
+	public synchronized Tile get(long key) throws IOException {
+		Entry entry = mEntries.get(key);
+		if(entry == null || mClosed){
+			mMissCount++;
+			return null;
+		}
+
+		MappedByteBuffer slot = mChannel.map(FileChannel.MapMode.READ_ONLY, (long) entry.slot * mSlotSize, mSlotSize);
+		if(slot.getInt(0) != MAGIC || slot.getLong(4) != key || slot.getInt(12) != entry.width || slot.getInt(16) != entry.height){
+			// The index outlived the slot, see the class comment
+			mEntries.remove(key);
+			mFreeSlots.add(entry.slot);
+			mMissCount++;
+			return null;
+		}
+
+		// Fault the pages in here, so the caller's thread waits for the disk instead of the GL thread
+		slot.load();
+		slot.position(SLOT_HEADER_SIZE);
+		slot.limit(SLOT_HEADER_SIZE + entry.width * entry.height * BYTES_PER_PIXEL);
+		entry.pins++;
+		mHitCount++;
+		return new Tile(this, entry, slot.slice());
+	}
+
+	/**
+	 * Stores a tile, overwriting the least recently used unpinned one if the cache is full.
+	 * @param pixels width * height RGBA pixels from its position, premultiplied like a Bitmap.
+	 * @return false if the tile is larger than the tile size or every slot is pinned.
+	 */
+	public synchronized boolean put(long key, int width, int height, ByteBuffer pixels) throws IOException {
+		int size = width * height * BYTES_PER_PIXEL;
+		if(mClosed || width > mTileSize || height > mTileSize || pixels.remaining() < size){
+			return false;
+		}
+		Entry existing = mEntries.get(key);
+		if(existing != null){
+			if(existing.pins > 0){
+				return false;
+			}
+			mEntries.remove(key);
+			mFreeSlots.add(existing.slot);
+		}
+		int slotIndex = allocateSlot();
+		if(slotIndex < 0){
+			return false;
+		}
+
+		MappedByteBuffer slot = mChannel.map(FileChannel.MapMode.READ_WRITE, (long) slotIndex * mSlotSize, mSlotSize);
+		// Make the slot invalid on disk before its pixels change
+		slot.putInt(0, 0);
+		slot.force();
+
+		ByteBuffer source = pixels.duplicate();
+		source.limit(source.position() + size);
+		slot.position(SLOT_HEADER_SIZE);
+		slot.put(source);
+		slot.putLong(4, key);
+		slot.putInt(12, width);
+		slot.putInt(16, height);
+		slot.force();
+		slot.putInt(0, MAGIC);
+		slot.force();
+
+		mEntries.put(key, new Entry(key, slotIndex, width, height));
+		if(++mPutsSinceFlush >= PUTS_PER_FLUSH){
+			flush();
+		}
+		return true;
+	}
+
+	private int allocateSlot() {
+		if(!mFreeSlots.isEmpty()){
+			return mFreeSlots.remove(mFreeSlots.size() - 1);
+		}
+		Iterator<Entry> iterator = mEntries.values().iterator();
+		while(iterator.hasNext()){
+			Entry entry = iterator.next();
+			if(entry.pins == 0){
+				iterator.remove();
+				mEvictionCount++;
+				return entry.slot;
+			}
+		}
+		return -1;
+	}
+
+	private synchronized void release(Entry entry) {
+		entry.pins--;
+	}
+
+	// Index
+
+	/**
+	 * Writes the index, under a temporary name first so a crash leaves the previous one intact.
+	 */
+	public synchronized void flush() throws IOException {
+		if(mClosed){
+			return;
+		}
+		mPutsSinceFlush = 0;
+		File index = new File(mDirectory, INDEX_FILE);
+		File temp = new File(mDirectory, INDEX_FILE + TEMP_SUFFIX);
+		FileOutputStream stream = new FileOutputStream(temp);
+		try {
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream));
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(mTileSize);
+			output.writeInt(mSlotCount);
+			output.writeInt(mEntries.size());
+			// Least recently used first, so reading the index back restores the order
+			for(Entry entry : mEntries.values()){
+				output.writeLong(entry.key);
+				output.writeInt(entry.slot);
+				output.writeInt(entry.width);
+				output.writeInt(entry.height);
+			}
+			output.flush();
+			stream.getFD().sync();
+		} finally {
+			stream.close();
+		}
+		if(!temp.renameTo(index)){
+			temp.delete();
+			throw new IOException("Cannot rename " + temp + " to " + index);
+		}
+	}
+
+	private boolean readIndex() throws IOException {
+		File index = new File(mDirectory, INDEX_FILE);
+		if(!index.exists()){
+			return false;
+		}
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(index)));
+		try {
+			if(input.readInt() != MAGIC || input.readInt() != VERSION || input.readInt() != mTileSize
+					|| input.readInt() != mSlotCount){
+				return false;
+			}
+			int count = input.readInt();
+			boolean[] used = new boolean[mSlotCount];
+			for(int i = 0; i < count; i++){
+				long key = input.readLong();
+				int slot = input.readInt();
+				int width = input.readInt();
+				int height = input.readInt();
+				if(slot < 0 || slot >= mSlotCount || width <= 0 || height <= 0 || width > mTileSize || height > mTileSize){
+					return false;
+				}
+				if(used[slot]){
+					return false;
+				}
+				used[slot] = true;
+				mEntries.put(key, new Entry(key, slot, width, height));
+			}
+			return true;
+		} catch (IOException e) {
+			// A torn index only costs the cached tiles
+			return false;
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Writes the index and closes the data file. Tiles that are still mapped stay readable.
+	 */
+	public synchronized void close() throws IOException {
+		if(mClosed){
+			return;
+		}
+		try {
+			flush();
+		} finally {
+			mClosed = true;
+			mDataFile.close();
+		}
+	}
+
+	// Stats
+
+	public synchronized int getTileCount() {
+		return mEntries.size();
+	}
+
+	public synchronized long getHitCount() {
+		return mHitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return mMissCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return mEvictionCount;
+	}
+
+	private static final class Entry {
+		final long key;
+		final int slot;
+		final int width;
+		final int height;
+		int pins;
+
+		Entry(long key, int slot, int width, int height) {
+			this.key = key;
+			this.slot = slot;
+			this.width = width;
+			this.height = height;
+		}
+	}
+
+	/**
+	 * The mapped pixels of a cached tile.
+	 */
+	public static final class Tile {
+
+		private final DiskTileCache mCache;
+		private final Entry mEntry;
+		private final ByteBuffer mPixels;
+		private boolean mReleased;
+
+		Tile(DiskTileCache cache, Entry entry, ByteBuffer pixels) {
+			mCache = cache;
+			mEntry = entry;
+			mPixels = pixels;
+		}
+
+		public int getWidth() {
+			return mEntry.width;
+		}
+
+		public int getHeight() {
+			return mEntry.height;
+		}
+
+		/**
+		 * @return width * height RGBA pixels, only valid until the tile is released.
+		 */
+		public ByteBuffer getPixels() {
+			return mPixels;
+		}
+
+		/**
+		 * Lets the cache reuse the tile's slot.
+		 */
+		public void release() {
+			if(!mReleased){
+				mReleased = true;
+				mCache.release(mEntry);
+			}
+		}
+	}
+}
@@ -0,0 +1,332 @@
+package com.aviary.glimageview;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes ETC1 compressed pixels, the format of GL_ETC1_RGB8_OES textures: every 4x4
+ * block of pixels becomes 8 bytes, 6 times smaller than ARGB_8888. ETC1 has no alpha channel, so
+ * the alpha of translucent images is encoded as a second, gray ETC1 image.
+ *
+ * The encoder tries both block orientations and both base color modes and keeps the one with the
+ * least squared error. Images are processed a row of blocks at a time, so they can be encoded from
+ * bands of pixels without holding the whole image as ints. This class is pure Java.
+ */
+public final class Etc1 {
+
+	/** Bytes per 4x4 block */
+	public static final int BLOCK_SIZE = 8;
+
+	// The small and large intensity modifiers of every table, applied with either sign
+	private static final int[][] MODIFIERS = {
+		{ 2, 8 }, { 5, 17 }, { 9, 29 }, { 13, 42 }, { 18, 60 }, { 24, 80 }, { 33, 106 }, { 47, 183 }
+	};
+
+	private Etc1() {
+	}
+
+	/**
+	 * @return The size in bytes of an encoded image, the imageSize of glCompressedTexImage2D.
+	 */
+	public static int getEncodedDataSize(int width, int height) {
+		return ((width + 3) / 4) * ((height + 3) / 4) * BLOCK_SIZE;
+	}
+
+	/**
+	 * Encodes a whole image.
+	 * @param pixels ARGB pixels, row after row.
+	 * @param alpha Whether to encode the alpha channel as gray instead of the color.
+	 * @param out Receives {@link #getEncodedDataSize(int, int)} bytes at its position.
+	 */
+	public static void encodeImage(int[] pixels, int width, int height, boolean alpha, ByteBuffer out) {
+		for(int y = 0; y < height; y += 4){
+			encodeBlockRow(pixels, y * width, width, width, Math.min(4, height - y), alpha, out);
+		}
+	}
+
+	/**
+	 * Encodes one row of blocks. Blocks that stick out of the image repeat its last column and row.
+	 * @param pixels ARGB pixels.
+	 * @param offset Index of the first pixel of the band.
+	 * @param stride Distance between the rows of the band.
+	 * @param width The image width.
+	 * @param rows The number of rows in the band, 1 to 4.
+	 * @param alpha Whether to encode the alpha channel as gray instead of the color.
+	 * @param out Receives the blocks at its position.
+	 */
+	public static void encodeBlockRow(int[] pixels, int offset, int stride, int width, int rows, boolean alpha, ByteBuffer out) {
+		if(rows < 1 || rows > 4){
+			throw new IllegalArgumentException("rows must be between 1 and 4");
+		}
+		BlockEncoder encoder = new BlockEncoder();
+		for(int blockX = 0; blockX < width; blockX += 4){
+			for(int p = 0; p < 16; p++){
+				int x = Math.min(blockX + p / 4, width - 1);
+				int y = Math.min(p % 4, rows - 1);
+				int pixel = pixels[offset + y * stride + x];
+				if(alpha){
+					int a = pixel >>> 24;
+					encoder.mRed[p] = a;
+					encoder.mGreen[p] = a;
+					encoder.mBlue[p] = a;
+				}else{
+					encoder.mRed[p] = (pixel >> 16) & 0xFF;
+					encoder.mGreen[p] = (pixel >> 8) & 0xFF;
+					encoder.mBlue[p] = pixel & 0xFF;
+				}
+			}
+			putBlock(out, encoder.encode());
+		}
+	}
+
+	/**
+	 * Decodes a whole image into opaque ARGB pixels, or into their alpha only.
+	 * @param alpha Whether the image is a gray alpha plane, whose values replace the alpha of pixels.
+	 */
+	public static void decodeImage(ByteBuffer in, int width, int height, boolean alpha, int[] pixels) {
+		for(int y = 0; y < height; y += 4){
+			decodeBlockRow(in, width, Math.min(4, height - y), alpha, pixels, y * width, width);
+		}
+	}
+
+	/**
+	 * Decodes one row of blocks, the inverse of
+	 * {@link #encodeBlockRow(int[], int, int, int, int, boolean, ByteBuffer)}.
+	 */
+	public static void decodeBlockRow(ByteBuffer in, int width, int rows, boolean alpha, int[] pixels, int offset, int stride) {
+		int[] colors = new int[16];
+		for(int blockX = 0; blockX < width; blockX += 4){
+			decodeBlock(getBlock(in), colors);
+			for(int p = 0; p < 16; p++){
+				int x = blockX + p / 4;
+				int y = p % 4;
+				if(x >= width || y >= rows){
+					continue;
+				}
+				int index = offset + y * stride + x;
+				if(alpha){
+					pixels[index] = (pixels[index] & 0x00FFFFFF) | ((colors[p] >> 16) & 0xFF) << 24;
+				}else{
+					pixels[index] = colors[p];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decodes a block into 16 opaque ARGB colors, in column-major order: colors[x * 4 + y].
+	 */
+	public static void decodeBlock(long block, int[] colors) {
+		int high = (int) (block >>> 32);
+		int low = (int) block;
+		boolean flip = (high & 1) != 0;
+
+		int r1, g1, b1, r2, g2, b2;
+		if((high & 2) != 0){
+			int r = (high >>> 27) & 31;
+			int g = (high >>> 19) & 31;
+			int b = (high >>> 11) & 31;
+			r1 = expand5(r);
+			g1 = expand5(g);
+			b1 = expand5(b);
+			r2 = expand5(r + signExtend3(high >>> 24));
+			g2 = expand5(g + signExtend3(high >>> 16));
+			b2 = expand5(b + signExtend3(high >>> 8));
+		}else{
+			r1 = expand4(high >>> 28);
+			r2 = expand4(high >>> 24);
+			g1 = expand4(high >>> 20);
+			g2 = expand4(high >>> 16);
+			b1 = expand4(high >>> 12);
+			b2 = expand4(high >>> 8);
+		}
+		int[] table1 = MODIFIERS[(high >>> 5) & 7];
+		int[] table2 = MODIFIERS[(high >>> 2) & 7];
+
+		for(int p = 0; p < 16; p++){
+			boolean second = flip ? (p % 4) >= 2 : p >= 8;
+			int index = ((low >>> (15 + p)) & 2) | ((low >>> p) & 1);
+			int modifier = (second ? table2 : table1)[index & 1];
+			if(index >= 2){
+				modifier = -modifier;
+			}
+			int r = clamp((second ? r2 : r1) + modifier);
+			int g = clamp((second ? g2 : g1) + modifier);
+			int b = clamp((second ? b2 : b1) + modifier);
+			colors[p] = 0xFF000000 | (r << 16) | (g << 8) | b;
+		}
+	}
+
+	/**
+	 * @return The peak signal to noise ratio between the RGB channels of two images, in dB, or
+	 * positive infinity if they are identical.
+	 */
+	public static double computePsnr(int[] expected, int[] actual, int count) {
+		double squaredError = 0;
+		for(int i = 0; i < count; i++){
+			int a = expected[i];
+			int b = actual[i];
+			int dr = ((a >> 16) & 0xFF) - ((b >> 16) & 0xFF);
+			int dg = ((a >> 8) & 0xFF) - ((b >> 8) & 0xFF);
+			int db = (a & 0xFF) - (b & 0xFF);
+			squaredError += dr * dr + dg * dg + db * db;
+		}
+		if(squaredError == 0){
+			return Double.POSITIVE_INFINITY;
+		}
+		double meanSquaredError = squaredError / (3.0 * count);
+		return 10.0 * Math.log10(255.0 * 255.0 / meanSquaredError);
+	}
+
+	// Blocks are stored as big endian 64 bit words
+	private static void putBlock(ByteBuffer out, long block) {
+		for(int shift = 56; shift >= 0; shift -= 8){
+			out.put((byte) (block >>> shift));
+		}
+	}
+
+	private static long getBlock(ByteBuffer in) {
+		long block = 0;
+		for(int i = 0; i < BLOCK_SIZE; i++){
+			block = (block << 8) | (in.get() & 0xFF);
+		}
+		return block;
+	}
+
+	static int expand4(int value) {
+		return (value & 15) * 17;
+	}
+
+	static int expand5(int value) {
+		value &= 31;
+		return (value << 3) | (value >> 2);
+	}
+
+	private static int signExtend3(int value) {
+		value &= 7;
+		return value >= 4 ? value - 8 : value;
+	}
+
+	private static int clamp(int value) {
+		return value < 0 ? 0 : (value > 255 ? 255 : value);
+	}
+
+	/**
+	 * Searches the encodings of one block. The pixels are stored in column-major order, like the
+	 * pixel indices of the block.
+	 */
+	private static final class BlockEncoder {
+
+		final int[] mRed = new int[16];
+		final int[] mGreen = new int[16];
+		final int[] mBlue = new int[16];
+
+		// Result of the last encodeSubblock
+		private int mTable;
+		private int mIndexBits;
+
+		long encode() {
+			long best = 0;
+			long bestError = Long.MAX_VALUE;
+			for(int flip = 0; flip < 2; flip++){
+				int[] average1 = average(flip == 1, false);
+				int[] average2 = average(flip == 1, true);
+
+				// Differential mode: 5 bit colors, the second within -4..3 of the first
+				int r1 = quantize(average1[0], 31), g1 = quantize(average1[1], 31), b1 = quantize(average1[2], 31);
+				int r2 = quantize(average2[0], 31), g2 = quantize(average2[1], 31), b2 = quantize(average2[2], 31);
+				int dr = r2 - r1, dg = g2 - g1, db = b2 - b1;
+				if(dr >= -4 && dr <= 3 && dg >= -4 && dg <= 3 && db >= -4 && db <= 3){
+					long error = encodeSubblock(flip == 1, false, expand5(r1), expand5(g1), expand5(b1));
+					int table1 = mTable, bits1 = mIndexBits;
+					error += encodeSubblock(flip == 1, true, expand5(r2), expand5(g2), expand5(b2));
+					if(error < bestError){
+						bestError = error;
+						int high = (r1 << 27) | ((dr & 7) << 24) | (g1 << 19) | ((dg & 7) << 16) | (b1 << 11) | ((db & 7) << 8)
+								| (table1 << 5) | (mTable << 2) | 2 | flip;
+						best = ((long) high << 32) | ((bits1 | mIndexBits) & 0xFFFFFFFFL);
+					}
+				}
+
+				// Individual mode: two independent 4 bit colors
+				r1 = quantize(average1[0], 15);
+				g1 = quantize(average1[1], 15);
+				b1 = quantize(average1[2], 15);
+				r2 = quantize(average2[0], 15);
+				g2 = quantize(average2[1], 15);
+				b2 = quantize(average2[2], 15);
+				long error = encodeSubblock(flip == 1, false, expand4(r1), expand4(g1), expand4(b1));
+				int table1 = mTable, bits1 = mIndexBits;
+				error += encodeSubblock(flip == 1, true, expand4(r2), expand4(g2), expand4(b2));
+				if(error < bestError){
+					bestError = error;
+					int high = (r1 << 28) | (r2 << 24) | (g1 << 20) | (g2 << 16) | (b1 << 12) | (b2 << 8)
+							| (table1 << 5) | (mTable << 2) | flip;
+					best = ((long) high << 32) | ((bits1 | mIndexBits) & 0xFFFFFFFFL);
+				}
+			}
+			return best;
+		}
+
+		private int[] average(boolean flip, boolean second) {
+			int r = 0, g = 0, b = 0;
+			for(int p = 0; p < 16; p++){
+				if(inSubblock(p, flip, second)){
+					r += mRed[p];
+					g += mGreen[p];
+					b += mBlue[p];
+				}
+			}
+			return new int[] { r / 8, g / 8, b / 8 };
+		}
+
+		/**
+		 * Picks the modifier table and the modifier of every pixel that best fit a subblock around
+		 * a base color.
+		 * @return The squared error, with the table in mTable and the pixel indices in mIndexBits.
+		 */
+		private long encodeSubblock(boolean flip, boolean second, int baseRed, int baseGreen, int baseBlue) {
+			long bestError = Long.MAX_VALUE;
+			for(int table = 0; table < MODIFIERS.length; table++){
+				long error = 0;
+				int bits = 0;
+				for(int p = 0; p < 16 && error < bestError; p++){
+					if(!inSubblock(p, flip, second)){
+						continue;
+					}
+					int bestIndex = 0;
+					int bestPixelError = Integer.MAX_VALUE;
+					for(int index = 0; index < 4; index++){
+						int modifier = MODIFIERS[table][index & 1];
+						if(index >= 2){
+							modifier = -modifier;
+						}
+						int dr = clamp(baseRed + modifier) - mRed[p];
+						int dg = clamp(baseGreen + modifier) - mGreen[p];
+						int db = clamp(baseBlue + modifier) - mBlue[p];
+						int pixelError = dr * dr + dg * dg + db * db;
+						if(pixelError < bestPixelError){
+							bestPixelError = pixelError;
+							bestIndex = index;
+						}
+					}
+					error += bestPixelError;
+					bits |= ((bestIndex >> 1) << (16 + p)) | ((bestIndex & 1) << p);
+				}
+				if(error < bestError){
+					bestError = error;
+					mTable = table;
+					mIndexBits = bits;
+				}
+			}
+			return bestError;
+		}
+
+		private static boolean inSubblock(int p, boolean flip, boolean second) {
+			return (flip ? (p % 4) >= 2 : p >= 8) == second;
+		}
+
+		private static int quantize(int value, int max) {
+			return (value * max + 127) / 255;
+		}
+	}
+}
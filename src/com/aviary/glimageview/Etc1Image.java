@@ -0,0 +1,108 @@
+package com.aviary.glimageview;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An image encoded as ETC1 blocks, with its alpha as a second, gray ETC1 image if it is translucent.
+ * The data buffers may be memory mapped from a {@link CompressedTextureCache}. This class is pure Java.
+ */
+public final class Etc1Image {
+
+	private final int mWidth;
+	private final int mHeight;
+	private final ByteBuffer mColorData;
+	private final ByteBuffer mAlphaData;
+
+	/**
+	 * @param colorData The encoded color, {@link Etc1#getEncodedDataSize(int, int)} bytes.
+	 * @param alphaData The encoded alpha of the same size, or null if the image is opaque.
+	 */
+	public Etc1Image(int width, int height, ByteBuffer colorData, ByteBuffer alphaData) {
+		int size = Etc1.getEncodedDataSize(width, height);
+		if(width <= 0 || height <= 0){
+			throw new IllegalArgumentException("width and height must be positive");
+		}
+		if(colorData.remaining() != size || (alphaData != null && alphaData.remaining() != size)){
+			throw new IllegalArgumentException("data must be " + size + " bytes for " + width + "x" + height);
+		}
+		mWidth = width;
+		mHeight = height;
+		mColorData = colorData;
+		mAlphaData = alphaData;
+	}
+
+	/**
+	 * Encodes ARGB pixels. The alpha plane is only kept if a pixel is not opaque.
+	 * @param pixels Row after row.
+	 */
+	public static Etc1Image encode(int[] pixels, int width, int height) {
+		boolean opaque = true;
+		for(int i = 0; i < width * height && opaque; i++){
+			opaque = (pixels[i] >>> 24) == 0xFF;
+		}
+		int size = Etc1.getEncodedDataSize(width, height);
+		ByteBuffer color = allocate(size);
+		Etc1.encodeImage(pixels, width, height, false, color);
+		color.flip();
+		ByteBuffer alpha = null;
+		if(!opaque){
+			alpha = allocate(size);
+			Etc1.encodeImage(pixels, width, height, true, alpha);
+			alpha.flip();
+		}
+		return new Etc1Image(width, height, color, alpha);
+	}
+
+	/**
+	 * @return A direct buffer, which glCompressedTexImage2D can read without a copy.
+	 */
+	static ByteBuffer allocate(int size) {
+		return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Decodes the image back into ARGB pixels, row after row.
+	 */
+	public int[] decode() {
+		int[] pixels = new int[mWidth * mHeight];
+		Etc1.decodeImage(mColorData.duplicate(), mWidth, mHeight, false, pixels);
+		if(mAlphaData != null){
+			Etc1.decodeImage(mAlphaData.duplicate(), mWidth, mHeight, true, pixels);
+		}
+		return pixels;
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	public int getHeight() {
+		return mHeight;
+	}
+
+	/**
+	 * @return The encoded color. Read it through duplicate() to keep its position.
+	 */
+	public ByteBuffer getColorData() {
+		return mColorData;
+	}
+
+	/**
+	 * @return The encoded alpha, or null if the image is opaque.
+	 */
+	public ByteBuffer getAlphaData() {
+		return mAlphaData;
+	}
+
+	public boolean hasAlpha() {
+		return mAlphaData != null;
+	}
+
+	/**
+	 * @return The GPU memory taken by the textures of the image.
+	 */
+	public long getByteCount() {
+		return (long) mColorData.remaining() + (mAlphaData != null ? mAlphaData.remaining() : 0);
+	}
+}
@@ -0,0 +1,343 @@
+package com.aviary.glimageview;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+import android.opengl.GLES20;
+
+import com.aviary.glimageview.filter.FilterGraph;
+import com.aviary.glimageview.filter.FilterNode;
+import com.aviary.glimageview.filter.FilterPass;
+import com.aviary.glimageview.filter.RenderPlan;
+
+/**
+ * A GLImagingProgram that runs the image through a {@link FilterGraph} before displaying it.
+ *
+ * Each fused pass of the graph renders into an offscreen target chosen by a {@link RenderPlan}.
+ * The targets are allocated once per image size and reused, and when a parameter changes only the
+ * passes from the first affected one are rendered again. Frames where nothing in the graph changed
+ * just draw the last result with the current transform, and the renderer uses that result as its
+ * cached output instead of copying it into a texture of its own. Targets never exceed
+ * GL_MAX_TEXTURE_SIZE: when the image is larger, the passes run at the largest size that fits.
+ */
+public class FilterGraphProgram implements CacheableImagingProgram, PreparedTextureProgram, TextureOwningProgram {
+
+	private static final String LOG_TAG = "FilterGraphProgram";
+
+	// Pass vertex shader, stretching the unit quad over the whole viewport. Texture coordinates
+	// follow the framebuffer, so each pass keeps the orientation of its input.
+	private String mVertexShader = "" +
+	"attribute vec2 a_corner;" +
+	"varying highp vec2 v_texCoord;" +
+	"void main(void) {" +
+	"    v_texCoord = a_corner;" +
+	"    gl_Position = vec4(a_corner * 2.0 - 1.0, 0.0, 1.0);" +
+	"}";
+
+	private final FilterGraph mGraph;
+
+	// Display, the result is stored top down like the source
+	private final GLTextureDrawer mDrawer = new GLTextureDrawer();
+
+	// Pass programs
+	private final GLQuadBuffer mQuad = new GLQuadBuffer();
+	private int mCompiledStructureVersion = -1;
+	private List<FilterPass> mPasses;
+	private int[] mPassPrograms = new int[0];
+	private int[][] mPassLocations = new int[0][];
+	private final float[] mParameterValues = new float[4];
+
+	// Images
+	private int mSourceTextureId;
+	private TextureManager.Texture mSourceTexture;
+	private final TextureManager mTextureManager;
+	private final GLTextureAllocator mTextureAllocator = new GLTextureAllocator();
+	private int mImageWidth;
+	private int mImageHeight;
+	private int mMaxTextureSize = Integer.MAX_VALUE;
+	private int mTargetWidth;
+	private int mTargetHeight;
+	private boolean mSourceChanged;
+	private final GLRenderTarget[] mTargets = new GLRenderTarget[RenderPlan.TARGET_COUNT];
+	private final RenderPlan mPlan = new RenderPlan();
+	private final int[] mViewport = new int[4];
+	private final int[] mFramebufferBinding = new int[1];
+
+	public FilterGraphProgram(FilterGraph graph) {
+		this(graph, TextureManager.getDefault());
+	}
+
+	/**
+	 * @param textureManager Accounts for the source texture, shared with other views to keep within one budget.
+	 */
+	public FilterGraphProgram(FilterGraph graph, TextureManager textureManager) {
+		if(graph == null || textureManager == null){
+			throw new IllegalArgumentException("graph and textureManager cannot be null");
+		}
+		mGraph = graph;
+		mTextureManager = textureManager;
+	}
+
+	public FilterGraph getGraph() {
+		return mGraph;
+	}
+
+	public long getParameterVersion() {
+		return mGraph.getStateVersion();
+	}
+
+	public void setup() {
+		if(GLTrace.ENABLED) GLTrace.event(LOG_TAG, "Setup");
+
+		mDrawer.setup();
+
+		GLES20.glDisable(GL10.GL_CULL_FACE);
+
+		int[] maxTextureSize = new int[1];
+		GLES20.glGetIntegerv(GLES20.GL_MAX_TEXTURE_SIZE, maxTextureSize, 0);
+		mMaxTextureSize = maxTextureSize[0] > 0 ? maxTextureSize[0] : Integer.MAX_VALUE;
+
+		mQuad.setup();
+
+		// Every GL object from a previous context is gone
+		mTextureManager.onContextLost(mTextureAllocator);
+		mTextureAllocator.setup();
+		mSourceTexture = null;
+		mSourceTextureId = 0;
+		mPassPrograms = new int[0];
+		mPassLocations = new int[0][];
+		mCompiledStructureVersion = -1;
+		for(int i = 0; i < mTargets.length; i++){
+			mTargets[i] = null;
+		}
+		mPlan.reset();
+		updateTargetSize();
+		mGraph.invalidate();
+	}
+
+	public void setGLThreadExecutor(Executor executor) {
+		mTextureAllocator.setGLThreadExecutor(executor);
+	}
+
+	public void setFramebufferSize(int width, int height) {
+		// The passes render at image size, the display pass doesn't need this
+	}
+
+	public void setBitmap(Bitmap bitmap) {
+		if(GLTrace.ENABLED) GLTrace.event(LOG_TAG, "Set Bitmap");
+		checkSourceSize(bitmap);
+
+		setSourceTexture(mTextureAllocator.acquireBitmapTexture(mTextureManager, bitmap, GL10.GL_LINEAR), bitmap);
+	}
+
+	public void setPreparedTexture(Bitmap bitmap, int textureId) {
+		if(GLTrace.ENABLED) GLTrace.event(LOG_TAG, "Set Prepared Texture");
+		checkSourceSize(bitmap);
+
+		setSourceTexture(mTextureAllocator.adoptBitmapTexture(mTextureManager, bitmap, textureId, GL10.GL_LINEAR), bitmap);
+	}
+
+	private void setSourceTexture(TextureManager.Texture texture, Bitmap bitmap) {
+		if(mSourceTexture != null){
+			mTextureManager.release(mSourceTexture);
+		}
+		mSourceTexture = texture;
+		mSourceTextureId = texture.getTextureId();
+
+		if(bitmap.getWidth() != mImageWidth || bitmap.getHeight() != mImageHeight){
+			deleteTargets();
+			mImageWidth = bitmap.getWidth();
+			mImageHeight = bitmap.getHeight();
+			updateTargetSize();
+		}
+		mSourceChanged = true;
+	}
+
+	/**
+	 * The source is a single texture, so it has to fit GL_MAX_TEXTURE_SIZE. Larger images need a
+	 * subsampled decode, or TiledGLImageProgram.
+	 */
+	private void checkSourceSize(Bitmap bitmap) {
+		if(bitmap.getWidth() > mMaxTextureSize || bitmap.getHeight() > mMaxTextureSize){
+			throw new IllegalArgumentException("Image of " + bitmap.getWidth() + "x" + bitmap.getHeight()
+					+ " exceeds GL_MAX_TEXTURE_SIZE of " + mMaxTextureSize + ", decode it subsampled");
+		}
+	}
+
+	/**
+	 * Scales the pass targets down to GL_MAX_TEXTURE_SIZE, keeping the aspect ratio of the image.
+	 */
+	private void updateTargetSize() {
+		if(mImageWidth == 0 || mImageHeight == 0){
+			return;
+		}
+		int largest = Math.max(mImageWidth, mImageHeight);
+		int width = mImageWidth;
+		int height = mImageHeight;
+		if(largest > mMaxTextureSize){
+			width = Math.max(1, (int) ((long) mImageWidth * mMaxTextureSize / largest));
+			height = Math.max(1, (int) ((long) mImageHeight * mMaxTextureSize / largest));
+		}
+		if(width != mTargetWidth || height != mTargetHeight){
+			deleteTargets();
+			mTargetWidth = width;
+			mTargetHeight = height;
+		}
+	}
+
+	public void render(ViewTransform transform, RectF imageBoundsRect) {
+		mTextureAllocator.deletePending();
+
+		if(mSourceTextureId == 0){
+			return;
+		}
+
+		renderPasses();
+		mDrawer.draw(getResultTextureId(), transform, imageBoundsRect, false);
+	}
+
+	public int renderResultTexture() {
+		mTextureAllocator.deletePending();
+
+		if(mSourceTextureId == 0){
+			return 0;
+		}
+
+		renderPasses();
+		return getResultTextureId();
+	}
+
+	public void readImage(Bitmap bitmap) {
+		new ImageReadback(this, bitmap, ImageReadback.DEFAULT_STRIP_HEIGHT, 0, null, null, null).runToCompletion();
+	}
+
+	// Passes
+
+	private void renderPasses() {
+		if(mGraph.getStructureVersion() != mCompiledStructureVersion){
+			compilePasses();
+		}
+
+		int firstDirtyPass = mGraph.consumeFirstDirtyPass();
+		if(mSourceChanged){
+			firstDirtyPass = 0;
+			mSourceChanged = false;
+		}
+
+		int passCount = mPlan.update(mPasses.size(), firstDirtyPass);
+		if(passCount == 0){
+			return;
+		}
+
+		// render() may itself be drawing into an offscreen target, e.g. during a readback
+		GLES20.glGetIntegerv(GLES20.GL_VIEWPORT, mViewport, 0);
+		GLES20.glGetIntegerv(GLES20.GL_FRAMEBUFFER_BINDING, mFramebufferBinding, 0);
+
+		for(int pass = mPlan.getStartPass(); pass < mPasses.size(); pass++){
+			int input = mPlan.getInput(pass);
+			int inputTexture = input == RenderPlan.SOURCE ? mSourceTextureId : mTargets[input].getTextureId();
+			renderPass(pass, inputTexture, getTarget(mPlan.getOutput(pass)));
+		}
+
+		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebufferBinding[0]);
+		GLES20.glViewport(mViewport[0], mViewport[1], mViewport[2], mViewport[3]);
+	}
+
+	private int getResultTextureId() {
+		int outputTarget = mPlan.getOutputTarget();
+		return outputTarget == RenderPlan.SOURCE ? mSourceTextureId : mTargets[outputTarget].getTextureId();
+	}
+
+	private void renderPass(int passIndex, int inputTexture, GLRenderTarget target) {
+		FilterPass pass = mPasses.get(passIndex);
+		int[] locations = mPassLocations[passIndex];
+
+		target.bind();
+		GLES20.glUseProgram(mPassPrograms[passIndex]);
+
+		GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, inputTexture);
+		GLES20.glUniform1i(locations[1], 0);
+		if(locations[2] >= 0){
+			GLES20.glUniform2f(locations[2], 1.f / mTargetWidth, 1.f / mTargetHeight);
+		}
+
+		List<FilterPass.Uniform> uniforms = pass.getUniforms();
+		for(int i = 0; i < uniforms.size(); i++){
+			FilterPass.Uniform uniform = uniforms.get(i);
+			int location = locations[3 + i];
+			int components = uniform.node.getParameter(uniform.parameter, mParameterValues);
+			switch (components) {
+				case 1: GLES20.glUniform1fv(location, 1, mParameterValues, 0); break;
+				case 2: GLES20.glUniform2fv(location, 1, mParameterValues, 0); break;
+				case 3: GLES20.glUniform3fv(location, 1, mParameterValues, 0); break;
+				default: GLES20.glUniform4fv(location, 1, mParameterValues, 0); break;
+			}
+		}
+
+		mQuad.bind(locations[0]);
+		GLES20.glEnableVertexAttribArray(locations[0]);
+		GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, GLQuadBuffer.VERTEX_COUNT);
+		mQuad.unbind();
+	}
+
+	private void compilePasses() {
+		for(int program : mPassPrograms){
+			GLES20.glDeleteProgram(program);
+		}
+
+		mCompiledStructureVersion = mGraph.getStructureVersion();
+		mPasses = mGraph.getPasses();
+		mPassPrograms = new int[mPasses.size()];
+		mPassLocations = new int[mPasses.size()][];
+
+		for(int i = 0; i < mPasses.size(); i++){
+			FilterPass pass = mPasses.get(i);
+			int program = GLProgramUtils.createProgram(mVertexShader, pass.getFragmentShader());
+			List<FilterPass.Uniform> uniforms = pass.getUniforms();
+
+			// a_corner, image sampler, texel size, then one per node parameter. Only passes starting
+			// with a sampling node read the texel size, the compiler drops it from the others.
+			int[] locations = new int[3 + uniforms.size()];
+			locations[0] = GLProgramUtils.getAttribLocation(program, "a_corner");
+			locations[1] = GLProgramUtils.getUniformLocation(program, FilterGraph.IMAGE_UNIFORM);
+			locations[2] = pass.getNodes().get(0).getKind() == FilterNode.Kind.SAMPLING
+					? GLProgramUtils.getUniformLocation(program, FilterGraph.TEXEL_SIZE_UNIFORM) : -1;
+			for(int u = 0; u < uniforms.size(); u++){
+				locations[3 + u] = GLProgramUtils.getUniformLocation(program, uniforms.get(u).uniformName);
+			}
+
+			mPassPrograms[i] = program;
+			mPassLocations[i] = locations;
+		}
+
+		mPlan.reset();
+		if(GLTrace.ENABLED) GLTrace.event(LOG_TAG, "Compiled " + mGraph.getNodes().size() + " nodes into " + mPasses.size() + " passes");
+	}
+
+	private GLRenderTarget getTarget(int index) {
+		if(mTargets[index] == null){
+			try {
+				mTargets[index] = new GLRenderTarget(mTargetWidth, mTargetHeight);
+			} catch (IllegalStateException e) {
+				throw new IllegalStateException("Cannot create a " + mTargetWidth + "x" + mTargetHeight
+						+ " filter target for a " + mImageWidth + "x" + mImageHeight + " image", e);
+			}
+		}
+		return mTargets[index];
+	}
+
+	private void deleteTargets() {
+		for(int i = 0; i < mTargets.length; i++){
+			if(mTargets[i] != null){
+				mTargets[i].delete();
+				mTargets[i] = null;
+			}
+		}
+		mPlan.reset();
+	}
+}
@@ -0,0 +1,86 @@
+package com.aviary.glimageview;
+
+/**
+ * Decelerates the translation of a renderer from a fling velocity, overscrolling and springing
+ * back at the edges of the image. A single instance is reused for every fling, so starting one
+ * allocates nothing. Must be used on the thread of its scheduler.
+ */
+final class FlingAnimation implements AnimationScheduler.Animation {
+
+	// NDC per second, and NDC
+	static final float MIN_VELOCITY = 0.05f;
+	static final float SETTLE_DISTANCE = 0.001f;
+
+	private final AnimationScheduler mScheduler;
+	private final GLImageViewRenderer mRenderer;
+	private final FlingPhysics mPhysicsX = new FlingPhysics();
+	private final FlingPhysics mPhysicsY = new FlingPhysics();
+	private long mStartTimeNanos;
+
+	FlingAnimation(AnimationScheduler scheduler, GLImageViewRenderer renderer) {
+		mScheduler = scheduler;
+		mRenderer = renderer;
+	}
+
+	/**
+	 * @param velocityX In NDC per second
+	 * @param velocityY In NDC per second
+	 */
+	public void start(float velocityX, float velocityY) {
+		ViewTransform transform = mRenderer.getViewTransform();
+		float scale = transform.getScale();
+		float maxX = mRenderer.getMaxTranslationX(scale);
+		float maxY = mRenderer.getMaxTranslationY(scale);
+
+		mPhysicsX.start(transform.getTranslateX(), velocityX, -maxX, maxX, MIN_VELOCITY, SETTLE_DISTANCE);
+		mPhysicsY.start(transform.getTranslateY(), velocityY, -maxY, maxY, MIN_VELOCITY, SETTLE_DISTANCE);
+		mScheduler.start(this);
+	}
+
+	/**
+	 * Springs the translation back within the bounds if it is outside them, as a fling that was
+	 * interrupted while overscrolling leaves it.
+	 * @return Whether the translation was out of bounds and a spring was started.
+	 */
+	public boolean springBack() {
+		ViewTransform transform = mRenderer.getViewTransform();
+		float scale = transform.getScale();
+		if(Math.abs(transform.getTranslateX()) <= mRenderer.getMaxTranslationX(scale)
+				&& Math.abs(transform.getTranslateY()) <= mRenderer.getMaxTranslationY(scale)){
+			return false;
+		}
+		// Without velocity, FlingPhysics starts straight on the spring of an overscrolled axis
+		start(0.f, 0.f);
+		return true;
+	}
+
+	/**
+	 * @return Where the fling comes to rest horizontally, always within the bounds.
+	 */
+	public float getFinalX() {
+		return mPhysicsX.getFinalPosition();
+	}
+
+	/**
+	 * @return Where the fling comes to rest vertically, always within the bounds.
+	 */
+	public float getFinalY() {
+		return mPhysicsY.getFinalPosition();
+	}
+
+	@Override
+	public void onStart(long startTimeNanos) {
+		mStartTimeNanos = startTimeNanos;
+	}
+
+	@Override
+	public boolean onFrame(long frameTimeNanos) {
+		float time = Math.max(0, (frameTimeNanos - mStartTimeNanos) / 1000000000.f);
+		if(mPhysicsX.isFinished(time) && mPhysicsY.isFinished(time)){
+			mRenderer.setAbsoluteTranslation(mPhysicsX.getFinalPosition(), mPhysicsY.getFinalPosition());
+			return false;
+		}
+		mRenderer.setAbsoluteTranslationUnconstrained(mPhysicsX.getPosition(time), mPhysicsY.getPosition(time));
+		return true;
+	}
+}
@@ -0,0 +1,201 @@
+package com.aviary.glimageview;
+
+/**
+ * The motion of a fling along one axis, in closed form. Inside the bounds the velocity decays
+ * exponentially, v(t) = v0 * e^(-t / timeConstant), and the fling ends once it drops below the
+ * minimum velocity. If the fling crosses a bound, it overscrolls and a critically damped spring
+ * pulls it back onto the bound without oscillating.
+ *
+ * Everything is computed from the start state, so the position at any time costs a couple of
+ * exponentials and nothing is allocated. Times are in seconds, positions in any unit and
+ * velocities in that unit per second. This class is pure Java.
+ */
+public final class FlingPhysics {
+
+	/** Seconds for the velocity to decay to 1/e of its value */
+	public static final float DEFAULT_TIME_CONSTANT = 0.325f;
+	/** Angular frequency of the spring, in radians per second */
+	public static final float DEFAULT_SPRING_FREQUENCY = 18.f;
+
+	private final float mTimeConstant;
+	private final float mSpringFrequency;
+	private float mMinVelocity;
+	private float mSettleDistance;
+
+	// Start state
+	private float mStartPosition;
+	private float mStartVelocity;
+
+	// The spring phase starts at mSpringStartTime, displaced from mBound by mSpringDisplacement
+	private float mSpringStartTime;
+	private float mBound;
+	private float mSpringDisplacement;
+	private float mSpringVelocity;
+	private boolean mHasSpring;
+
+	private float mDuration;
+
+	public FlingPhysics() {
+		this(DEFAULT_TIME_CONSTANT, DEFAULT_SPRING_FREQUENCY);
+	}
+
+	public FlingPhysics(float timeConstant, float springFrequency) {
+		if(timeConstant <= 0 || springFrequency <= 0){
+			throw new IllegalArgumentException("timeConstant and springFrequency must be positive");
+		}
+		mTimeConstant = timeConstant;
+		mSpringFrequency = springFrequency;
+	}
+
+	/**
+	 * Starts a fling.
+	 * @param position The current position. May already be outside the bounds.
+	 * @param velocity The initial velocity.
+	 * @param min The lower bound.
+	 * @param max The upper bound.
+	 * @param minVelocity The velocity below which a decaying fling stops.
+	 * @param settleDistance How close to the bound the spring has to be to stop.
+	 */
+	public void start(float position, float velocity, float min, float max, float minVelocity, float settleDistance) {
+		mStartPosition = position;
+		mStartVelocity = velocity;
+		mMinVelocity = Math.abs(minVelocity);
+		mSettleDistance = Math.max(Math.abs(settleDistance), 1e-6f);
+		mHasSpring = false;
+
+		// Already overscrolled, the spring takes over right away
+		if(position < min || position > max){
+			startSpring(0.f, position < min ? min : max, position, velocity);
+			return;
+		}
+
+		float speed = Math.abs(velocity);
+		if(speed <= mMinVelocity){
+			mDuration = 0.f;
+			return;
+		}
+		float decayDuration = (float) (mTimeConstant * Math.log(speed / mMinVelocity));
+
+		// Distance covered until the velocity decays to the minimum
+		float reach = mTimeConstant * (speed - mMinVelocity);
+		float bound = velocity > 0 ? max : min;
+		float distanceToBound = Math.abs(bound - position);
+		if(distanceToBound >= reach){
+			mDuration = decayDuration;
+			return;
+		}
+
+		// Solve position(t) = bound for the decay phase
+		float crossingTime = (float) (-mTimeConstant * Math.log(1.f - distanceToBound / (speed * mTimeConstant)));
+		float crossingVelocity = (float) (velocity * Math.exp(-crossingTime / mTimeConstant));
+		startSpring(crossingTime, bound, bound, crossingVelocity);
+	}
+
+	private void startSpring(float startTime, float bound, float position, float velocity) {
+		mHasSpring = true;
+		mSpringStartTime = startTime;
+		mBound = bound;
+		mSpringDisplacement = position - bound;
+		mSpringVelocity = velocity;
+		mDuration = startTime + computeSettleTime();
+	}
+
+	/**
+	 * The spring displacement is (a + b * t) * e^(-w * t), bounded by (|a| + |b| * t) * e^(-w * t).
+	 * Iterating t = ln((|a| + |b| * t) / settleDistance) / w converges to where that bound reaches the
+	 * settle distance, from where the spring stays within it.
+	 */
+	private float computeSettleTime() {
+		float a = Math.abs(mSpringDisplacement);
+		float b = Math.abs(mSpringVelocity + mSpringFrequency * mSpringDisplacement);
+		float t = 1.f / mSpringFrequency;
+		for(int i = 0; i < 16; i++){
+			float ratio = (a + b * t) / mSettleDistance;
+			if(ratio <= 1.f){
+				return t;
+			}
+			float next = (float) Math.log(ratio) / mSpringFrequency;
+			if(Math.abs(next - t) < 1e-4f){
+				return next;
+			}
+			t = next;
+		}
+		return t;
+	}
+
+	/**
+	 * @param time Seconds since the start.
+	 */
+	public float getPosition(float time) {
+		if(time <= 0){
+			return mStartPosition;
+		}
+		if(time >= mDuration){
+			return getFinalPosition();
+		}
+		if(mHasSpring && time >= mSpringStartTime){
+			float t = time - mSpringStartTime;
+			float b = mSpringVelocity + mSpringFrequency * mSpringDisplacement;
+			return mBound + (float) ((mSpringDisplacement + b * t) * Math.exp(-mSpringFrequency * t));
+		}
+		return mStartPosition + (float) (mStartVelocity * mTimeConstant * (1.0 - Math.exp(-time / mTimeConstant)));
+	}
+
+	/**
+	 * @param time Seconds since the start.
+	 */
+	public float getVelocity(float time) {
+		if(time < 0){
+			return mStartVelocity;
+		}
+		if(time >= mDuration){
+			return 0.f;
+		}
+		if(mHasSpring && time >= mSpringStartTime){
+			float t = time - mSpringStartTime;
+			float b = mSpringVelocity + mSpringFrequency * mSpringDisplacement;
+			float e = (float) Math.exp(-mSpringFrequency * t);
+			return (b - mSpringFrequency * (mSpringDisplacement + b * t)) * e;
+		}
+		return (float) (mStartVelocity * Math.exp(-time / mTimeConstant));
+	}
+
+	/**
+	 * @return Where the fling comes to rest, a bound if it overscrolled.
+	 */
+	public float getFinalPosition() {
+		if(mHasSpring){
+			return mBound;
+		}
+		if(mDuration == 0){
+			return mStartPosition;
+		}
+		float endVelocity = mStartVelocity > 0 ? mMinVelocity : -mMinVelocity;
+		return mStartPosition + mTimeConstant * (mStartVelocity - endVelocity);
+	}
+
+	/**
+	 * @return The length of the fling in seconds.
+	 */
+	public float getDuration() {
+		return mDuration;
+	}
+
+	public boolean isFinished(float time) {
+		return time >= mDuration;
+	}
+
+	/**
+	 * @return Whether the fling goes past a bound and springs back.
+	 */
+	public boolean isOverscrolling() {
+		return mHasSpring;
+	}
+
+	/**
+	 * @return When the spring phase starts, in seconds, if {@link #isOverscrolling()}.
+	 */
+	public float getOverscrollStartTime() {
+		return mSpringStartTime;
+	}
+}
@@ -1,12 +1,17 @@
 package com.aviary.glimageview;
 
+import java.util.concurrent.Executor;
+
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.PixelFormat;
 import android.graphics.PointF;
 import android.opengl.GLSurfaceView;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
@@ -14,7 +19,12 @@ import android.view.ScaleGestureDetector;
 import com.aviary.glimageview.GLImageViewRenderer.OnBitmapReadOutCompleted;
 import com.aviary.glimageview.GLImageViewRenderer.OnImageBitmapLoaded;
 import com.aviary.glimageview.GLImageViewRenderer.OnRenderCompletedListener;
+import com.aviary.glimageview.GLImageViewRenderer.OnRenderMetricsListener;
+import com.aviary.glimageview.ImageReadback.OnReadbackProgressListener;
+import com.aviary.glimageview.TiledGLImageProgram.OnTilesLoadedListener;
+import com.aviary.glimageview.easing.BakedEasing;
 import com.aviary.glimageview.easing.Cubic;
+import com.aviary.glimageview.easing.FloatEasing;
 
 public class GLImageView extends GLSurfaceView {
 
@@ -28,9 +38,30 @@ public class GLImageView extends GLSurfaceView {
 	GestureListener mGestureListener;
 	GestureDetector mGestureDetector;
 	
-	Cubic mEasing = new Cubic();
+	FloatEasing mEasing = new BakedEasing(new Cubic());
 	
 	PointF mLastValidCenter;
+	PointF mScratchPoint = new PointF();
+	
+	AnimationScheduler mAnimationScheduler;
+	
+	// Render coalescing, null before API 16 where there is no vsync callback
+	AnimationScheduler.FrameDriver mRenderFrameDriver;
+	boolean mRenderFrameScheduled;
+	boolean mForceRenderFrame;
+	final AnimationScheduler.FrameCallback mRenderFrameCallback = new AnimationScheduler.FrameCallback(){
+		@Override
+		public void doFrame(long frameTimeNanos){
+			mRenderFrameScheduled = false;
+			renderFrameIfChanged();
+		}
+	};
+	FlingAnimation mFlingAnimation;
+	ZoomAnimation mZoomAnimation;
+	
+	ProgressiveImageLoader mProgressiveLoader;
+	CompressedImageLoader mCompressedLoader;
+	GLTextureUploader mTextureUploader;
 	
 	public GLImageView(Context context){
 		this(context, null);
@@ -49,6 +80,19 @@ public class GLImageView extends GLSurfaceView {
 		mGestureListener = new GestureListener();
 		mGestureDetector = new GestureDetector( getContext(), mGestureListener, null, true );
 		mLastValidCenter = new PointF();		
+		
+		// Animations already run on vsync, so their frames are checked for changes right away
+		Handler handler = new Handler();
+		mAnimationScheduler = new AnimationScheduler(AndroidFrameDriver.create(handler), AnimationScheduler.SYSTEM_CLOCK,
+				new Runnable(){
+					@Override
+					public void run(){
+						renderFrameIfChanged();
+					}
+				});
+		if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
+			mRenderFrameDriver = AndroidFrameDriver.create(handler);
+		}
 	}
 	
 	public void setupRendererWithProgram(GLImagingProgram program){
@@ -59,14 +103,54 @@ public class GLImageView extends GLSurfaceView {
 		// OpenGL Setup
 		this.setEGLContextClientVersion( 2 );
 		this.setEGLConfigChooser(8, 8, 8, 8, 0, 0);
-//		this.setPreserveEGLContextOnPause(true);
+		if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB){
+			preserveEGLContextOnPause();
+		}
+		// Large images are uploaded from a context that shares textures with the renderer's
+		mTextureUploader = new GLTextureUploader();
+		this.setEGLContextFactory(new SharedEGLContextFactory(mTextureUploader));
 		mCurrentRenderer = new GLImageViewRenderer(program);
+		mCurrentRenderer.setTextureUploader(mTextureUploader);
+		mCurrentRenderer.setRequestRenderCallback(new Runnable(){
+			@Override
+			public void run(){
+				requestRender();
+			}
+		});
+		mFlingAnimation = new FlingAnimation(mAnimationScheduler, mCurrentRenderer);
+		mZoomAnimation = new ZoomAnimation(mAnimationScheduler, mCurrentRenderer, mEasing);
 		this.setRenderer( mCurrentRenderer );
 		this.setRenderMode(RENDERMODE_WHEN_DIRTY);
 		
+		if(program instanceof TextureOwningProgram){
+			((TextureOwningProgram) program).setGLThreadExecutor(new Executor(){
+				@Override
+				public void execute(Runnable task){
+					queueEvent(task);
+				}
+			});
+		}
+		if(program instanceof TiledGLImageProgram){
+			((TiledGLImageProgram) program).setOnTilesLoadedListener(new OnTilesLoadedListener(){
+				@Override
+				public void onTilesLoaded(){
+					requestRender();
+				}
+			});
+		}
+		
 		this.requestRender();
 	}
 	
+	/**
+	 * Keeps the context and its textures across onPause, when the device can afford it. When it
+	 * cannot, the renderer restores what is on screen from its GLResourceRegistry.
+	 */
+	@TargetApi(11)
+	private void preserveEGLContextOnPause(){
+		this.setPreserveEGLContextOnPause(true);
+	}
+	
 	// Image Operations
 	
     public void setOnImageBitmapLoadedListener( OnImageBitmapLoaded listener ) {
@@ -76,6 +160,66 @@ public class GLImageView extends GLSurfaceView {
     public void setOnRenderCompletedListener( OnRenderCompletedListener listener ) {
     	mCurrentRenderer.setOnRenderCompletedListener(listener);
     }
+    
+    public void setOnRenderMetricsListener( OnRenderMetricsListener listener ) {
+    	mCurrentRenderer.setOnRenderMetricsListener(listener);
+    }
+    
+    /**
+     * Requests a frame. On the UI thread, requests are coalesced into one draw on the next vsync.
+     * Choreographer runs input before frame callbacks, so a request made while handling a touch
+     * is still drawn in the same vsync.
+     */
+    @Override
+    public void requestRender() {
+    	if(mRenderFrameDriver != null && Looper.myLooper() == Looper.getMainLooper()){
+    		mForceRenderFrame = true;
+    		scheduleRenderFrame();
+    		return;
+    	}
+    	requestRenderNow();
+    }
+    
+    /**
+     * Requests a frame for a zoom or pan. Coalesced like requestRender, and dropped if the transform
+     * ends up where it was in the last frame. Must be called on the UI thread.
+     */
+    void requestTransformRender() {
+    	if(mRenderFrameDriver != null){
+    		scheduleRenderFrame();
+    	}else{
+    		renderFrameIfChanged();
+    	}
+    }
+    
+    /**
+     * @return How many requested frames were not drawn because nothing had changed.
+     */
+    public long getSkippedFrameCount() {
+    	return mCurrentRenderer != null ? mCurrentRenderer.getSkippedFrameCount() : 0;
+    }
+    
+    private void scheduleRenderFrame() {
+    	if(!mRenderFrameScheduled){
+    		mRenderFrameScheduled = true;
+    		mRenderFrameDriver.postFrameCallback(mRenderFrameCallback);
+    	}
+    }
+    
+    private void renderFrameIfChanged() {
+    	boolean force = mForceRenderFrame;
+    	mForceRenderFrame = false;
+    	if(mCurrentRenderer == null || mCurrentRenderer.shouldRenderFrame(force)){
+    		requestRenderNow();
+    	}
+    }
+    
+    private void requestRenderNow() {
+    	if(mCurrentRenderer != null){
+    		mCurrentRenderer.onRenderRequested();
+    	}
+    	super.requestRender();
+    }
 	
     public void requestBitmap( OnBitmapReadOutCompleted listener, Bitmap bitmap ) {
     	mCurrentRenderer.setOnBitmapReadOutCompleted(listener);
@@ -89,7 +233,52 @@ public class GLImageView extends GLSurfaceView {
 		});
     }
 	
+    /**
+     * Renders the image offscreen at full resolution and reads it back one strip per frame,
+     * so the view keeps rendering while the export is in progress.
+     * @param listener Called once the bitmap is complete
+     * @param bitmap The ARGB_8888 bitmap to fill, the size of the image, or null to take one from
+     * the default BitmapPool, where it can be put back once it is no longer needed
+     * @param executor Where the listener is called, or null to call it on the GL thread
+     * @param progressListener Called on the GL thread after every strip, may be null
+     * @return A handle that can be used to cancel the readback, or null if there is no image
+     */
+    public ImageReadback requestBitmapAsync( OnBitmapReadOutCompleted listener, Bitmap bitmap, Executor executor,
+    		OnReadbackProgressListener progressListener ) {
+    	int width = mCurrentRenderer.getImageWidth();
+    	int height = mCurrentRenderer.getImageHeight();
+    	if(width == 0 || height == 0){
+    		return null;
+    	}
+    	
+    	if(bitmap == null){
+    		bitmap = BitmapPool.getDefault().getOrCreate(width, height, Bitmap.Config.ARGB_8888);
+    	}
+    	if(bitmap.getWidth() != width || bitmap.getHeight() != height || bitmap.getConfig() != Bitmap.Config.ARGB_8888){
+    		throw new IllegalArgumentException("bitmap must be same size and config as the one passed in");
+    	}
+    	
+    	final ImageReadback readback = new ImageReadback(mCurrentRenderer.mGlProgram, bitmap, ImageReadback.DEFAULT_STRIP_HEIGHT,
+    			mCurrentRenderer.getMaxTextureSize(), executor, listener, progressListener);
+    	
+		this.queueEvent(new Runnable(){
+			@Override
+			public void run(){
+				mCurrentRenderer.startReadback(readback);
+			}
+		});
+		
+		return readback;
+    }
+	
 	public void setImage(Bitmap bitmap){
+		if(mProgressiveLoader != null){
+			mProgressiveLoader.cancel();
+		}
+		if(mCompressedLoader != null){
+			mCompressedLoader.cancel();
+		}
+		
 		final GLImageViewRenderer renderer = mCurrentRenderer;
 		final Bitmap outBitmap = bitmap;
 		
@@ -101,6 +290,123 @@ public class GLImageView extends GLSurfaceView {
 		});
 	}
 	
+	/**
+	 * Displays an image from ETC1 compressed textures, which take an eighth of the GPU memory of the
+	 * bitmap, or a quarter if it is translucent. The encoding is mapped from the cache if it has an
+	 * entry for the key. Otherwise the bitmap is displayed right away while it is encoded and stored in
+	 * the background, and swapped for the compressed image once that is done. Devices without ETC1
+	 * support display the decoded encoding instead.
+	 * @param cache Where encoded images are kept.
+	 * @param key Identifies the image, typically CompressedTextureCache.hashContent of its file.
+	 * @param bitmap The image, which must not be recycled while it is being encoded. May be null if
+	 * cache.contains(key), so reopening an image does not have to decode it.
+	 */
+	public void setImageCompressed(CompressedTextureCache cache, String key, Bitmap bitmap){
+		boolean cached = cache.contains(key);
+		if(bitmap == null && !cached){
+			throw new IllegalArgumentException("bitmap is required when the cache has no entry for " + key);
+		}
+		// Mapping a cached image is quick, an uncached one is shown uncompressed while it is encoded
+		if(!cached){
+			setImage(bitmap);
+		}else if(mProgressiveLoader != null){
+			mProgressiveLoader.cancel();
+		}
+		
+		if(mCompressedLoader == null){
+			mCompressedLoader = new CompressedImageLoader();
+		}
+		
+		final GLImageViewRenderer renderer = mCurrentRenderer;
+		mCompressedLoader.load(cache, key, bitmap, new CompressedImageLoader.OnCompressedImageLoadedListener() {
+			@Override
+			public void onCompressedImageLoaded(Etc1Image image) {
+				final Etc1Image outImage = image;
+				queueEvent(new Runnable(){
+					@Override
+					public void run(){
+						renderer.setCompressedImage(outImage);
+						requestRender();
+					}
+				});
+			}
+		});
+	}
+	
+	/**
+	 * Displays an image that is decoded tile by tile as it becomes visible, instead of a full Bitmap.
+	 * The view must have been set up with a TiledGLImageProgram.
+	 * @param source The image source
+	 */
+	public void setImageSource(ImageSource source){
+		final GLImageViewRenderer renderer = mCurrentRenderer;
+		final ImageSource outSource = source;
+		
+		this.queueEvent(new Runnable(){
+			@Override
+			public void run(){
+				renderer.setImageSource(outSource);
+			}
+		});
+	}
+	
+	/**
+	 * Displays a heavily subsampled preview of the image right away, then swaps in sharper stages
+	 * as they are decoded in the background. The current zoom and pan are kept across stages.
+	 * OnImageBitmapLoaded fires once per stage. Intermediate stage bitmaps are returned to the
+	 * loader's BitmapPool once the next stage is displayed.
+	 * @param source The image source
+	 */
+	public void setImageProgressive(ImageSource source){
+		final int maxTextureSize = mCurrentRenderer.getMaxTextureSize();
+		int[] sampleSizes = ProgressiveImageLoader.computeSampleSizes(source.getWidth(), source.getHeight(),
+				ProgressiveImageLoader.DEFAULT_PREVIEW_SIZE, maxTextureSize);
+		setImageProgressive(source, sampleSizes);
+	}
+	
+	/**
+	 * @see #setImageProgressive(ImageSource)
+	 * @param source The image source
+	 * @param sampleSizes The inSampleSize of every stage, from coarsest to finest.
+	 */
+	public void setImageProgressive(ImageSource source, int[] sampleSizes){
+		if(mProgressiveLoader == null){
+			mProgressiveLoader = new ProgressiveImageLoader();
+		}
+		if(mCompressedLoader != null){
+			mCompressedLoader.cancel();
+		}
+		
+		final GLImageViewRenderer renderer = mCurrentRenderer;
+		final BitmapPool pool = mProgressiveLoader.getBitmapPool();
+		final int imageWidth = source.getWidth();
+		final int imageHeight = source.getHeight();
+		
+		mProgressiveLoader.load(source, sampleSizes, new ProgressiveImageLoader.OnStageDecodedListener() {
+			Bitmap mPreviousStage;
+			
+			@Override
+			public void onStageDecoded(Bitmap bitmap, int sampleSize, boolean isFinal) {
+				final Bitmap stage = bitmap;
+				queueEvent(new Runnable(){
+					@Override
+					public void run(){
+						renderer.setImage(stage, imageWidth, imageHeight);
+						if(mPreviousStage != null){
+							if(pool != null){
+								pool.put(mPreviousStage);
+							}else{
+								mPreviousStage.recycle();
+							}
+						}
+						mPreviousStage = stage;
+						requestRender();
+					}
+				});
+			}
+		});
+	}
+	
 	// Touch Events
 	
 	@Override
@@ -112,12 +418,22 @@ public class GLImageView extends GLSurfaceView {
 
 		int action = event.getAction();
 		switch ( action & MotionEvent.ACTION_MASK ) {
+			case MotionEvent.ACTION_DOWN:
+			{
+				// A new touch takes over from any running fling or zoom. A fling stopped while
+				// overscrolling leaves the image out of bounds until the touch ends.
+				mAnimationScheduler.cancelAll();
+				break;
+			}
 			case MotionEvent.ACTION_UP:
+			case MotionEvent.ACTION_CANCEL:
 			{
 				if ( mCurrentRenderer.getAbsoluteScale() < mCurrentRenderer.getMinZoomScale() ) {
 					zoomTo( mCurrentRenderer.getMinZoomScale(), 0, 0, 50 );
 				}else if (mCurrentRenderer.getAbsoluteScale() > mCurrentRenderer.getMaxZoomScale()){
 					zoomTo( mCurrentRenderer.getMaxZoomScale(), mLastValidCenter.x, mLastValidCenter.y, 50 );
+				}else if (!mAnimationScheduler.isAnimating() && mFlingAnimation.springBack()){
+					mLastValidCenter.set(mFlingAnimation.getFinalX(), mFlingAnimation.getFinalY());
 				}
 				break;
 			}
@@ -161,7 +477,7 @@ public class GLImageView extends GLSurfaceView {
 		float centerY = e1.getY();
 		
 		float currentScale = mCurrentRenderer.getAbsoluteScale();
-		PointF currentTranslation = mCurrentRenderer.getAbsoluteTranslation();
+		PointF currentTranslation = mCurrentRenderer.getAbsoluteTranslation(mScratchPoint);
 		
 		float minScale = mCurrentRenderer.getMinZoomScale();
 		float maxScale = mCurrentRenderer.getMaxZoomScale();
@@ -185,11 +501,9 @@ public class GLImageView extends GLSurfaceView {
 		float newProposedCenterX = (dx + currentTranslation.x) * scaleAdjust;
 		float newProposedCenterY = (dy + currentTranslation.y) * scaleAdjust;
 		
-		PointF newCenter = mCurrentRenderer.getConstrainedTranslation(newProposedCenterX, newProposedCenterY, nextScale);
-		
-		zoomTo(nextScale, newCenter.x, newCenter.y, 300);
+		mCurrentRenderer.getConstrainedTranslation(newProposedCenterX, newProposedCenterY, nextScale, mLastValidCenter);
 		
-		mLastValidCenter = newCenter;
+		zoomTo(nextScale, mLastValidCenter.x, mLastValidCenter.y, 300);
 		
 		return false;
 	}
@@ -198,17 +512,18 @@ public class GLImageView extends GLSurfaceView {
 		if ( e1 == null || e2 == null ) return false;
 		if ( e1.getPointerCount() > 1 || e2.getPointerCount() > 1 ) return false;
 		if ( mScaleDetector.isInProgress() ) return false;
-		Log.i(LOG_TAG, "on scroll");
+		if(GLTrace.ENABLED) GLTrace.beginSection("GLImageView.onScroll");
 		
 		float dx = -2 * distanceX / (float)mCurrentRenderer.getCurrentWidth();
 		float dy =  2 * distanceY / (float)mCurrentRenderer.getCurrentHeight();
 		
 		this.mCurrentRenderer.postTranslateByAmount(dx, dy);
 										
-		mLastValidCenter = mCurrentRenderer.getAbsoluteTranslation();
+		mCurrentRenderer.getAbsoluteTranslation(mLastValidCenter);
 		
-		this.requestRender();
+		requestTransformRender();
 		
+		if(GLTrace.ENABLED) GLTrace.endSection();
 		return true;
 	}
 	
@@ -216,62 +531,18 @@ public class GLImageView extends GLSurfaceView {
 		if ( e1 == null || e2 == null ) return false;
 		if ( e1.getPointerCount() > 1 || e2.getPointerCount() > 1 ) return false;
 		if ( mScaleDetector.isInProgress() ) return false;
-		Log.i(LOG_TAG, "on fling");
-
-		float distanceX = e2.getX() - e1.getX();
-		float distanceY = e2.getY() - e1.getY();
 
 		if ( Math.abs( velocityX ) > 800 || Math.abs( velocityY ) > 800 ) {
-			PointF originalTranslation = mCurrentRenderer.getAbsoluteTranslation();
-			
-			final float originalX = originalTranslation.x;
-			final float originalY = originalTranslation.y;
-			
-			float rawNewX = originalX + 2 * distanceX / (float)mCurrentRenderer.getCurrentWidth();
-			float rawNewY = originalY - 2 * distanceY / (float)mCurrentRenderer.getCurrentHeight();
-			
-			PointF newTranslation = mCurrentRenderer.getConstrainedTranslation(rawNewX, rawNewY);
+			if(GLTrace.ENABLED) GLTrace.beginSection("GLImageView.onFling");
 			
-			mLastValidCenter = newTranslation;
+			// Pixels per second to NDC per second
+			float ndcVelocityX = 2 * velocityX / (float)mCurrentRenderer.getCurrentWidth();
+			float ndcVelocityY = -2 * velocityY / (float)mCurrentRenderer.getCurrentHeight();
 			
-			final float newX = newTranslation.x;
-			final float newY = newTranslation.y;
-			
-			final long startTime = System.currentTimeMillis();
-			final long durationMs = 300;
-			
-			final GLImageView glImageView = this;
-			
-			this.post( new Runnable() {
-				@Override
-				public void run() {
-					long now = System.currentTimeMillis();
-					double currentMs = Math.min( durationMs, now - startTime );
-					float dx = (float) mEasing.easeOut( currentMs, 0, newX - originalX, durationMs );
-					float dy = (float) mEasing.easeOut( currentMs, 0, newY - originalY, durationMs );
-					glImageView.mCurrentRenderer.setAbsoluteTranslation(originalX + dx, originalY + dy);
-					glImageView.requestRender();
-					if(currentMs < durationMs ){
-						glImageView.postDelayed(this, 10);
-					}
-					
-//					if(currentMs < durationMs ){
-//						final Runnable runnable = this;
-//						OnRenderCompletedListener listener = new OnRenderCompletedListener() {
-//							@Override
-//							public void onRenderCompleted() {
-//								glImageView.post(runnable);
-//							}
-//						};
-//						mCurrentRenderer.setOnRenderCompletedListener(listener);
-//					}else{
-//						mCurrentRenderer.setOnRenderCompletedListener(null);
-//					}
-				}
-			} );
-			
-			// Cache runnable and cancel it if touches happen
+			mFlingAnimation.start(ndcVelocityX, ndcVelocityY);
+			mLastValidCenter.set(mFlingAnimation.getFinalX(), mFlingAnimation.getFinalY());
 			
+			if(GLTrace.ENABLED) GLTrace.endSection();
 			return true;
 		}
 		
@@ -285,59 +556,19 @@ public class GLImageView extends GLSurfaceView {
 		if(mCurrentRenderer.getAbsoluteScale() < mCurrentRenderer.getMaxZoomScale() * GLImageViewRenderer.mAllowableZoomOvershot){
 			this.mCurrentRenderer.postScaleByAmount(scale, centerX, centerY);
 			if(mCurrentRenderer.getAbsoluteScale() <= mCurrentRenderer.getMaxZoomScale()){
-				mLastValidCenter = mCurrentRenderer.getAbsoluteTranslation();
+				mCurrentRenderer.getAbsoluteTranslation(mLastValidCenter);
 			}
-			this.requestRender();
+			requestTransformRender();
 		}
      
         return true;
 	}
 	
 	public void zoomTo( float scale, float centerX, float centerY, long duration) {
-		Log.i(LOG_TAG, "zoom to");
+		if(GLTrace.ENABLED) GLTrace.beginSection("GLImageView.zoomTo");
 		
-		final float originalScale = mCurrentRenderer.getAbsoluteScale();
-		PointF center = mCurrentRenderer.getAbsoluteTranslation();
-		final float originalCenterX = center.x;
-		final float originalCenterY = center.y;
+		mZoomAnimation.start(scale, centerX, centerY, duration);
 		
-		final float newScale = scale;
-		final float newCenterX = centerX;
-		final float newCenterY = centerY;
-		
-		final long startTime = System.currentTimeMillis();
-		final long durationMs = duration;
-		
-		final GLImageView glImageView = this;
-		
-		this.post( new Runnable() {
-			@Override
-			public void run() {
-				long now = System.currentTimeMillis();
-				double currentMs = Math.min( durationMs, now - startTime );
-				float dScale = (float) mEasing.easeOut( currentMs, 0, newScale - originalScale, durationMs );
-				float dx = (float) mEasing.easeOut( currentMs, 0, newCenterX - originalCenterX, durationMs );
-				float dy = (float) mEasing.easeOut( currentMs, 0, newCenterY - originalCenterY, durationMs );
-				glImageView.mCurrentRenderer.setAbsoluteScale(originalScale + dScale);
-				glImageView.mCurrentRenderer.setAbsoluteTranslation(originalCenterX + dx, originalCenterY + dy);
-				glImageView.requestRender();
-				if(currentMs < durationMs ){
-					glImageView.postDelayed(this, 10);
-				}
-				
-//				if(currentMs < durationMs ){
-//					final Runnable runnable = this;
-//					OnRenderCompletedListener listener = new OnRenderCompletedListener() {
-//						@Override
-//						public void onRenderCompleted() {
-//							glImageView.post(runnable);
-//						}
-//					};
-//					mCurrentRenderer.setOnRenderCompletedListener(listener);
-//				}else{
-//					mCurrentRenderer.setOnRenderCompletedListener(null);
-//				}
-			}
-		} );			
+		if(GLTrace.ENABLED) GLTrace.endSection();
 	}
-}
\ No newline at end of file
+}
@@ -1,5 +1,8 @@
 package com.aviary.glimageview;
 
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
@@ -9,59 +12,156 @@ import android.graphics.PointF;
 import android.graphics.RectF;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
-import android.util.Log;
+
+import com.aviary.glimageview.GLResourceRegistry.GLResource;
 
 public class GLImageViewRenderer implements GLSurfaceView.Renderer {
 	private final static String LOG_TAG = "GLImageView";
 	public static final float mAllowableZoomOvershot = 1.f / 0.9f;
+	private static final long RESTORE_BUDGET_NANOS = 4000000;
 
-    // Cached sizes
-    private int mCurrentBitmapWidth = 0;
-    private int mCurrentBitmapHeight = 0;
-	private int mCurrentWidth = 0;
-	private int mCurrentHeight = 0;
+    // Cached sizes, written on the GL thread and read on the UI thread
+    private volatile int mCurrentBitmapWidth = 0;
+    private volatile int mCurrentBitmapHeight = 0;
+    private volatile int mMaxTextureSize = 0;
+	private volatile int mCurrentWidth = 0;
+	private volatile int mCurrentHeight = 0;
 	
 	// Resizing Matrix
 	private float mMinZoomScale = 1.f;
 	private float mMaxZoomScale = 5.f;
-	protected Matrix mTransformMatrix;
-	protected final float[] mMatrixValues = new float[9];
-	protected RectF mImageBoundsRect;
+	
+	// View state. Gestures change mViewTransform on the UI thread, which then publishes its values;
+	// the GL thread copies them into mFrameTransform at the start of every frame, so it always sees a
+	// scale and translation that belong together, and nothing is allocated on either side. The image
+	// bounds go the other way: the GL thread computes them and publishes a copy for the gestures.
+	protected final ViewTransform mViewTransform = new ViewTransform();
+	private final TransformHandoff mTransformHandoff = new TransformHandoff();
+	private final ViewTransform mFrameTransform = new ViewTransform();
+	private volatile RectF mPublishedBoundsRect = new RectF();
+	
+	// GL thread only
+	protected final RectF mImageBoundsRect = new RectF();
+	private final float[] mHalfExtents = new float[2];
 	
 	// Rendering
     GLImagingProgram mGlProgram;
     Bitmap mPendingBitmapToSet;
+    int mPendingImageWidth;
+    int mPendingImageHeight;
+    ImageSource mPendingImageSourceToSet;
+    Etc1Image mPendingCompressedImageToSet;
     boolean mHasSetupProgram;
+    
+    // Context loss
+    private final GLResourceRegistry mResources = new GLResourceRegistry();
+    private Bitmap mCurrentBitmap;
+    private ImageSource mCurrentImageSource;
+    private Etc1Image mCurrentCompressedImage;
+    private final GLResource mImageResource = new GLResource(){
+    	@Override
+    	public void restore(){
+    		restoreImage();
+    	}
+    };
+    
+    // Background uploads
+    private GLTextureUploader mTextureUploader;
+    private GLTextureUploader.Upload mPendingUpload;
+    private int mPendingUploadWidth;
+    private int mPendingUploadHeight;
+    private final int[] mTextureIds = new int[1];
+    private final Runnable mUploadCompletedCallback = new Runnable(){
+    	@Override
+    	public void run(){
+    		requestRender();
+    	}
+    };
+    
+    // Result cache
+    private boolean mResultCacheEnabled = true;
+    private GLRenderTarget mResultCache;
+    private final GLTextureDrawer mCacheDrawer = new GLTextureDrawer();
+    private int mImageGeneration;
+    private int mCachedImageGeneration = -1;
+    private long mCachedParameterVersion;
+    private final ViewTransform mIdentityTransform = new ViewTransform();
+    private final RectF mFullBoundsRect = new RectF(-1.f, 1.f, 1.f, -1.f);
+    
+    private final ArrayList<ImageReadback> mPendingReadbacks = new ArrayList<ImageReadback>();
+    private Runnable mRequestRenderCallback;
+    
+    // Damage tracking. What the GL thread last drew, written parameter version first and read transform version first.
+    private volatile int mDrawnTransformVersion = -1;
+    private volatile long mDrawnParameterVersion;
+    private final AtomicLong mSkippedFrameCount = new AtomicLong();
 
     // Listeners
     private OnImageBitmapLoaded mImageLoadedListener;
     private OnBitmapReadOutCompleted mReadOutListener;
     private OnRenderCompletedListener mRenderCompletedListener;
     
+    // Metrics
+    private volatile OnRenderMetricsListener mMetricsListener;
+    private final AtomicLong mRenderRequestedNanos = new AtomicLong();
+    private long mReadbackStartNanos;
+    
     public GLImageViewRenderer(GLImagingProgram program){
     	mGlProgram = program;
     	if(mGlProgram == null){
     		throw new IllegalArgumentException("program cannot be null");
     	}
+    	mResources.register(mImageResource, GLResourceRegistry.PRIORITY_VISIBLE);
     }
     
 	@Override
 	public void onSurfaceCreated( GL10 gl, EGLConfig config ) {
-		Log.i( LOG_TAG, "onSurfaceCreated" );
-        mTransformMatrix = new Matrix();   
-        mImageBoundsRect = new RectF();
+		if(GLTrace.ENABLED) GLTrace.event( LOG_TAG, "onSurfaceCreated" );
+		// An upload still in flight belonged to the old context, it starts over
+		if(mPendingUpload != null){
+			mPendingUpload.cancel();
+			mPendingBitmapToSet = mPendingUpload.getBitmap();
+			mPendingImageWidth = mPendingUploadWidth;
+			mPendingImageHeight = mPendingUploadHeight;
+			mPendingImageSourceToSet = null;
+			mPendingCompressedImageToSet = null;
+			mPendingUpload = null;
+		}
+		
+		// A lost context is rebuilt lazily from the resource registry, keeping the zoom and pan
+		if(mHasSetupProgram){
+			mResources.onContextLost();
+		}else{
+			mImageBoundsRect.setEmpty();
+			mPublishedBoundsRect = new RectF();
+		}
                 
+        int[] maxTextureSize = new int[1];
+        GLES20.glGetIntegerv(GLES20.GL_MAX_TEXTURE_SIZE, maxTextureSize, 0);
+        mMaxTextureSize = maxTextureSize[0];
+        
         mGlProgram.setup();
         mHasSetupProgram = true;
         
+        // The cache lived in the previous context
+        mResultCache = null;
+        mCachedImageGeneration = -1;
+        if(mGlProgram instanceof CacheableImagingProgram){
+        	mCacheDrawer.setup();
+        }
+        
         if (mPendingBitmapToSet != null){
-        	setImage(mPendingBitmapToSet);
+        	setImage(mPendingBitmapToSet, mPendingImageWidth, mPendingImageHeight);
+        }else if(mPendingImageSourceToSet != null){
+        	setImageSource(mPendingImageSourceToSet);
+        }else if(mPendingCompressedImageToSet != null){
+        	setCompressedImage(mPendingCompressedImageToSet);
         }
 	}
 	
 	@Override
 	public void onSurfaceChanged( GL10 gl, int width, int height ) {
-		Log.i( LOG_TAG, "onSurfaceChanged. " + width + "x" + height );
+		if(GLTrace.ENABLED) GLTrace.event( LOG_TAG, "onSurfaceChanged. " + width + "x" + height );
 		mCurrentWidth = width;
 		mCurrentHeight = height;
 		GLES20.glViewport(0, 0, width, height);
@@ -72,112 +172,378 @@ public class GLImageViewRenderer implements GLSurfaceView.Renderer {
     
 	@Override
 	public void onDrawFrame( GL10 gl ) {
-		Log.i(LOG_TAG, "drawFrame");
-		mGlProgram.render(mTransformMatrix, mImageBoundsRect);
+		if(GLTrace.ENABLED) GLTrace.beginSection("GLImageViewRenderer.drawFrame");
+		// Taken before any work, so requests made while this frame draws are timed for the next one
+		long requestedNanos = mRenderRequestedNanos.getAndSet(0);
+		OnRenderMetricsListener metricsListener = mMetricsListener;
+		long frameStartNanos = metricsListener != null ? System.nanoTime() : 0;
+		
+		int transformVersion = mTransformHandoff.get(mFrameTransform);
+		long parameterVersion = getParameterVersion();
+		if(mResources.restorePending(RESTORE_BUDGET_NANOS)){
+			requestRender();
+		}
+		applyCompletedUploads();
+		if(!renderFromCache(mFrameTransform)){
+			mGlProgram.render(mFrameTransform, mImageBoundsRect);
+		}
+		mDrawnParameterVersion = parameterVersion;
+		mDrawnTransformVersion = transformVersion;
 		if(mRenderCompletedListener != null){
 			mRenderCompletedListener.onRenderCompleted();
 		}
+		
+		// Asynchronous readbacks advance one strip per frame so panning stays responsive
+		if(!mPendingReadbacks.isEmpty()){
+			if(mPendingReadbacks.get(0).step()){
+				ImageReadback readback = mPendingReadbacks.remove(0);
+				if(metricsListener != null && !readback.isCancelled()){
+					metricsListener.onReadbackCompleted(System.nanoTime() - mReadbackStartNanos);
+				}
+				mReadbackStartNanos = System.nanoTime();
+			}
+			if(!mPendingReadbacks.isEmpty()){
+				requestRender();
+			}
+		}
+		
+		if(metricsListener != null){
+			long latencyNanos = requestedNanos != 0 ? frameStartNanos - requestedNanos : -1;
+			metricsListener.onFrameRendered(System.nanoTime() - frameStartNanos, latencyNanos);
+		}
+		
+		if(GLTrace.ENABLED) GLTrace.endSection();
 	}
 	
 	public void setImage(Bitmap bitmap){
+		setImage(bitmap, bitmap.getWidth(), bitmap.getHeight());
+	}
+	
+	/**
+	 * Sets a bitmap that stands in for an image of a different size, such as a subsampled stage
+	 * of a progressive load. The image rect is laid out for imageWidth x imageHeight, so swapping
+	 * stages of the same image keeps the current zoom and pan.
+	 * The bitmap is kept to restore the texture if the GL context is lost, so it should not be
+	 * recycled while it is displayed.
+	 * @param bitmap The pixels to display
+	 * @param imageWidth The width of the full resolution image
+	 * @param imageHeight The height of the full resolution image
+	 */
+	public void setImage(Bitmap bitmap, int imageWidth, int imageHeight){
 		if(mHasSetupProgram){
-			mGlProgram.setBitmap(bitmap);
-			mCurrentBitmapWidth = bitmap.getWidth();
-			mCurrentBitmapHeight = bitmap.getHeight();
+			cancelPendingUpload();
+			mPendingBitmapToSet = null;
 			
-			if(mImageLoadedListener != null){
-				mImageLoadedListener.onBitmapLoaded(bitmap);
+			// The current image stays on screen until the upload completes
+			if(canUploadInBackground(bitmap)){
+				mPendingUpload = mTextureUploader.upload(bitmap, mUploadCompletedCallback);
+				mPendingUploadWidth = imageWidth;
+				mPendingUploadHeight = imageHeight;
+				return;
 			}
 			
-			mPendingBitmapToSet = null;
-			setupImageRect();
+			OnRenderMetricsListener metricsListener = mMetricsListener;
+			long uploadStartNanos = metricsListener != null ? System.nanoTime() : 0;
+			mGlProgram.setBitmap(bitmap);
+			if(metricsListener != null){
+				metricsListener.onTextureUploaded(System.nanoTime() - uploadStartNanos, (long) bitmap.getRowBytes() * bitmap.getHeight());
+			}
+			onImageSet(bitmap, imageWidth, imageHeight);
 		}else{
+			mPendingImageSourceToSet = null;
+			mPendingCompressedImageToSet = null;
 			mPendingBitmapToSet = bitmap;
+			mPendingImageWidth = imageWidth;
+			mPendingImageHeight = imageHeight;
 		}
 	}
 	
-	private void setupImageRect(){		
-		if(mCurrentBitmapHeight == 0 || mCurrentBitmapWidth == 0 || mCurrentHeight == 0 || mCurrentWidth == 0){
-			return;
+	/**
+	 * Streams the image from a source instead of a full Bitmap. Requires a TiledGLImageProgram.
+	 * OnImageBitmapLoaded is not called, since no full Bitmap is ever decoded.
+	 * @param source The image source
+	 */
+	public void setImageSource(ImageSource source){
+		if(!(mGlProgram instanceof TiledGLImageProgram)){
+			throw new IllegalStateException("setImageSource requires a TiledGLImageProgram");
 		}
 		
-		float glHalfWidth = 1.f;
-		float glHalfHeight = 1.f;
-		
-		float imageAspect = mCurrentBitmapWidth / (float)mCurrentBitmapHeight;
-		float renderbufferAspect = mCurrentWidth / (float) mCurrentHeight;
-		
-		if(imageAspect > renderbufferAspect){
-			glHalfWidth = Math.min(1.f, mCurrentBitmapWidth / (float)mCurrentWidth);
-			glHalfHeight = glHalfWidth * renderbufferAspect / imageAspect;
+		if(mHasSetupProgram){
+			cancelPendingUpload();
+			((TiledGLImageProgram) mGlProgram).setImageSource(source);
+			mImageGeneration++;
+			mCurrentBitmapWidth = source.getWidth();
+			mCurrentBitmapHeight = source.getHeight();
+			mCurrentBitmap = null;
+			mCurrentImageSource = source;
+			mCurrentCompressedImage = null;
+			mResources.markRestored(mImageResource);
+			
+			mPendingImageSourceToSet = null;
+			setupImageRect();
 		}else{
-			glHalfHeight = Math.min(1.f, mCurrentBitmapHeight / (float)mCurrentHeight);
-			glHalfWidth = imageAspect / renderbufferAspect;
+			mPendingBitmapToSet = null;
+			mPendingCompressedImageToSet = null;
+			mPendingImageSourceToSet = source;
 		}
-			
-        mImageBoundsRect.set(-glHalfWidth, glHalfHeight, glHalfWidth, -glHalfHeight);
 	}
 	
-	// Matrix Helpers 	
-	
-	public void postScaleByAmount(float amount){
-		mTransformMatrix.getValues(mMatrixValues);
+	/**
+	 * Displays an image from ETC1 compressed textures, when the program and the device support them.
+	 * Otherwise the image is decoded and displayed as a Bitmap. OnImageBitmapLoaded is only called
+	 * in that case.
+	 * @param image The encoded image, kept to restore the textures if the GL context is lost.
+	 */
+	public void setCompressedImage(Etc1Image image){
+		if(!mHasSetupProgram){
+			mPendingBitmapToSet = null;
+			mPendingImageSourceToSet = null;
+			mPendingCompressedImageToSet = image;
+			return;
+		}
 		
-		float scale = mMatrixValues[Matrix.MSCALE_X];
-		float newScale = scale * amount;
+		if(!(mGlProgram instanceof CompressedTextureProgram) || !((CompressedTextureProgram) mGlProgram).isEtc1Supported()){
+			setImage(Bitmap.createBitmap(image.decode(), image.getWidth(), image.getHeight(), Bitmap.Config.ARGB_8888));
+			return;
+		}
 		
-		scale = Math.max(mMinZoomScale * 1 / mAllowableZoomOvershot, Math.min(newScale, mMaxZoomScale * mAllowableZoomOvershot));
+		cancelPendingUpload();
+		mPendingCompressedImageToSet = null;
+		OnRenderMetricsListener metricsListener = mMetricsListener;
+		long uploadStartNanos = metricsListener != null ? System.nanoTime() : 0;
+		((CompressedTextureProgram) mGlProgram).setCompressedImage(image);
+		if(metricsListener != null){
+			metricsListener.onTextureUploaded(System.nanoTime() - uploadStartNanos, image.getByteCount());
+		}
 		
-		mMatrixValues[Matrix.MSCALE_X] = scale;
-		mMatrixValues[Matrix.MSCALE_Y] = scale;
+		mImageGeneration++;
+		mCurrentBitmapWidth = image.getWidth();
+		mCurrentBitmapHeight = image.getHeight();
+		mCurrentBitmap = null;
+		mCurrentImageSource = null;
+		mCurrentCompressedImage = image;
+		mResources.markRestored(mImageResource);
+		setupImageRect();
+	}
+	
+	private void onImageSet(Bitmap bitmap, int imageWidth, int imageHeight){
+		mImageGeneration++;
+		mCurrentBitmapWidth = imageWidth;
+		mCurrentBitmapHeight = imageHeight;
+		mCurrentBitmap = bitmap;
+		mCurrentImageSource = null;
+		mCurrentCompressedImage = null;
+		mResources.markRestored(mImageResource);
 		
-		mTransformMatrix.setValues(mMatrixValues);
+		if(mImageLoadedListener != null){
+			mImageLoadedListener.onBitmapLoaded(bitmap);
+		}
 		
-		constrainTranslation();
+		setupImageRect();
 	}
 	
-	public void postScaleByAmount(float amount, float centerX, float centerY){
-		mTransformMatrix.postScale(amount, amount, centerX, centerY);
+	// Background uploads
+	
+	/**
+	 * Uploads images set with setImage on the uploader's thread, when the program can take a prepared
+	 * texture. Only immutable bitmaps are uploaded in the background, since a mutable one could be
+	 * changed or handed back to a BitmapPool while it is being read.
+	 * @param uploader Shares textures with this renderer's context, or null to upload on the GL thread.
+	 */
+	public void setTextureUploader(GLTextureUploader uploader){
+		mTextureUploader = uploader;
+	}
+	
+	private boolean canUploadInBackground(Bitmap bitmap){
+		return mTextureUploader != null && mTextureUploader.isAvailable()
+				&& mGlProgram instanceof PreparedTextureProgram && !bitmap.isMutable();
+	}
+	
+	private void cancelPendingUpload(){
+		if(mPendingUpload != null){
+			mPendingUpload.cancel();
+			mPendingUpload = null;
+		}
+	}
+	
+	/**
+	 * Hands the finished background upload to the program, and deletes the textures of superseded ones.
+	 */
+	private void applyCompletedUploads(){
+		if(mTextureUploader == null){
+			return;
+		}
 		
-		mTransformMatrix.getValues(mMatrixValues);
+		GLTextureUploader.Upload upload;
+		while((upload = mTextureUploader.pollCompleted()) != null){
+			if(upload != mPendingUpload || upload.isCancelled()){
+				mTextureIds[0] = upload.getTextureId();
+				GLES20.glDeleteTextures(1, mTextureIds, 0);
+				continue;
+			}
+			
+			mPendingUpload = null;
+			((PreparedTextureProgram) mGlProgram).setPreparedTexture(upload.getBitmap(), upload.getTextureId());
+			OnRenderMetricsListener metricsListener = mMetricsListener;
+			if(metricsListener != null){
+				metricsListener.onTextureUploaded(upload.getUploadNanos(), upload.getBytes());
+			}
+			onImageSet(upload.getBitmap(), mPendingUploadWidth, mPendingUploadHeight);
+		}
+	}
+	
+	// Context loss
+	
+	/**
+	 * Resources registered here are restored, most important first, over the frames that follow a
+	 * loss of the GL context. The displayed image is registered by the renderer; programs and callers
+	 * can register more. Must only be used on the GL thread.
+	 */
+	public GLResourceRegistry getResourceRegistry(){
+		return mResources;
+	}
+	
+	/**
+	 * Uploads the displayed image again into a new context. The sizes and transform are unchanged.
+	 */
+	private void restoreImage(){
+		if(mCurrentImageSource != null){
+			((TiledGLImageProgram) mGlProgram).setImageSource(mCurrentImageSource);
+		}else if(mCurrentCompressedImage != null){
+			((CompressedTextureProgram) mGlProgram).setCompressedImage(mCurrentCompressedImage);
+		}else if(mCurrentBitmap != null){
+			if(mCurrentBitmap.isRecycled()){
+				if(GLTrace.ENABLED) GLTrace.event( LOG_TAG, "Displayed bitmap was recycled, it cannot be restored" );
+				mCurrentBitmap = null;
+				return;
+			}
+			mGlProgram.setBitmap(mCurrentBitmap);
+		}else{
+			return;
+		}
+		mImageGeneration++;
+	}
+	
+	// Result cache
+	
+	/**
+	 * Enables caching the output of a CacheableImagingProgram, so frames that only pan or zoom draw a
+	 * single textured quad. The program's own result texture is used when it has one, otherwise the
+	 * output is copied into an offscreen texture. On by default. Must be called on the GL thread.
+	 * @param enabled Whether to cache
+	 */
+	public void setResultCacheEnabled(boolean enabled){
+		mResultCacheEnabled = enabled;
+		if(!enabled){
+			releaseResultCache();
+		}
+	}
+	
+	/**
+	 * Draws the cached program output, rendering it first if the image or the program parameters changed.
+	 * @return false if the program cannot be cached and has to be rendered directly.
+	 */
+	private boolean renderFromCache(ViewTransform transform){
+		if(!mResultCacheEnabled || !(mGlProgram instanceof CacheableImagingProgram) || !mCacheDrawer.isSetup()){
+			return false;
+		}
 		
-		float scale = mMatrixValues[Matrix.MSCALE_X];
-		scale = Math.max(mMinZoomScale * 1 / mAllowableZoomOvershot, Math.min(scale, mMaxZoomScale * mAllowableZoomOvershot));
+		// Programs that keep their output in a texture already are drawn from it, a copy would double the memory
+		int resultTextureId = ((CacheableImagingProgram) mGlProgram).renderResultTexture();
+		if(resultTextureId != 0){
+			releaseResultCache();
+			mCacheDrawer.draw(resultTextureId, transform, mImageBoundsRect, false);
+			return true;
+		}
 		
-		mMatrixValues[Matrix.MSCALE_X] = scale;
-		mMatrixValues[Matrix.MSCALE_Y] = scale;
+		// The cache holds the program output at the image's native size, which has to fit in a texture
+		if(mCurrentBitmapWidth == 0 || mCurrentBitmapHeight == 0
+				|| mCurrentBitmapWidth > mMaxTextureSize || mCurrentBitmapHeight > mMaxTextureSize){
+			return false;
+		}
 		
-		mTransformMatrix.setValues(mMatrixValues);
+		long parameterVersion = ((CacheableImagingProgram) mGlProgram).getParameterVersion();
+		if(mResultCache == null || mCachedImageGeneration != mImageGeneration || mCachedParameterVersion != parameterVersion){
+			if(mResultCache != null && (mResultCache.getWidth() != mCurrentBitmapWidth || mResultCache.getHeight() != mCurrentBitmapHeight)){
+				releaseResultCache();
+			}
+			if(mResultCache == null){
+				mResultCache = new GLRenderTarget(mCurrentBitmapWidth, mCurrentBitmapHeight);
+			}
+			
+			mResultCache.bind();
+			mGlProgram.setFramebufferSize(mCurrentBitmapWidth, mCurrentBitmapHeight);
+			mGlProgram.render(mIdentityTransform, mFullBoundsRect);
+			GLRenderTarget.unbind();
+			GLES20.glViewport(0, 0, mCurrentWidth, mCurrentHeight);
+			mGlProgram.setFramebufferSize(mCurrentWidth, mCurrentHeight);
+			
+			mCachedImageGeneration = mImageGeneration;
+			mCachedParameterVersion = parameterVersion;
+		}
 		
+		mCacheDrawer.draw(mResultCache.getTextureId(), transform, mImageBoundsRect, true);
+		return true;
+	}
+	
+	private void releaseResultCache(){
+		if(mResultCache != null){
+			mResultCache.delete();
+			mResultCache = null;
+		}
+		mCachedImageGeneration = -1;
+	}
+	
+	private void setupImageRect(){		
+		if(!ImageFit.computeHalfExtents(mCurrentBitmapWidth, mCurrentBitmapHeight, mCurrentWidth, mCurrentHeight, mHalfExtents)){
+			return;
+		}
+			
+        mImageBoundsRect.set(-mHalfExtents[0], mHalfExtents[1], mHalfExtents[0], -mHalfExtents[1]);
+        mPublishedBoundsRect = new RectF(mImageBoundsRect);
+	}
+	
+	// Matrix Helpers 	
+	
+	// The transform setters and getters below belong to the UI thread
+	
+	public void postScaleByAmount(float amount){
+		mViewTransform.setScale(mViewTransform.getScale() * amount);
+		clampScale();
 		constrainTranslation();
+		publishTransform();
+	}
+	
+	public void postScaleByAmount(float amount, float centerX, float centerY){
+		mViewTransform.postScale(amount, centerX, centerY);
+		clampScale();
+		constrainTranslation();
+		publishTransform();
 	}
 	
 	public void postTranslateByAmount(float amountX, float amountY){
-		mTransformMatrix.getValues( mMatrixValues);
-
-		float transX = mMatrixValues[Matrix.MTRANS_X] + amountX;
-		float transY = mMatrixValues[Matrix.MTRANS_Y] + amountY;
-		
-		mMatrixValues[Matrix.MTRANS_X] = transX;
-		mMatrixValues[Matrix.MTRANS_Y] = transY;
-		
-		mTransformMatrix.setValues(mMatrixValues);
-		
+		mViewTransform.postTranslate(amountX, amountY);
 		constrainTranslation();
+		publishTransform();
 	}
 	
 	public PointF getAbsoluteTranslation(){
-		PointF translation = new PointF();
-		mTransformMatrix.getValues( mMatrixValues);
-		translation.x = mMatrixValues[Matrix.MTRANS_X];
-		translation.y = mMatrixValues[Matrix.MTRANS_Y];
-		return translation;
+		return getAbsoluteTranslation(new PointF());
+	}
+	
+	/**
+	 * Allocation free variant of {@link #getAbsoluteTranslation()}.
+	 * @param out Receives the translation
+	 * @return out
+	 */
+	public PointF getAbsoluteTranslation(PointF out){
+		out.x = mViewTransform.getTranslateX();
+		out.y = mViewTransform.getTranslateY();
+		return out;
 	}
 	
 	public float getAbsoluteScale(){
-		mTransformMatrix.getValues( mMatrixValues);
-		float scale = mMatrixValues[Matrix.MSCALE_X];
-		return scale;
+		return mViewTransform.getScale();
 	}
 	
 	public PointF getConstrainedTranslation(float transX, float transY){
@@ -185,61 +551,92 @@ public class GLImageViewRenderer implements GLSurfaceView.Renderer {
 	}
 	
 	public PointF getConstrainedTranslation(float transX, float transY, float scale){
-		PointF translation = new PointF();
-		
-		mTransformMatrix.getValues(mMatrixValues);
-		
-		float scaleX = Math.max(scale * mImageBoundsRect.right, 1.f);
-		float scaleY = Math.max(scale * mImageBoundsRect.top, 1.f);
-
-		if(transX < 0){
-			translation.x = Math.max(transX, 1 - scaleX);
-		}else{
-			translation.x = Math.min(transX, scaleX - 1);
-		}
-		if(transY < 0){
-			translation.y = Math.max(transY, 1 - scaleY);
-		}else{
-			translation.y = Math.min(transY, scaleY - 1);
-		}
-			
-		return translation;
+		return getConstrainedTranslation(transX, transY, scale, new PointF());
+	}
+	
+	/**
+	 * Allocation free variant of {@link #getConstrainedTranslation(float, float, float)}.
+	 * @param out Receives the constrained translation
+	 * @return out
+	 */
+	public PointF getConstrainedTranslation(float transX, float transY, float scale, PointF out){
+		out.x = getConstrainedTranslationX(transX, scale);
+		out.y = getConstrainedTranslationY(transY, scale);
+		return out;
+	}
+	
+	public float getConstrainedTranslationX(float transX, float scale){
+		return ViewTransform.constrain(transX, scale, mPublishedBoundsRect.right);
+	}
+	
+	public float getConstrainedTranslationY(float transY, float scale){
+		return ViewTransform.constrain(transY, scale, mPublishedBoundsRect.top);
 	}
 	
 	public void setAbsoluteTranslation(float transX, float transY){
-		mTransformMatrix.getValues( mMatrixValues);
-
-		mMatrixValues[Matrix.MTRANS_X] = transX;
-		mMatrixValues[Matrix.MTRANS_Y] = transY;
-		
-		mTransformMatrix.setValues(mMatrixValues);
-
+		mViewTransform.setTranslate(transX, transY);
 		constrainTranslation();
+		publishTransform();
+	}
+	
+	/**
+	 * Sets the translation without keeping the image within the viewport, for overscroll effects.
+	 * The next constrained operation snaps it back.
+	 */
+	public void setAbsoluteTranslationUnconstrained(float transX, float transY){
+		mViewTransform.setTranslate(transX, transY);
+		publishTransform();
+	}
+	
+	/**
+	 * @return How far the image can be translated horizontally either way at the given scale.
+	 */
+	public float getMaxTranslationX(float scale){
+		return Math.max(scale * mPublishedBoundsRect.right, 1.f) - 1.f;
+	}
+	
+	/**
+	 * @return How far the image can be translated vertically either way at the given scale.
+	 */
+	public float getMaxTranslationY(float scale){
+		return Math.max(scale * mPublishedBoundsRect.top, 1.f) - 1.f;
 	}
 	
 	public void setAbsoluteScale(float scale){
-		mTransformMatrix.getValues( mMatrixValues);
-
-		mMatrixValues[Matrix.MSCALE_X] = scale;
-		mMatrixValues[Matrix.MSCALE_Y] = scale;
-		
-		mTransformMatrix.setValues(mMatrixValues);
-
+		mViewTransform.setScale(scale);
+		constrainTranslation();
+		publishTransform();
+	}
+	
+	/**
+	 * Sets the scale and then the translation, publishing them together so no frame draws one without the other.
+	 */
+	public void setAbsoluteScaleAndTranslation(float scale, float transX, float transY){
+		mViewTransform.setScale(scale);
+		mViewTransform.setTranslate(transX, transY);
 		constrainTranslation();
+		publishTransform();
+	}
+	
+	private void clampScale(){
+		mViewTransform.clampScale(mMinZoomScale / mAllowableZoomOvershot, mMaxZoomScale * mAllowableZoomOvershot);
 	}
 	
 	private void constrainTranslation(){
-		mTransformMatrix.getValues(mMatrixValues);
+		RectF bounds = mPublishedBoundsRect;
+		mViewTransform.constrainTranslation(bounds.right, bounds.top);
+	}
 	
-		float transX = mMatrixValues[Matrix.MTRANS_X];
-		float transY = mMatrixValues[Matrix.MTRANS_Y];
-
-		PointF newTrans = getConstrainedTranslation(transX, transY);
-		
-		mMatrixValues[Matrix.MTRANS_X] = newTrans.x;
-		mMatrixValues[Matrix.MTRANS_Y] = newTrans.y;
-		
-		mTransformMatrix.setValues(mMatrixValues);
+	/**
+	 * Hands the current transform to the GL thread, unless it is already there.
+	 * @return The version of the published transform.
+	 */
+	private int publishTransform(){
+		return mTransformHandoff.publish(mViewTransform);
+	}
+	
+	private long getParameterVersion(){
+		return mGlProgram instanceof CacheableImagingProgram ? ((CacheableImagingProgram) mGlProgram).getParameterVersion() : 0;
 	}
 	
 	// Getters
@@ -252,6 +649,14 @@ public class GLImageViewRenderer implements GLSurfaceView.Renderer {
 		return mCurrentHeight;
 	}
 	
+	public int getImageWidth(){
+		return mCurrentBitmapWidth;
+	}
+	
+	public int getImageHeight(){
+		return mCurrentBitmapHeight;
+	}
+	
 	public float getMinZoomScale(){
 		return mMinZoomScale;
 	}
@@ -260,12 +665,39 @@ public class GLImageViewRenderer implements GLSurfaceView.Renderer {
 		return mMaxZoomScale;
 	}
 	
+	/**
+	 * @return GL_MAX_TEXTURE_SIZE of the current context, or 0 before the surface has been created.
+	 */
+	public int getMaxTextureSize(){
+		return mMaxTextureSize;
+	}
+	
+	/**
+	 * @return The last published transform as a new Matrix. Safe to call from any thread.
+	 */
 	public Matrix getTransformMatrix(){
-		return mTransformMatrix;
+		float[] values = new float[9];
+		ViewTransform transform = new ViewTransform();
+		mTransformHandoff.get(transform);
+		transform.getValues(values);
+		Matrix matrix = new Matrix();
+		matrix.setValues(values);
+		return matrix;
+	}
+	
+	/**
+	 * @return The UI thread's view transform. Changes to it are not constrained, and reach the GL
+	 * thread with the next transform call or requested frame.
+	 */
+	public ViewTransform getViewTransform(){
+		return mViewTransform;
 	}
 	
+	/**
+	 * @return The image bounds last computed on the GL thread. Must not be modified.
+	 */
 	public RectF getImageBoundsRect(){
-		return mImageBoundsRect;
+		return mPublishedBoundsRect;
 	}
 	
 	public void requestBitmap(Bitmap bitmap)
@@ -275,17 +707,82 @@ public class GLImageViewRenderer implements GLSurfaceView.Renderer {
 		}
 		
 		if(bitmap == null){
-			bitmap = Bitmap.createBitmap(mCurrentBitmapWidth, mCurrentBitmapHeight, Bitmap.Config.ARGB_8888);
+			bitmap = BitmapPool.getDefault().getOrCreate(mCurrentBitmapWidth, mCurrentBitmapHeight, Bitmap.Config.ARGB_8888);
 		}
 		
 		if(bitmap.getWidth() != mCurrentBitmapWidth || bitmap.getHeight() != mCurrentBitmapHeight || bitmap.getConfig() != Bitmap.Config.ARGB_8888){
 			throw new IllegalArgumentException("bitmap must be same size and config as the one passed in");
 		}
 		
+		OnRenderMetricsListener metricsListener = mMetricsListener;
+		long readbackStartNanos = metricsListener != null ? System.nanoTime() : 0;
 		mGlProgram.readImage(bitmap);
+		if(metricsListener != null){
+			metricsListener.onReadbackCompleted(System.nanoTime() - readbackStartNanos);
+		}
 		mReadOutListener.onBitmapReadOutCompleted(bitmap);
 	}
 	
+	/**
+	 * Queues a readback that is advanced one strip per drawn frame. Must be called on the GL thread.
+	 * @param readback The readback to run
+	 */
+	public void startReadback(ImageReadback readback){
+		if(mPendingReadbacks.isEmpty()){
+			mReadbackStartNanos = System.nanoTime();
+		}
+		mPendingReadbacks.add(readback);
+		requestRender();
+	}
+	
+	/**
+	 * @param callback Used by the renderer to ask for another frame, typically GLSurfaceView.requestRender.
+	 */
+	public void setRequestRenderCallback(Runnable callback){
+		mRequestRenderCallback = callback;
+	}
+	
+	/**
+	 * Records when a render was requested, for the request to draw latency. Only the first request
+	 * before a frame counts. Safe to call from any thread; GLImageView calls it from requestRender.
+	 */
+	public void onRenderRequested(){
+		if(mMetricsListener != null){
+			mRenderRequestedNanos.compareAndSet(0, System.nanoTime());
+		}
+	}
+	
+	/**
+	 * Publishes the transform and decides whether a frame is worth drawing, by comparing it and the
+	 * program parameters against the last frame the GL thread drew. GLSurfaceView always swaps after
+	 * a draw and the back buffer is not preserved, so frames can only be skipped before they are
+	 * requested. Must be called on the UI thread, which owns the view transform.
+	 * @param force Whether something else changed, such as the image, so the frame has to be drawn.
+	 * @return false if the frame would be identical to the one on screen; it is then counted as skipped.
+	 */
+	public boolean shouldRenderFrame(boolean force){
+		int transformVersion = publishTransform();
+		if(!force && transformVersion == mDrawnTransformVersion && getParameterVersion() == mDrawnParameterVersion){
+			mSkippedFrameCount.incrementAndGet();
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return How many requested frames {@link #shouldRenderFrame} dropped as identical to the last one.
+	 */
+	public long getSkippedFrameCount(){
+		return mSkippedFrameCount.get();
+	}
+	
+	private void requestRender(){
+		onRenderRequested();
+		if(mRequestRenderCallback != null){
+			mRequestRenderCallback.run();
+		}
+	}
+	
 	// Listeners
 	
     /**
@@ -297,6 +794,7 @@ public class GLImageViewRenderer implements GLSurfaceView.Renderer {
     	
     	/**
     	 * Called when bitmap loading process is finished. Always called on dedicated GL rendering queue.
+    	 * During a progressive load this is called once per stage, with that stage's bitmap.
     	 * @param bitmap The bitmap that has finished loading.
     	 */
     	public void onBitmapLoaded( Bitmap bitmap );
@@ -329,4 +827,37 @@ public class GLImageViewRenderer implements GLSurfaceView.Renderer {
     public void setOnRenderCompletedListener( OnRenderCompletedListener listener ) {
     	mRenderCompletedListener = listener;
     }
-}
\ No newline at end of file
+    
+    /**
+     * Interface for collecting rendering metrics. All callbacks happen on the GL thread and all times
+     * are in nanoseconds. Upload and readback times are the CPU time of the GL calls, which on most
+     * drivers wait for the copy to finish.
+     */
+    public static interface OnRenderMetricsListener {
+    	
+    	/**
+    	 * @param cpuTimeNanos Time spent in onDrawFrame.
+    	 * @param requestLatencyNanos Time from the first requestRender to the start of this frame, or -1 if not known.
+    	 */
+    	public void onFrameRendered( long cpuTimeNanos, long requestLatencyNanos );
+    	
+    	/**
+    	 * @param timeNanos Time spent uploading the image in setImage.
+    	 * @param bytes The size of the uploaded bitmap.
+    	 */
+    	public void onTextureUploaded( long timeNanos, long bytes );
+    	
+    	/**
+    	 * @param timeNanos Time from the start of a readback to its completion.
+    	 */
+    	public void onReadbackCompleted( long timeNanos );
+    }
+    
+    /**
+     * @param listener Receives rendering metrics, or null to stop measuring. Timing is skipped entirely while null.
+     */
+    public void setOnRenderMetricsListener( OnRenderMetricsListener listener ) {
+    	mMetricsListener = listener;
+    	mRenderRequestedNanos.set(0);
+    }
+}
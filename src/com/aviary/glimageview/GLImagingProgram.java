@@ -1,7 +1,6 @@
 package com.aviary.glimageview;
 
 import android.graphics.Bitmap;
-import android.graphics.Matrix;
 import android.graphics.RectF;
 
 public interface GLImagingProgram {
@@ -12,7 +11,12 @@ public interface GLImagingProgram {
 	
 	public void setFramebufferSize(int width, int height);
 	
-	public void render(Matrix transformMatrix, RectF imageBoundsRect);
+	/**
+	 * Draws the image into the current framebuffer.
+	 * @param transform The pan and zoom, applied to the image bounds. Programs upload it as a mat3 uniform.
+	 * @param imageBoundsRect Where the untransformed image lies, in NDC
+	 */
+	public void render(ViewTransform transform, RectF imageBoundsRect);
 
 	public void readImage(Bitmap bitmap);
 }
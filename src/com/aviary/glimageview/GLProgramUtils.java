@@ -0,0 +1,90 @@
+package com.aviary.glimageview;
+
+import android.graphics.RectF;
+import android.opengl.GLES20;
+import android.util.Log;
+
+/**
+ * Shader compilation helpers shared by the GLImagingProgram implementations.
+ */
+final class GLProgramUtils {
+
+	private static final String LOG_TAG = "GLProgramUtils";
+
+	private GLProgramUtils() {
+	}
+
+	/**
+	 * Compiles and links a program from the given sources and leaves it bound.
+	 * @return The program handle.
+	 */
+	static int createProgram(String vertexShaderSource, String fragmentShaderSource) {
+		int program = GLES20.glCreateProgram();
+
+		int vertexShader = getShader(GLES20.GL_VERTEX_SHADER, vertexShaderSource);
+		int fragmentShader = getShader(GLES20.GL_FRAGMENT_SHADER, fragmentShaderSource);
+
+		GLES20.glAttachShader(program, vertexShader);
+		GLES20.glAttachShader(program, fragmentShader);
+		GLES20.glLinkProgram(program);
+		GLES20.glUseProgram(program);
+
+		if(GLTrace.ENABLED) GLTrace.event(LOG_TAG, "Program " + program);
+
+		return program;
+	}
+
+	static int getShader(int type, String shaderSource) {
+		int shader = GLES20.glCreateShader(type);
+		GLES20.glShaderSource(shader, shaderSource);
+		GLES20.glCompileShader(shader);
+
+		int[] compiled = new int[1];
+		GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
+		if(compiled[0] == 0){
+			Log.e("opengl", "Could not compile shader");
+			Log.e("opengl", GLES20.glGetShaderInfoLog(shader));
+			Log.e("opengl", shaderSource);
+		}
+
+		return shader;
+	}
+
+	/**
+	 * @return The location of an attribute, failing fast if the shader does not declare or use it.
+	 */
+	static int getAttribLocation(int program, String name) {
+		int location = GLES20.glGetAttribLocation(program, name);
+		if(location < 0){
+			throw new IllegalStateException("Attribute " + name + " not found in program " + program);
+		}
+		return location;
+	}
+
+	/**
+	 * @return The location of a uniform, failing fast if the shader does not declare or use it.
+	 */
+	static int getUniformLocation(int program, String name) {
+		int location = GLES20.glGetUniformLocation(program, name);
+		if(location < 0){
+			throw new IllegalStateException("Uniform " + name + " not found in program " + program);
+		}
+		return location;
+	}
+
+	/**
+	 * Loads a view transform into a mat3 uniform, already in the column-major order ES 2.0 expects.
+	 * @param out Scratch space for the 9 uniform values
+	 */
+	static void setTransformUniform(int location, ViewTransform transform, float[] out) {
+		transform.getMatrix3(out, 0);
+		GLES20.glUniformMatrix3fv(location, 1, false, out, 0);
+	}
+
+	/**
+	 * Loads image bounds into the vec4 uniform read by the quad vertex shaders, as left, bottom, right, top.
+	 */
+	static void setBoundsUniform(int location, RectF bounds) {
+		GLES20.glUniform4f(location, bounds.left, bounds.bottom, bounds.right, bounds.top);
+	}
+}
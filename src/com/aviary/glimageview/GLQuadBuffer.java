@@ -0,0 +1,88 @@
+package com.aviary.glimageview;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.opengl.GLES20;
+
+/**
+ * A unit quad uploaded once into a vertex buffer object. Every vertex is a corner weight in [0, 1]
+ * that the vertex shader turns into a position within the image bounds, so the geometry never
+ * changes and the transform is passed as a uniform.
+ *
+ * The offset variant of glVertexAttribPointer only exists from API 9, so on older devices the
+ * same static data is kept in a client-side buffer instead.
+ */
+final class GLQuadBuffer {
+
+	private static final int FLOAT_BYTE_LENGTH = 4;
+	private static final int COMPONENTS = 2;
+	
+	// Triangle strip: bottom right, bottom left, top right, top left
+	private static final float[] CORNERS = {
+		1.f, 0.f,
+		0.f, 0.f,
+		1.f, 1.f,
+		0.f, 1.f
+	};
+	
+	public static final int VERTEX_COUNT = 4;
+	
+	private static final boolean USE_VBO = Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD;
+	
+	private FloatBuffer mClientBuffer;
+	private int mBufferId;
+
+	/**
+	 * Uploads the quad. Must be called on the GL thread of every new context.
+	 */
+	public void setup() {
+		mClientBuffer = ByteBuffer.allocateDirect(CORNERS.length * FLOAT_BYTE_LENGTH).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		mClientBuffer.put(CORNERS);
+		mClientBuffer.position(0);
+		
+		mBufferId = 0;
+		if(USE_VBO){
+			int[] buffers = new int[1];
+			GLES20.glGenBuffers(1, buffers, 0);
+			mBufferId = buffers[0];
+			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mBufferId);
+			GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, CORNERS.length * FLOAT_BYTE_LENGTH, mClientBuffer, GLES20.GL_STATIC_DRAW);
+			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+			
+			// The data lives on the GPU now
+			mClientBuffer = null;
+		}
+	}
+
+	/**
+	 * Points the attribute at the quad. The pointer is part of the shared context state, so this
+	 * has to be repeated every frame in case another program drew in between. No data is uploaded.
+	 * Call {@link #unbind()} after drawing.
+	 */
+	public void bind(int cornerAttributeLocation) {
+		if(mBufferId != 0){
+			bindBuffer(cornerAttributeLocation);
+		}else{
+			GLES20.glVertexAttribPointer(cornerAttributeLocation, COMPONENTS, GLES20.GL_FLOAT, false, COMPONENTS * FLOAT_BYTE_LENGTH, mClientBuffer);
+		}
+	}
+
+	/**
+	 * Leaves no buffer bound, so programs using client-side arrays keep working.
+	 */
+	public void unbind() {
+		if(mBufferId != 0){
+			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+		}
+	}
+
+	@TargetApi(9)
+	private void bindBuffer(int cornerAttributeLocation) {
+		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mBufferId);
+		GLES20.glVertexAttribPointer(cornerAttributeLocation, COMPONENTS, GLES20.GL_FLOAT, false, COMPONENTS * FLOAT_BYTE_LENGTH, 0);
+	}
+}
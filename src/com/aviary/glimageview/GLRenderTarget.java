@@ -0,0 +1,92 @@
+package com.aviary.glimageview;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import android.opengl.GLES20;
+
+/**
+ * A framebuffer object with a single RGBA texture attached, used to render offscreen.
+ * Must be created, bound and deleted on the GL thread.
+ */
+public final class GLRenderTarget {
+
+	private final int mWidth;
+	private final int mHeight;
+	private int mFramebufferId;
+	private int mTextureId;
+
+	public GLRenderTarget(int width, int height) {
+		if(width <= 0 || height <= 0){
+			throw new IllegalArgumentException("render target size must be positive");
+		}
+		mWidth = width;
+		mHeight = height;
+
+		int[] ids = new int[1];
+		GLES20.glGenTextures(1, ids, 0);
+		mTextureId = ids[0];
+		GLES20.glBindTexture(GL10.GL_TEXTURE_2D, mTextureId);
+		GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_LINEAR);
+		GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
+		GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_S, GL10.GL_CLAMP_TO_EDGE);
+		GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_T, GL10.GL_CLAMP_TO_EDGE);
+		GLES20.glTexImage2D(GL10.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+
+		GLES20.glGenFramebuffers(1, ids, 0);
+		mFramebufferId = ids[0];
+		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebufferId);
+		GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0, GL10.GL_TEXTURE_2D, mTextureId, 0);
+		int status = GLES20.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+
+		if(status != GLES20.GL_FRAMEBUFFER_COMPLETE){
+			delete();
+			throw new IllegalStateException("framebuffer incomplete: 0x" + Integer.toHexString(status));
+		}
+	}
+
+	/**
+	 * Binds the framebuffer and sets the viewport to cover it.
+	 */
+	public void bind() {
+		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebufferId);
+		GLES20.glViewport(0, 0, mWidth, mHeight);
+	}
+
+	/**
+	 * Binds the default framebuffer again. The caller is responsible for restoring its viewport.
+	 */
+	public static void unbind() {
+		GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	public int getHeight() {
+		return mHeight;
+	}
+
+	public int getTextureId() {
+		return mTextureId;
+	}
+
+	public int getFramebufferId() {
+		return mFramebufferId;
+	}
+
+	public void delete() {
+		int[] ids = new int[1];
+		if(mFramebufferId != 0){
+			ids[0] = mFramebufferId;
+			GLES20.glDeleteFramebuffers(1, ids, 0);
+			mFramebufferId = 0;
+		}
+		if(mTextureId != 0){
+			ids[0] = mTextureId;
+			GLES20.glDeleteTextures(1, ids, 0);
+			mTextureId = 0;
+		}
+	}
+}
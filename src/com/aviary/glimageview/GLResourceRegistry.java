@@ -0,0 +1,147 @@
+package com.aviary.glimageview;
+
+import java.util.ArrayList;
+
+/**
+ * Records how to rebuild the GL resources that have to outlive their context, such as the texture
+ * of the displayed image, so they can be restored after the context was lost.
+ *
+ * Restoring is lazy: after {@link #onContextLost()} every registered resource is pending, and
+ * {@link #restorePending(long)} rebuilds them a frame at a time, most important first, within a time
+ * budget. Resources that are cheap to rebuild on first use, like render targets, don't need to be
+ * registered. This class is pure Java and must only be used on the GL thread.
+ */
+public class GLResourceRegistry {
+
+	/** Needed to draw the next frame, like the texture of the displayed image */
+	public static final int PRIORITY_VISIBLE = 0;
+	/** Not on screen yet, like tiles around the viewport */
+	public static final int PRIORITY_NEARBY = 10;
+	/** Only needed eventually, like caches */
+	public static final int PRIORITY_BACKGROUND = 20;
+
+	// Sorted by priority, then by registration order
+	private final ArrayList<Entry> mEntries = new ArrayList<Entry>();
+	private int mPendingCount;
+	private long mContextLossCount;
+
+	/**
+	 * @param resource Rebuilds the resource in the current context.
+	 * @param priority Lower values are restored first, see the PRIORITY constants.
+	 */
+	public void register(GLResource resource, int priority) {
+		if(resource == null){
+			throw new IllegalArgumentException("resource cannot be null");
+		}
+		unregister(resource);
+		int index = mEntries.size();
+		while(index > 0 && mEntries.get(index - 1).priority > priority){
+			index--;
+		}
+		mEntries.add(index, new Entry(resource, priority));
+	}
+
+	public void unregister(GLResource resource) {
+		for(int i = 0; i < mEntries.size(); i++){
+			Entry entry = mEntries.get(i);
+			if(entry.resource == resource){
+				if(entry.pending){
+					mPendingCount--;
+				}
+				mEntries.remove(i);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Marks every registered resource as needing to be restored, because the context that held
+	 * them was destroyed.
+	 */
+	public void onContextLost() {
+		for(int i = 0; i < mEntries.size(); i++){
+			mEntries.get(i).pending = true;
+		}
+		mPendingCount = mEntries.size();
+		mContextLossCount++;
+	}
+
+	/**
+	 * Restores pending resources in priority order until the budget is spent. At least one resource
+	 * is restored per call, so a resource that takes longer than the budget still gets restored.
+	 * @param budgetNanos How long to spend restoring, in nanoseconds.
+	 * @return true if resources are still pending, and another frame should be requested.
+	 */
+	public boolean restorePending(long budgetNanos) {
+		if(mPendingCount == 0){
+			return false;
+		}
+		long startNanos = System.nanoTime();
+		for(int i = 0; i < mEntries.size() && mPendingCount > 0; i++){
+			Entry entry = mEntries.get(i);
+			if(!entry.pending){
+				continue;
+			}
+			entry.pending = false;
+			mPendingCount--;
+			entry.resource.restore();
+			if(System.nanoTime() - startNanos >= budgetNanos){
+				break;
+			}
+		}
+		return mPendingCount > 0;
+	}
+
+	/**
+	 * Marks a resource as restored, for instance because it was rebuilt some other way first.
+	 */
+	public void markRestored(GLResource resource) {
+		for(int i = 0; i < mEntries.size(); i++){
+			Entry entry = mEntries.get(i);
+			if(entry.resource == resource){
+				if(entry.pending){
+					entry.pending = false;
+					mPendingCount--;
+				}
+				return;
+			}
+		}
+	}
+
+	public boolean isRestorePending() {
+		return mPendingCount > 0;
+	}
+
+	public int getPendingCount() {
+		return mPendingCount;
+	}
+
+	/**
+	 * @return How many times the context was lost, for diagnostics.
+	 */
+	public long getContextLossCount() {
+		return mContextLossCount;
+	}
+
+	private static final class Entry {
+		final GLResource resource;
+		final int priority;
+		boolean pending;
+
+		Entry(GLResource resource, int priority) {
+			this.resource = resource;
+			this.priority = priority;
+		}
+	}
+
+	/**
+	 * A GL resource that can be rebuilt from data kept on the Java side.
+	 */
+	public static interface GLResource {
+
+		/**
+		 * Rebuilds the resource. Called on the GL thread with the new context current.
+		 */
+		public void restore();
+	}
+}
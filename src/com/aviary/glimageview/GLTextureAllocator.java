@@ -0,0 +1,178 @@
+package com.aviary.glimageview;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+
+import com.aviary.glimageview.TextureManager.Texture;
+import com.aviary.glimageview.TextureManager.TextureAllocator;
+
+/**
+ * Deletes the textures of the GL context current on the thread that set it up. Deletions requested
+ * from other threads, such as a TextureManager eviction triggered by another view, are queued until
+ * {@link #deletePending()} runs on the GL thread. Given an executor for the GL thread, the allocator
+ * runs it as soon as a deletion is queued rather than at the next frame.
+ */
+final class GLTextureAllocator implements TextureAllocator {
+
+	// From GL_OES_compressed_ETC1_RGB8_texture
+	static final int ETC1_RGB8_OES = 0x8D64;
+
+	private final ConcurrentLinkedQueue<Integer> mPendingDeletes = new ConcurrentLinkedQueue<Integer>();
+	private final int[] mTextureIds = new int[1];
+	private volatile Thread mGLThread;
+	private volatile Executor mGLThreadExecutor;
+	private final AtomicBoolean mDeletePosted = new AtomicBoolean();
+	private final Runnable mDeletePendingTask = new Runnable() {
+		@Override
+		public void run() {
+			mDeletePosted.set(false);
+			deletePending();
+		}
+	};
+
+	/**
+	 * Binds the allocator to the current thread and context. Must be called on the GL thread of every
+	 * new context, after telling the TextureManager about the lost one.
+	 */
+	public void setup() {
+		mGLThread = Thread.currentThread();
+		// Whatever was pending belonged to the previous context
+		mPendingDeletes.clear();
+	}
+
+	/**
+	 * @param executor Runs tasks on the GL thread, such as GLSurfaceView.queueEvent, or null to delete
+	 * textures queued from other threads only when the program next uses the allocator.
+	 */
+	public void setGLThreadExecutor(Executor executor) {
+		mGLThreadExecutor = executor;
+	}
+
+	@Override
+	public void deleteTexture(int textureId) {
+		if(Thread.currentThread() == mGLThread){
+			mTextureIds[0] = textureId;
+			GLES20.glDeleteTextures(1, mTextureIds, 0);
+		}else{
+			mPendingDeletes.add(textureId);
+			Executor executor = mGLThreadExecutor;
+			// One task deletes everything queued before it runs
+			if(executor != null && mDeletePosted.compareAndSet(false, true)){
+				executor.execute(mDeletePendingTask);
+			}
+		}
+	}
+
+	/**
+	 * Deletes the textures queued from other threads. Must be called on the GL thread.
+	 */
+	public void deletePending() {
+		Integer textureId;
+		while((textureId = mPendingDeletes.poll()) != null){
+			mTextureIds[0] = textureId;
+			GLES20.glDeleteTextures(1, mTextureIds, 0);
+		}
+	}
+
+	/**
+	 * Returns a reference to the texture of a bitmap, uploading it unless an immutable bitmap's
+	 * texture is still resident. Must be called on the GL thread.
+	 * @param minFilter The GL_TEXTURE_MIN_FILTER of a new texture.
+	 */
+	public Texture acquireBitmapTexture(TextureManager manager, Bitmap bitmap, int minFilter) {
+		deletePending();
+
+		Object key = getBitmapKey(bitmap);
+		Texture texture = manager.acquire(key, this);
+		if(texture != null){
+			return texture;
+		}
+
+		int textureId = generateTexture(minFilter);
+		GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, bitmap, 0);
+
+		return manager.register(key, textureId, (long) bitmap.getRowBytes() * bitmap.getHeight(), this);
+	}
+
+	/**
+	 * Returns a reference to an ETC1 texture, uploading it unless it is still resident. Must be
+	 * called on the GL thread.
+	 * @param key Identifies the data, for instance {@link TextureManager#weakIdentityKey(Object)} of it.
+	 * @param data The ETC1 blocks, from its position to its limit.
+	 * @param minFilter The GL_TEXTURE_MIN_FILTER of a new texture.
+	 */
+	public Texture acquireEtc1Texture(TextureManager manager, Object key, int width, int height, ByteBuffer data, int minFilter) {
+		deletePending();
+
+		Texture texture = manager.acquire(key, this);
+		if(texture != null){
+			return texture;
+		}
+
+		int textureId = generateTexture(minFilter);
+		ByteBuffer blocks = data.duplicate();
+		int size = blocks.remaining();
+		GLES20.glCompressedTexImage2D(GL10.GL_TEXTURE_2D, 0, ETC1_RGB8_OES, width, height, 0, size, blocks);
+
+		return manager.register(key, textureId, size, this);
+	}
+
+	/**
+	 * Returns a reference to a texture of a bitmap that was uploaded elsewhere, such as by a
+	 * GLTextureUploader. Takes ownership of the texture: it is deleted right away if the bitmap
+	 * already has a resident texture. Must be called on the GL thread.
+	 * @param minFilter The GL_TEXTURE_MIN_FILTER to give the texture.
+	 */
+	public Texture adoptBitmapTexture(TextureManager manager, Bitmap bitmap, int textureId, int minFilter) {
+		deletePending();
+
+		Object key = getBitmapKey(bitmap);
+		Texture texture = manager.acquire(key, this);
+		if(texture != null){
+			deleteTexture(textureId);
+			return texture;
+		}
+
+		GLES20.glBindTexture(GL10.GL_TEXTURE_2D, textureId);
+		GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, minFilter);
+		return manager.register(key, textureId, (long) bitmap.getRowBytes() * bitmap.getHeight(), this);
+	}
+
+	/**
+	 * Creates a texture that only the caller uses, such as an image tile, and returns the only
+	 * reference to it. The caller uploads its contents and discards it once it is no longer needed.
+	 * Must be called on the GL thread.
+	 * @param bytes The GPU memory the texture uses once uploaded.
+	 * @param minFilter The GL_TEXTURE_MIN_FILTER of the texture.
+	 */
+	public Texture createTexture(TextureManager manager, long bytes, int minFilter) {
+		deletePending();
+
+		int textureId = generateTexture(minFilter);
+		return manager.register(new Object(), textureId, bytes, this);
+	}
+
+	private int generateTexture(int minFilter) {
+		GLES20.glGenTextures(1, mTextureIds, 0);
+		int textureId = mTextureIds[0];
+		GLES20.glBindTexture(GL10.GL_TEXTURE_2D, textureId);
+		GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, minFilter);
+		GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
+		GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_S, GL10.GL_CLAMP_TO_EDGE);
+		GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_T, GL10.GL_CLAMP_TO_EDGE);
+		return textureId;
+	}
+
+	// An immutable bitmap cannot change, so a resident texture of it is still up to date
+	private static Object getBitmapKey(Bitmap bitmap) {
+		return bitmap.isMutable() ? new Object() : TextureManager.weakIdentityKey(bitmap);
+	}
+}
@@ -0,0 +1,84 @@
+package com.aviary.glimageview;
+
+import android.graphics.RectF;
+import android.opengl.GLES20;
+
+/**
+ * Draws an existing texture into the image bounds with a transform, the way SimpleGLImageProgram
+ * draws its bitmap. Used by the renderer to display cached results.
+ */
+public final class GLTextureDrawer {
+
+	// Shaders
+	private String mVertexShader = "" +
+	"uniform mat3 u_transform;" +
+	"uniform vec4 u_bounds;" +
+	"uniform float u_flip;" +
+	"attribute vec2 a_corner;" +
+	"varying highp vec2 v_texCoord;" +
+	"void main(void) {" +
+	"    vec2 position = mix(u_bounds.xy, u_bounds.zw, a_corner);" +
+	"    v_texCoord = vec2(a_corner.x, mix(1.0 - a_corner.y, a_corner.y, u_flip));" +
+	"    gl_Position = vec4((u_transform * vec3(position, 1.0)).xy, 0.0, 1.0);" +
+	"}";
+
+	private String mFragmentShader = "" +
+	"		precision mediump float;" +
+	"       uniform lowp sampler2D u_sampler;" +
+	"       varying highp vec2 v_texCoord;" +
+	"       void main(void) { " +
+	"           gl_FragColor = texture2D(u_sampler, v_texCoord);" +
+	"       }";
+
+	// GL Objects
+	private int mProgram = 0;
+	private final GLQuadBuffer mQuad = new GLQuadBuffer();
+	private int mCornerAttributeLocation;
+	private int mTransformUniformLocation;
+	private int mBoundsUniformLocation;
+	private int mFlipUniformLocation;
+	private int mSamplerUniformLocation;
+
+	private final float[] mTransformValues = new float[9];
+
+	/**
+	 * Compiles the program. Must be called on the GL thread of every new context.
+	 */
+	public void setup() {
+		mProgram = GLProgramUtils.createProgram(mVertexShader, mFragmentShader);
+		mCornerAttributeLocation = GLProgramUtils.getAttribLocation(mProgram, "a_corner");
+		mTransformUniformLocation = GLProgramUtils.getUniformLocation(mProgram, "u_transform");
+		mBoundsUniformLocation = GLProgramUtils.getUniformLocation(mProgram, "u_bounds");
+		mFlipUniformLocation = GLProgramUtils.getUniformLocation(mProgram, "u_flip");
+		mSamplerUniformLocation = GLProgramUtils.getUniformLocation(mProgram, "u_sampler");
+
+		mQuad.setup();
+		GLES20.glEnableVertexAttribArray(mCornerAttributeLocation);
+	}
+
+	public boolean isSetup() {
+		return mProgram != 0;
+	}
+
+	/**
+	 * Clears the framebuffer and draws the texture.
+	 * @param flipVertical True for textures rendered through a framebuffer object, which are stored bottom up.
+	 */
+	public void draw(int textureId, ViewTransform transform, RectF imageBoundsRect, boolean flipVertical) {
+		GLES20.glClearColor(0.f, 0.f, 0.f, 0.f);
+		GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+		GLES20.glUseProgram(mProgram);
+		GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+		GLES20.glUniform1i(mSamplerUniformLocation, 0);
+
+		GLProgramUtils.setTransformUniform(mTransformUniformLocation, transform, mTransformValues);
+		GLProgramUtils.setBoundsUniform(mBoundsUniformLocation, imageBoundsRect);
+		GLES20.glUniform1f(mFlipUniformLocation, flipVertical ? 1.f : 0.f);
+
+		mQuad.bind(mCornerAttributeLocation);
+		GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, GLQuadBuffer.VERTEX_COUNT);
+		mQuad.unbind();
+	}
+}
@@ -0,0 +1,304 @@
+package com.aviary.glimageview;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+import javax.microedition.khronos.egl.EGLSurface;
+import javax.microedition.khronos.opengles.GL10;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+
+/**
+ * Uploads bitmaps into textures on a background thread, in a context that shares its textures with
+ * the renderer's, so the render thread keeps drawing while a large image is being uploaded.
+ *
+ * Large ARGB_8888 bitmaps are uploaded in strips, so the driver is never held up by a single huge
+ * call and a cancelled upload stops early. A finished upload is waited on with glFinish on the
+ * uploader thread before it is handed over, since fence syncs are not available below API 18;
+ * the render thread never waits for an upload.
+ *
+ * The shared context is created through {@link SharedEGLContextFactory}. Until it exists, or if the
+ * driver refuses to create it, {@link #isAvailable()} is false and callers upload on the GL thread.
+ */
+public class GLTextureUploader {
+
+	private static final String LOG_TAG = "GLTextureUploader";
+	private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+	public static final int DEFAULT_STRIP_BYTES = 512 * 1024;
+
+	private final ExecutorService mExecutor;
+	private final ConcurrentLinkedQueue<Upload> mCompletedUploads = new ConcurrentLinkedQueue<Upload>();
+	private final int mStripBytes;
+	private volatile boolean mAvailable;
+
+	// Only used on the uploader thread
+	private EGL10 mEgl;
+	private EGLDisplay mDisplay;
+	private EGLContext mContext;
+	private EGLSurface mSurface;
+	private final int[] mTextureIds = new int[1];
+
+	public GLTextureUploader() {
+		this(DEFAULT_STRIP_BYTES);
+	}
+
+	/**
+	 * @param stripBytes The most bytes uploaded by a single GL call.
+	 */
+	public GLTextureUploader(int stripBytes) {
+		if(stripBytes <= 0){
+			throw new IllegalArgumentException("stripBytes must be positive");
+		}
+		mStripBytes = stripBytes;
+		mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, LOG_TAG);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @return Whether uploads can currently run in the background.
+	 */
+	public boolean isAvailable() {
+		return mAvailable;
+	}
+
+	/**
+	 * Starts uploading a bitmap. The bitmap must not change or be recycled until the upload completes
+	 * or is cancelled.
+	 * @param bitmap The pixels to upload.
+	 * @param onCompleted Run on the uploader thread once the upload can be taken with
+	 * {@link #pollCompleted()}, typically to request a render. May be null.
+	 * @return The upload, which can be cancelled.
+	 */
+	public Upload upload(Bitmap bitmap, final Runnable onCompleted) {
+		final Upload upload = new Upload(bitmap);
+		mExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if(runUpload(upload) && onCompleted != null){
+					onCompleted.run();
+				}
+			}
+		});
+		return upload;
+	}
+
+	/**
+	 * Takes the next finished upload. Must be called on a GL thread whose context shares textures
+	 * with the uploader's. Cancelled uploads are returned too, so their texture can be deleted.
+	 * @return The upload, or null if none has finished.
+	 */
+	public Upload pollCompleted() {
+		return mCompletedUploads.poll();
+	}
+
+	private boolean runUpload(Upload upload) {
+		if(upload.isCancelled()){
+			return false;
+		}
+		if(mContext == null){
+			// The context went away after the upload was queued, the caller uploads it itself
+			upload.cancel();
+			return false;
+		}
+		if(GLTrace.ENABLED) GLTrace.beginSection("GLTextureUploader.upload");
+
+		long startNanos = System.nanoTime();
+		Bitmap bitmap = upload.mBitmap;
+		GLES20.glGenTextures(1, mTextureIds, 0);
+		int textureId = mTextureIds[0];
+		GLES20.glBindTexture(GL10.GL_TEXTURE_2D, textureId);
+		GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_LINEAR);
+		GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
+		GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_S, GL10.GL_CLAMP_TO_EDGE);
+		GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_T, GL10.GL_CLAMP_TO_EDGE);
+
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		long bytes = (long) bitmap.getRowBytes() * height;
+		boolean completed = true;
+		if(bytes > mStripBytes && bitmap.getConfig() == Bitmap.Config.ARGB_8888){
+			// Same format GLUtils picks for ARGB_8888, so the strips can be filled in with texSubImage2D
+			GLES20.glTexImage2D(GL10.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+			int stripHeight = Math.max(1, mStripBytes / bitmap.getRowBytes());
+			for(int y = 0; y < height; y += stripHeight){
+				if(upload.isCancelled()){
+					completed = false;
+					break;
+				}
+				Bitmap strip = Bitmap.createBitmap(bitmap, 0, y, width, Math.min(stripHeight, height - y));
+				GLUtils.texSubImage2D(GL10.GL_TEXTURE_2D, 0, 0, y, strip);
+				if(strip != bitmap){
+					strip.recycle();
+				}
+			}
+		}else{
+			GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, bitmap, 0);
+		}
+		GLES20.glBindTexture(GL10.GL_TEXTURE_2D, 0);
+
+		if(!completed){
+			GLES20.glDeleteTextures(1, mTextureIds, 0);
+			if(GLTrace.ENABLED) GLTrace.endSection();
+			return false;
+		}
+
+		// Without fences, this is what makes the texture safe to sample from the render thread
+		GLES20.glFinish();
+		upload.mTextureId = textureId;
+		upload.mBytes = bytes;
+		upload.mUploadNanos = System.nanoTime() - startNanos;
+		mCompletedUploads.add(upload);
+		if(GLTrace.ENABLED) GLTrace.endSection();
+		return true;
+	}
+
+	// Shared context
+
+	/**
+	 * Creates the uploader's context, sharing textures with the given one. Called by
+	 * {@link SharedEGLContextFactory} once the renderer's context exists.
+	 */
+	void onContextCreated(final EGL10 egl, final EGLDisplay display, final EGLConfig config, final EGLContext shareContext) {
+		mExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				createContext(egl, display, config, shareContext);
+			}
+		});
+	}
+
+	/**
+	 * Releases the uploader's context before the renderer's is destroyed, waiting for the upload in
+	 * progress to finish. Uploads that completed in the lost context are dropped.
+	 */
+	void onContextDestroyed() {
+		mAvailable = false;
+		Future<?> release = mExecutor.submit(new Runnable() {
+			@Override
+			public void run() {
+				releaseContext();
+			}
+		});
+		try {
+			release.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+
+		Upload upload;
+		while((upload = mCompletedUploads.poll()) != null){
+			upload.cancel();
+		}
+	}
+
+	private void createContext(EGL10 egl, EGLDisplay display, EGLConfig config, EGLContext shareContext) {
+		releaseContext();
+
+		int[] contextAttributes = { EGL_CONTEXT_CLIENT_VERSION, 2, EGL10.EGL_NONE };
+		EGLContext context = egl.eglCreateContext(display, config, shareContext, contextAttributes);
+		if(context == null || context == EGL10.EGL_NO_CONTEXT){
+			if(GLTrace.ENABLED) GLTrace.event(LOG_TAG, "Shared context not supported, error " + egl.eglGetError());
+			return;
+		}
+
+		// The context needs a surface to be made current, even though nothing is drawn
+		int[] surfaceAttributes = { EGL10.EGL_WIDTH, 1, EGL10.EGL_HEIGHT, 1, EGL10.EGL_NONE };
+		EGLSurface surface = egl.eglCreatePbufferSurface(display, config, surfaceAttributes);
+		if(surface == null || surface == EGL10.EGL_NO_SURFACE || !egl.eglMakeCurrent(display, surface, surface, context)){
+			if(GLTrace.ENABLED) GLTrace.event(LOG_TAG, "Could not make the shared context current, error " + egl.eglGetError());
+			if(surface != null && surface != EGL10.EGL_NO_SURFACE){
+				egl.eglDestroySurface(display, surface);
+			}
+			egl.eglDestroyContext(display, context);
+			return;
+		}
+
+		mEgl = egl;
+		mDisplay = display;
+		mContext = context;
+		mSurface = surface;
+		mAvailable = true;
+	}
+
+	private void releaseContext() {
+		if(mContext == null){
+			return;
+		}
+		mEgl.eglMakeCurrent(mDisplay, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_CONTEXT);
+		mEgl.eglDestroySurface(mDisplay, mSurface);
+		mEgl.eglDestroyContext(mDisplay, mContext);
+		mEgl = null;
+		mDisplay = null;
+		mContext = null;
+		mSurface = null;
+	}
+
+	/**
+	 * A bitmap being uploaded.
+	 */
+	public static final class Upload {
+
+		final Bitmap mBitmap;
+		private volatile boolean mCancelled;
+		volatile int mTextureId;
+		volatile long mBytes;
+		volatile long mUploadNanos;
+
+		Upload(Bitmap bitmap) {
+			mBitmap = bitmap;
+		}
+
+		public Bitmap getBitmap() {
+			return mBitmap;
+		}
+
+		/**
+		 * @return The texture, once the upload completed. The caller of
+		 * {@link GLTextureUploader#pollCompleted()} owns it.
+		 */
+		public int getTextureId() {
+			return mTextureId;
+		}
+
+		public long getBytes() {
+			return mBytes;
+		}
+
+		/**
+		 * @return How long the upload took on the uploader thread, in nanoseconds.
+		 */
+		public long getUploadNanos() {
+			return mUploadNanos;
+		}
+
+		/**
+		 * Stops the upload if it has not completed yet. A completed upload is still returned by
+		 * pollCompleted, so its texture can be deleted.
+		 */
+		public void cancel() {
+			mCancelled = true;
+		}
+
+		public boolean isCancelled() {
+			return mCancelled;
+		}
+	}
+}
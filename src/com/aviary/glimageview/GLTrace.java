@@ -0,0 +1,82 @@
+package com.aviary.glimageview;
+
+import java.lang.reflect.Method;
+
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * Debug tracing for the render and gesture paths. {@link #ENABLED} is a compile-time constant,
+ * so guarding every call site with it removes the calls, and any strings built for them, from
+ * release builds:
+ *
+ * <pre>
+ * if(GLTrace.ENABLED) GLTrace.beginSection("drawFrame");
+ * </pre>
+ *
+ * With tracing enabled, sections are emitted through android.os.Trace on API 18 and up, where they
+ * show up in systrace. Trace is looked up by reflection because the project targets API 17; on older
+ * devices sections are dropped. Events are one-off lifecycle messages and go to logcat.
+ */
+final class GLTrace {
+
+	/** Flip to true for debug builds. */
+	public static final boolean ENABLED = false;
+
+	private static final String LOG_TAG = "GLTrace";
+	private static final int API_TRACE = 18;
+
+	private static final Method sBeginSection;
+	private static final Method sEndSection;
+
+	static {
+		Method beginSection = null;
+		Method endSection = null;
+		if(ENABLED && Build.VERSION.SDK_INT >= API_TRACE){
+			try {
+				Class<?> trace = Class.forName("android.os.Trace");
+				beginSection = trace.getMethod("beginSection", String.class);
+				endSection = trace.getMethod("endSection");
+			} catch (Exception e) {
+				Log.e(LOG_TAG, "android.os.Trace unavailable", e);
+				beginSection = null;
+				endSection = null;
+			}
+		}
+		sBeginSection = beginSection;
+		sEndSection = endSection;
+	}
+
+	private GLTrace() {
+	}
+
+	/**
+	 * Starts a section on the current thread. Sections nest and must be ended on the same thread.
+	 */
+	static void beginSection(String name) {
+		if(sBeginSection != null){
+			invoke(sBeginSection, name);
+		}
+	}
+
+	static void endSection() {
+		if(sEndSection != null){
+			invoke(sEndSection);
+		}
+	}
+
+	/**
+	 * Records a one-off event, such as a surface change.
+	 */
+	static void event(String tag, String message) {
+		Log.d(tag, message);
+	}
+
+	private static void invoke(Method method, Object... args) {
+		try {
+			method.invoke(null, args);
+		} catch (Exception e) {
+			Log.e(LOG_TAG, "Trace call failed", e);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package com.aviary.glimageview;
+
+/**
+ * Lays out an image in the viewport at a scale of 1: the whole image is visible with its aspect
+ * ratio kept, and an image smaller than the viewport along its fitting axis is shown at its native
+ * size rather than enlarged.
+ *
+ * This class is pure Java, so the layout can be checked and measured without a device.
+ */
+public final class ImageFit {
+
+	private ImageFit() {
+	}
+
+	/**
+	 * @param out Receives half the width and half the height of the image, in NDC.
+	 * @return false, leaving out untouched, if any size is 0.
+	 */
+	public static boolean computeHalfExtents(int imageWidth, int imageHeight, int viewportWidth, int viewportHeight, float[] out) {
+		if(imageWidth == 0 || imageHeight == 0 || viewportWidth == 0 || viewportHeight == 0){
+			return false;
+		}
+
+		float halfWidth;
+		float halfHeight;
+
+		float imageAspect = imageWidth / (float) imageHeight;
+		float viewportAspect = viewportWidth / (float) viewportHeight;
+
+		if(imageAspect > viewportAspect){
+			halfWidth = Math.min(1.f, imageWidth / (float) viewportWidth);
+			halfHeight = halfWidth * viewportAspect / imageAspect;
+		}else{
+			halfHeight = Math.min(1.f, imageHeight / (float) viewportHeight);
+			halfWidth = imageAspect / viewportAspect;
+		}
+
+		out[0] = halfWidth;
+		out[1] = halfHeight;
+		return true;
+	}
+}
@@ -0,0 +1,242 @@
+package com.aviary.glimageview;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.Executor;
+
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+import android.opengl.GLES20;
+
+import com.aviary.glimageview.GLImageViewRenderer.OnBitmapReadOutCompleted;
+
+/**
+ * Renders a GLImagingProgram offscreen at the native size of a bitmap and reads the result back
+ * into it. The image is processed in tiles no larger than the strip height (and GL_MAX_TEXTURE_SIZE),
+ * so the readback can either run all at once or one tile per frame while the view keeps rendering.
+ *
+ * Programs that implement {@link ReadbackAwareProgram} are told which render calls are for the
+ * readback. All methods except {@link #cancel()} must be called on the GL thread.
+ */
+public class ImageReadback {
+
+	public static final int DEFAULT_STRIP_HEIGHT = 256;
+
+	private final GLImagingProgram mProgram;
+	private final Bitmap mBitmap;
+	private final Executor mExecutor;
+	private final OnBitmapReadOutCompleted mListener;
+	private final OnReadbackProgressListener mProgressListener;
+
+	private final int mStripHeight;
+	private int mMaxTextureSize;
+	private int mTileWidth;
+	private int mTileHeight;
+	private int mColumns;
+	private int mTileCount = -1;
+	private int mNextTile;
+	private volatile boolean mCancelled;
+
+	private GLRenderTarget mTarget;
+	private IntBuffer mPixelBuffer;
+	private int[] mPixels;
+
+	private final ViewTransform mIdentityTransform = new ViewTransform();
+	private final RectF mTileBounds = new RectF();
+	private final int[] mViewport = new int[4];
+
+	/**
+	 * @param program The program to render, already holding the image.
+	 * @param bitmap The ARGB_8888 bitmap to fill.
+	 * @param stripHeight The height of each rendered strip, in pixels.
+	 * @param maxTextureSize GL_MAX_TEXTURE_SIZE, or 0 to query it on the first step.
+	 * @param executor Where the completion listener is called, or null to call it on the GL thread.
+	 * @param listener Called once the bitmap is complete. May be null.
+	 * @param progressListener Called on the GL thread after every tile. May be null.
+	 */
+	public ImageReadback(GLImagingProgram program, Bitmap bitmap, int stripHeight, int maxTextureSize,
+			Executor executor, OnBitmapReadOutCompleted listener, OnReadbackProgressListener progressListener) {
+		if(program == null || bitmap == null){
+			throw new IllegalArgumentException("program and bitmap cannot be null");
+		}
+		mProgram = program;
+		mBitmap = bitmap;
+		mExecutor = executor;
+		mListener = listener;
+		mProgressListener = progressListener;
+		mStripHeight = stripHeight;
+		mMaxTextureSize = maxTextureSize;
+	}
+
+	/**
+	 * Renders and reads back the next tile.
+	 * @return true once the readback has finished or has been cancelled.
+	 */
+	public boolean step() {
+		if(isDone()){
+			return true;
+		}
+		if(mCancelled){
+			release();
+			return true;
+		}
+
+		if(mTarget == null){
+			layoutTiles();
+			mTarget = new GLRenderTarget(mTileWidth, mTileHeight);
+			mPixelBuffer = ByteBuffer.allocateDirect(mTileWidth * mTileHeight * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+			mPixels = new int[mTileWidth * mTileHeight];
+		}
+
+		GLES20.glGetIntegerv(GLES20.GL_VIEWPORT, mViewport, 0);
+
+		int column = mNextTile % mColumns;
+		int row = mNextTile / mColumns;
+		int x = column * mTileWidth;
+		int y = row * mTileHeight;
+		int width = Math.min(mTileWidth, mBitmap.getWidth() - x);
+		int height = Math.min(mTileHeight, mBitmap.getHeight() - y);
+
+		ReadbackAwareProgram aware = mProgram instanceof ReadbackAwareProgram ? (ReadbackAwareProgram) mProgram : null;
+		if(aware != null){
+			aware.beginReadback();
+		}
+		try {
+			renderTile(x, y, width, height);
+		} finally {
+			if(aware != null){
+				aware.endReadback();
+			}
+		}
+
+		GLRenderTarget.unbind();
+		GLES20.glViewport(mViewport[0], mViewport[1], mViewport[2], mViewport[3]);
+		mProgram.setFramebufferSize(mViewport[2], mViewport[3]);
+
+		mNextTile++;
+		if(mProgressListener != null){
+			mProgressListener.onReadbackProgress(this, mNextTile / (float) mTileCount);
+		}
+
+		if(isDone()){
+			release();
+			deliver();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Reads back every remaining tile before returning. This is the fallback used by
+	 * {@link GLImagingProgram#readImage}, and blocks the GL thread for the whole image.
+	 */
+	public void runToCompletion() {
+		while(!step()){
+			// keep going
+		}
+	}
+
+	/**
+	 * Stops the readback before its next tile. Safe to call from any thread.
+	 * The completion listener is not called for a cancelled readback.
+	 */
+	public void cancel() {
+		mCancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return mCancelled;
+	}
+
+	public boolean isDone() {
+		return mTileCount >= 0 && mNextTile >= mTileCount;
+	}
+
+	public float getProgress() {
+		return mTileCount > 0 ? mNextTile / (float) mTileCount : 0.f;
+	}
+
+	public Bitmap getBitmap() {
+		return mBitmap;
+	}
+
+	// Internals
+
+	private void layoutTiles() {
+		if(mMaxTextureSize <= 0){
+			int[] maxTextureSize = new int[1];
+			GLES20.glGetIntegerv(GLES20.GL_MAX_TEXTURE_SIZE, maxTextureSize, 0);
+			mMaxTextureSize = maxTextureSize[0] > 0 ? maxTextureSize[0] : Integer.MAX_VALUE;
+		}
+
+		mTileWidth = Math.min(mBitmap.getWidth(), mMaxTextureSize);
+		mTileHeight = Math.max(1, Math.min(Math.min(mStripHeight, mBitmap.getHeight()), mMaxTextureSize));
+		mColumns = (mBitmap.getWidth() + mTileWidth - 1) / mTileWidth;
+		int rows = (mBitmap.getHeight() + mTileHeight - 1) / mTileHeight;
+		mTileCount = mColumns * rows;
+	}
+
+	private void renderTile(int x, int y, int width, int height) {
+		mTarget.bind();
+		GLES20.glViewport(0, 0, width, height);
+		mProgram.setFramebufferSize(width, height);
+
+		// Places the image so its [x, x + width) x [y, y + height) part covers the whole viewport.
+		// The bounds are not square, which a view transform with its single scale could not express.
+		float left = -1.f - 2.f * x / width;
+		float top = 1.f + 2.f * y / height;
+		mTileBounds.set(left, top, left + 2.f * mBitmap.getWidth() / width, top - 2.f * mBitmap.getHeight() / height);
+
+		mProgram.render(mIdentityTransform, mTileBounds);
+
+		mPixelBuffer.position(0);
+		GLES20.glReadPixels(0, 0, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, mPixelBuffer);
+		mPixelBuffer.position(0);
+		mPixelBuffer.get(mPixels, 0, width * height);
+
+		// GL returns premultiplied RGBA bytes, Bitmap.setPixels wants unpremultiplied ARGB ints
+		PixelUtils.glToArgb(mPixels, width * height);
+
+		// GL rows are bottom up, so walk the rows backwards
+		mBitmap.setPixels(mPixels, (height - 1) * width, -width, x, y, width, height);
+	}
+
+	private void release() {
+		if(mTarget != null){
+			mTarget.delete();
+			mTarget = null;
+		}
+		mPixelBuffer = null;
+		mPixels = null;
+	}
+
+	private void deliver() {
+		if(mListener == null){
+			return;
+		}
+		if(mExecutor == null){
+			mListener.onBitmapReadOutCompleted(mBitmap);
+			return;
+		}
+		mExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				mListener.onBitmapReadOutCompleted(mBitmap);
+			}
+		});
+	}
+
+	/**
+	 * Interface for following the progress of a readback
+	 */
+	public static interface OnReadbackProgressListener {
+
+		/**
+		 * Called on the GL thread after every tile.
+		 * @param readback The readback in progress.
+		 * @param progress The fraction of the image read back so far, from 0 to 1.
+		 */
+		public void onReadbackProgress(ImageReadback readback, float progress);
+	}
+}
@@ -0,0 +1,29 @@
+package com.aviary.glimageview;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+/**
+ * An image that can be decoded piece by piece instead of as a single full resolution Bitmap.
+ * Implementations must be safe to call from several loader threads at once.
+ */
+public interface ImageSource {
+
+	public int getWidth();
+
+	public int getHeight();
+
+	/**
+	 * Decodes part of the image.
+	 * @param region The region to decode, in full resolution image pixels.
+	 * @param sampleSize The subsampling factor, as in BitmapFactory.Options.inSampleSize.
+	 * @return The decoded pixels, or null if the region could not be decoded. The caller owns the
+	 * bitmap and may put it into a {@link BitmapPool} once it is done with it.
+	 */
+	public Bitmap decodeRegion(Rect region, int sampleSize);
+
+	/**
+	 * Releases the underlying decoder. Later calls to decodeRegion return null.
+	 */
+	public void recycle();
+}
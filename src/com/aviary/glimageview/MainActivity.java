@@ -1,7 +1,9 @@
 package com.aviary.glimageview;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.Executor;
 
 
 import com.aviary.example.glimageview.R;
@@ -10,10 +12,11 @@ import com.aviary.glimageview.GLImageViewRenderer.OnBitmapReadOutCompleted;
 import android.os.Bundle;
 import android.os.Handler;
 import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
 import android.app.Activity;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.BitmapFactory.Options;
+import android.os.Build;
 import android.view.Menu;
 import android.view.ViewGroup;
 import android.view.Window;
@@ -21,7 +24,9 @@ import android.widget.Toast;
 
 public class MainActivity extends Activity {
 	GLImageView mGLImageView;
+	ImageSource mCurrentImageSource;
 	Bitmap mCurrentBitmap;
+	DiskTileCache mTileCache;
 	Handler mHandler = new Handler();
 	
 	@Override
@@ -32,14 +37,23 @@ public class MainActivity extends Activity {
 		
 		loadDefaultImage();
 		
-		SimpleGLImageProgram program = new SimpleGLImageProgram();
+		TiledGLImageProgram program = new TiledGLImageProgram();
+		try {
+			mTileCache = new DiskTileCache(new File(getCacheDir(), "tiles"),
+					TilePyramid.getTextureSize(TilePyramid.DEFAULT_TILE_SIZE), DiskTileCache.DEFAULT_MAX_BYTES);
+			program.setTileCache(mTileCache);
+		} catch (IOException e) {}
 		
 		mGLImageView = new GLImageView(this, null);
 		mGLImageView.setupRendererWithProgram(program);
 		ViewGroup group = (ViewGroup) findViewById(R.id.group );
 		group.addView(mGLImageView);
 		
-		mGLImageView.setImage(mCurrentBitmap);
+		if(mCurrentImageSource != null){
+			mGLImageView.setImageSource(mCurrentImageSource);
+		}else if(mCurrentBitmap != null){
+			mGLImageView.setImage(mCurrentBitmap);
+		}
 	
 		mGLImageView.requestRender();
 		
@@ -51,17 +65,57 @@ public class MainActivity extends Activity {
 		}, 1000);
 	}
 	
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		if(mCurrentImageSource != null){
+			mCurrentImageSource.recycle();
+		}
+		if(mTileCache != null){
+			try {
+				mTileCache.close();
+			} catch (IOException e) {}
+		}
+	}
+	
+	@TargetApi(14)
+	@Override
+	public void onTrimMemory(int level) {
+		super.onTrimMemory(level);
+		TextureManager.getDefault().onTrimMemory(level);
+		BitmapPool.getDefault().onTrimMemory(level);
+	}
+	
 	// Loading
-	void loadDefaultImage() {		
-		try {
-			Options options = new Options();
-			options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+	void loadDefaultImage() {
+		// BitmapRegionDecoder is API 10, older devices decode the whole image
+		if(Build.VERSION.SDK_INT < Build.VERSION_CODES.GINGERBREAD_MR1){
+			loadDefaultBitmap();
+			return;
+		}
 		
+		try {
 			InputStream io = getAssets().open( "test.jpg" );
 //			InputStream io = getAssets().open( "test_small.jpg" );
 		
-			Bitmap bitmap = BitmapFactory.decodeStream( io, null, options );
-			mCurrentBitmap = bitmap;
+			RegionDecoderImageSource source = RegionDecoderImageSource.fromStream( io );
+			io.close();
+			mCurrentImageSource = source;
+			
+			// The content hash keys the cached tiles, so an edited asset never shows stale ones
+			io = getAssets().open( "test.jpg" );
+			source.setCacheKey( CompressedTextureCache.hashContent( io ) );
+			io.close();
+		} catch ( IOException e ) {}
+	}
+	
+	void loadDefaultBitmap() {
+		try {
+			BitmapFactory.Options options = new BitmapFactory.Options();
+			options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+			
+			InputStream io = getAssets().open( "test.jpg" );
+			mCurrentBitmap = BitmapFactory.decodeStream( io, null, options );
 			io.close();
 		} catch ( IOException e ) {}
 	}
@@ -70,15 +124,17 @@ public class MainActivity extends Activity {
 		OnBitmapReadOutCompleted listener = new OnBitmapReadOutCompleted() {
 			@Override
 			public void onBitmapReadOutCompleted(Bitmap bitmap) {
-				runOnUiThread(new Runnable(){
-					@Override
-					public void run() {
-						Toast.makeText(getBaseContext(), "Image Read Complete!!", Toast.LENGTH_SHORT).show();
-					}
-				});
+				Toast.makeText(getBaseContext(), "Image Read Complete!!", Toast.LENGTH_SHORT).show();
+			}
+		};
+		
+		Executor mainThreadExecutor = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				mHandler.post(command);
 			}
 		};
 		
-		mGLImageView.requestBitmap(listener, null);
+		mGLImageView.requestBitmapAsync(listener, null, mainThreadExecutor, null);
 	}
 }
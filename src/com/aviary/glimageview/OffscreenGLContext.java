@@ -0,0 +1,83 @@
+package com.aviary.glimageview;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+import javax.microedition.khronos.egl.EGLSurface;
+
+/**
+ * A GLES20 context with a 1x1 pbuffer, for rendering without a view. Programs draw offscreen
+ * through {@link GLRenderTarget}, so the pbuffer itself is never drawn to.
+ */
+class OffscreenGLContext {
+
+	private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+	private static final int EGL_RENDERABLE_TYPE = 0x3040;
+	private static final int EGL_OPENGL_ES2_BIT = 4;
+
+	private final EGL10 mEgl;
+	private final EGLDisplay mDisplay;
+	private final EGLContext mContext;
+	private final EGLSurface mSurface;
+
+	private OffscreenGLContext(EGL10 egl, EGLDisplay display, EGLContext context, EGLSurface surface) {
+		mEgl = egl;
+		mDisplay = display;
+		mContext = context;
+		mSurface = surface;
+	}
+
+	/**
+	 * Creates a context and makes it current on the calling thread.
+	 * @throws IllegalStateException If EGL fails.
+	 */
+	static OffscreenGLContext create() {
+		EGL10 egl = (EGL10) EGLContext.getEGL();
+		EGLDisplay display = egl.eglGetDisplay(EGL10.EGL_DEFAULT_DISPLAY);
+		if(display == EGL10.EGL_NO_DISPLAY || !egl.eglInitialize(display, new int[2])){
+			throw new IllegalStateException("Could not initialize EGL, error " + egl.eglGetError());
+		}
+
+		int[] configAttributes = {
+				EGL10.EGL_RED_SIZE, 8,
+				EGL10.EGL_GREEN_SIZE, 8,
+				EGL10.EGL_BLUE_SIZE, 8,
+				EGL10.EGL_ALPHA_SIZE, 8,
+				EGL_RENDERABLE_TYPE, EGL_OPENGL_ES2_BIT,
+				EGL10.EGL_SURFACE_TYPE, EGL10.EGL_PBUFFER_BIT,
+				EGL10.EGL_NONE };
+		EGLConfig[] configs = new EGLConfig[1];
+		int[] configCount = new int[1];
+		if(!egl.eglChooseConfig(display, configAttributes, configs, 1, configCount) || configCount[0] == 0){
+			throw new IllegalStateException("No pbuffer config, error " + egl.eglGetError());
+		}
+
+		int[] contextAttributes = { EGL_CONTEXT_CLIENT_VERSION, 2, EGL10.EGL_NONE };
+		EGLContext context = egl.eglCreateContext(display, configs[0], EGL10.EGL_NO_CONTEXT, contextAttributes);
+		if(context == null || context == EGL10.EGL_NO_CONTEXT){
+			throw new IllegalStateException("Could not create a context, error " + egl.eglGetError());
+		}
+
+		int[] surfaceAttributes = { EGL10.EGL_WIDTH, 1, EGL10.EGL_HEIGHT, 1, EGL10.EGL_NONE };
+		EGLSurface surface = egl.eglCreatePbufferSurface(display, configs[0], surfaceAttributes);
+		if(surface == null || surface == EGL10.EGL_NO_SURFACE || !egl.eglMakeCurrent(display, surface, surface, context)){
+			int error = egl.eglGetError();
+			if(surface != null && surface != EGL10.EGL_NO_SURFACE){
+				egl.eglDestroySurface(display, surface);
+			}
+			egl.eglDestroyContext(display, context);
+			throw new IllegalStateException("Could not make the context current, error " + error);
+		}
+		return new OffscreenGLContext(egl, display, context, surface);
+	}
+
+	/**
+	 * Destroys the context. Must be called on the thread that created it.
+	 */
+	void release() {
+		mEgl.eglMakeCurrent(mDisplay, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_CONTEXT);
+		mEgl.eglDestroySurface(mDisplay, mSurface);
+		mEgl.eglDestroyContext(mDisplay, mContext);
+	}
+}
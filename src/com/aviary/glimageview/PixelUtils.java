@@ -0,0 +1,60 @@
+package com.aviary.glimageview;
+
+import java.nio.ByteOrder;
+
+/**
+ * Conversions between the pixel layouts of GL and Bitmap. GL textures and framebuffers hold
+ * premultiplied RGBA bytes, while Bitmap.getPixels and setPixels work on unpremultiplied ARGB ints.
+ *
+ * This class has no Android dependencies.
+ */
+final class PixelUtils {
+
+	private PixelUtils() {
+	}
+
+	static int premultiply(int color) {
+		int alpha = color >>> 24;
+		if(alpha == 0xFF){
+			return color;
+		}
+		if(alpha == 0){
+			return 0;
+		}
+		int red = ((color >> 16) & 0xFF) * alpha / 255;
+		int green = ((color >> 8) & 0xFF) * alpha / 255;
+		int blue = (color & 0xFF) * alpha / 255;
+		return (alpha << 24) | (red << 16) | (green << 8) | blue;
+	}
+
+	static int unpremultiply(int color) {
+		int alpha = color >>> 24;
+		if(alpha == 0xFF){
+			return color;
+		}
+		if(alpha == 0){
+			return 0;
+		}
+		int red = Math.min(255, (((color >> 16) & 0xFF) * 255 + alpha / 2) / alpha);
+		int green = Math.min(255, (((color >> 8) & 0xFF) * 255 + alpha / 2) / alpha);
+		int blue = Math.min(255, ((color & 0xFF) * 255 + alpha / 2) / alpha);
+		return (alpha << 24) | (red << 16) | (green << 8) | blue;
+	}
+
+	/**
+	 * Converts pixels read with glReadPixels(GL_RGBA, GL_UNSIGNED_BYTE) into an IntBuffer of native
+	 * order, in place, into the unpremultiplied ARGB that Bitmap.setPixels expects.
+	 */
+	static void glToArgb(int[] pixels, int count) {
+		boolean littleEndian = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+		for(int i = 0; i < count; i++){
+			int pixel = pixels[i];
+			if(littleEndian){
+				pixel = (pixel & 0xFF00FF00) | ((pixel & 0xFF) << 16) | ((pixel >>> 16) & 0xFF);
+			}else{
+				pixel = (pixel >>> 8) | (pixel << 24);
+			}
+			pixels[i] = unpremultiply(pixel);
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package com.aviary.glimageview;
+
+import android.graphics.Bitmap;
+
+/**
+ * A GLImagingProgram that can display a texture that was uploaded ahead of time, for instance by a
+ * {@link GLTextureUploader} on another thread, instead of uploading the bitmap itself.
+ */
+public interface PreparedTextureProgram extends GLImagingProgram {
+
+	/**
+	 * Same as setBitmap, with the bitmap's pixels already in a texture of the current context.
+	 * @param bitmap The bitmap the texture was uploaded from.
+	 * @param textureId The texture. The program takes ownership of it.
+	 */
+	public void setPreparedTexture(Bitmap bitmap, int textureId);
+}
@@ -0,0 +1,156 @@
+package com.aviary.glimageview;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+/**
+ * Decodes an ImageSource in several passes of decreasing inSampleSize, so a heavily subsampled
+ * preview can be shown right away and replaced by sharper versions as they become available.
+ * Starting a new load cancels the stages of the previous one that have not been delivered yet.
+ */
+public class ProgressiveImageLoader {
+
+	public static final int DEFAULT_PREVIEW_SIZE = 512;
+
+	private final Executor mExecutor;
+	private final AtomicInteger mGeneration = new AtomicInteger();
+	private volatile BitmapPool mBitmapPool = BitmapPool.getDefault();
+
+	public ProgressiveImageLoader() {
+		this(createDefaultExecutor());
+	}
+
+	public ProgressiveImageLoader(Executor executor) {
+		if(executor == null){
+			throw new IllegalArgumentException("executor cannot be null");
+		}
+		mExecutor = executor;
+	}
+
+	/**
+	 * @param pool Where stages that are dropped go, or null to recycle them.
+	 */
+	public void setBitmapPool(BitmapPool pool) {
+		mBitmapPool = pool;
+	}
+
+	public BitmapPool getBitmapPool() {
+		return mBitmapPool;
+	}
+
+	/**
+	 * Starts decoding the stages of an image. Stages are delivered in order on the loader thread.
+	 * @param source The image to decode.
+	 * @param sampleSizes The inSampleSize of every stage, from coarsest to finest.
+	 * @param listener Receives every decoded stage.
+	 */
+	public void load(final ImageSource source, final int[] sampleSizes, final OnStageDecodedListener listener) {
+		if(source == null || sampleSizes == null || sampleSizes.length == 0 || listener == null){
+			throw new IllegalArgumentException("source, sampleSizes and listener are required");
+		}
+
+		final int generation = mGeneration.incrementAndGet();
+		final int[] stages = sampleSizes.clone();
+
+		mExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				Rect region = new Rect(0, 0, source.getWidth(), source.getHeight());
+				for(int stage = 0; stage < stages.length; stage++){
+					if(mGeneration.get() != generation){
+						return;
+					}
+
+					Bitmap bitmap = source.decodeRegion(region, stages[stage]);
+					if(bitmap == null){
+						continue;
+					}
+
+					if(mGeneration.get() != generation){
+						BitmapPool pool = mBitmapPool;
+						if(pool != null){
+							pool.put(bitmap);
+						}else{
+							bitmap.recycle();
+						}
+						return;
+					}
+					listener.onStageDecoded(bitmap, stages[stage], stage == stages.length - 1);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Drops every stage of the current load that has not been delivered yet.
+	 */
+	public void cancel() {
+		mGeneration.incrementAndGet();
+	}
+
+	/**
+	 * Computes the stages for an image: a preview whose longest side is close to previewSize,
+	 * then every fourth reduction in pixel count down to the finest level that fits in maxSize.
+	 * @param maxSize The largest allowed dimension of the final stage, or 0 for no limit.
+	 */
+	public static int[] computeSampleSizes(int width, int height, int previewSize, int maxSize) {
+		int longest = Math.max(width, height);
+
+		int finest = 1;
+		if(maxSize > 0){
+			while(longest / finest > maxSize){
+				finest *= 2;
+			}
+		}
+
+		int coarsest = finest;
+		while(longest / (coarsest * 2) >= previewSize){
+			coarsest *= 2;
+		}
+
+		int count = 1;
+		for(int sampleSize = coarsest; sampleSize > finest; sampleSize = Math.max(finest, sampleSize / 4)){
+			count++;
+		}
+
+		int[] sampleSizes = new int[count];
+		int sampleSize = coarsest;
+		for(int i = 0; i < count; i++){
+			sampleSizes[i] = sampleSize;
+			sampleSize = Math.max(finest, sampleSize / 4);
+		}
+		return sampleSizes;
+	}
+
+	private static ExecutorService createDefaultExecutor() {
+		return Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "ProgressiveImageLoader");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Interface for receiving progressive decode stages
+	 */
+	public static interface OnStageDecodedListener {
+
+		/**
+		 * Called on the loader thread when a stage has been decoded.
+		 * @param bitmap The stage, subsampled by sampleSize.
+		 * @param sampleSize The inSampleSize used to decode this stage.
+		 * @param isFinal Whether this is the last stage of the load.
+		 */
+		public void onStageDecoded(Bitmap bitmap, int sampleSize, boolean isFinal);
+	}
+}
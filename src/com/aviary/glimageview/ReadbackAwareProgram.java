@@ -0,0 +1,21 @@
+package com.aviary.glimageview;
+
+/**
+ * A GLImagingProgram that needs to tell render calls made for a readback from the ones made for
+ * the screen, for instance because it decides what to load from the transforms it is given.
+ * {@link ImageReadback} brackets every strip it renders with these calls, whether it runs all at
+ * once or one strip per frame between frames for the screen.
+ */
+public interface ReadbackAwareProgram extends GLImagingProgram {
+
+	/**
+	 * Called on the GL thread before rendering a readback strip. Until {@link #endReadback()}, the
+	 * transforms passed to render are the readback's, not the view's.
+	 */
+	public void beginReadback();
+
+	/**
+	 * Called on the GL thread once the strip is rendered.
+	 */
+	public void endReadback();
+}
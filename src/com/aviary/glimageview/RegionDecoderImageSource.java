@@ -0,0 +1,131 @@
+package com.aviary.glimageview;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.os.Build;
+
+/**
+ * An ImageSource backed by a BitmapRegionDecoder, so only the requested parts of a JPEG or PNG
+ * are ever decoded. From API 16 regions are decoded into bitmaps taken from a {@link BitmapPool},
+ * so callers should put them back into {@link #getBitmapPool()} instead of recycling them.
+ * Its tiles are only kept in a {@link DiskTileCache} once it has been given a cache key.
+ */
+@TargetApi(10)
+public class RegionDecoderImageSource implements CacheableImageSource {
+
+	private final BitmapRegionDecoder mDecoder;
+	private final int mWidth;
+	private final int mHeight;
+	private volatile BitmapPool mBitmapPool = BitmapPool.getDefault();
+	private volatile String mCacheKey;
+
+	public RegionDecoderImageSource(BitmapRegionDecoder decoder) {
+		if(decoder == null){
+			throw new IllegalArgumentException("decoder cannot be null");
+		}
+		mDecoder = decoder;
+		mWidth = decoder.getWidth();
+		mHeight = decoder.getHeight();
+	}
+
+	public static RegionDecoderImageSource fromStream(InputStream stream) throws IOException {
+		return new RegionDecoderImageSource(BitmapRegionDecoder.newInstance(stream, false));
+	}
+
+	public static RegionDecoderImageSource fromFile(String path) throws IOException {
+		return new RegionDecoderImageSource(BitmapRegionDecoder.newInstance(path, false));
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	public int getHeight() {
+		return mHeight;
+	}
+
+	/**
+	 * @param pool Where decoded bitmaps come from, or null to always allocate new ones.
+	 */
+	public void setBitmapPool(BitmapPool pool) {
+		mBitmapPool = pool;
+	}
+
+	public BitmapPool getBitmapPool() {
+		return mBitmapPool;
+	}
+
+	/**
+	 * @param key Identifies the content of the decoded file, or null to keep its tiles out of caches.
+	 */
+	public void setCacheKey(String key) {
+		mCacheKey = key;
+	}
+
+	public String getCacheKey() {
+		return mCacheKey;
+	}
+
+	public Bitmap decodeRegion(Rect region, int sampleSize) {
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+		options.inSampleSize = sampleSize;
+
+		BitmapPool pool = mBitmapPool;
+		Bitmap reused = null;
+		if(pool != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
+			reused = setReusedBitmap(options, pool, region, sampleSize);
+		}
+
+		Bitmap bitmap;
+		// BitmapRegionDecoder serializes decodes internally, locking here only guards against recycle()
+		synchronized (mDecoder) {
+			if(mDecoder.isRecycled()){
+				bitmap = null;
+			}else{
+				try {
+					bitmap = mDecoder.decodeRegion(region, options);
+				} catch (IllegalArgumentException e) {
+					if(reused == null){
+						throw e;
+					}
+					// The pooled bitmap was rejected, decode into a new one
+					options.inBitmap = null;
+					bitmap = mDecoder.decodeRegion(region, options);
+				}
+			}
+		}
+
+		// The decoder allocates a new bitmap if it could not reuse the pooled one
+		if(reused != null && reused != bitmap){
+			pool.put(reused);
+		}
+		return bitmap;
+	}
+
+	/**
+	 * The region decoder only reuses a bitmap of the exact output size, since it decodes into its
+	 * top left corner without resizing it.
+	 */
+	@TargetApi(16)
+	private static Bitmap setReusedBitmap(BitmapFactory.Options options, BitmapPool pool, Rect region, int sampleSize) {
+		int width = Math.max(1, region.width() / sampleSize);
+		int height = Math.max(1, region.height() / sampleSize);
+		Bitmap reused = pool.get(width, height, Bitmap.Config.ARGB_8888);
+		options.inMutable = true;
+		options.inBitmap = reused;
+		return reused;
+	}
+
+	public void recycle() {
+		synchronized (mDecoder) {
+			mDecoder.recycle();
+		}
+	}
+}
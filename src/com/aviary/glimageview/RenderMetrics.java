@@ -0,0 +1,122 @@
+package com.aviary.glimageview;
+
+import com.aviary.glimageview.GLImageViewRenderer.OnRenderMetricsListener;
+
+/**
+ * An OnRenderMetricsListener that aggregates what the renderer reports into rolling histograms,
+ * for sampling percentiles from production builds. All times are in nanoseconds.
+ *
+ * A frame counts as janky when it was drawn more than one frame interval after it was requested,
+ * and every whole interval it waited beyond the first counts as a dropped frame.
+ */
+public class RenderMetrics implements OnRenderMetricsListener {
+
+	public static final int DEFAULT_WINDOW_SIZE = 256;
+	public static final long DEFAULT_FRAME_INTERVAL_NANOS = 16666667;
+
+	private final RollingHistogram mFrameTime;
+	private final RollingHistogram mRequestLatency;
+	private final RollingHistogram mUploadTime;
+	private final RollingHistogram mUploadBytes;
+	private final RollingHistogram mReadbackTime;
+	private final long mFrameIntervalNanos;
+
+	private volatile long mJankyFrameCount;
+	private volatile long mDroppedFrameCount;
+
+	public RenderMetrics() {
+		this(DEFAULT_WINDOW_SIZE, DEFAULT_FRAME_INTERVAL_NANOS);
+	}
+
+	/**
+	 * @param windowSize How many recent samples every histogram keeps.
+	 * @param frameIntervalNanos The display refresh interval.
+	 */
+	public RenderMetrics(int windowSize, long frameIntervalNanos) {
+		mFrameTime = new RollingHistogram(windowSize);
+		mRequestLatency = new RollingHistogram(windowSize);
+		mUploadTime = new RollingHistogram(windowSize);
+		mUploadBytes = new RollingHistogram(windowSize);
+		mReadbackTime = new RollingHistogram(windowSize);
+		mFrameIntervalNanos = frameIntervalNanos;
+	}
+
+	// OnRenderMetricsListener
+
+	@Override
+	public void onFrameRendered(long cpuTimeNanos, long requestLatencyNanos) {
+		mFrameTime.record(cpuTimeNanos);
+		if(requestLatencyNanos < 0){
+			return;
+		}
+		mRequestLatency.record(requestLatencyNanos);
+		if(requestLatencyNanos > mFrameIntervalNanos){
+			mJankyFrameCount++;
+			mDroppedFrameCount += requestLatencyNanos / mFrameIntervalNanos - 1;
+		}
+	}
+
+	@Override
+	public void onTextureUploaded(long timeNanos, long bytes) {
+		mUploadTime.record(timeNanos);
+		mUploadBytes.record(bytes);
+	}
+
+	@Override
+	public void onReadbackCompleted(long timeNanos) {
+		mReadbackTime.record(timeNanos);
+	}
+
+	// Getters
+
+	/**
+	 * @return CPU time spent in onDrawFrame.
+	 */
+	public RollingHistogram getFrameTime() {
+		return mFrameTime;
+	}
+
+	/**
+	 * @return Time from the first requestRender to the start of the frame that honoured it.
+	 */
+	public RollingHistogram getRequestLatency() {
+		return mRequestLatency;
+	}
+
+	public RollingHistogram getUploadTime() {
+		return mUploadTime;
+	}
+
+	public RollingHistogram getUploadBytes() {
+		return mUploadBytes;
+	}
+
+	/**
+	 * @return Time from the start of a readback to its completion, including the frames in between.
+	 */
+	public RollingHistogram getReadbackTime() {
+		return mReadbackTime;
+	}
+
+	public long getFrameCount() {
+		return mFrameTime.getTotalCount();
+	}
+
+	public long getJankyFrameCount() {
+		return mJankyFrameCount;
+	}
+
+	public long getDroppedFrameCount() {
+		return mDroppedFrameCount;
+	}
+
+	public void reset() {
+		mFrameTime.reset();
+		mRequestLatency.reset();
+		mUploadTime.reset();
+		mUploadBytes.reset();
+		mReadbackTime.reset();
+		mJankyFrameCount = 0;
+		mDroppedFrameCount = 0;
+	}
+}
@@ -0,0 +1,90 @@
+package com.aviary.glimageview;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the last N recorded values and answers percentile queries over them. Recording is a
+ * single array store; percentiles sort a preallocated copy, so nothing is allocated after
+ * construction. Safe to record on one thread and query on another.
+ */
+public class RollingHistogram {
+
+	private final long[] mSamples;
+	private final long[] mSorted;
+	private int mNext;
+	private int mSize;
+	private long mTotalCount;
+
+	/**
+	 * @param windowSize How many of the most recent values are kept.
+	 */
+	public RollingHistogram(int windowSize) {
+		if(windowSize <= 0){
+			throw new IllegalArgumentException("windowSize must be positive");
+		}
+		mSamples = new long[windowSize];
+		mSorted = new long[windowSize];
+	}
+
+	public synchronized void record(long value) {
+		mSamples[mNext] = value;
+		mNext = (mNext + 1) % mSamples.length;
+		if(mSize < mSamples.length){
+			mSize++;
+		}
+		mTotalCount++;
+	}
+
+	/**
+	 * @param percentile From 0 to 100.
+	 * @return The nearest-rank percentile of the values in the window, or 0 if there are none.
+	 */
+	public synchronized long getPercentile(double percentile) {
+		if(mSize == 0){
+			return 0;
+		}
+		System.arraycopy(mSamples, 0, mSorted, 0, mSize);
+		Arrays.sort(mSorted, 0, mSize);
+		int rank = (int) Math.ceil(percentile / 100.0 * mSize);
+		return mSorted[Math.max(0, Math.min(mSize - 1, rank - 1))];
+	}
+
+	public synchronized long getMax() {
+		long max = 0;
+		for(int i = 0; i < mSize; i++){
+			max = Math.max(max, mSamples[i]);
+		}
+		return max;
+	}
+
+	public synchronized double getMean() {
+		if(mSize == 0){
+			return 0;
+		}
+		long sum = 0;
+		for(int i = 0; i < mSize; i++){
+			sum += mSamples[i];
+		}
+		return sum / (double) mSize;
+	}
+
+	/**
+	 * @return The number of values in the window.
+	 */
+	public synchronized int getSize() {
+		return mSize;
+	}
+
+	/**
+	 * @return The number of values recorded since construction or the last reset.
+	 */
+	public synchronized long getTotalCount() {
+		return mTotalCount;
+	}
+
+	public synchronized void reset() {
+		mNext = 0;
+		mSize = 0;
+		mTotalCount = 0;
+	}
+}
@@ -0,0 +1,41 @@
+package com.aviary.glimageview;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+
+import android.opengl.GLSurfaceView;
+
+/**
+ * Creates the GLES 2 context of a GLSurfaceView the same way the default factory does, and lets a
+ * {@link GLTextureUploader} create a context sharing its textures alongside it.
+ */
+final class SharedEGLContextFactory implements GLSurfaceView.EGLContextFactory {
+
+	private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+
+	private final GLTextureUploader mUploader;
+
+	SharedEGLContextFactory(GLTextureUploader uploader) {
+		mUploader = uploader;
+	}
+
+	@Override
+	public EGLContext createContext(EGL10 egl, EGLDisplay display, EGLConfig config) {
+		int[] attributes = { EGL_CONTEXT_CLIENT_VERSION, 2, EGL10.EGL_NONE };
+		EGLContext context = egl.eglCreateContext(display, config, EGL10.EGL_NO_CONTEXT, attributes);
+		if(context != null && context != EGL10.EGL_NO_CONTEXT){
+			mUploader.onContextCreated(egl, display, config, context);
+		}
+		return context;
+	}
+
+	@Override
+	public void destroyContext(EGL10 egl, EGLDisplay display, EGLContext context) {
+		mUploader.onContextDestroyed();
+		if(!egl.eglDestroyContext(display, context)){
+			throw new RuntimeException("eglDestroyContext failed, error " + egl.eglGetError());
+		}
+	}
+}
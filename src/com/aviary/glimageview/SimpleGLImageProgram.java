@@ -1,97 +1,166 @@
 package com.aviary.glimageview;
 
-import java.nio.Buffer;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
+import java.util.concurrent.Executor;
 
 import javax.microedition.khronos.opengles.GL10;
 
 import android.graphics.Bitmap;
-import android.graphics.Matrix;
 import android.graphics.RectF;
 import android.opengl.GLES20;
-import android.opengl.GLUtils;
-import android.util.Log;
 
-public class SimpleGLImageProgram implements GLImagingProgram{
+public class SimpleGLImageProgram implements PreparedTextureProgram, CompressedTextureProgram, TextureOwningProgram{
 
 	private static final String LOG_TAG = "SimpleGLImageProgram";
-	private static final int FLOAT_BYTE_LENGTH = 4;
 
 	// Shaders
 	private String mVertexShader = "" +
-	"attribute vec4 a_position;" + 
-    "attribute vec2 a_texCoord;" + 
+	"uniform mat3 u_transform;" +
+	"uniform vec4 u_bounds;" +
+	"attribute vec2 a_corner;" + 
     "varying highp vec2 v_texCoord;" + 
     "void main(void) {" +
-    "    v_texCoord = a_texCoord;" +
-    "    gl_Position = a_position;" +
+    "    vec2 position = mix(u_bounds.xy, u_bounds.zw, a_corner);" +
+    "    v_texCoord = vec2(a_corner.x, 1.0 - a_corner.y);" +
+    "    gl_Position = vec4((u_transform * vec3(position, 1.0)).xy, 0.0, 1.0);" +
     "}";
 	
 	private String mFragmentShader = "" +
     "		precision mediump float;" + 
     "       uniform lowp sampler2D u_sampler;" +
+    "       uniform lowp sampler2D u_alphaSampler;" +
+    "       uniform lowp float u_separateAlpha;" +
     "       varying highp vec2 v_texCoord;" +   
     "       void main(void) { " +
-    "           gl_FragColor = texture2D(u_sampler, v_texCoord);" +
+    "           lowp vec4 color = texture2D(u_sampler, v_texCoord);" +
+    // ETC1 has no alpha, translucent images carry it in a second texture and are not premultiplied
+    "           if(u_separateAlpha > 0.5) {" +
+    "               lowp float alpha = texture2D(u_alphaSampler, v_texCoord).r;" +
+    "               color = vec4(color.rgb * alpha, alpha);" +
+    "           }" +
+    "           gl_FragColor = color;" +
     "       }";
 	
 	// GL Objects
 	private int mProgram = 0;
-	private FloatBuffer mVertexBuffer;
-	private int mPositionAttributeLocation;
-	private int mTexCoordAttributeLocation;
+	private final GLQuadBuffer mQuad = new GLQuadBuffer();
+	private int mCornerAttributeLocation;
+	private int mTransformUniformLocation;
+	private int mBoundsUniformLocation;
 	private int mSamplerUniformLocation;
+	private int mAlphaSamplerUniformLocation;
+	private int mSeparateAlphaUniformLocation;
     private int mCurrentTextureId;
+    private int mCurrentAlphaTextureId;
+    private boolean mEtc1Supported;
+    
+    // Textures
+    private final TextureManager mTextureManager;
+    private final GLTextureAllocator mTextureAllocator = new GLTextureAllocator();
+    private TextureManager.Texture mCurrentTexture;
+    private TextureManager.Texture mCurrentAlphaTexture;
 
-	// Standard Vertices
-    private float[] mVertices = {
-            1.f, -1.f,  0.0f, 1.f, 1.f,
-            -1.f, -1.f, 0.0f, 0.f, 1.f,
-            1.f,  1.f,  0.0f, 1.f, 0.f,
-            -1.f, 1.f,  0.0f, 0.f, 0.f
-        };
+    private final float[] mTransformValues = new float[9];
+	
+	public SimpleGLImageProgram(){
+		this(TextureManager.getDefault());
+	}
+	
+	/**
+	 * @param textureManager Accounts for the image texture, shared with other views to keep within one budget.
+	 */
+	public SimpleGLImageProgram(TextureManager textureManager){
+		mTextureManager = textureManager;
+	}
 	
 	public void setup(){
-		Log.i(LOG_TAG, "Setup");
+		if(GLTrace.ENABLED) GLTrace.event(LOG_TAG, "Setup");
 		
-		mProgram = createProgram();
-        mPositionAttributeLocation = GLES20.glGetAttribLocation(mProgram, "a_position");
-        mTexCoordAttributeLocation = GLES20.glGetAttribLocation(mProgram, "a_texCoord");
-        mSamplerUniformLocation = GLES20.glGetUniformLocation(mProgram, "u_sampler");
+		mProgram = GLProgramUtils.createProgram(mVertexShader, mFragmentShader);
+        mCornerAttributeLocation = GLProgramUtils.getAttribLocation(mProgram, "a_corner");
+        mTransformUniformLocation = GLProgramUtils.getUniformLocation(mProgram, "u_transform");
+        mBoundsUniformLocation = GLProgramUtils.getUniformLocation(mProgram, "u_bounds");
+        mSamplerUniformLocation = GLProgramUtils.getUniformLocation(mProgram, "u_sampler");
+        mAlphaSamplerUniformLocation = GLProgramUtils.getUniformLocation(mProgram, "u_alphaSampler");
+        mSeparateAlphaUniformLocation = GLProgramUtils.getUniformLocation(mProgram, "u_separateAlpha");
+        
+        String extensions = GLES20.glGetString(GLES20.GL_EXTENSIONS);
+        mEtc1Supported = extensions != null && extensions.contains("GL_OES_compressed_ETC1_RGB8_texture");
         
         GLES20.glDisable(GL10.GL_CULL_FACE);
         
-        mVertexBuffer = ByteBuffer.allocateDirect(mVertices.length * FLOAT_BYTE_LENGTH).order(ByteOrder.nativeOrder()).asFloatBuffer();
-        mVertexBuffer.put(mVertices);
-        mVertexBuffer.position(0);
+        mQuad.setup();
+        GLES20.glEnableVertexAttribArray(mCornerAttributeLocation);
+        
+        // Texture names from a previous context are no longer valid
+        mTextureManager.onContextLost(mTextureAllocator);
+        mTextureAllocator.setup();
+        mCurrentTexture = null;
+        mCurrentTextureId = 0;
+        mCurrentAlphaTexture = null;
+        mCurrentAlphaTextureId = 0;
      }
 	
+	public void setGLThreadExecutor(Executor executor) {
+		mTextureAllocator.setGLThreadExecutor(executor);
+	}
+	
 	public void setFramebufferSize(int width, int height) {
 		// This simple program doesn't use this information
 	}
 	
 	public void setBitmap(Bitmap bitmap){
-		Log.i(LOG_TAG, "Set Bitmap");
+		if(GLTrace.ENABLED) GLTrace.event(LOG_TAG, "Set Bitmap");
+		
+		setTexture(mTextureAllocator.acquireBitmapTexture(mTextureManager, bitmap, GL10.GL_NEAREST));
+	}
+	
+	public void setPreparedTexture(Bitmap bitmap, int textureId){
+		if(GLTrace.ENABLED) GLTrace.event(LOG_TAG, "Set Prepared Texture");
 		
-        int textures[] = new int[1];
-        GLES20.glGenTextures(1, textures, 0);
-        GLES20.glBindTexture(GL10.GL_TEXTURE_2D, textures[0]);
-        GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_NEAREST);
-        GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
-        GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_S, GL10.GL_CLAMP_TO_EDGE);
-        GLES20.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_T, GL10.GL_CLAMP_TO_EDGE);
-        GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, bitmap, 0);
-        mCurrentTextureId = textures[0];
+		setTexture(mTextureAllocator.adoptBitmapTexture(mTextureManager, bitmap, textureId, GL10.GL_NEAREST));
 	}
 	
-	public void render(Matrix transformMatrix, RectF imageBoundsRect){
-		Log.i(LOG_TAG, "Render");
+	public boolean isEtc1Supported(){
+		return mEtc1Supported;
+	}
+	
+	public void setCompressedImage(Etc1Image image){
+		if(GLTrace.ENABLED) GLTrace.event(LOG_TAG, "Set Compressed Image");
+		
+		TextureManager.Texture texture = mTextureAllocator.acquireEtc1Texture(mTextureManager, TextureManager.weakIdentityKey(image.getColorData()),
+				image.getWidth(), image.getHeight(), image.getColorData(), GL10.GL_NEAREST);
+		TextureManager.Texture alphaTexture = null;
+		if(image.hasAlpha()){
+			alphaTexture = mTextureAllocator.acquireEtc1Texture(mTextureManager, TextureManager.weakIdentityKey(image.getAlphaData()),
+					image.getWidth(), image.getHeight(), image.getAlphaData(), GL10.GL_NEAREST);
+		}
+		setTexture(texture, alphaTexture);
+	}
+	
+	private void setTexture(TextureManager.Texture texture){
+		setTexture(texture, null);
+	}
+	
+	private void setTexture(TextureManager.Texture texture, TextureManager.Texture alphaTexture){
+		if(mCurrentTexture != null){
+			mTextureManager.release(mCurrentTexture);
+		}
+		if(mCurrentAlphaTexture != null){
+			mTextureManager.release(mCurrentAlphaTexture);
+		}
+		mCurrentTexture = texture;
+		mCurrentTextureId = texture.getTextureId();
+		mCurrentAlphaTexture = alphaTexture;
+		mCurrentAlphaTextureId = alphaTexture != null ? alphaTexture.getTextureId() : 0;
+	}
+	
+	public void render(ViewTransform transform, RectF imageBoundsRect){
+		mTextureAllocator.deletePending();
 		
 		if(mCurrentTextureId == 0){
 			return;
 		}
+		if(GLTrace.ENABLED) GLTrace.beginSection("SimpleGLImageProgram.render");
 		
 //		GLES20.glClearColor(1.f, 0.f, 0.f, 1.f);
 		GLES20.glClearColor(0.f, 0.f, 0.f, 0.f);
@@ -105,74 +174,25 @@ public class SimpleGLImageProgram implements GLImagingProgram{
         
         GLES20.glUniform1i(mSamplerUniformLocation, 0);
         
-        Log.i(LOG_TAG, "Rect: " + imageBoundsRect);
-        
-        float points[] = { imageBoundsRect.right, imageBoundsRect.bottom, 
-        			imageBoundsRect.left, imageBoundsRect.bottom,
-        			imageBoundsRect.right, imageBoundsRect.top,
-        			imageBoundsRect.left, imageBoundsRect.top};
+        if(mCurrentAlphaTextureId != 0){
+        	GLES20.glActiveTexture(GLES20.GL_TEXTURE1);
+        	GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mCurrentAlphaTextureId);
+        	GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        }
+        GLES20.glUniform1i(mAlphaSamplerUniformLocation, 1);
+        GLES20.glUniform1f(mSeparateAlphaUniformLocation, mCurrentAlphaTextureId != 0 ? 1.f : 0.f);
         
-        transformMatrix.mapPoints(points);
+        GLProgramUtils.setTransformUniform(mTransformUniformLocation, transform, mTransformValues);
+        GLProgramUtils.setBoundsUniform(mBoundsUniformLocation, imageBoundsRect);
         
-        mVertices[0] = points[0];
-        mVertices[1] = points[1];
-        mVertices[5] = points[2];
-        mVertices[6] = points[3];
-        mVertices[10] = points[4];
-        mVertices[11] = points[5];
-        mVertices[15] = points[6];
-        mVertices[16] = points[7];
+        mQuad.bind(mCornerAttributeLocation);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, GLQuadBuffer.VERTEX_COUNT);
+        mQuad.unbind();
         
-        mVertexBuffer.position(0);
-        mVertexBuffer.put(mVertices);
-                    
-        mVertexBuffer.position(0);
-        GLES20.glVertexAttribPointer(mPositionAttributeLocation, 3, GLES20.GL_FLOAT, false, 5 * FLOAT_BYTE_LENGTH, mVertexBuffer);
-        mVertexBuffer.position(3);
-        GLES20.glVertexAttribPointer(mTexCoordAttributeLocation, 2, GLES20.GL_FLOAT, false, 5 * FLOAT_BYTE_LENGTH, mVertexBuffer);
-        GLES20.glEnableVertexAttribArray(mPositionAttributeLocation);
-        GLES20.glEnableVertexAttribArray(mTexCoordAttributeLocation);
-
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        if(GLTrace.ENABLED) GLTrace.endSection();
 	}
 	
 	public void readImage(Bitmap bitmap) {
-		// This does nothing in this demo program.
+		new ImageReadback(this, bitmap, ImageReadback.DEFAULT_STRIP_HEIGHT, 0, null, null, null).runToCompletion();
 	}
-	
-	// Program Utils
-	 private int createProgram()
-    {
-        int program = GLES20.glCreateProgram();
-
-        int vertexShader = getShader(GLES20.GL_VERTEX_SHADER, mVertexShader);
-        int fragmentShader = getShader(GLES20.GL_FRAGMENT_SHADER, mFragmentShader);
-
-        GLES20.glAttachShader(program, vertexShader);
-        GLES20.glAttachShader(program, fragmentShader);
-        GLES20.glLinkProgram(program);
-        GLES20.glUseProgram(program);
-
-        Log.i(LOG_TAG, "Program " + program);
-        
-        return program;
-    }
-
-    private int getShader(int type, String shaderSource) 
-    {
-        int shader = GLES20.glCreateShader(type);
-        GLES20.glShaderSource(shader, shaderSource);
-        GLES20.glCompileShader(shader);
-
-        int[] compiled = new int[1];
-        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
-        if (compiled[0] == 0) 
-        {
-            Log.e("opengl", "Could not compile shader");
-            Log.e("opengl", GLES20.glGetShaderInfoLog(shader));
-            Log.e("opengl", shaderSource);
-        }
-
-        return shader;
-    }
 }
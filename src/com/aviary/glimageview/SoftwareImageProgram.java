@@ -0,0 +1,91 @@
+package com.aviary.glimageview;
+
+import java.nio.IntBuffer;
+
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+
+/**
+ * A GLImagingProgram that needs no GL context: it renders with a {@link SoftwareRasterizer} into a
+ * pixel array of the framebuffer size, with the same transform and bilinear sampling as
+ * {@link SimpleGLImageProgram}. Useful for comparing against reference images and for exporting
+ * where there is no GPU; nothing it renders reaches the screen.
+ */
+public class SoftwareImageProgram implements GLImagingProgram {
+
+	private final SoftwareRasterizer mRasterizer;
+	private final float[] mMatrixValues = new float[9];
+	private int[] mFramebuffer;
+	private int mFramebufferWidth;
+	private int mFramebufferHeight;
+
+	public SoftwareImageProgram() {
+		this(new SoftwareRasterizer());
+	}
+
+	public SoftwareImageProgram(SoftwareRasterizer rasterizer) {
+		if(rasterizer == null){
+			throw new IllegalArgumentException("rasterizer cannot be null");
+		}
+		mRasterizer = rasterizer;
+	}
+
+	public void setup() {
+	}
+
+	public void setBitmap(Bitmap bitmap) {
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		int[] pixels = new int[width * height];
+		bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+		mRasterizer.setImage(pixels, width, height);
+	}
+
+	public void setFramebufferSize(int width, int height) {
+		if(width != mFramebufferWidth || height != mFramebufferHeight || mFramebuffer == null){
+			mFramebuffer = new int[width * height];
+			mFramebufferWidth = width;
+			mFramebufferHeight = height;
+		}
+	}
+
+	public void render(ViewTransform transform, RectF imageBoundsRect) {
+		if(mFramebuffer == null || !mRasterizer.hasImage()){
+			return;
+		}
+		transform.getValues(mMatrixValues);
+		mRasterizer.render(mMatrixValues, imageBoundsRect.left, imageBoundsRect.top, imageBoundsRect.right,
+				imageBoundsRect.bottom, mFramebuffer, mFramebufferWidth, mFramebufferHeight);
+	}
+
+	public void readImage(Bitmap bitmap) {
+		if(!mRasterizer.hasImage()){
+			return;
+		}
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		int[] pixels = new int[width * height];
+		mRasterizer.readImage(pixels, width, height);
+		bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+	}
+
+	/**
+	 * @return The last rendered frame as ARGB pixels, row after row from the top, or null before the
+	 * framebuffer size is set.
+	 */
+	public IntBuffer getFramebuffer() {
+		return mFramebuffer != null ? IntBuffer.wrap(mFramebuffer) : null;
+	}
+
+	public int getFramebufferWidth() {
+		return mFramebufferWidth;
+	}
+
+	public int getFramebufferHeight() {
+		return mFramebufferHeight;
+	}
+
+	public SoftwareRasterizer getRasterizer() {
+		return mRasterizer;
+	}
+}
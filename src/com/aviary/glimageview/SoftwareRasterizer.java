@@ -0,0 +1,283 @@
+package com.aviary.glimageview;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Draws an image the way {@link SimpleGLImageProgram} does, but into an int[] instead of a GL
+ * framebuffer: the image bounds are transformed by an affine matrix in normalized device
+ * coordinates, and every covered pixel samples the image bilinearly with clamp to edge. Rows are
+ * split into bands that are rendered in parallel.
+ *
+ * Pixels are ARGB ints as returned by Bitmap.getPixels, row after row from the top. The image is
+ * filtered premultiplied, like a GL texture uploaded from a Bitmap. This class is pure Java, so it
+ * also runs on machines without a GL context.
+ */
+public class SoftwareRasterizer {
+
+	private static final String LOG_TAG = "SoftwareRasterizer";
+	private static final int MIN_BAND_HEIGHT = 16;
+	private static final int BANDS_PER_THREAD = 4;
+
+	private static ExecutorService sDefaultExecutor;
+
+	private final ExecutorService mExecutor;
+	private final int mThreadCount;
+
+	// The image, premultiplied
+	private int[] mSource;
+	private int mSourceWidth;
+	private int mSourceHeight;
+
+	/**
+	 * Renders on a shared pool with one thread per core.
+	 */
+	public SoftwareRasterizer() {
+		this(getDefaultExecutor(), Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param executor Where row bands are rendered. The calling thread waits for them, so it must
+	 * not be one of the executor's threads.
+	 * @param threadCount The number of threads of the executor, used to size the bands.
+	 */
+	public SoftwareRasterizer(ExecutorService executor, int threadCount) {
+		if(executor == null){
+			throw new IllegalArgumentException("executor cannot be null");
+		}
+		mExecutor = executor;
+		mThreadCount = Math.max(1, threadCount);
+	}
+
+	/**
+	 * Sets the image to draw.
+	 * @param pixels width * height ARGB pixels, which are copied.
+	 */
+	public void setImage(int[] pixels, int width, int height) {
+		if(width <= 0 || height <= 0 || pixels.length < width * height){
+			throw new IllegalArgumentException("pixels must hold " + width + "x" + height + " pixels");
+		}
+		int[] source = mSource != null && mSource.length == width * height ? mSource : new int[width * height];
+		for(int i = 0; i < source.length; i++){
+			source[i] = PixelUtils.premultiply(pixels[i]);
+		}
+		mSource = source;
+		mSourceWidth = width;
+		mSourceHeight = height;
+	}
+
+	public boolean hasImage() {
+		return mSource != null;
+	}
+
+	public int getImageWidth() {
+		return mSourceWidth;
+	}
+
+	public int getImageHeight() {
+		return mSourceHeight;
+	}
+
+	/**
+	 * Clears the target and draws the image into it.
+	 * @param matrixValues The 9 values of the transform, in android.graphics.Matrix order. Only the
+	 * affine part is used, as in the GL programs.
+	 * @param left The image bounds in normalized device coordinates, with top above bottom.
+	 * @param target targetWidth * targetHeight ARGB pixels.
+	 */
+	public void render(float[] matrixValues, float left, float top, float right, float bottom,
+			int[] target, int targetWidth, int targetHeight) {
+		if(target.length < targetWidth * targetHeight){
+			throw new IllegalArgumentException("target must hold " + targetWidth + "x" + targetHeight + " pixels");
+		}
+		if(GLTrace.ENABLED) GLTrace.beginSection("SoftwareRasterizer.render");
+
+		RenderPass pass = new RenderPass(matrixValues, left, top, right, bottom, target, targetWidth, targetHeight);
+		int bandHeight = Math.max(MIN_BAND_HEIGHT, (targetHeight + mThreadCount * BANDS_PER_THREAD - 1) / (mThreadCount * BANDS_PER_THREAD));
+		if(bandHeight >= targetHeight || mThreadCount == 1){
+			pass.render(0, targetHeight);
+		}else{
+			List<Callable<Void>> bands = new ArrayList<Callable<Void>>();
+			for(int y = 0; y < targetHeight; y += bandHeight){
+				bands.add(pass.rows(y, Math.min(targetHeight, y + bandHeight)));
+			}
+			invokeAll(bands);
+		}
+
+		if(GLTrace.ENABLED) GLTrace.endSection();
+	}
+
+	/**
+	 * Draws the image at the target's size, the same as a GL program's readImage.
+	 */
+	public void readImage(int[] target, int targetWidth, int targetHeight) {
+		float[] identity = { 1.f, 0.f, 0.f, 0.f, 1.f, 0.f, 0.f, 0.f, 1.f };
+		render(identity, -1.f, 1.f, 1.f, -1.f, target, targetWidth, targetHeight);
+	}
+
+	private void invokeAll(List<Callable<Void>> bands) {
+		try {
+			List<Future<Void>> futures = mExecutor.invokeAll(bands);
+			for(Future<Void> future : futures){
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	// Pixel Utils
+
+	/**
+	 * Mixes two premultiplied colors, two channels at a time.
+	 * @param weight The weight of the second color, from 0 to 256.
+	 */
+	private static int lerp(int a, int b, int weight) {
+		int inverse = 256 - weight;
+		int redBlue = (((a & 0xFF00FF) * inverse + (b & 0xFF00FF) * weight) >>> 8) & 0xFF00FF;
+		int alphaGreen = (((a >>> 8) & 0xFF00FF) * inverse + ((b >>> 8) & 0xFF00FF) * weight) & 0xFF00FF00;
+		return alphaGreen | redBlue;
+	}
+
+	private static synchronized ExecutorService getDefaultExecutor() {
+		if(sDefaultExecutor == null){
+			sDefaultExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				private int mCount;
+
+				@Override
+				public synchronized Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, LOG_TAG + " #" + (++mCount));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return sDefaultExecutor;
+	}
+
+	/**
+	 * One render call, mapping target pixels back to image texels. Everything is linear along a row,
+	 * so the per pixel work is two additions and a bilinear fetch.
+	 */
+	private final class RenderPass {
+		private final int[] mTarget;
+		private final int mTargetWidth;
+		private final boolean mVisible;
+
+		// Texel coordinates of the center of pixel (0, 0), and their steps along x and y
+		private double mOriginU;
+		private double mOriginV;
+		private double mStepUX;
+		private double mStepVX;
+		private double mStepUY;
+		private double mStepVY;
+
+		RenderPass(float[] m, float left, float top, float right, float bottom, int[] target, int targetWidth, int targetHeight) {
+			mTarget = target;
+			mTargetWidth = targetWidth;
+
+			// x' = a x + b y + c, y' = d x + e y + f, as in the vertex shaders
+			double a = m[0], b = m[1], c = m[2];
+			double d = m[3], e = m[4], f = m[5];
+			double determinant = a * e - b * d;
+			mVisible = mSource != null && determinant != 0 && right != left && top != bottom;
+			if(!mVisible){
+				return;
+			}
+
+			// Device coordinates of the first pixel center and their steps
+			double deviceX = 1.0 / targetWidth - 1.0;
+			double deviceY = 1.0 - 1.0 / targetHeight;
+			double deviceStepX = 2.0 / targetWidth;
+			double deviceStepY = -2.0 / targetHeight;
+
+			// Image space: (x, y) = inverse * (device - translation)
+			double imageX = (e * (deviceX - c) - b * (deviceY - f)) / determinant;
+			double imageY = (a * (deviceY - f) - d * (deviceX - c)) / determinant;
+			double imageStepXX = e * deviceStepX / determinant;
+			double imageStepYX = -d * deviceStepX / determinant;
+			double imageStepXY = -b * deviceStepY / determinant;
+			double imageStepYY = a * deviceStepY / determinant;
+
+			// Texel space, with row 0 of the image at the top of the bounds like GLUtils.texImage2D
+			double scaleU = mSourceWidth / (double) (right - left);
+			double scaleV = mSourceHeight / (double) (top - bottom);
+			mOriginU = (imageX - left) * scaleU;
+			mOriginV = (top - imageY) * scaleV;
+			mStepUX = imageStepXX * scaleU;
+			mStepVX = -imageStepYX * scaleV;
+			mStepUY = imageStepXY * scaleU;
+			mStepVY = -imageStepYY * scaleV;
+		}
+
+		Callable<Void> rows(final int start, final int end) {
+			return new Callable<Void>() {
+				@Override
+				public Void call() {
+					render(start, end);
+					return null;
+				}
+			};
+		}
+
+		void render(int start, int end) {
+			int width = mTargetWidth;
+			int[] target = mTarget;
+			if(!mVisible){
+				Arrays.fill(target, start * width, end * width, 0);
+				return;
+			}
+
+			int[] source = mSource;
+			int sourceWidth = mSourceWidth;
+			int sourceHeight = mSourceHeight;
+			int maxX = sourceWidth - 1;
+			int maxY = sourceHeight - 1;
+
+			for(int y = start; y < end; y++){
+				double u = mOriginU + y * mStepUY;
+				double v = mOriginV + y * mStepVY;
+				int offset = y * width;
+				for(int x = 0; x < width; x++, u += mStepUX, v += mStepVX){
+					// Pixels whose center is outside the bounds are not covered by the quad
+					if(u < 0 || v < 0 || u > sourceWidth || v > sourceHeight){
+						target[offset + x] = 0;
+						continue;
+					}
+
+					// Sample positions are rounded to 1/256 of a texel, the subtexel precision of GPUs,
+					// which also keeps the error accumulated in u and v away from texel centers
+					int sampleX = (int) Math.floor(u * 256 + 0.5) - 128;
+					int sampleY = (int) Math.floor(v * 256 + 0.5) - 128;
+					int x0 = sampleX >> 8;
+					int y0 = sampleY >> 8;
+					int weightX = sampleX & 0xFF;
+					int weightY = sampleY & 0xFF;
+					int x1 = Math.min(maxX, x0 + 1);
+					int y1 = Math.min(maxY, y0 + 1);
+					if(x0 < 0){
+						x0 = 0;
+					}
+					if(y0 < 0){
+						y0 = 0;
+					}
+
+					int row0 = y0 * sourceWidth;
+					int row1 = y1 * sourceWidth;
+					int topColor = lerp(source[row0 + x0], source[row0 + x1], weightX);
+					int bottomColor = lerp(source[row1 + x0], source[row1 + x1], weightX);
+					target[offset + x] = PixelUtils.unpremultiply(lerp(topColor, bottomColor, weightY));
+				}
+			}
+		}
+	}
+}
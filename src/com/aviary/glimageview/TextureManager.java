@@ -0,0 +1,370 @@
+package com.aviary.glimageview;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps the GPU memory used by image textures within a byte budget shared by every GLImageView
+ * that uses the same manager.
+ *
+ * Programs register the textures they upload and acquire and release references to them. A texture
+ * whose last reference is released stays resident, so setting the same image again does not upload
+ * it again, until the budget is exceeded; then the least recently used unreferenced textures are
+ * deleted. Referenced textures are never deleted, so the budget can be exceeded while they are in use.
+ *
+ * The manager only does the accounting. Deleting is delegated to the {@link TextureAllocator} that
+ * registered the texture, which is responsible for doing it on the right GL thread. This class is
+ * pure Java and thread safe.
+ */
+public class TextureManager {
+
+	public static final long DEFAULT_BUDGET_BYTES = 64L * 1024 * 1024;
+
+	// Same values as android.content.ComponentCallbacks2
+	public static final int TRIM_MEMORY_RUNNING_MODERATE = 5;
+	public static final int TRIM_MEMORY_RUNNING_LOW = 10;
+	public static final int TRIM_MEMORY_RUNNING_CRITICAL = 15;
+	public static final int TRIM_MEMORY_UI_HIDDEN = 20;
+
+	private static TextureManager sDefault;
+
+	private final LinkedHashMap<TextureKey, Texture> mTextures = new LinkedHashMap<TextureKey, Texture>(16, 0.75f, true);
+	private long mBudgetBytes;
+	private long mResidentBytes;
+	private long mEvictionCount;
+	private long mEvictedBytes;
+	private long mHitCount;
+	private long mMissCount;
+
+	public TextureManager(long budgetBytes) {
+		setBudget(budgetBytes);
+	}
+
+	/**
+	 * @return The manager shared by every program that is not given one.
+	 */
+	public static synchronized TextureManager getDefault() {
+		if(sDefault == null){
+			sDefault = new TextureManager(DEFAULT_BUDGET_BYTES);
+		}
+		return sDefault;
+	}
+
+	/**
+	 * @return A key that matches only the given object, without keeping it alive. Suited to immutable
+	 * sources such as decoded bitmaps, whose texture can be reused for as long as they exist.
+	 */
+	public static Object weakIdentityKey(Object source) {
+		return new WeakIdentityKey(source);
+	}
+
+	// References
+
+	/**
+	 * Takes a reference to a resident texture. Textures only exist in the GL context they were
+	 * uploaded in, so only textures registered by the same allocator are found.
+	 * @return The texture, or null if there is none for the key and it has to be uploaded and registered.
+	 */
+	public synchronized Texture acquire(Object key, TextureAllocator allocator) {
+		Texture texture = mTextures.get(new TextureKey(key, allocator));
+		if(texture == null){
+			mMissCount++;
+			return null;
+		}
+		mHitCount++;
+		texture.mRefCount++;
+		return texture;
+	}
+
+	/**
+	 * Starts tracking a texture that was just uploaded, holding one reference to it. Evicts unreferenced
+	 * textures if this takes the manager over budget.
+	 * @param key Identifies the texture contents, for {@link #acquire(Object, TextureAllocator)}.
+	 * Must not be registered already for the allocator.
+	 * @param textureId The GL name of the texture.
+	 * @param bytes The GPU memory used by the texture.
+	 * @param allocator Deletes the texture once it is evicted.
+	 */
+	public Texture register(Object key, int textureId, long bytes, TextureAllocator allocator) {
+		if(key == null || allocator == null){
+			throw new IllegalArgumentException("key and allocator cannot be null");
+		}
+		ArrayList<Texture> evicted;
+		Texture texture = new Texture(key, textureId, bytes, allocator);
+		TextureKey textureKey = new TextureKey(key, allocator);
+		synchronized (this) {
+			if(mTextures.containsKey(textureKey)){
+				throw new IllegalStateException("A texture is already registered for " + key);
+			}
+			mTextures.put(textureKey, texture);
+			mResidentBytes += bytes;
+			evicted = evictTo(mBudgetBytes);
+		}
+		delete(evicted);
+		return texture;
+	}
+
+	/**
+	 * Gives up a reference. The texture stays resident for reuse until it is evicted.
+	 */
+	public void release(Texture texture) {
+		ArrayList<Texture> evicted;
+		synchronized (this) {
+			if(texture.mRefCount <= 0){
+				throw new IllegalStateException("Texture " + texture.mKey + " released more times than acquired");
+			}
+			texture.mRefCount--;
+			if(mResidentBytes <= mBudgetBytes){
+				return;
+			}
+			evicted = evictTo(mBudgetBytes);
+		}
+		delete(evicted);
+	}
+
+	/**
+	 * Gives up a reference to a texture that will not be acquired again, such as one registered
+	 * under a key only its owner has. Once no other reference is left it is deleted right away,
+	 * instead of taking up the budget until it is evicted.
+	 */
+	public void discard(Texture texture) {
+		synchronized (this) {
+			if(texture.mRefCount <= 0){
+				throw new IllegalStateException("Texture " + texture.mKey + " released more times than acquired");
+			}
+			texture.mRefCount--;
+			TextureKey textureKey = new TextureKey(texture.mKey, texture.mAllocator);
+			// A texture forgotten on a context loss is gone already
+			if(texture.mRefCount > 0 || mTextures.get(textureKey) != texture){
+				return;
+			}
+			mTextures.remove(textureKey);
+			mResidentBytes -= texture.mBytes;
+		}
+		texture.mAllocator.deleteTexture(texture.mTextureId);
+	}
+
+	// Memory pressure
+
+	/**
+	 * Changes the budget, evicting unreferenced textures if the new one is exceeded.
+	 */
+	public void setBudget(long budgetBytes) {
+		if(budgetBytes < 0){
+			throw new IllegalArgumentException("budgetBytes cannot be negative");
+		}
+		ArrayList<Texture> evicted;
+		synchronized (this) {
+			mBudgetBytes = budgetBytes;
+			evicted = evictTo(budgetBytes);
+		}
+		delete(evicted);
+	}
+
+	/**
+	 * Releases memory in response to ComponentCallbacks2.onTrimMemory. Once the UI is hidden or memory
+	 * is critical, every unreferenced texture is deleted; under lighter pressure the unreferenced
+	 * textures are trimmed to a fraction of the budget.
+	 */
+	public void onTrimMemory(int level) {
+		long target;
+		if(level >= TRIM_MEMORY_RUNNING_CRITICAL){
+			target = 0;
+		}else if(level >= TRIM_MEMORY_RUNNING_LOW){
+			target = getBudget() / 2;
+		}else if(level >= TRIM_MEMORY_RUNNING_MODERATE){
+			target = getBudget() * 3 / 4;
+		}else{
+			return;
+		}
+		trimTo(target);
+	}
+
+	/**
+	 * Deletes least recently used unreferenced textures until at most targetBytes are resident,
+	 * or only referenced textures are left.
+	 */
+	public void trimTo(long targetBytes) {
+		ArrayList<Texture> evicted;
+		synchronized (this) {
+			evicted = evictTo(targetBytes);
+		}
+		delete(evicted);
+	}
+
+	/**
+	 * Forgets every texture of an allocator without deleting them, because its GL context was destroyed
+	 * and took them along. References held on them become invalid.
+	 */
+	public synchronized void onContextLost(TextureAllocator allocator) {
+		Iterator<Texture> iterator = mTextures.values().iterator();
+		while(iterator.hasNext()){
+			Texture texture = iterator.next();
+			if(texture.mAllocator == allocator){
+				iterator.remove();
+				mResidentBytes -= texture.mBytes;
+				texture.mRefCount = 0;
+			}
+		}
+	}
+
+	private ArrayList<Texture> evictTo(long targetBytes) {
+		ArrayList<Texture> evicted = null;
+		// Iteration order is least recently used first
+		Iterator<Texture> iterator = mTextures.values().iterator();
+		while(mResidentBytes > targetBytes && iterator.hasNext()){
+			Texture texture = iterator.next();
+			if(texture.mRefCount > 0){
+				continue;
+			}
+			iterator.remove();
+			mResidentBytes -= texture.mBytes;
+			mEvictionCount++;
+			mEvictedBytes += texture.mBytes;
+			if(evicted == null){
+				evicted = new ArrayList<Texture>();
+			}
+			evicted.add(texture);
+		}
+		return evicted;
+	}
+
+	// Deleting happens outside the lock, since the allocator may block on its GL thread
+	private static void delete(ArrayList<Texture> evicted) {
+		if(evicted == null){
+			return;
+		}
+		for(int i = 0; i < evicted.size(); i++){
+			Texture texture = evicted.get(i);
+			texture.mAllocator.deleteTexture(texture.mTextureId);
+		}
+	}
+
+	// Stats
+
+	public synchronized long getBudget() {
+		return mBudgetBytes;
+	}
+
+	public synchronized long getResidentBytes() {
+		return mResidentBytes;
+	}
+
+	public synchronized int getTextureCount() {
+		return mTextures.size();
+	}
+
+	public synchronized long getEvictionCount() {
+		return mEvictionCount;
+	}
+
+	public synchronized long getEvictedBytes() {
+		return mEvictedBytes;
+	}
+
+	public synchronized long getHitCount() {
+		return mHitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return mMissCount;
+	}
+
+	/**
+	 * A texture tracked by the manager.
+	 */
+	public static final class Texture {
+
+		final Object mKey;
+		final int mTextureId;
+		final long mBytes;
+		final TextureAllocator mAllocator;
+		int mRefCount = 1;
+
+		Texture(Object key, int textureId, long bytes, TextureAllocator allocator) {
+			mKey = key;
+			mTextureId = textureId;
+			mBytes = bytes;
+			mAllocator = allocator;
+		}
+
+		public Object getKey() {
+			return mKey;
+		}
+
+		public int getTextureId() {
+			return mTextureId;
+		}
+
+		public long getBytes() {
+			return mBytes;
+		}
+	}
+
+	private static final class TextureKey {
+
+		private final Object mKey;
+		private final TextureAllocator mAllocator;
+
+		TextureKey(Object key, TextureAllocator allocator) {
+			mKey = key;
+			mAllocator = allocator;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof TextureKey)){
+				return false;
+			}
+			TextureKey other = (TextureKey) o;
+			return mKey.equals(other.mKey) && mAllocator == other.mAllocator;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * mKey.hashCode() + System.identityHashCode(mAllocator);
+		}
+	}
+
+	private static final class WeakIdentityKey {
+
+		private final WeakReference<Object> mReference;
+		private final int mHashCode;
+
+		WeakIdentityKey(Object source) {
+			mReference = new WeakReference<Object>(source);
+			mHashCode = System.identityHashCode(source);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(o == this){
+				return true;
+			}
+			if(!(o instanceof WeakIdentityKey)){
+				return false;
+			}
+			Object source = mReference.get();
+			return source != null && source == ((WeakIdentityKey) o).mReference.get();
+		}
+
+		@Override
+		public int hashCode() {
+			return mHashCode;
+		}
+	}
+
+	/**
+	 * Deletes the textures of one GL context. Views whose contexts share textures can share an allocator.
+	 */
+	public static interface TextureAllocator {
+
+		/**
+		 * Deletes a texture. May be called from any thread; implementations have to defer the deletion
+		 * to their GL thread if needed.
+		 */
+		public void deleteTexture(int textureId);
+	}
+}
@@ -0,0 +1,17 @@
+package com.aviary.glimageview;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A GLImagingProgram whose textures can be deleted from other threads, such as by
+ * {@link TextureManager#onTrimMemory(int)} on the UI thread. Those deletions have to run on the GL
+ * thread, and with RENDERMODE_WHEN_DIRTY no frame may be drawn for a long time, for instance while
+ * the UI is hidden, so the program is given a way to run them without waiting for one.
+ */
+public interface TextureOwningProgram extends GLImagingProgram {
+
+	/**
+	 * @param executor Runs tasks on the GL thread, even when no frame is drawn, or null to wait for the next frame.
+	 */
+	public void setGLThreadExecutor(Executor executor);
+}
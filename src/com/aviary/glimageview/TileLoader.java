@@ -0,0 +1,203 @@
+package com.aviary.glimageview;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Decodes the tiles of a {@link TilePyramid} on a background executor. Only the tiles that
+ * are asked for through {@link #updateVisibleTiles} are decoded, and any pending work that
+ * falls out of the visible range is cancelled before it runs.
+ *
+ * This class has no Android dependencies; the actual decoding is delegated to a {@link TileDecoder}.
+ */
+public class TileLoader<T> {
+
+	private final ExecutorService mExecutor;
+	private final TileDecoder<T> mDecoder;
+	private final OnTileDecodedListener<T> mListener;
+
+	// Guarded by this
+	private final Map<Long, Future<?>> mPending = new HashMap<Long, Future<?>>();
+	private final Set<Long> mDecoded = new HashSet<Long>();
+	private int mPinnedLevel = -1;
+	private boolean mShutdown;
+
+	public TileLoader(ExecutorService executor, TileDecoder<T> decoder, OnTileDecodedListener<T> listener) {
+		if(executor == null || decoder == null || listener == null){
+			throw new IllegalArgumentException("executor, decoder and listener cannot be null");
+		}
+		mExecutor = executor;
+		mDecoder = decoder;
+		mListener = listener;
+	}
+
+	/**
+	 * Requests every tile of a level and keeps them from being cancelled by later viewport updates.
+	 * Typically used for the coarsest level so there is always something to draw.
+	 */
+	public synchronized void requestPinnedLevel(int level, int columns, int rows) {
+		mPinnedLevel = level;
+		for(int row = 0; row < rows; row++){
+			for(int column = 0; column < columns; column++){
+				request(TilePyramid.tileKey(level, column, row));
+			}
+		}
+	}
+
+	/**
+	 * Requests the tiles in the given range and cancels pending tiles outside of it.
+	 * @param level The pyramid level being displayed.
+	 * @param range The inclusive range {firstColumn, firstRow, lastColumn, lastRow}.
+	 */
+	public synchronized void updateVisibleTiles(int level, int[] range) {
+		Iterator<Map.Entry<Long, Future<?>>> iterator = mPending.entrySet().iterator();
+		while(iterator.hasNext()){
+			Map.Entry<Long, Future<?>> entry = iterator.next();
+			long key = entry.getKey();
+			if(!isInRange(key, level, range)){
+				cancel(entry.getValue());
+				iterator.remove();
+				mDecoder.onTileCancelled(TilePyramid.getKeyLevel(key), TilePyramid.getKeyColumn(key), TilePyramid.getKeyRow(key));
+			}
+		}
+
+		for(int row = range[1]; row <= range[3]; row++){
+			for(int column = range[0]; column <= range[2]; column++){
+				request(TilePyramid.tileKey(level, column, row));
+			}
+		}
+	}
+
+	/**
+	 * Forgets that a tile has been decoded so that it is decoded again the next time it is visible.
+	 */
+	public synchronized void forget(long key) {
+		mDecoded.remove(key);
+	}
+
+	public synchronized boolean isPending(long key) {
+		return mPending.containsKey(key);
+	}
+
+	public synchronized int getPendingCount() {
+		return mPending.size();
+	}
+
+	/**
+	 * Cancels all pending work. Tiles that are already being decoded are released when they finish.
+	 */
+	public synchronized void cancelAll() {
+		mShutdown = true;
+		for(Map.Entry<Long, Future<?>> entry : mPending.entrySet()){
+			long key = entry.getKey();
+			cancel(entry.getValue());
+			mDecoder.onTileCancelled(TilePyramid.getKeyLevel(key), TilePyramid.getKeyColumn(key), TilePyramid.getKeyRow(key));
+		}
+		mPending.clear();
+		mDecoded.clear();
+	}
+
+	// Internals
+
+	private boolean isInRange(long key, int level, int[] range) {
+		int keyLevel = TilePyramid.getKeyLevel(key);
+		if(keyLevel == mPinnedLevel){
+			return true;
+		}
+		if(keyLevel != level){
+			return false;
+		}
+		int column = TilePyramid.getKeyColumn(key);
+		int row = TilePyramid.getKeyRow(key);
+		return column >= range[0] && column <= range[2] && row >= range[1] && row <= range[3];
+	}
+
+	private static void cancel(Future<?> future) {
+		if(future != null){
+			future.cancel(false);
+		}
+	}
+
+	private void request(final long key) {
+		if(mShutdown || mDecoded.contains(key) || mPending.containsKey(key)){
+			return;
+		}
+
+		// Reserve the slot before submitting so a synchronous executor still finds it
+		mPending.put(key, null);
+		Future<?> future = mExecutor.submit(new Runnable() {
+			@Override
+			public void run() {
+				decode(key);
+			}
+		});
+		if(mPending.containsKey(key)){
+			mPending.put(key, future);
+		}
+	}
+
+	private void decode(long key) {
+		synchronized (this) {
+			if(!mPending.containsKey(key)){
+				return;
+			}
+		}
+
+		T tile = mDecoder.decodeTile(TilePyramid.getKeyLevel(key), TilePyramid.getKeyColumn(key), TilePyramid.getKeyRow(key));
+
+		boolean wanted;
+		synchronized (this) {
+			wanted = mPending.containsKey(key);
+			mPending.remove(key);
+			if(wanted && tile != null){
+				mDecoded.add(key);
+			}
+		}
+
+		if(tile == null){
+			return;
+		}
+		if(wanted){
+			mListener.onTileDecoded(key, tile);
+		}else{
+			mDecoder.releaseTile(tile);
+		}
+	}
+
+	// Interfaces
+
+	/**
+	 * Produces the pixels for a single tile. Called on the loader's executor threads.
+	 */
+	public static interface TileDecoder<T> {
+
+		/**
+		 * @return The decoded tile, or null if it could not be decoded.
+		 */
+		public T decodeTile(int level, int column, int row);
+
+		/**
+		 * Called when a tile was decoded but is no longer wanted.
+		 */
+		public void releaseTile(T tile);
+
+		/**
+		 * Called when a pending tile is cancelled before it was decoded.
+		 */
+		public void onTileCancelled(int level, int column, int row);
+	}
+
+	public static interface OnTileDecodedListener<T> {
+
+		/**
+		 * Called on a loader thread once a requested tile has been decoded.
+		 * @param key The tile key, see {@link TilePyramid#tileKey}.
+		 */
+		public void onTileDecoded(long key, T tile);
+	}
+}
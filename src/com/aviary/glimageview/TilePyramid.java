@@ -0,0 +1,220 @@
+package com.aviary.glimageview;
+
+/**
+ * Describes an image split into fixed-size tiles at a series of power-of-two levels.
+ * Level 0 is the full resolution image, each following level halves both dimensions
+ * until the whole image fits in a single tile.
+ *
+ * This class only does the tile-selection math and has no Android dependencies, so
+ * it can be exercised on a plain JVM.
+ */
+public final class TilePyramid {
+
+	public static final int DEFAULT_TILE_SIZE = 512;
+
+	/**
+	 * Texels of the neighbouring tiles kept around the inner edges of a tile's texture, so linear
+	 * filtering at a tile edge blends into the next tile instead of clamping and leaving a seam.
+	 */
+	public static final int GUTTER = 1;
+
+	private final int mImageWidth;
+	private final int mImageHeight;
+	private final int mTileSize;
+	private final int mLevelCount;
+
+	public TilePyramid(int imageWidth, int imageHeight, int tileSize) {
+		if(imageWidth <= 0 || imageHeight <= 0){
+			throw new IllegalArgumentException("image size must be positive");
+		}
+		if(tileSize <= 0){
+			throw new IllegalArgumentException("tileSize must be positive");
+		}
+
+		mImageWidth = imageWidth;
+		mImageHeight = imageHeight;
+		mTileSize = tileSize;
+
+		int levels = 1;
+		int width = imageWidth;
+		int height = imageHeight;
+		while(width > tileSize || height > tileSize){
+			width = (width + 1) / 2;
+			height = (height + 1) / 2;
+			levels++;
+		}
+		mLevelCount = levels;
+	}
+
+	// Geometry
+
+	public int getImageWidth() {
+		return mImageWidth;
+	}
+
+	public int getImageHeight() {
+		return mImageHeight;
+	}
+
+	public int getTileSize() {
+		return mTileSize;
+	}
+
+	public int getLevelCount() {
+		return mLevelCount;
+	}
+
+	public int getLevelWidth(int level) {
+		return (mImageWidth + (1 << level) - 1) >> level;
+	}
+
+	public int getLevelHeight(int level) {
+		return (mImageHeight + (1 << level) - 1) >> level;
+	}
+
+	public int getColumnCount(int level) {
+		return (getLevelWidth(level) + mTileSize - 1) / mTileSize;
+	}
+
+	public int getRowCount(int level) {
+		return (getLevelHeight(level) + mTileSize - 1) / mTileSize;
+	}
+
+	public int getTileWidth(int level, int column) {
+		return Math.min(mTileSize, getLevelWidth(level) - column * mTileSize);
+	}
+
+	public int getTileHeight(int level, int row) {
+		return Math.min(mTileSize, getLevelHeight(level) - row * mTileSize);
+	}
+
+	/**
+	 * @return The largest texture a tile of the given size needs, gutters included.
+	 */
+	public static int getTextureSize(int tileSize) {
+		return tileSize + 2 * GUTTER;
+	}
+
+	/**
+	 * Computes the pixels of a level that go into a tile's texture: the tile itself, plus a
+	 * {@link #GUTTER} on every edge that has a neighbouring tile.
+	 * @param outRegion Receives {left, top, right, bottom} in level pixels.
+	 */
+	public void getTextureRegion(int level, int column, int row, int[] outRegion) {
+		int x = column * mTileSize;
+		int y = row * mTileSize;
+		outRegion[0] = Math.max(0, x - GUTTER);
+		outRegion[1] = Math.max(0, y - GUTTER);
+		outRegion[2] = Math.min(getLevelWidth(level), x + getTileWidth(level, column) + GUTTER);
+		outRegion[3] = Math.min(getLevelHeight(level), y + getTileHeight(level, row) + GUTTER);
+	}
+
+	// Selection
+
+	/**
+	 * Picks the coarsest level that still has at least one texel per screen pixel.
+	 * @param screenPixelsPerImagePixel How many screen pixels one full resolution image pixel covers.
+	 * @return The level to draw.
+	 */
+	public int selectLevel(float screenPixelsPerImagePixel) {
+		if(!(screenPixelsPerImagePixel > 0)){
+			return mLevelCount - 1;
+		}
+
+		float imagePixelsPerScreenPixel = 1.f / screenPixelsPerImagePixel;
+		int level = 0;
+		while(level < mLevelCount - 1 && (1 << (level + 1)) <= imagePixelsPerScreenPixel){
+			level++;
+		}
+		return level;
+	}
+
+	/**
+	 * Converts a normalized visible region of the image into an inclusive tile range.
+	 * @param level The pyramid level.
+	 * @param region The visible region as {u0, v0, u1, v1}, see {@link #computeVisibleRegion}.
+	 * @param outRange Receives {firstColumn, firstRow, lastColumn, lastRow}.
+	 * @return false if no tile is visible.
+	 */
+	public boolean getVisibleTiles(int level, float[] region, int[] outRange) {
+		if(region[0] >= region[2] || region[1] >= region[3]){
+			return false;
+		}
+
+		int levelWidth = getLevelWidth(level);
+		int levelHeight = getLevelHeight(level);
+		int lastColumn = getColumnCount(level) - 1;
+		int lastRow = getRowCount(level) - 1;
+
+		outRange[0] = clamp((int) (region[0] * levelWidth) / mTileSize, 0, lastColumn);
+		outRange[1] = clamp((int) (region[1] * levelHeight) / mTileSize, 0, lastRow);
+		outRange[2] = clamp((int) Math.ceil(region[2] * levelWidth / mTileSize) - 1, 0, lastColumn);
+		outRange[3] = clamp((int) Math.ceil(region[3] * levelHeight / mTileSize) - 1, 0, lastRow);
+		return true;
+	}
+
+	/**
+	 * Computes how many screen pixels one image pixel covers for the given transform.
+	 * @param scale The transform scale.
+	 * @param boundsWidth The width of the image bounds rect in GL coordinates.
+	 * @param viewportWidth The width of the framebuffer in pixels.
+	 */
+	public float getScreenPixelsPerImagePixel(float scale, float boundsWidth, int viewportWidth) {
+		return scale * boundsWidth * viewportWidth * 0.5f / mImageWidth;
+	}
+
+	/**
+	 * Computes the part of the image that falls inside the [-1, 1] clip space once the image bounds
+	 * are transformed by a scale and translate matrix.
+	 * @param outRegion Receives the visible region as normalized image coordinates {u0, v0, u1, v1},
+	 * with v growing downwards from the top of the image.
+	 * @return false if no part of the image is visible.
+	 */
+	public static boolean computeVisibleRegion(float scaleX, float scaleY, float transX, float transY,
+			float left, float top, float right, float bottom, float[] outRegion) {
+		float x0 = scaleX * left + transX;
+		float width = scaleX * (right - left);
+		float y0 = scaleY * top + transY;
+		float height = scaleY * (top - bottom);
+
+		if(width <= 0 || height <= 0){
+			return false;
+		}
+
+		outRegion[0] = clamp((-1.f - x0) / width, 0.f, 1.f);
+		outRegion[1] = clamp((y0 - 1.f) / height, 0.f, 1.f);
+		outRegion[2] = clamp((1.f - x0) / width, 0.f, 1.f);
+		outRegion[3] = clamp((y0 + 1.f) / height, 0.f, 1.f);
+
+		return outRegion[0] < outRegion[2] && outRegion[1] < outRegion[3];
+	}
+
+	// Keys
+
+	/**
+	 * Packs a tile address into a single long so it can be used as a map key without boxing the parts.
+	 */
+	public static long tileKey(int level, int column, int row) {
+		return ((long) level << 48) | ((long) row << 24) | column;
+	}
+
+	public static int getKeyLevel(long key) {
+		return (int) (key >>> 48);
+	}
+
+	public static int getKeyRow(long key) {
+		return (int) ((key >>> 24) & 0xFFFFFF);
+	}
+
+	public static int getKeyColumn(long key) {
+		return (int) (key & 0xFFFFFF);
+	}
+
+	private static int clamp(int value, int min, int max) {
+		return Math.max(min, Math.min(value, max));
+	}
+
+	private static float clamp(float value, float min, float max) {
+		return Math.max(min, Math.min(value, max));
+	}
+}
@@ -0,0 +1,710 @@
+package com.aviary.glimageview;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+import android.util.Log;
+
+/**
+ * A GLImagingProgram that splits the image into a {@link TilePyramid} instead of a single texture,
+ * so images larger than GL_MAX_TEXTURE_SIZE can be displayed. Only the tiles that are visible
+ * through the current transform are drawn, at the level that matches the current zoom.
+ *
+ * The tiles either come from a Bitmap passed to {@link #setBitmap}, or are streamed from an
+ * {@link ImageSource} on a pool of loader threads as they become visible. While the tiles of a new
+ * level stream in, the level that was on screen before stays resident and is drawn underneath
+ * them. Every tile texture carries a {@link TilePyramid#GUTTER} of its neighbours' pixels, so
+ * filtering does not show seams between tiles. Streamed tiles of a
+ * {@link CacheableImageSource} can be kept in a {@link DiskTileCache}, and are then uploaded
+ * straight from the mapped file the next time the image is opened.
+ *
+ * Every resident tile counts against the budget of a {@link TextureManager}, and is deleted as
+ * soon as its level is dropped.
+ */
+public class TiledGLImageProgram implements ReadbackAwareProgram, TextureOwningProgram {
+
+	private static final String LOG_TAG = "TiledGLImageProgram";
+	private static final int LOADER_THREAD_COUNT = 2;
+	private static final int MAX_UPLOADS_PER_FRAME = 4;
+
+	// Shaders. Every tile is the shared unit quad stretched over its bounds in untransformed NDC and
+	// over its region of the texture, the pan and zoom is applied here.
+	private String mVertexShader = "" +
+	"uniform mat3 u_transform;" +
+	"uniform vec4 u_bounds;" +
+	"uniform vec4 u_texRegion;" +
+	"attribute vec2 a_corner;" +
+	"varying highp vec2 v_texCoord;" +
+	"void main(void) {" +
+	"    vec2 position = mix(u_bounds.xy, u_bounds.zw, a_corner);" +
+	"    v_texCoord = mix(u_texRegion.xy, u_texRegion.zw, a_corner);" +
+	"    gl_Position = vec4((u_transform * vec3(position, 1.0)).xy, 0.0, 1.0);" +
+	"}";
+
+	private String mFragmentShader = "" +
+	"		precision mediump float;" +
+	"       uniform lowp sampler2D u_sampler;" +
+	"       varying highp vec2 v_texCoord;" +
+	"       void main(void) { " +
+	"           gl_FragColor = texture2D(u_sampler, v_texCoord);" +
+	"       }";
+
+	// GL Objects
+	private int mProgram = 0;
+	private final GLQuadBuffer mQuad = new GLQuadBuffer();
+	private int mCornerAttributeLocation;
+	private int mSamplerUniformLocation;
+	private int mTransformUniformLocation;
+	private int mBoundsUniformLocation;
+	private int mTexRegionUniformLocation;
+
+	// Tiles
+	private final int mRequestedTileSize;
+	private int mTileSize;
+	private TilePyramid mPyramid;
+	private TextureManager.Texture[][] mTileTextures;
+	private int mFramebufferWidth;
+
+	// Textures
+	private final TextureManager mTextureManager;
+	private final GLTextureAllocator mTextureAllocator = new GLTextureAllocator();
+
+	// Streaming
+	private ImageSource mImageSource;
+	private TileLoader<TilePixels> mTileLoader;
+	private ExecutorService mLoaderExecutor;
+	private final ConcurrentLinkedQueue<DecodedTile> mDecodedTiles = new ConcurrentLinkedQueue<DecodedTile>();
+	private volatile int mSourceGeneration;
+	private int mLoadedLevel = -1;
+	private int mFallbackLevel = -1;
+	private final int[] mRequestedTiles = new int[4];
+	private ImageSource mRestoreSource;
+	private int mRestoreLevel = -1;
+	private int mRestoreTileSize;
+	private volatile OnTilesLoadedListener mTilesLoadedListener;
+	private volatile BitmapPool mBitmapPool = BitmapPool.getDefault();
+	private volatile DiskTileCache mTileCache;
+	private boolean mReadingBack;
+
+	// Per frame scratch space
+	private final RectF mTileBounds = new RectF();
+	private final float[] mTransformValues = new float[9];
+	private final float[] mVisibleRegion = new float[4];
+	private final int[] mVisibleTiles = new int[4];
+	private final int[] mTextureRegion = new int[4];
+
+	public TiledGLImageProgram() {
+		this(TilePyramid.DEFAULT_TILE_SIZE);
+	}
+
+	public TiledGLImageProgram(int tileSize) {
+		this(tileSize, TextureManager.getDefault());
+	}
+
+	/**
+	 * @param textureManager Accounts for the tile textures, shared with other views to keep within one budget.
+	 */
+	public TiledGLImageProgram(int tileSize, TextureManager textureManager) {
+		if(tileSize <= 0){
+			throw new IllegalArgumentException("tileSize must be positive");
+		}
+		mRequestedTileSize = tileSize;
+		mTileSize = tileSize;
+		mTextureManager = textureManager;
+	}
+
+	public void setup() {
+		if(GLTrace.ENABLED) GLTrace.event(LOG_TAG, "Setup");
+
+		mProgram = GLProgramUtils.createProgram(mVertexShader, mFragmentShader);
+		mCornerAttributeLocation = GLProgramUtils.getAttribLocation(mProgram, "a_corner");
+		mSamplerUniformLocation = GLProgramUtils.getUniformLocation(mProgram, "u_sampler");
+		mTransformUniformLocation = GLProgramUtils.getUniformLocation(mProgram, "u_transform");
+		mBoundsUniformLocation = GLProgramUtils.getUniformLocation(mProgram, "u_bounds");
+		mTexRegionUniformLocation = GLProgramUtils.getUniformLocation(mProgram, "u_texRegion");
+
+		GLES20.glDisable(GL10.GL_CULL_FACE);
+
+		int[] maxTextureSize = new int[1];
+		GLES20.glGetIntegerv(GLES20.GL_MAX_TEXTURE_SIZE, maxTextureSize, 0);
+		int maxTileSize = maxTextureSize[0] - 2 * TilePyramid.GUTTER;
+		mTileSize = maxTileSize > 0 ? Math.min(mRequestedTileSize, maxTileSize) : mRequestedTileSize;
+
+		mQuad.setup();
+
+		mTextureManager.onContextLost(mTextureAllocator);
+		mTextureAllocator.setup();
+
+		// A new context means the old texture names are gone. The renderer restores the image source
+		// later, and the tiles that were visible are then streamed first.
+		mRestoreSource = mImageSource;
+		mRestoreLevel = mLoadedLevel;
+		mRestoreTileSize = mPyramid != null ? mPyramid.getTileSize() : 0;
+		stopStreaming();
+		mPyramid = null;
+		mTileTextures = null;
+	}
+
+	public void setGLThreadExecutor(Executor executor) {
+		mTextureAllocator.setGLThreadExecutor(executor);
+	}
+
+	public void setFramebufferSize(int width, int height) {
+		mFramebufferWidth = width;
+	}
+
+	public void setBitmap(Bitmap bitmap) {
+		if(GLTrace.ENABLED) GLTrace.event(LOG_TAG, "Set Bitmap");
+
+		stopStreaming();
+		deleteTiles();
+
+		TilePyramid pyramid = new TilePyramid(bitmap.getWidth(), bitmap.getHeight(), mTileSize);
+		TextureManager.Texture[][] tileTextures = new TextureManager.Texture[pyramid.getLevelCount()][];
+
+		Bitmap levelBitmap = bitmap;
+		for(int level = 0; level < pyramid.getLevelCount(); level++){
+			if(level > 0){
+				Bitmap previous = levelBitmap;
+				levelBitmap = Bitmap.createScaledBitmap(previous, pyramid.getLevelWidth(level), pyramid.getLevelHeight(level), true);
+				if(previous != bitmap){
+					previous.recycle();
+				}
+			}
+
+			int columns = pyramid.getColumnCount(level);
+			int rows = pyramid.getRowCount(level);
+			tileTextures[level] = new TextureManager.Texture[columns * rows];
+
+			for(int row = 0; row < rows; row++){
+				for(int column = 0; column < columns; column++){
+					pyramid.getTextureRegion(level, column, row, mTextureRegion);
+					int width = mTextureRegion[2] - mTextureRegion[0];
+					int height = mTextureRegion[3] - mTextureRegion[1];
+					Bitmap tile = levelBitmap;
+					if(width != levelBitmap.getWidth() || height != levelBitmap.getHeight()){
+						tile = Bitmap.createBitmap(levelBitmap, mTextureRegion[0], mTextureRegion[1], width, height);
+					}
+					TextureManager.Texture texture = createTileTexture((long) tile.getRowBytes() * tile.getHeight());
+					tileTextures[level][row * columns + column] = texture;
+					uploadTile(texture.getTextureId(), tile);
+					if(tile != levelBitmap){
+						tile.recycle();
+					}
+				}
+			}
+		}
+
+		if(levelBitmap != bitmap){
+			levelBitmap.recycle();
+		}
+
+		mPyramid = pyramid;
+		mTileTextures = tileTextures;
+	}
+
+	/**
+	 * Streams the image from a source instead of uploading a whole Bitmap. Only the tiles that
+	 * become visible are decoded. Must be called on the GL thread.
+	 */
+	public void setImageSource(ImageSource source) {
+		if(GLTrace.ENABLED) GLTrace.event(LOG_TAG, "Set Image Source");
+
+		stopStreaming();
+		deleteTiles();
+
+		mImageSource = source;
+		mSourceGeneration++;
+
+		TilePyramid pyramid = new TilePyramid(source.getWidth(), source.getHeight(), mTileSize);
+		TextureManager.Texture[][] tileTextures = new TextureManager.Texture[pyramid.getLevelCount()][];
+		for(int level = 0; level < pyramid.getLevelCount(); level++){
+			tileTextures[level] = new TextureManager.Texture[pyramid.getColumnCount(level) * pyramid.getRowCount(level)];
+		}
+		mPyramid = pyramid;
+		mTileTextures = tileTextures;
+
+		if(mLoaderExecutor == null){
+			mLoaderExecutor = Executors.newFixedThreadPool(LOADER_THREAD_COUNT, new LoaderThreadFactory());
+		}
+
+		final int generation = mSourceGeneration;
+		mTileLoader = new TileLoader<TilePixels>(mLoaderExecutor, new SourceTileDecoder(source, pyramid, mBitmapPool, mTileCache),
+				new TileLoader.OnTileDecodedListener<TilePixels>() {
+					@Override
+					public void onTileDecoded(long key, TilePixels tile) {
+						mDecodedTiles.add(new DecodedTile(key, tile, generation));
+						OnTilesLoadedListener listener = mTilesLoadedListener;
+						if(listener != null){
+							listener.onTilesLoaded();
+						}
+					}
+				});
+
+		// After a context loss, the tiles that were on screen are decoded before anything else
+		if(source == mRestoreSource && mRestoreLevel >= 0 && mRestoreTileSize == mTileSize){
+			mLoadedLevel = mRestoreLevel;
+			mTileLoader.updateVisibleTiles(mRestoreLevel, mRequestedTiles);
+		}
+		mRestoreSource = null;
+
+		// The coarsest level is always loaded so there is something to show while zooming and panning
+		int coarsest = pyramid.getLevelCount() - 1;
+		mTileLoader.requestPinnedLevel(coarsest, pyramid.getColumnCount(coarsest), pyramid.getRowCount(coarsest));
+	}
+
+	/**
+	 * @param listener Called on a loader thread whenever streamed tiles are ready to be uploaded,
+	 * typically used to request a new render.
+	 */
+	public void setOnTilesLoadedListener(OnTilesLoadedListener listener) {
+		mTilesLoadedListener = listener;
+	}
+
+	/**
+	 * @param pool Where streamed tiles go once they are uploaded or dropped, or null to recycle them.
+	 * Should be the pool the image source decodes into.
+	 */
+	public void setBitmapPool(BitmapPool pool) {
+		mBitmapPool = pool;
+	}
+
+	/**
+	 * @param cache Where streamed tiles are looked up before decoding and stored after, or null to
+	 * always decode. Only used for sources set after this call whose cache key is not null, and only
+	 * if the cache's tile size is at least the pyramid's.
+	 */
+	public void setTileCache(DiskTileCache cache) {
+		mTileCache = cache;
+	}
+
+	public void render(ViewTransform transform, RectF imageBoundsRect) {
+		mTextureAllocator.deletePending();
+
+		if(mPyramid == null){
+			return;
+		}
+
+		if(mTileLoader != null){
+			uploadDecodedTiles();
+		}
+
+		GLES20.glClearColor(0.f, 0.f, 0.f, 0.f);
+		GLES20.glClear(GL10.GL_COLOR_BUFFER_BIT);
+
+		float scale = transform.getScale();
+		if(!TilePyramid.computeVisibleRegion(scale, scale, transform.getTranslateX(), transform.getTranslateY(),
+				imageBoundsRect.left, imageBoundsRect.top, imageBoundsRect.right, imageBoundsRect.bottom, mVisibleRegion)){
+			return;
+		}
+
+		float pixelRatio = mPyramid.getScreenPixelsPerImagePixel(scale, imageBoundsRect.right - imageBoundsRect.left, mFramebufferWidth);
+		int level = mPyramid.selectLevel(pixelRatio);
+
+		GLES20.glUseProgram(mProgram);
+		GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+		GLES20.glUniform1i(mSamplerUniformLocation, 0);
+		GLProgramUtils.setTransformUniform(mTransformUniformLocation, transform, mTransformValues);
+		mQuad.bind(mCornerAttributeLocation);
+		GLES20.glEnableVertexAttribArray(mCornerAttributeLocation);
+
+		// While streaming, the pinned coarsest level and then the level shown before the last zoom
+		// fill in for tiles that are not loaded yet. The target level goes last, which leaves its
+		// range in mVisibleTiles.
+		int coarsest = mPyramid.getLevelCount() - 1;
+		if(mTileLoader != null && level != coarsest){
+			drawVisibleTiles(coarsest, imageBoundsRect);
+		}
+		if(mFallbackLevel != -1 && mFallbackLevel != level){
+			drawVisibleTiles(mFallbackLevel, imageBoundsRect);
+		}
+		boolean covered = drawVisibleTiles(level, imageBoundsRect);
+		mQuad.unbind();
+
+		if(mTileLoader != null && !mReadingBack){
+			requestVisibleTiles(level);
+			if(covered && mFallbackLevel != -1){
+				deleteLevel(mFallbackLevel);
+				mFallbackLevel = -1;
+			}
+			if(!mDecodedTiles.isEmpty() && mTilesLoadedListener != null){
+				mTilesLoadedListener.onTilesLoaded();
+			}
+		}
+	}
+
+	/**
+	 * Renders the image at full resolution into the bitmap. While streaming, tiles that have not
+	 * been decoded yet are read back from the coarser levels.
+	 */
+	public void readImage(Bitmap bitmap) {
+		new ImageReadback(this, bitmap, ImageReadback.DEFAULT_STRIP_HEIGHT, 0, null, null, null).runToCompletion();
+	}
+
+	/**
+	 * Keeps readback strips from steering the loader and the resident levels away from what is on screen.
+	 */
+	public void beginReadback() {
+		mReadingBack = true;
+	}
+
+	public void endReadback() {
+		mReadingBack = false;
+	}
+
+	/**
+	 * @return The pyramid of the current image, or null if no image has been set.
+	 */
+	public TilePyramid getPyramid() {
+		return mPyramid;
+	}
+
+	// Tile Utils
+
+	/**
+	 * @return Whether every visible tile of the level was drawn.
+	 */
+	private boolean drawVisibleTiles(int level, RectF bounds) {
+		if(!mPyramid.getVisibleTiles(level, mVisibleRegion, mVisibleTiles)){
+			return true;
+		}
+
+		boolean covered = true;
+		int columns = mPyramid.getColumnCount(level);
+		for(int row = mVisibleTiles[1]; row <= mVisibleTiles[3]; row++){
+			for(int column = mVisibleTiles[0]; column <= mVisibleTiles[2]; column++){
+				TextureManager.Texture texture = mTileTextures[level][row * columns + column];
+				if(texture != null){
+					drawTile(level, column, row, texture.getTextureId(), bounds);
+				}else{
+					covered = false;
+				}
+			}
+		}
+		return covered;
+	}
+
+	private void requestVisibleTiles(int level) {
+		if(level == mLoadedLevel && mRequestedTiles[0] == mVisibleTiles[0] && mRequestedTiles[1] == mVisibleTiles[1]
+				&& mRequestedTiles[2] == mVisibleTiles[2] && mRequestedTiles[3] == mVisibleTiles[3]){
+			return;
+		}
+
+		if(mLoadedLevel != level){
+			switchLoadedLevel(level);
+		}
+
+		mLoadedLevel = level;
+		System.arraycopy(mVisibleTiles, 0, mRequestedTiles, 0, 4);
+		mTileLoader.updateVisibleTiles(level, mVisibleTiles);
+	}
+
+	/**
+	 * Keeps the textures of the level that was on screen until the new level covers the viewport,
+	 * so zooming does not flash back to the coarsest level. Only one such fallback level is kept:
+	 * if the new level was not complete yet when the zoom moved on, it is the one that goes.
+	 */
+	private void switchLoadedLevel(int level) {
+		int coarsest = mPyramid.getLevelCount() - 1;
+		int previous = mLoadedLevel;
+		boolean keepPrevious = previous != -1 && previous != coarsest;
+		if(mFallbackLevel == level){
+			// Zoomed back onto the fallback, which is still resident
+			mFallbackLevel = -1;
+		}else if(mFallbackLevel == -1 && keepPrevious){
+			mFallbackLevel = previous;
+			return;
+		}
+		if(keepPrevious){
+			deleteLevel(previous);
+		}
+	}
+
+	private void uploadDecodedTiles() {
+		int coarsest = mPyramid.getLevelCount() - 1;
+		for(int i = 0; i < MAX_UPLOADS_PER_FRAME; i++){
+			DecodedTile decoded = mDecodedTiles.poll();
+			if(decoded == null){
+				return;
+			}
+
+			int level = TilePyramid.getKeyLevel(decoded.key);
+			if(decoded.generation == mSourceGeneration && level != mLoadedLevel && level != coarsest){
+				// Decoded for a level that was left before the tile came in. The loader has to
+				// forget it, or the tile would never be requested again.
+				mTileLoader.forget(decoded.key);
+			}else if(decoded.generation == mSourceGeneration){
+				int index = TilePyramid.getKeyRow(decoded.key) * mPyramid.getColumnCount(level) + TilePyramid.getKeyColumn(decoded.key);
+				if(mTileTextures[level][index] == null){
+					mTileTextures[level][index] = createTileTexture(decoded.pixels.getByteCount());
+				}
+				uploadTile(mTileTextures[level][index].getTextureId(), decoded.pixels);
+			}
+			decoded.pixels.release(mBitmapPool);
+		}
+	}
+
+	private void deleteLevel(int level) {
+		TextureManager.Texture[] textures = mTileTextures[level];
+		for(int index = 0; index < textures.length; index++){
+			if(textures[index] != null){
+				mTextureManager.discard(textures[index]);
+				textures[index] = null;
+				int columns = mPyramid.getColumnCount(level);
+				mTileLoader.forget(TilePyramid.tileKey(level, index % columns, index / columns));
+			}
+		}
+	}
+
+	private void stopStreaming() {
+		if(mTileLoader != null){
+			mTileLoader.cancelAll();
+			mTileLoader = null;
+		}
+		mImageSource = null;
+		mLoadedLevel = -1;
+		mFallbackLevel = -1;
+
+		DecodedTile decoded;
+		while((decoded = mDecodedTiles.poll()) != null){
+			decoded.pixels.release(mBitmapPool);
+		}
+	}
+
+	private static void releaseBitmap(BitmapPool pool, Bitmap bitmap) {
+		if(pool != null){
+			pool.put(bitmap);
+		}else{
+			bitmap.recycle();
+		}
+	}
+
+	private void drawTile(int level, int column, int row, int textureId, RectF bounds) {
+		float levelWidth = mPyramid.getLevelWidth(level);
+		float levelHeight = mPyramid.getLevelHeight(level);
+		int x = column * mTileSize;
+		int y = row * mTileSize;
+		int tileWidth = mPyramid.getTileWidth(level, column);
+		int tileHeight = mPyramid.getTileHeight(level, row);
+
+		float u0 = x / levelWidth;
+		float u1 = (x + tileWidth) / levelWidth;
+		float v0 = y / levelHeight;
+		float v1 = (y + tileHeight) / levelHeight;
+
+		// The texture coordinates of the tile inside its texture, inset by the gutters
+		mPyramid.getTextureRegion(level, column, row, mTextureRegion);
+		float textureWidth = mTextureRegion[2] - mTextureRegion[0];
+		float textureHeight = mTextureRegion[3] - mTextureRegion[1];
+		float s0 = (x - mTextureRegion[0]) / textureWidth;
+		float s1 = (x + tileWidth - mTextureRegion[0]) / textureWidth;
+		float t0 = (y - mTextureRegion[1]) / textureHeight;
+		float t1 = (y + tileHeight - mTextureRegion[1]) / textureHeight;
+
+		float boundsWidth = bounds.right - bounds.left;
+		float boundsHeight = bounds.top - bounds.bottom;
+
+		float left = bounds.left + u0 * boundsWidth;
+		float right = bounds.left + u1 * boundsWidth;
+		float top = bounds.top - v0 * boundsHeight;
+		float bottom = bounds.top - v1 * boundsHeight;
+
+		mTileBounds.set(left, top, right, bottom);
+		GLProgramUtils.setBoundsUniform(mBoundsUniformLocation, mTileBounds);
+		// The bottom left corner samples s0, t1 and the top right one s1, t0
+		GLES20.glUniform4f(mTexRegionUniformLocation, s0, t1, s1, t0);
+
+		GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+		GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, GLQuadBuffer.VERTEX_COUNT);
+	}
+
+	private TextureManager.Texture createTileTexture(long bytes) {
+		return mTextureAllocator.createTexture(mTextureManager, bytes, GL10.GL_LINEAR);
+	}
+
+	private void uploadTile(int textureId, Bitmap tile) {
+		GLES20.glBindTexture(GL10.GL_TEXTURE_2D, textureId);
+		GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, tile, 0);
+	}
+
+	private void uploadTile(int textureId, TilePixels tile) {
+		if(tile.bitmap != null){
+			uploadTile(textureId, tile.bitmap);
+			return;
+		}
+		// Mapped tiles go from the page cache to the driver without a Bitmap in between
+		GLES20.glBindTexture(GL10.GL_TEXTURE_2D, textureId);
+		DiskTileCache.Tile cached = tile.cached;
+		GLES20.glTexImage2D(GL10.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, cached.getWidth(), cached.getHeight(), 0,
+				GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, cached.getPixels());
+	}
+
+	private void deleteTiles() {
+		if(mTileTextures == null){
+			return;
+		}
+		for(TextureManager.Texture[] level : mTileTextures){
+			for(int index = 0; index < level.length; index++){
+				if(level[index] != null){
+					mTextureManager.discard(level[index]);
+				}
+			}
+		}
+		mTileTextures = null;
+		mPyramid = null;
+	}
+
+	// Streaming helpers
+
+	private static class DecodedTile {
+		final long key;
+		final TilePixels pixels;
+		final int generation;
+
+		DecodedTile(long key, TilePixels pixels, int generation) {
+			this.key = key;
+			this.pixels = pixels;
+			this.generation = generation;
+		}
+	}
+
+	/**
+	 * The pixels of a streamed tile, either decoded into a bitmap or mapped from the tile cache.
+	 */
+	private static class TilePixels {
+		final Bitmap bitmap;
+		final DiskTileCache.Tile cached;
+
+		TilePixels(Bitmap bitmap, DiskTileCache.Tile cached) {
+			this.bitmap = bitmap;
+			this.cached = cached;
+		}
+
+		long getByteCount() {
+			return bitmap != null ? (long) bitmap.getRowBytes() * bitmap.getHeight() : (long) cached.getWidth() * cached.getHeight() * 4;
+		}
+
+		void release(BitmapPool pool) {
+			if(bitmap != null){
+				releaseBitmap(pool, bitmap);
+			}else{
+				cached.release();
+			}
+		}
+	}
+
+	private static class SourceTileDecoder implements TileLoader.TileDecoder<TilePixels> {
+		private final ImageSource mSource;
+		private final TilePyramid mPyramid;
+		private final BitmapPool mBitmapPool;
+		private final DiskTileCache mTileCache;
+		private final String mCacheKey;
+		private final ThreadLocal<ByteBuffer> mCacheBuffer = new ThreadLocal<ByteBuffer>();
+
+		SourceTileDecoder(ImageSource source, TilePyramid pyramid, BitmapPool pool, DiskTileCache cache) {
+			mSource = source;
+			mPyramid = pyramid;
+			mBitmapPool = pool;
+			String cacheKey = source instanceof CacheableImageSource ? ((CacheableImageSource) source).getCacheKey() : null;
+			boolean cacheable = cache != null && cacheKey != null && TilePyramid.getTextureSize(pyramid.getTileSize()) <= cache.getTileSize();
+			mTileCache = cacheable ? cache : null;
+			mCacheKey = cacheable ? cacheKey : null;
+		}
+
+		@Override
+		public TilePixels decodeTile(int level, int column, int row) {
+			int tileSize = mPyramid.getTileSize();
+			long cacheKey = 0;
+			if(mTileCache != null){
+				cacheKey = DiskTileCache.tileKey(mCacheKey, tileSize, TilePyramid.GUTTER, level, column, row);
+				try {
+					DiskTileCache.Tile cached = mTileCache.get(cacheKey);
+					if(cached != null){
+						return new TilePixels(null, cached);
+					}
+				} catch (IOException e) {
+					Log.w(LOG_TAG, "Could not read cached tile", e);
+				}
+			}
+
+			// The tile with its gutters, in full resolution pixels
+			int[] region = new int[4];
+			mPyramid.getTextureRegion(level, column, row, region);
+			int left = region[0] << level;
+			int top = region[1] << level;
+			int right = Math.min(mPyramid.getImageWidth(), region[2] << level);
+			int bottom = Math.min(mPyramid.getImageHeight(), region[3] << level);
+			Bitmap bitmap = mSource.decodeRegion(new Rect(left, top, right, bottom), 1 << level);
+			if(bitmap == null){
+				return null;
+			}
+			if(mTileCache != null){
+				cacheTile(cacheKey, bitmap);
+			}
+			return new TilePixels(bitmap, null);
+		}
+
+		private void cacheTile(long cacheKey, Bitmap bitmap) {
+			int width = bitmap.getWidth();
+			int height = bitmap.getHeight();
+			// ARGB_8888 bitmaps hold their pixels as RGBA bytes, the layout of the cache
+			if(bitmap.getConfig() != Bitmap.Config.ARGB_8888 || bitmap.getRowBytes() != width * 4
+					|| width > mTileCache.getTileSize() || height > mTileCache.getTileSize()){
+				return;
+			}
+			ByteBuffer buffer = mCacheBuffer.get();
+			if(buffer == null || buffer.capacity() < width * height * 4){
+				buffer = ByteBuffer.allocateDirect(mTileCache.getTileSize() * mTileCache.getTileSize() * 4);
+				mCacheBuffer.set(buffer);
+			}
+			buffer.clear();
+			bitmap.copyPixelsToBuffer(buffer);
+			buffer.flip();
+			try {
+				mTileCache.put(cacheKey, width, height, buffer);
+			} catch (IOException e) {
+				Log.w(LOG_TAG, "Could not cache tile", e);
+			}
+		}
+
+		@Override
+		public void releaseTile(TilePixels tile) {
+			tile.release(mBitmapPool);
+		}
+
+		@Override
+		public void onTileCancelled(int level, int column, int row) {
+		}
+	}
+
+	private static class LoaderThreadFactory implements ThreadFactory {
+		private int mCount;
+
+		@Override
+		public synchronized Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "TileLoader #" + (++mCount));
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	}
+
+	/**
+	 * Interface for being told that streamed tiles are waiting to be uploaded.
+	 */
+	public static interface OnTilesLoadedListener {
+		public void onTilesLoaded();
+	}
+}
@@ -0,0 +1,70 @@
+package com.aviary.glimageview;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands view transforms from the UI thread to the GL thread without allocating. The values live
+ * in a single slot guarded by a sequence lock: writers make the sequence odd while they change the
+ * slot, and readers copy the slot and retry if the sequence moved meanwhile. A reader therefore
+ * always gets a scale and translation that belong together, writers never wait for readers, and
+ * readers only spin for the few stores of a concurrent publish. This class is pure Java and
+ * thread safe.
+ *
+ * The slot fields are volatile so their reads cannot be reordered around the sequence reads,
+ * which Java 6 offers no cheaper fence for.
+ */
+final class TransformHandoff {
+
+	private final AtomicInteger mSequence = new AtomicInteger();
+	private volatile float mScale = 1.f;
+	private volatile float mTranslateX;
+	private volatile float mTranslateY;
+
+	/**
+	 * Publishes the values of a transform, unless equal ones are already published.
+	 * @param transform The writer's transform, which it is free to change afterwards.
+	 * @return The version of the published transform. It only changes when the values do.
+	 */
+	int publish(ViewTransform transform) {
+		float scale = transform.getScale();
+		float translateX = transform.getTranslateX();
+		float translateY = transform.getTranslateY();
+
+		int sequence;
+		do {
+			sequence = mSequence.get();
+		} while((sequence & 1) != 0 || !mSequence.compareAndSet(sequence, sequence + 1));
+
+		if(mScale == scale && mTranslateX == translateX && mTranslateY == translateY){
+			// Nothing was written, so readers that saw the old sequence are still consistent
+			mSequence.set(sequence);
+			return sequence;
+		}
+
+		mScale = scale;
+		mTranslateX = translateX;
+		mTranslateY = translateY;
+		mSequence.set(sequence + 2);
+		return sequence + 2;
+	}
+
+	/**
+	 * Copies the last published transform.
+	 * @param out Receives the transform.
+	 * @return The version of the copied transform, as returned by {@link #publish}.
+	 */
+	int get(ViewTransform out) {
+		while(true){
+			int sequence = mSequence.get();
+			if((sequence & 1) == 0){
+				float scale = mScale;
+				float translateX = mTranslateX;
+				float translateY = mTranslateY;
+				if(mSequence.get() == sequence){
+					out.set(scale, translateX, translateY);
+					return sequence;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package com.aviary.glimageview;
+
+/**
+ * The pan and zoom applied to the image, in normalized device coordinates: a point p of the
+ * image is drawn at p * scale + translation. A uniform scale and a translation is all the view
+ * ever needs, so this replaces android.graphics.Matrix and its JNI round-trips on the gesture path.
+ *
+ * This class is pure Java and not thread safe.
+ */
+public final class ViewTransform {
+
+	private float mScale = 1.f;
+	private float mTranslateX;
+	private float mTranslateY;
+
+	public ViewTransform() {
+	}
+
+	public ViewTransform(ViewTransform other) {
+		set(other);
+	}
+
+	// Setters
+
+	public void reset() {
+		set(1.f, 0.f, 0.f);
+	}
+
+	public void set(float scale, float translateX, float translateY) {
+		mScale = scale;
+		mTranslateX = translateX;
+		mTranslateY = translateY;
+	}
+
+	public void set(ViewTransform other) {
+		set(other.mScale, other.mTranslateX, other.mTranslateY);
+	}
+
+	public void setScale(float scale) {
+		mScale = scale;
+	}
+
+	public void setTranslate(float translateX, float translateY) {
+		mTranslateX = translateX;
+		mTranslateY = translateY;
+	}
+
+	public void postTranslate(float dx, float dy) {
+		mTranslateX += dx;
+		mTranslateY += dy;
+	}
+
+	/**
+	 * Scales around a pivot, which stays where it is on screen.
+	 */
+	public void postScale(float amount, float pivotX, float pivotY) {
+		mScale *= amount;
+		mTranslateX = (mTranslateX - pivotX) * amount + pivotX;
+		mTranslateY = (mTranslateY - pivotY) * amount + pivotY;
+	}
+
+	// Clamping
+
+	public void clampScale(float minScale, float maxScale) {
+		mScale = Math.max(minScale, Math.min(mScale, maxScale));
+	}
+
+	/**
+	 * Keeps the image covering the viewport along every axis where it is larger than the viewport,
+	 * and inside it along every axis where it is smaller.
+	 * @param halfWidth Half the width of the unscaled image, in NDC
+	 * @param halfHeight Half the height of the unscaled image, in NDC
+	 */
+	public void constrainTranslation(float halfWidth, float halfHeight) {
+		mTranslateX = constrain(mTranslateX, mScale, halfWidth);
+		mTranslateY = constrain(mTranslateY, mScale, halfHeight);
+	}
+
+	/**
+	 * @param translation The proposed translation along one axis
+	 * @param scale The scale the translation is used with
+	 * @param halfExtent Half the size of the unscaled image along that axis, in NDC
+	 * @return The closest allowed translation
+	 */
+	public static float constrain(float translation, float scale, float halfExtent) {
+		float extent = Math.max(scale * halfExtent, 1.f);
+		if(translation < 0){
+			return Math.max(translation, 1 - extent);
+		}
+		return Math.min(translation, extent - 1);
+	}
+
+	// Mapping
+
+	public float mapX(float x) {
+		return x * mScale + mTranslateX;
+	}
+
+	public float mapY(float y) {
+		return y * mScale + mTranslateY;
+	}
+
+	public float invertX(float x) {
+		return (x - mTranslateX) / mScale;
+	}
+
+	public float invertY(float y) {
+		return (y - mTranslateY) / mScale;
+	}
+
+	/**
+	 * Writes the transform as a column-major mat3, as expected by glUniformMatrix3fv.
+	 */
+	public void getMatrix3(float[] out, int offset) {
+		out[offset] = mScale;
+		out[offset + 1] = 0.f;
+		out[offset + 2] = 0.f;
+		out[offset + 3] = 0.f;
+		out[offset + 4] = mScale;
+		out[offset + 5] = 0.f;
+		out[offset + 6] = mTranslateX;
+		out[offset + 7] = mTranslateY;
+		out[offset + 8] = 1.f;
+	}
+
+	/**
+	 * Writes the transform in the row-major layout of android.graphics.Matrix.getValues.
+	 */
+	public void getValues(float[] out) {
+		out[0] = mScale;
+		out[1] = 0.f;
+		out[2] = mTranslateX;
+		out[3] = 0.f;
+		out[4] = mScale;
+		out[5] = mTranslateY;
+		out[6] = 0.f;
+		out[7] = 0.f;
+		out[8] = 1.f;
+	}
+
+	// Getters
+
+	public float getScale() {
+		return mScale;
+	}
+
+	public float getTranslateX() {
+		return mTranslateX;
+	}
+
+	public float getTranslateY() {
+		return mTranslateY;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(!(o instanceof ViewTransform)){
+			return false;
+		}
+		ViewTransform other = (ViewTransform) o;
+		return mScale == other.mScale && mTranslateX == other.mTranslateX && mTranslateY == other.mTranslateY;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = Float.floatToIntBits(mScale);
+		result = 31 * result + Float.floatToIntBits(mTranslateX);
+		return 31 * result + Float.floatToIntBits(mTranslateY);
+	}
+
+	@Override
+	public String toString() {
+		return "ViewTransform(scale=" + mScale + ", translate=" + mTranslateX + ", " + mTranslateY + ")";
+	}
+}
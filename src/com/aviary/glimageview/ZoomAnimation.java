@@ -0,0 +1,65 @@
+package com.aviary.glimageview;
+
+import com.aviary.glimageview.easing.FloatEasing;
+
+/**
+ * Eases the scale and translation of a renderer towards a target. A single instance is reused for
+ * every zoom, starting a new zoom replaces the one in progress. Must be used on the thread of its
+ * scheduler.
+ */
+final class ZoomAnimation implements AnimationScheduler.Animation {
+
+	private final AnimationScheduler mScheduler;
+	private final GLImageViewRenderer mRenderer;
+	private final FloatEasing mEasing;
+
+	private float mOriginalScale;
+	private float mOriginalCenterX;
+	private float mOriginalCenterY;
+	private float mNewScale;
+	private float mNewCenterX;
+	private float mNewCenterY;
+	private long mStartTimeNanos;
+	private long mDurationMs;
+
+	ZoomAnimation(AnimationScheduler scheduler, GLImageViewRenderer renderer, FloatEasing easing) {
+		mScheduler = scheduler;
+		mRenderer = renderer;
+		mEasing = easing;
+	}
+
+	/**
+	 * Zooms from the renderer's current scale and translation.
+	 */
+	public void start(float newScale, float newCenterX, float newCenterY, long durationMs) {
+		ViewTransform transform = mRenderer.getViewTransform();
+		mOriginalScale = transform.getScale();
+		mOriginalCenterX = transform.getTranslateX();
+		mOriginalCenterY = transform.getTranslateY();
+		mNewScale = newScale;
+		mNewCenterX = newCenterX;
+		mNewCenterY = newCenterY;
+		mDurationMs = durationMs;
+		mScheduler.start(this);
+	}
+
+	@Override
+	public void onStart(long startTimeNanos) {
+		mStartTimeNanos = startTimeNanos;
+	}
+
+	@Override
+	public boolean onFrame(long frameTimeNanos) {
+		float currentMs = getElapsedMs(mStartTimeNanos, frameTimeNanos, mDurationMs);
+		float dScale = mEasing.easeOut(currentMs, 0, mNewScale - mOriginalScale, mDurationMs);
+		float dx = mEasing.easeOut(currentMs, 0, mNewCenterX - mOriginalCenterX, mDurationMs);
+		float dy = mEasing.easeOut(currentMs, 0, mNewCenterY - mOriginalCenterY, mDurationMs);
+		mRenderer.setAbsoluteScaleAndTranslation(mOriginalScale + dScale, mOriginalCenterX + dx, mOriginalCenterY + dy);
+		return currentMs < mDurationMs;
+	}
+
+	private static float getElapsedMs(long startTimeNanos, long frameTimeNanos, long durationMs) {
+		float elapsedMs = (frameTimeNanos - startTimeNanos) / 1000000.f;
+		return Math.max(0, Math.min(durationMs, elapsedMs));
+	}
+}
@@ -0,0 +1,172 @@
+package com.aviary.glimageview.easing;
+
+/**
+ * An Easing sampled into float tables once, so that every later call is a table lookup and a
+ * linear interpolation instead of the pow, sin and asin calls of curves like Elastic and Expo.
+ *
+ * The source curves are sampled normalized, from 0 to 1 over a duration of 1, at evenly spaced
+ * times. The interpolation error against the source is estimated by {@link #getMaxError()}; it is
+ * proportional to the square of the sample spacing on smooth curves, so doubling the sample count
+ * divides it by about four. With the default 256 samples: below 1e-4 for Linear, Quad, Cubic,
+ * Quart, Quint, Sine and Back, 9.8e-4 for Elastic and Expo, whose source curves jump by 2^-10 at
+ * their ends, 6.4e-3 for Bounce, whose slope jumps at every bounce, and 2.2e-2 for Circ, whose
+ * slope is infinite at the ends.
+ *
+ * Unlike the source curves, times outside [0, duration] are clamped rather than extrapolated.
+ * Curves whose shape depends on the start value, such as Elastic's default amplitude, are baked
+ * with a start of 0.
+ */
+public class BakedEasing implements Easing, FloatEasing {
+
+	public static final int DEFAULT_SAMPLE_COUNT = 256;
+	
+	// Points checked between every pair of samples when estimating the error, and the ternary
+	// search steps that then refine the worst of them
+	private static final int ERROR_SUBDIVISIONS = 32;
+	private static final int ERROR_REFINEMENTS = 20;
+
+	private static final int EASE_OUT = 0;
+	private static final int EASE_IN = 1;
+	private static final int EASE_IN_OUT = 2;
+
+	private final Easing mSource;
+	private final float[] mEaseOut;
+	private final float[] mEaseIn;
+	private final float[] mEaseInOut;
+	private final float mLastIndex;
+	private double mMaxError = -1;
+
+	public BakedEasing( Easing source ) {
+		this( source, DEFAULT_SAMPLE_COUNT );
+	}
+
+	public BakedEasing( Easing source, int sampleCount ) {
+		if( source == null ) throw new IllegalArgumentException( "source cannot be null" );
+		if( sampleCount < 2 ) throw new IllegalArgumentException( "sampleCount must be at least 2" );
+
+		mSource = source;
+		mEaseOut = new float[sampleCount];
+		mEaseIn = new float[sampleCount];
+		mEaseInOut = new float[sampleCount];
+		mLastIndex = sampleCount - 1;
+
+		for( int i = 0; i < sampleCount; i++ ){
+			double time = i / (double) mLastIndex;
+			mEaseOut[i] = (float) source.easeOut( time, 0, 1, 1 );
+			mEaseIn[i] = (float) source.easeIn( time, 0, 1, 1 );
+			mEaseInOut[i] = (float) source.easeInOut( time, 0, 1, 1 );
+		}
+	}
+
+	/**
+	 * Estimates the largest difference from the source curves, for a change of 1. Scale it by the
+	 * change to get the error in value units. The curves are sampled densely between every pair of
+	 * table entries and the worst point of each interval is refined, which finds the peak of smooth
+	 * curves and of curves with slope jumps alike; a spike narrower than 1/32 of an interval could
+	 * still be missed. Measured on the first call, which evaluates the source curves some 60000
+	 * times with the default sample count.
+	 */
+	public synchronized double getMaxError() {
+		if( mMaxError < 0 ){
+			mMaxError = Math.max( measureError( EASE_OUT ), Math.max( measureError( EASE_IN ), measureError( EASE_IN_OUT ) ) );
+		}
+		return mMaxError;
+	}
+
+	public int getSampleCount() {
+		return mEaseOut.length;
+	}
+
+	// FloatEasing
+
+	@Override
+	public float easeOut( float time, float start, float end, float duration ) {
+		return start + end * lookup( mEaseOut, time / duration );
+	}
+
+	@Override
+	public float easeIn( float time, float start, float end, float duration ) {
+		return start + end * lookup( mEaseIn, time / duration );
+	}
+
+	@Override
+	public float easeInOut( float time, float start, float end, float duration ) {
+		return start + end * lookup( mEaseInOut, time / duration );
+	}
+
+	// Easing
+
+	@Override
+	public double easeOut( double time, double start, double end, double duration ) {
+		return start + end * lookup( mEaseOut, (float) ( time / duration ) );
+	}
+
+	@Override
+	public double easeIn( double time, double start, double end, double duration ) {
+		return start + end * lookup( mEaseIn, (float) ( time / duration ) );
+	}
+
+	@Override
+	public double easeInOut( double time, double start, double end, double duration ) {
+		return start + end * lookup( mEaseInOut, (float) ( time / duration ) );
+	}
+
+	private double measureError( int curve ) {
+		double maxError = 0;
+		double step = 1 / ( mLastIndex * ERROR_SUBDIVISIONS );
+		for( int i = 0; i < mLastIndex; i++ ){
+			double intervalStart = i / (double) mLastIndex;
+			double intervalEnd = ( i + 1 ) / (double) mLastIndex;
+
+			double worstTime = intervalStart;
+			double worstError = 0;
+			for( int j = 1; j < ERROR_SUBDIVISIONS; j++ ){
+				double time = intervalStart + j * step;
+				double error = getError( curve, time );
+				if( error > worstError ){
+					worstError = error;
+					worstTime = time;
+				}
+			}
+
+			// The peak lies within a step of the worst point
+			double low = Math.max( intervalStart, worstTime - step );
+			double high = Math.min( intervalEnd, worstTime + step );
+			for( int j = 0; j < ERROR_REFINEMENTS; j++ ){
+				double lowThird = low + ( high - low ) / 3;
+				double highThird = high - ( high - low ) / 3;
+				double lowError = getError( curve, lowThird );
+				double highError = getError( curve, highThird );
+				worstError = Math.max( worstError, Math.max( lowError, highError ) );
+				if( lowError < highError ){
+					low = lowThird;
+				}else{
+					high = highThird;
+				}
+			}
+			maxError = Math.max( maxError, worstError );
+		}
+		return maxError;
+	}
+
+	private double getError( int curve, double time ) {
+		switch ( curve ) {
+			case EASE_OUT:
+				return Math.abs( lookup( mEaseOut, (float) time ) - mSource.easeOut( time, 0, 1, 1 ) );
+			case EASE_IN:
+				return Math.abs( lookup( mEaseIn, (float) time ) - mSource.easeIn( time, 0, 1, 1 ) );
+			default:
+				return Math.abs( lookup( mEaseInOut, (float) time ) - mSource.easeInOut( time, 0, 1, 1 ) );
+		}
+	}
+
+	private float lookup( float[] table, float progress ) {
+		if( !( progress > 0 ) ) return table[0];
+		if( progress >= 1 ) return table[table.length - 1];
+
+		float position = progress * mLastIndex;
+		int index = (int) position;
+		float fraction = position - index;
+		return table[index] + ( table[index + 1] - table[index] ) * fraction;
+	}
+}
@@ -0,0 +1,14 @@
+package com.aviary.glimageview.easing;
+
+/**
+ * Single precision counterpart of {@link Easing}, for animation ticks that only need float
+ * results. As with Easing, end is the change in value, not the final value.
+ */
+public interface FloatEasing {
+
+	float easeOut( float time, float start, float end, float duration );
+
+	float easeIn( float time, float start, float end, float duration );
+
+	float easeInOut( float time, float start, float end, float duration );
+}
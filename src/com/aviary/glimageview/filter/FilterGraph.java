@@ -0,0 +1,211 @@
+package com.aviary.glimageview.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An ordered chain of {@link FilterNode}s applied to an image. The graph compiles itself into
+ * the smallest number of {@link FilterPass}es by fusing every run of per-pixel nodes into the
+ * pass before it, and tracks which pass is the first one affected by a parameter change so that
+ * only the passes from there on need to be rendered again.
+ *
+ * This class is pure Java: it produces shader sources and bookkeeping, the GL work is done by
+ * FilterGraphProgram.
+ */
+public class FilterGraph {
+
+	public static final String IMAGE_UNIFORM = "u_image";
+	public static final String TEXEL_SIZE_UNIFORM = "u_texelSize";
+	public static final String TEX_COORD_VARYING = "v_texCoord";
+
+	private final List<FilterNode> mNodes = new ArrayList<FilterNode>();
+	private int mStructureVersion;
+
+	private List<FilterPass> mPasses;
+	private int mCompiledStructureVersion = -1;
+	private int[] mRenderedVersions;
+
+	// Structure
+
+	public synchronized void addNode(FilterNode node) {
+		insertNode(mNodes.size(), node);
+	}
+
+	public synchronized void insertNode(int index, FilterNode node) {
+		if(node == null){
+			throw new IllegalArgumentException("node cannot be null");
+		}
+		mNodes.add(index, node);
+		mStructureVersion++;
+	}
+
+	public synchronized boolean removeNode(FilterNode node) {
+		boolean removed = mNodes.remove(node);
+		if(removed){
+			mStructureVersion++;
+		}
+		return removed;
+	}
+
+	public synchronized void clear() {
+		mNodes.clear();
+		mStructureVersion++;
+	}
+
+	public synchronized List<FilterNode> getNodes() {
+		return Collections.unmodifiableList(new ArrayList<FilterNode>(mNodes));
+	}
+
+	/**
+	 * @return A counter that changes every time nodes are added or removed.
+	 */
+	public synchronized int getStructureVersion() {
+		return mStructureVersion;
+	}
+
+	/**
+	 * @return The fused passes for the current nodes, compiling them if the structure changed.
+	 */
+	public synchronized List<FilterPass> getPasses() {
+		if(mCompiledStructureVersion != mStructureVersion){
+			mPasses = Collections.unmodifiableList(compile(mNodes));
+			mCompiledStructureVersion = mStructureVersion;
+			mRenderedVersions = null;
+		}
+		return mPasses;
+	}
+
+	/**
+	 * @return A value that changes whenever nodes are added or removed or any parameter is set.
+	 */
+	public synchronized long getStateVersion() {
+		// Node versions only ever grow, so their sum changes whenever one of them does
+		long parameterSum = 0;
+		for(int i = 0; i < mNodes.size(); i++){
+			parameterSum += mNodes.get(i).getVersion();
+		}
+		return ((long) mStructureVersion << 32) ^ parameterSum;
+	}
+
+	// Dirty tracking
+
+	/**
+	 * @return The index of the first pass that has to be rendered again, or the pass count if
+	 * nothing changed since {@link #markRendered()}.
+	 */
+	public synchronized int getFirstDirtyPass() {
+		List<FilterPass> passes = getPasses();
+		if(mRenderedVersions == null){
+			return 0;
+		}
+
+		for(int passIndex = 0; passIndex < passes.size(); passIndex++){
+			FilterPass pass = passes.get(passIndex);
+			int nodeIndex = pass.getFirstNodeIndex();
+			for(FilterNode node : pass.getNodes()){
+				if(node.getVersion() != mRenderedVersions[nodeIndex]){
+					return passIndex;
+				}
+				nodeIndex++;
+			}
+		}
+		return passes.size();
+	}
+
+	/**
+	 * Records the current parameter versions as rendered.
+	 */
+	public synchronized void markRendered() {
+		getPasses();
+		if(mRenderedVersions == null || mRenderedVersions.length != mNodes.size()){
+			mRenderedVersions = new int[mNodes.size()];
+		}
+		for(int i = 0; i < mNodes.size(); i++){
+			mRenderedVersions[i] = mNodes.get(i).getVersion();
+		}
+	}
+
+	/**
+	 * Atomically returns {@link #getFirstDirtyPass()} and marks the current versions as rendered,
+	 * so a parameter change that lands while the passes are rendering is picked up next frame.
+	 */
+	public synchronized int consumeFirstDirtyPass() {
+		int firstDirtyPass = getFirstDirtyPass();
+		markRendered();
+		return firstDirtyPass;
+	}
+
+	/**
+	 * Forgets what was rendered, so every pass is dirty again.
+	 */
+	public synchronized void invalidate() {
+		mRenderedVersions = null;
+	}
+
+	// Compiling
+
+	/**
+	 * Splits a chain of nodes into fused passes. A sampling node always starts a new pass, and
+	 * every per-pixel node joins the pass before it.
+	 */
+	public static List<FilterPass> compile(List<FilterNode> nodes) {
+		List<FilterPass> passes = new ArrayList<FilterPass>();
+		List<FilterNode> current = new ArrayList<FilterNode>();
+		int firstIndex = 0;
+
+		for(int i = 0; i < nodes.size(); i++){
+			FilterNode node = nodes.get(i);
+			if(node.getKind() == FilterNode.Kind.SAMPLING && !current.isEmpty()){
+				passes.add(createPass(current, firstIndex));
+				current.clear();
+			}
+			if(current.isEmpty()){
+				firstIndex = i;
+			}
+			current.add(node);
+		}
+		if(!current.isEmpty()){
+			passes.add(createPass(current, firstIndex));
+		}
+		return passes;
+	}
+
+	private static FilterPass createPass(List<FilterNode> nodes, int firstIndex) {
+		List<FilterPass.Uniform> uniforms = new ArrayList<FilterPass.Uniform>();
+		StringBuilder functions = new StringBuilder();
+		StringBuilder body = new StringBuilder();
+
+		for(int i = 0; i < nodes.size(); i++){
+			FilterNode node = nodes.get(i);
+			String prefix = "n" + (firstIndex + i) + "_";
+
+			functions.append(node.getSource().replace("$", prefix)).append('\n');
+			for(String parameter : node.getParameterNames()){
+				uniforms.add(new FilterPass.Uniform(node, parameter, prefix + parameter));
+			}
+
+			if(i == 0 && node.getKind() == FilterNode.Kind.SAMPLING){
+				body.append("    vec4 color = ").append(prefix).append("apply(").append(IMAGE_UNIFORM).append(", ")
+						.append(TEX_COORD_VARYING).append(", ").append(TEXEL_SIZE_UNIFORM).append(");\n");
+			}else{
+				if(i == 0){
+					body.append("    vec4 color = texture2D(").append(IMAGE_UNIFORM).append(", ").append(TEX_COORD_VARYING).append(");\n");
+				}
+				body.append("    color = ").append(prefix).append("apply(color);\n");
+			}
+		}
+
+		String shader = "precision mediump float;\n" +
+				"uniform sampler2D " + IMAGE_UNIFORM + ";\n" +
+				"uniform vec2 " + TEXEL_SIZE_UNIFORM + ";\n" +
+				"varying highp vec2 " + TEX_COORD_VARYING + ";\n" +
+				functions +
+				"void main(void) {\n" +
+				body +
+				"    gl_FragColor = color;\n" +
+				"}\n";
+
+		return new FilterPass(nodes, firstIndex, shader, uniforms);
+	}
+}
@@ -0,0 +1,116 @@
+package com.aviary.glimageview.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single adjustment in a {@link FilterGraph}, described by a snippet of GLSL and a set of
+ * float parameters that are passed to it as uniforms.
+ *
+ * The snippet uses '$' wherever a name must be unique within the fused shader, and must define
+ * either {@code vec4 $apply(vec4 color)} for a {@link Kind#PER_PIXEL} node, or
+ * {@code vec4 $apply(sampler2D image, vec2 coord, vec2 texel)} for a {@link Kind#SAMPLING} node.
+ * Every parameter must be declared in the snippet as {@code uniform float $name;} (or vec2 to vec4).
+ */
+public class FilterNode {
+
+	public static enum Kind {
+		/** Only looks at the color of the pixel it writes, so it can be fused with its neighbours. */
+		PER_PIXEL,
+		/** Samples the input image around the pixel it writes, so it has to start a new pass. */
+		SAMPLING
+	}
+
+	private final String mName;
+	private final Kind mKind;
+	private final String mSource;
+	private final Map<String, float[]> mParameters = new LinkedHashMap<String, float[]>();
+	private volatile int mVersion;
+
+	public FilterNode(String name, Kind kind, String source) {
+		if(name == null || kind == null || source == null){
+			throw new IllegalArgumentException("name, kind and source cannot be null");
+		}
+		mName = name;
+		mKind = kind;
+		mSource = source;
+	}
+
+	/**
+	 * Declares a parameter and its initial value. Must be called before the node is added to a graph.
+	 */
+	public FilterNode addParameter(String name, float... initialValue) {
+		if(initialValue.length < 1 || initialValue.length > 4){
+			throw new IllegalArgumentException("parameters must have between 1 and 4 components");
+		}
+		synchronized (mParameters) {
+			mParameters.put(name, initialValue.clone());
+		}
+		return this;
+	}
+
+	/**
+	 * Changes a parameter. Safe to call from any thread; the graph re-renders from this node on the next frame.
+	 */
+	public void setParameter(String name, float... value) {
+		synchronized (mParameters) {
+			float[] current = mParameters.get(name);
+			if(current == null){
+				throw new IllegalArgumentException("unknown parameter " + name + " on " + mName);
+			}
+			if(current.length != value.length){
+				throw new IllegalArgumentException("parameter " + name + " has " + current.length + " components");
+			}
+			System.arraycopy(value, 0, current, 0, value.length);
+			mVersion++;
+		}
+	}
+
+	/**
+	 * Copies the current value of a parameter.
+	 * @return The number of components copied into out.
+	 */
+	public int getParameter(String name, float[] out) {
+		synchronized (mParameters) {
+			float[] current = mParameters.get(name);
+			if(current == null){
+				throw new IllegalArgumentException("unknown parameter " + name + " on " + mName);
+			}
+			System.arraycopy(current, 0, out, 0, current.length);
+			return current.length;
+		}
+	}
+
+	public List<String> getParameterNames() {
+		synchronized (mParameters) {
+			return Collections.unmodifiableList(new ArrayList<String>(mParameters.keySet()));
+		}
+	}
+
+	public String getName() {
+		return mName;
+	}
+
+	public Kind getKind() {
+		return mKind;
+	}
+
+	public String getSource() {
+		return mSource;
+	}
+
+	/**
+	 * @return A counter that changes every time a parameter is set.
+	 */
+	public int getVersion() {
+		return mVersion;
+	}
+
+	@Override
+	public String toString() {
+		return mName;
+	}
+}
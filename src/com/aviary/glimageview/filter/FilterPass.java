@@ -0,0 +1,58 @@
+package com.aviary.glimageview.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One render pass of a compiled {@link FilterGraph}: an optional sampling node followed by any
+ * number of per-pixel nodes, all fused into a single fragment shader.
+ */
+public final class FilterPass {
+
+	/**
+	 * Binds a node parameter to the uniform that carries it in the fused shader.
+	 */
+	public static final class Uniform {
+		public final FilterNode node;
+		public final String parameter;
+		public final String uniformName;
+
+		Uniform(FilterNode node, String parameter, String uniformName) {
+			this.node = node;
+			this.parameter = parameter;
+			this.uniformName = uniformName;
+		}
+	}
+
+	private final List<FilterNode> mNodes;
+	private final String mFragmentShader;
+	private final List<Uniform> mUniforms;
+	private final int mFirstNodeIndex;
+
+	FilterPass(List<FilterNode> nodes, int firstNodeIndex, String fragmentShader, List<Uniform> uniforms) {
+		mNodes = Collections.unmodifiableList(new ArrayList<FilterNode>(nodes));
+		mFirstNodeIndex = firstNodeIndex;
+		mFragmentShader = fragmentShader;
+		mUniforms = Collections.unmodifiableList(new ArrayList<Uniform>(uniforms));
+	}
+
+	public List<FilterNode> getNodes() {
+		return mNodes;
+	}
+
+	/**
+	 * @return The index in the graph of the first node of this pass.
+	 */
+	public int getFirstNodeIndex() {
+		return mFirstNodeIndex;
+	}
+
+	public String getFragmentShader() {
+		return mFragmentShader;
+	}
+
+	public List<Uniform> getUniforms() {
+		return mUniforms;
+	}
+}
@@ -0,0 +1,97 @@
+package com.aviary.glimageview.filter;
+
+/**
+ * Factory methods for the built-in adjustments.
+ */
+public final class Filters {
+
+	private Filters() {
+	}
+
+	/**
+	 * Multiplies the color by 2^stops.
+	 */
+	public static FilterNode exposure(float stops) {
+		return new FilterNode("exposure", FilterNode.Kind.PER_PIXEL, "" +
+				"uniform float $stops;" +
+				"vec4 $apply(vec4 color) {" +
+				"    return vec4(color.rgb * exp2($stops), color.a);" +
+				"}")
+				.addParameter("stops", stops);
+	}
+
+	/**
+	 * Scales the distance from mid grey, 1 leaves the image unchanged.
+	 */
+	public static FilterNode contrast(float amount) {
+		return new FilterNode("contrast", FilterNode.Kind.PER_PIXEL, "" +
+				"uniform float $amount;" +
+				"vec4 $apply(vec4 color) {" +
+				"    return vec4(clamp((color.rgb - 0.5) * $amount + 0.5, 0.0, 1.0), color.a);" +
+				"}")
+				.addParameter("amount", amount);
+	}
+
+	/**
+	 * Mixes between the luminance and the color, 1 leaves the image unchanged.
+	 */
+	public static FilterNode saturation(float amount) {
+		return new FilterNode("saturation", FilterNode.Kind.PER_PIXEL, "" +
+				"uniform float $amount;" +
+				"vec4 $apply(vec4 color) {" +
+				"    float luma = dot(color.rgb, vec3(0.299, 0.587, 0.114));" +
+				"    return vec4(clamp(mix(vec3(luma), color.rgb, $amount), 0.0, 1.0), color.a);" +
+				"}")
+				.addParameter("amount", amount);
+	}
+
+	/**
+	 * A tone curve through four evenly spaced control values, evaluated as a cubic Bezier.
+	 * (0, 1/3, 2/3, 1) is the identity curve.
+	 */
+	public static FilterNode curves(float shadows, float darks, float lights, float highlights) {
+		return new FilterNode("curves", FilterNode.Kind.PER_PIXEL, "" +
+				"uniform vec4 $points;" +
+				"vec3 $curve(vec3 t) {" +
+				"    vec3 s = 1.0 - t;" +
+				"    return s * s * s * $points.x + 3.0 * s * s * t * $points.y + 3.0 * s * t * t * $points.z + t * t * t * $points.w;" +
+				"}" +
+				"vec4 $apply(vec4 color) {" +
+				"    return vec4(clamp($curve(color.rgb), 0.0, 1.0), color.a);" +
+				"}")
+				.addParameter("points", shadows, darks, lights, highlights);
+	}
+
+	/**
+	 * A 3x3 gaussian blur whose taps are spread radius texels apart.
+	 */
+	public static FilterNode blur(float radius) {
+		return new FilterNode("blur", FilterNode.Kind.SAMPLING, "" +
+				"uniform float $radius;" +
+				"vec4 $apply(sampler2D image, vec2 coord, vec2 texel) {" +
+				"    vec2 d = texel * $radius;" +
+				"    vec4 sum = texture2D(image, coord) * 4.0;" +
+				"    sum += (texture2D(image, coord + vec2(d.x, 0.0)) + texture2D(image, coord - vec2(d.x, 0.0))" +
+				"          + texture2D(image, coord + vec2(0.0, d.y)) + texture2D(image, coord - vec2(0.0, d.y))) * 2.0;" +
+				"    sum += texture2D(image, coord + d) + texture2D(image, coord - d)" +
+				"          + texture2D(image, coord + vec2(d.x, -d.y)) + texture2D(image, coord + vec2(-d.x, d.y));" +
+				"    return sum / 16.0;" +
+				"}")
+				.addParameter("radius", radius);
+	}
+
+	/**
+	 * Unsharp mask against the 4-neighbour average, 0 leaves the image unchanged.
+	 */
+	public static FilterNode sharpen(float amount) {
+		return new FilterNode("sharpen", FilterNode.Kind.SAMPLING, "" +
+				"uniform float $amount;" +
+				"vec4 $apply(sampler2D image, vec2 coord, vec2 texel) {" +
+				"    vec4 center = texture2D(image, coord);" +
+				"    vec4 blurred = (texture2D(image, coord + vec2(texel.x, 0.0)) + texture2D(image, coord - vec2(texel.x, 0.0))" +
+				"          + texture2D(image, coord + vec2(0.0, texel.y)) + texture2D(image, coord - vec2(0.0, texel.y))) * 0.25;" +
+				"    return vec4(clamp(center.rgb + (center.rgb - blurred.rgb) * $amount, 0.0, 1.0), center.a);" +
+				"}")
+				.addParameter("amount", amount);
+	}
+}
@@ -0,0 +1,164 @@
+package com.aviary.glimageview.filter;
+
+/**
+ * Decides which render target every pass of a filter graph reads from and writes to.
+ *
+ * The plan remembers which pass output each of its targets holds. A render resumes from the
+ * latest output that is still valid before the first dirty pass, so the first change of a node
+ * in one of the last passes already skips the passes before it. The output of the pass just
+ * before the first dirty one is kept while the following passes pick among the other targets,
+ * oldest content first, so repeatedly changing the same node only re-renders the passes from
+ * that node on. The plan object is reused between frames and never allocates after the first
+ * call for a given pass count.
+ */
+public final class RenderPlan {
+
+	public static final int SOURCE = -1;
+	public static final int TARGET_COUNT = 3;
+
+	private static final int EMPTY = -1;
+
+	private int mPassCount;
+	private int mStartPass;
+	private int mKeptPass = -1;
+	private int mOutputTarget = SOURCE;
+	private int[] mInputs = new int[0];
+	private int[] mOutputs = new int[0];
+	private final int[] mTargetPasses = { EMPTY, EMPTY, EMPTY };
+
+	/**
+	 * Plans the next render.
+	 * @param passCount The number of passes in the graph.
+	 * @param firstDirtyPass The first pass whose output changed, or passCount if none did.
+	 * @return The number of passes to render, starting at {@link #getStartPass()}.
+	 */
+	public int update(int passCount, int firstDirtyPass) {
+		if(passCount != mPassCount || mInputs.length < passCount){
+			if(mInputs.length < passCount){
+				mInputs = new int[passCount];
+				mOutputs = new int[passCount];
+			}
+			mPassCount = passCount;
+			clearTargets();
+			firstDirtyPass = 0;
+		}
+
+		if(passCount == 0){
+			mStartPass = 0;
+			mKeptPass = -1;
+			mOutputTarget = SOURCE;
+			return 0;
+		}
+
+		if(firstDirtyPass >= passCount && mOutputTarget != SOURCE){
+			mStartPass = passCount;
+			return 0;
+		}
+		firstDirtyPass = Math.min(firstDirtyPass, passCount - 1);
+
+		// Outputs from the first dirty pass on are stale, the ones before it resume the render
+		int input = SOURCE;
+		mStartPass = 0;
+		for(int target = 0; target < TARGET_COUNT; target++){
+			int pass = mTargetPasses[target];
+			if(pass >= firstDirtyPass){
+				mTargetPasses[target] = EMPTY;
+			}else if(pass != EMPTY && pass + 1 > mStartPass){
+				mStartPass = pass + 1;
+				input = target;
+			}
+		}
+
+		mKeptPass = firstDirtyPass - 1;
+		int keptTarget = findTarget(mKeptPass);
+		for(int pass = mStartPass; pass < passCount; pass++){
+			int output = selectOutput(input, keptTarget);
+			mInputs[pass] = input;
+			mOutputs[pass] = output;
+			mTargetPasses[output] = pass;
+			if(pass == mKeptPass){
+				keptTarget = output;
+			}
+			input = output;
+		}
+		mOutputTarget = input;
+
+		return passCount - mStartPass;
+	}
+
+	private int findTarget(int pass) {
+		if(pass < 0){
+			return SOURCE;
+		}
+		for(int target = 0; target < TARGET_COUNT; target++){
+			if(mTargetPasses[target] == pass){
+				return target;
+			}
+		}
+		return SOURCE;
+	}
+
+	/**
+	 * @return The target other than the input and the kept one that holds the earliest pass.
+	 */
+	private int selectOutput(int input, int keptTarget) {
+		int output = SOURCE;
+		for(int target = 0; target < TARGET_COUNT; target++){
+			if(target == input || target == keptTarget){
+				continue;
+			}
+			if(output == SOURCE || mTargetPasses[target] < mTargetPasses[output]){
+				output = target;
+			}
+		}
+		return output;
+	}
+
+	private void clearTargets() {
+		for(int target = 0; target < TARGET_COUNT; target++){
+			mTargetPasses[target] = EMPTY;
+		}
+	}
+
+	/**
+	 * Forgets every rendered target, the next update renders from the source again.
+	 */
+	public void reset() {
+		clearTargets();
+		mKeptPass = -1;
+		mOutputTarget = SOURCE;
+	}
+
+	public int getStartPass() {
+		return mStartPass;
+	}
+
+	public int getInput(int pass) {
+		return mInputs[pass];
+	}
+
+	public int getOutput(int pass) {
+		return mOutputs[pass];
+	}
+
+	/**
+	 * @return The target holding the final image, or {@link #SOURCE} if there are no passes.
+	 */
+	public int getOutputTarget() {
+		return mOutputTarget;
+	}
+
+	/**
+	 * @return The pass just before the first dirty one of the last update, whose output is kept, or -1.
+	 */
+	public int getKeptPass() {
+		return mKeptPass;
+	}
+
+	/**
+	 * @return The pass whose output the target holds, or -1 if it holds nothing valid.
+	 */
+	public int getTargetPass(int target) {
+		return mTargetPasses[target];
+	}
+}